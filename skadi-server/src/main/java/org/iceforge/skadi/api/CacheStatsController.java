@@ -1,6 +1,8 @@
 package org.iceforge.skadi.api;
 
+import org.iceforge.skadi.aws.s3.PrefixShardedLister;
 import org.iceforge.skadi.aws.s3.S3AccessLayer;
+import org.iceforge.skadi.aws.s3.S3Models;
 import org.iceforge.skadi.query.QueryCacheProperties;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -20,6 +22,7 @@ public class CacheStatsController {
     private final S3AccessLayer s3;
     private final QueryCacheProperties props;
     private final Duration storageTtl;
+    private final int listParallelism;
 
     // Cache the last computed storage snapshot to avoid frequent S3 LIST calls.
     private final AtomicReference<StorageSnapshot> lastStorage = new AtomicReference<>(StorageSnapshot.empty());
@@ -34,6 +37,8 @@ public class CacheStatsController {
         this.s3 = Objects.requireNonNull(s3);
         this.props = Objects.requireNonNull(props);
 
+        this.listParallelism = dashboardProps.getStorageListParallelism();
+
         long ttlSeconds = dashboardProps.getStorageTtlSeconds();
         this.storageTtl = Duration.ofSeconds(Math.max(15, ttlSeconds)); // guardrail
     }
@@ -78,20 +83,15 @@ public class CacheStatsController {
 
         // Recompute once; if multiple threads race, we accept a small burst at TTL boundary.
         // (If you want strict single-flight, we can add a lock, but this is usually enough.)
-        int maxKeys = 10_000;
-        long bytesUsed = 0L;
-        int objects = 0;
+        // Full paginated listing, sharded by sub-prefix, so the totals are never truncated.
+        long bytesUsed;
+        long objects;
         boolean truncated = false;
 
         try {
-            var items = s3.list(bucket, prefix, maxKeys);
-            if (items != null) {
-                for (var it : items) {
-                    bytesUsed += Math.max(0L, it.size());
-                    objects++;
-                }
-                truncated = (items.size() >= maxKeys);
-            }
+            S3Models.ListSummary summary = PrefixShardedLister.summarize(s3, bucket, prefix, listParallelism);
+            bytesUsed = summary.bytes();
+            objects = summary.objectCount();
         } catch (Exception ignored) {
             // On failure, keep previous snapshot if it matches; otherwise return zeros.
             if (current.matches(bucket, prefix)) {
@@ -109,11 +109,11 @@ public class CacheStatsController {
         final String bucket;
         final String prefix;
         final long bytesUsed;
-        final int objectCount;
+        final long objectCount;
         final boolean truncated;
         final long asOfEpochMs;
 
-        StorageSnapshot(String bucket, String prefix, long bytesUsed, int objectCount, boolean truncated, long asOfEpochMs) {
+        StorageSnapshot(String bucket, String prefix, long bytesUsed, long objectCount, boolean truncated, long asOfEpochMs) {
             this.bucket = bucket;
             this.prefix = prefix;
             this.bytesUsed = bytesUsed;
@@ -10,6 +10,19 @@ public class DashboardProperties {
      */
     private long storageTtlSeconds = 60; // safe default
 
+    /**
+     * Sub-prefixes listed concurrently when recomputing storage size.
+     */
+    private int storageListParallelism = 8;
+
+    public int getStorageListParallelism() {
+        return storageListParallelism;
+    }
+
+    public void setStorageListParallelism(int storageListParallelism) {
+        this.storageListParallelism = storageListParallelism;
+    }
+
     public long getStorageTtlSeconds() {
         return storageTtlSeconds;
     }
@@ -0,0 +1,43 @@
+package org.iceforge.skadi.api;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+import java.nio.file.Path;
+
+/**
+ * Zero-copy serving of objects that already sit on local disk (cache hits, local store).
+ *
+ * <p>Tomcat's NIO connectors support sendfile: when the request carries the sendfile attributes
+ * and the servlet writes no body, the connector streams the file region from the page cache
+ * straight to the socket ({@code FileChannel.transferTo}). No bytes are copied through the JVM heap.
+ * This is the same mechanism Tomcat's DefaultServlet uses for static files.
+ *
+ * <p>Callers must set Content-Length and must not write a body when {@link #trySendfile} returns true.
+ * Containers without sendfile (or MockMvc) report it as unsupported and callers fall back to copying.
+ */
+public final class LocalFileServing {
+
+    static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private LocalFileServing() {}
+
+    public static boolean sendfileSupported(HttpServletRequest request) {
+        return request != null && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED));
+    }
+
+    /**
+     * Hands bytes [start, end) of file to the connector.
+     *
+     * @return false if the container cannot sendfile; nothing has been changed in that case
+     */
+    public static boolean trySendfile(HttpServletRequest request, Path file, long start, long end) {
+        if (!sendfileSupported(request) || file == null || start < 0 || end < start) return false;
+        request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+        request.setAttribute(SENDFILE_START, start);
+        request.setAttribute(SENDFILE_END, end);
+        return true;
+    }
+}
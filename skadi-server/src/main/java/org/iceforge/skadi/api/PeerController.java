@@ -1,10 +1,14 @@
 package org.iceforge.skadi.api;
 
+import org.iceforge.skadi.aws.s3.PeerMembership;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -12,15 +16,42 @@ import java.util.Map;
 @RequestMapping("/api")
 public class PeerController {
 
+    private final ObjectProvider<PeerMembership> membership;
+
+    public PeerController(ObjectProvider<PeerMembership> membership) {
+        this.membership = membership;
+    }
+
+    /**
+     * This node followed by every known peer cache member with its health: status is UP while the circuit
+     * is closed, DOWN while it is open and PROBING when half-open.
+     */
     @GetMapping("/peers")
-    public List<Map<String, String>> peers() {
-        return List.of(
-                Map.of(
-                        "id", "local",
-                        "host", getHost(),
-                        "status", "UP"
-                )
-        );
+    public List<Map<String, Object>> peers() {
+        List<Map<String, Object>> out = new ArrayList<>();
+        out.add(Map.of(
+                "id", "local",
+                "host", getHost(),
+                "status", "UP"
+        ));
+
+        PeerMembership m = membership.getIfAvailable();
+        if (m == null) return out;
+        for (PeerMembership.PeerStatus p : m.statuses()) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("id", p.url());
+            row.put("host", p.url());
+            row.put("status", switch (p.circuit()) {
+                case CLOSED -> "UP";
+                case OPEN -> "DOWN";
+                case HALF_OPEN -> "PROBING";
+            });
+            row.put("latencyEwmaMs", p.latencyEwmaMs() < 0 ? null : Math.round(p.latencyEwmaMs() * 10) / 10.0);
+            row.put("errorRate", Math.round(p.errorRate() * 1000) / 1000.0);
+            row.put("lastSuccessMillis", p.lastSuccessMillis() == 0 ? null : p.lastSuccessMillis());
+            out.add(row);
+        }
+        return out;
     }
 
     private String getHost() {
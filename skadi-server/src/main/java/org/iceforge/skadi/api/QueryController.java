@@ -8,6 +8,8 @@ import org.iceforge.skadi.query.ManifestReader;
 import org.iceforge.skadi.query.QueryModels;
 import org.iceforge.skadi.query.QueryService;
 import org.iceforge.skadi.query.QueryStatsRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -16,7 +18,13 @@ import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBo
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @RestController
 @RequestMapping("/v1/query")
@@ -27,6 +35,8 @@ public class QueryController {
     private final S3AccessLayer s3;
     private final QueryStatsRegistry stats;
 
+    @Value("${skadi.stream.prefetchChunks:4}")
+    private int prefetchChunks = 4;
 
     public QueryController(QueryService queryService, ManifestReader manifestReader, S3AccessLayer s3,QueryStatsRegistry stats) {
         this.queryService = Objects.requireNonNull(queryService);
@@ -44,9 +54,16 @@ public class QueryController {
                 : ResponseEntity.accepted().body(resp);
     }
 
+    /**
+     * With waitMs, a RUNNING query is long-polled: the call returns as soon as the writer finishes. The request
+     * is completed asynchronously, so a parked poll holds no container thread.
+     */
     @GetMapping("/{queryId}")
-    public QueryModels.QueryStatusResponse status(@PathVariable String queryId) {
-        return queryService.status(queryId);
+    public CompletableFuture<QueryModels.QueryStatusResponse> status(@PathVariable String queryId,
+                                                                     @RequestParam(value = "waitMs", defaultValue = "0") long waitMs) {
+        return waitMs > 0
+                ? queryService.status(queryId, waitMs)
+                : CompletableFuture.completedFuture(queryService.status(queryId));
     }
 
     @GetMapping("/{queryId}/manifest")
@@ -59,7 +76,8 @@ public class QueryController {
     }
 
     @GetMapping("/{queryId}/chunk/{part}")
-    public ResponseEntity<StreamingResponseBody> chunk(@PathVariable String queryId, @PathVariable int part) throws Exception {
+    public ResponseEntity<StreamingResponseBody> chunk(@PathVariable String queryId, @PathVariable int part,
+                                                       HttpServletRequest request) throws Exception {
         QueryModels.QueryStatusResponse st = queryService.status(queryId);
         if (st.ref() == null) {
             return ResponseEntity.notFound().build();
@@ -72,6 +90,17 @@ public class QueryController {
         if (cd == null) {
             return ResponseEntity.notFound().build();
         }
+
+        MediaType mt = m.compressed()
+                ? MediaType.parseMediaType("application/x-ndjson+gzip")
+                : MediaType.parseMediaType("application/x-ndjson");
+
+        // Fast path: the chunk is a raw file on local disk -> let the connector sendfile it.
+        Long sent = trySendfile(request, new S3Models.ObjectRef(st.ref().bucket(), cd.key()), queryId);
+        if (sent != null) {
+            return ResponseEntity.ok().contentType(mt).contentLength(sent).build();
+        }
+
         StreamingResponseBody body = out -> {
             try {
                 streamObject(st.ref().bucket(), cd.key(), out,queryId);
@@ -79,24 +108,57 @@ public class QueryController {
                 throw new IOException("Streaming failed", e);
             }
         };
-
-        MediaType mt = m.compressed()
-                ? MediaType.parseMediaType("application/x-ndjson+gzip")
-                : MediaType.parseMediaType("application/x-ndjson");
         return ResponseEntity.ok().contentType(mt).body(body);
     }
 
+    /**
+     * Waits (up to waitMs, capped, without holding a container thread) for a RUNNING query to finish; 202 if it
+     * is still running after that.
+     */
     @GetMapping("/{queryId}/stream")
-    public ResponseEntity<StreamingResponseBody> streamAll(@PathVariable String queryId) throws Exception {
+    public CompletableFuture<ResponseEntity<StreamingResponseBody>> streamAll(@PathVariable String queryId,
+                                                                              @RequestParam(value = "waitMs", defaultValue = "30000") long waitMs) {
         QueryModels.QueryStatusResponse st = queryService.status(queryId);
+        CompletableFuture<QueryModels.QueryStatusResponse> settled =
+                st.status() == QueryModels.Status.RUNNING && waitMs > 0
+                ? queryService.status(queryId, waitMs)
+                : CompletableFuture.completedFuture(st);
+        return settled.thenApply(s -> {
+            try {
+                return streamAll(queryId, s);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    private ResponseEntity<StreamingResponseBody> streamAll(String queryId, QueryModels.QueryStatusResponse st)
+            throws Exception {
         if (st.ref() == null) {
             return ResponseEntity.notFound().build();
         }
+        if (st.status() == QueryModels.Status.RUNNING) {
+            return ResponseEntity.accepted().build();
+        }
         ResultSetToS3ChunkWriter.Manifest m = manifestReader.read(st.ref().bucket(), st.ref().manifestKey());
 
+        String bucket = st.ref().bucket();
+        List<S3Models.ObjectRef> refs = m.chunks().stream()
+                .map(cd -> new S3Models.ObjectRef(bucket, cd.key()))
+                .toList();
+
         StreamingResponseBody body = out -> {
-            for (ResultSetToS3ChunkWriter.ChunkDescriptor cd : m.chunks()) {
-                streamObject(st.ref().bucket(), cd.key(), out,queryId); // now only throws IOException
+            // Keep the next prefetchChunks chunks warming while the current one streams
+            int ahead = Math.max(0, prefetchChunks);
+            if (ahead > 0 && refs.size() > 1) {
+                s3.prefetch(refs.subList(1, Math.min(refs.size(), 1 + ahead)));
+            }
+            for (int i = 0; i < refs.size(); i++) {
+                int next = i + 1 + ahead;
+                if (ahead > 0 && i > 0 && next <= refs.size()) {
+                    s3.prefetch(refs.subList(next - 1, next));
+                }
+                streamObject(bucket, refs.get(i).key(), out, queryId); // now only throws IOException
             }
         };
 
@@ -116,6 +178,7 @@ public class QueryController {
             int r;
             while ((r = in.read(buf)) >= 0) {
                 out.write(buf, 0, r);
+                bytes += r;
             }
         } catch (IOException e) {
             throw e; // keep IOExceptions as-is
@@ -129,4 +192,23 @@ public class QueryController {
         }
     }
 
+    /**
+     * Serves the object via sendfile when the container supports it and the object is available
+     * as a local file. Returns the content length on success, null if the caller must stream instead.
+     */
+    private Long trySendfile(HttpServletRequest request, S3Models.ObjectRef ref, String queryId) {
+        if (!LocalFileServing.sendfileSupported(request)) return null;
+        Optional<Path> local = s3.getLocalFile(ref);
+        CacheFetchContext.Source src = CacheFetchContext.getAndClear();
+        if (local.isEmpty()) return null;
+        try {
+            long len = Files.size(local.get());
+            if (!LocalFileServing.trySendfile(request, local.get(), 0, len)) return null;
+            stats.recordServe(queryId, len, src);
+            return len;
+        } catch (IOException e) {
+            // evicted between lookup and size(); fall back to the streaming path
+            return null;
+        }
+    }
 }
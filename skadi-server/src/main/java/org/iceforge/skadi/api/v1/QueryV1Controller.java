@@ -8,11 +8,14 @@ package org.iceforge.skadi.api.v1;
         import org.iceforge.skadi.aws.s3.S3Models;
         import org.iceforge.skadi.jdbc.spi.JdbcClientFactory;
 import org.iceforge.skadi.api.CacheMetricsRegistry;
+import org.iceforge.skadi.api.LocalFileServing;
         import org.iceforge.skadi.query.QueryModels;
         import org.iceforge.skadi.query.QueryCacheProperties;
+        import jakarta.servlet.http.HttpServletRequest;
         import org.slf4j.Logger;
         import org.slf4j.LoggerFactory;
         import org.springframework.http.HttpHeaders;
+        import org.springframework.http.HttpRange;
         import org.springframework.http.HttpStatus;
         import org.springframework.http.MediaType;
         import org.springframework.http.ResponseEntity;
@@ -25,7 +28,9 @@ import org.iceforge.skadi.api.CacheMetricsRegistry;
         import java.sql.Connection;
         import java.time.Duration;
         import java.time.Instant;
+        import java.util.List;
         import java.util.Objects;
+        import java.util.Optional;
         import java.util.concurrent.ExecutorService;
         import java.util.concurrent.TimeUnit;
 
@@ -138,7 +143,8 @@ import org.iceforge.skadi.api.CacheMetricsRegistry;
 
             @GetMapping("/{queryId}/results")
             public ResponseEntity<StreamingResponseBody> results(@PathVariable String queryId,
-                                                                 @RequestParam(value = "waitMs", required = false) Long waitMs) {
+                                                                 @RequestParam(value = "waitMs", required = false) Long waitMs,
+                                                                 HttpServletRequest request) {
                 QueryV1Registry.Entry e = registry.get(queryId).orElse(null);
                 if (e == null) return ResponseEntity.notFound().build();
 
@@ -166,17 +172,82 @@ import org.iceforge.skadi.api.CacheMetricsRegistry;
                     return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
                 }
 
+                S3Models.ObjectRef ref = new S3Models.ObjectRef(e.resultBucket(), e.resultKey());
+                String ct = Objects.requireNonNullElse(e.resultContentType(), "application/vnd.apache.arrow.stream");
+
+                // Partial read (Arrow footer / batch seeking, resumed downloads): only the requested bytes are fetched.
+                String range = request == null ? null : request.getHeader(HttpHeaders.RANGE);
+                if (range != null) {
+                    return rangedResults(e, ref, ct, range);
+                }
+
+                // Fast path: result is a raw file on local disk -> sendfile, no heap copy.
+                if (LocalFileServing.sendfileSupported(request)) {
+                    Optional<Path> local = s3.getLocalFile(ref);
+                    if (local.isPresent()) {
+                        try {
+                            long len = Files.size(local.get());
+                            if (LocalFileServing.trySendfile(request, local.get(), 0, len)) {
+                                return ResponseEntity.ok()
+                                        .header(HttpHeaders.CONTENT_TYPE, ct)
+                                        .header("Skadi-Query-Id", e.queryId())
+                                        .contentLength(len)
+                                        .build();
+                            }
+                        } catch (IOException ex) {
+                            log.debug("Local result file vanished before sendfile, streaming instead: {}", local.get());
+                        }
+                    }
+                }
+
                 StreamingResponseBody body = out -> {
-                    S3Models.ObjectRef ref = new S3Models.ObjectRef(e.resultBucket(), e.resultKey());
                     try (InputStream in = s3.getStream(ref)) {
                         in.transferTo(out);
                     }
                 };
 
-                String ct = Objects.requireNonNullElse(e.resultContentType(), "application/vnd.apache.arrow.stream");
                 return ResponseEntity.ok()
                         .header(HttpHeaders.CONTENT_TYPE, ct)
+                        .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                        .header("Skadi-Query-Id", e.queryId())
+                        .body(body);
+            }
+
+            private ResponseEntity<StreamingResponseBody> rangedResults(QueryV1Registry.Entry e, S3Models.ObjectRef ref,
+                                                                        String ct, String rangeHeader) {
+                long size = s3.head(ref).map(S3Models.ObjectMetadata::contentLength).orElse(-1L);
+                if (size < 0) return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+
+                List<HttpRange> ranges;
+                try {
+                    ranges = HttpRange.parseRanges(rangeHeader);
+                } catch (IllegalArgumentException ex) {
+                    ranges = List.of();
+                }
+                long start;
+                long end;
+                try {
+                    if (ranges.size() != 1 || size == 0) throw new IllegalArgumentException("unsupported range");
+                    start = ranges.get(0).getRangeStart(size);
+                    end = ranges.get(0).getRangeEnd(size);
+                    if (start > end) throw new IllegalArgumentException("empty range");
+                } catch (IllegalArgumentException ex) {
+                    return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                            .header(HttpHeaders.CONTENT_RANGE, "bytes */" + size)
+                            .build();
+                }
+
+                long len = end - start + 1;
+                StreamingResponseBody body = out -> {
+                    try (InputStream in = s3.getRange(ref, start, len)) {
+                        in.transferTo(out);
+                    }
+                };
+                return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                        .header(HttpHeaders.CONTENT_TYPE, ct)
+                        .header(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size)
                         .header("Skadi-Query-Id", e.queryId())
+                        .contentLength(len)
                         .body(body);
             }
 
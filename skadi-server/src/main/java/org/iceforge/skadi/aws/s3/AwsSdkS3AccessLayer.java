@@ -1,7 +1,9 @@
 package org.iceforge.skadi.aws.s3;
 
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 import org.springframework.stereotype.Service;
@@ -13,12 +15,23 @@ import software.amazon.awssdk.services.s3.presigner.S3Presigner;
 import software.amazon.awssdk.services.s3.presigner.model.PresignedGetObjectRequest;
 import software.amazon.awssdk.services.s3.presigner.model.PresignedPutObjectRequest;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.CRC32;
 
 @Component
 @Service
@@ -28,11 +41,33 @@ public class AwsSdkS3AccessLayer implements S3AccessLayer {
     private final S3Client s3;
     private final S3Presigner presigner;
 
+    // S3's minimum size for every part but the last
+    private static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+
+    @Value("${skadi.aws.s3.multipart.partSize:8Mb}")
+    private String multipartPartSizeExpr = "8Mb";
+
+    @Value("${skadi.aws.s3.multipart.concurrency:4}")
+    private int multipartConcurrency = 4;
+
+    private final PartBufferPool partBuffers = new PartBufferPool(16);
+
+    private final ExecutorService uploadPool = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "skadi-s3-multipart");
+        t.setDaemon(true);
+        return t;
+    });
+
     public AwsSdkS3AccessLayer(S3Client s3, S3Presigner presigner) {
         this.s3 = s3;
         this.presigner = presigner;
     }
 
+    @PreDestroy
+    public void shutdown() {
+        uploadPool.shutdownNow();
+    }
+
     @Override
     public String putBytes(S3Models.ObjectRef ref, byte[] bytes, String contentType, Map<String, String> userMetadata) {
         try {
@@ -44,7 +79,7 @@ public class AwsSdkS3AccessLayer implements S3AccessLayer {
             if (userMetadata != null && !userMetadata.isEmpty()) req = req.metadata(userMetadata);
 
             PutObjectResponse resp = s3.putObject(req.build(), RequestBody.fromBytes(bytes));
-            logger.info("S3 putBytes succeeded for s3://{}/{} ETag={}", ref.bucket(), ref.key(), resp.eTag());
+            logger.debug("S3 putBytes succeeded for s3://{}/{} ETag={}", ref.bucket(), ref.key(), resp.eTag());
             return resp.eTag();
         } catch (S3Exception e) {
             logger.error("S3 putBytes failed for s3://{}/{}", ref.bucket(), ref.key(), e);
@@ -62,7 +97,7 @@ public class AwsSdkS3AccessLayer implements S3AccessLayer {
             if (userMetadata != null && !userMetadata.isEmpty()) req = req.metadata(userMetadata);
 
             PutObjectResponse resp = s3.putObject(req.build(), RequestBody.fromInputStream(in, contentLength));
-            logger.info("S3 putStream succeeded for s3://{}/{} ETag={}", ref.bucket(), ref.key(), resp.eTag());
+            logger.debug("S3 putStream succeeded for s3://{}/{} ETag={}", ref.bucket(), ref.key(), resp.eTag());
             return resp.eTag();
         } catch (S3Exception e) {
             logger.error("S3 putStream failed for s3://{}/{}", ref.bucket(), ref.key(), e);
@@ -75,11 +110,11 @@ public class AwsSdkS3AccessLayer implements S3AccessLayer {
         try (ResponseInputStream<GetObjectResponse> ris = s3.getObject(
                 GetObjectRequest.builder().bucket(ref.bucket()).key(ref.key()).build()
         )) {
-            logger.info("S3 getBytes succeeded for s3://{}/{}", ref.bucket(), ref.key());
+            logger.debug("S3 getBytes succeeded for s3://{}/{}", ref.bucket(), ref.key());
             return readAllBytes(ris);
         } catch (NoSuchKeyException e) {
             // Cache miss is expected; do NOT fail the request.
-            logger.info("S3 object not found (expected) for get s3://{}/{}", ref.bucket(), ref.key());
+            logger.debug("S3 object not found (expected) for get s3://{}/{}", ref.bucket(), ref.key());
             throw new S3CacheMissException(ref.bucket(), ref.key(), e);
         } catch (S3Exception | IOException e) {
             throw new S3AccessException("S3 getBytes failed: s3://" + ref.bucket() + "/" + ref.key(), e);
@@ -91,7 +126,7 @@ public class AwsSdkS3AccessLayer implements S3AccessLayer {
     public InputStream getStream(S3Models.ObjectRef ref) {
         try {
             // Caller must close
-            logger.info("S3 getStream succeeded for s3://{}/{}", ref.bucket(), ref.key());
+            logger.debug("S3 getStream succeeded for s3://{}/{}", ref.bucket(), ref.key());
             return s3.getObject(GetObjectRequest.builder().bucket(ref.bucket()).key(ref.key()).build());
         } catch (S3Exception e) {
             logger.error("S3 getStream failed for s3://{}/{}", ref.bucket(), ref.key(), e);
@@ -99,6 +134,55 @@ public class AwsSdkS3AccessLayer implements S3AccessLayer {
         }
     }
 
+    /** Content-Length of a stream returned by {@link #getStream}, or -1 if in did not come from an S3 GET. */
+    static long contentLength(InputStream in) {
+        if (in instanceof ResponseInputStream<?> r && r.response() instanceof GetObjectResponse g
+                && g.contentLength() != null) {
+            return g.contentLength();
+        }
+        return -1L;
+    }
+
+    /**
+     * Closes a stream returned by {@link #getStream} that may not have been read to the end. An S3 GET is
+     * aborted rather than drained, so the rest of the body is not downloaded just to be discarded.
+     */
+    static void abortQuietly(InputStream in) {
+        if (in == null) return;
+        try {
+            if (in instanceof ResponseInputStream<?> r) r.abort();
+            in.close();
+        } catch (IOException | RuntimeException ignore) {
+            // best-effort
+        }
+    }
+
+    @Override
+    public InputStream getRange(S3Models.ObjectRef ref, long offset, long length) {
+        if (offset < 0 || length < 0) {
+            throw new IllegalArgumentException("Invalid range offset=" + offset + " length=" + length);
+        }
+        if (length == 0) return InputStream.nullInputStream();
+        try {
+            // HTTP byte ranges are inclusive on both ends; a range ending past Long.MAX_VALUE is left open. Caller must close.
+            String range = length - 1 > Long.MAX_VALUE - offset
+                    ? "bytes=" + offset + "-"
+                    : "bytes=" + offset + "-" + (offset + length - 1);
+            logger.debug("S3 getRange for s3://{}/{} {}", ref.bucket(), ref.key(), range);
+            return s3.getObject(GetObjectRequest.builder().bucket(ref.bucket()).key(ref.key()).range(range).build());
+        } catch (NoSuchKeyException e) {
+            throw new S3CacheMissException(ref.bucket(), ref.key(), e);
+        } catch (S3Exception e) {
+            if (e.statusCode() == 416) {
+                // Range starts at or past the end: nothing left to read
+                logger.debug("S3 getRange past the end of s3://{}/{} offset={}", ref.bucket(), ref.key(), offset);
+                return InputStream.nullInputStream();
+            }
+            logger.error("S3 getRange failed for s3://{}/{}", ref.bucket(), ref.key(), e);
+            throw new S3AccessException("S3 getRange failed: s3://" + ref.bucket() + "/" + ref.key(), e);
+        }
+    }
+
     @Override
     public Optional<S3Models.ObjectMetadata> head(S3Models.ObjectRef ref) {
         try {
@@ -106,7 +190,7 @@ public class AwsSdkS3AccessLayer implements S3AccessLayer {
                     .bucket(ref.bucket())
                     .key(ref.key())
                     .build());
-            logger.info("S3 head succeeded for s3://{}/{}", ref.bucket(), ref.key());
+            logger.debug("S3 head succeeded for s3://{}/{}", ref.bucket(), ref.key());
             return Optional.of(new S3Models.ObjectMetadata(
                     ref.bucket(),
                     ref.key(),
@@ -118,12 +202,12 @@ public class AwsSdkS3AccessLayer implements S3AccessLayer {
             ));
         } catch (NoSuchKeyException e) {
             // Expected: object doesn't exist.
-            logger.info("S3 object not found (expected) for head s3://{}/{}", ref.bucket(), ref.key());
+            logger.debug("S3 object not found (expected) for head s3://{}/{}", ref.bucket(), ref.key());
             return Optional.empty();
         } catch (S3Exception e) {
             // Some S3-compatible APIs throw generic 404 as S3Exception; treat 404 as not-found.
             if (e.statusCode() == 404) {
-                logger.warn("Some S3-compatible APIs throw generic 404 as S3Exception; treat 404 as not-found for head s3://{}/{}", ref.bucket(), ref.key());
+                logger.debug("Some S3-compatible APIs throw generic 404 as S3Exception; treat 404 as not-found for head s3://{}/{}", ref.bucket(), ref.key());
                 return Optional.empty();
             }
             logger.error("S3 head failed for s3://{}/{}", ref.bucket(), ref.key(), e);
@@ -154,7 +238,7 @@ public class AwsSdkS3AccessLayer implements S3AccessLayer {
                     .destinationBucket(to.bucket())
                     .destinationKey(to.key())
                     .build());
-            logger.error("S3 copy succeeded from s3://{}/{} to s3://{}/{}", from.bucket(), from.key(), to.bucket(), to.key());
+            logger.debug("S3 copy succeeded from s3://{}/{} to s3://{}/{}", from.bucket(), from.key(), to.bucket(), to.key());
             // CopyObjectResponse doesn't always carry ETag uniformly; use head if you need final ETag
             return resp.copyObjectResult() != null ? resp.copyObjectResult().eTag() : "";
         } catch (S3Exception e) {
@@ -179,7 +263,7 @@ public class AwsSdkS3AccessLayer implements S3AccessLayer {
                     out.add(new S3Models.ListItem(o.key(), o.size(), o.eTag(), o.lastModified()));
                 }
             }
-            logger.info("S3 list succeeded for bucket={} prefix={} returned {} items", bucket, prefix, out.size());
+            logger.debug("S3 list succeeded for bucket={} prefix={} returned {} items", bucket, prefix, out.size());
             return out;
         } catch (S3Exception e) {
             logger.error("S3 list failed for bucket={} prefix={}", bucket, prefix, e);
@@ -187,6 +271,67 @@ public class AwsSdkS3AccessLayer implements S3AccessLayer {
         }
     }
 
+    @Override
+    public Stream<S3Models.ListItem> listAll(String bucket, String prefix) {
+        ListObjectsV2Request req = ListObjectsV2Request.builder()
+                .bucket(bucket)
+                .prefix(prefix == null ? "" : prefix)
+                .build();
+        return pages(req).flatMap(r -> r.contents() == null ? Stream.<S3Object>empty() : r.contents().stream())
+                .map(o -> new S3Models.ListItem(o.key(), o.size(), o.eTag(), o.lastModified()));
+    }
+
+    @Override
+    public S3Models.Listing listFolder(String bucket, String prefix, String delimiter) {
+        ListObjectsV2Request req = ListObjectsV2Request.builder()
+                .bucket(bucket)
+                .prefix(prefix == null ? "" : prefix)
+                .delimiter(delimiter)
+                .build();
+        List<S3Models.ListItem> objects = new ArrayList<>();
+        List<String> common = new ArrayList<>();
+        pages(req).forEach(r -> {
+            if (r.contents() != null) {
+                for (S3Object o : r.contents()) {
+                    objects.add(new S3Models.ListItem(o.key(), o.size(), o.eTag(), o.lastModified()));
+                }
+            }
+            if (r.commonPrefixes() != null) {
+                for (CommonPrefix cp : r.commonPrefixes()) common.add(cp.prefix());
+            }
+        });
+        return new S3Models.Listing(objects, common);
+    }
+
+    /** ListObjectsV2 pages, each requested with the previous page's continuation token when it is consumed. */
+    private Stream<ListObjectsV2Response> pages(ListObjectsV2Request first) {
+        Iterator<ListObjectsV2Response> it = new Iterator<>() {
+            private String token;
+            private boolean more = true;
+
+            @Override
+            public boolean hasNext() {
+                return more;
+            }
+
+            @Override
+            public ListObjectsV2Response next() {
+                if (!more) throw new NoSuchElementException();
+                try {
+                    ListObjectsV2Response r = s3.listObjectsV2(first.toBuilder().continuationToken(token).build());
+                    token = r.nextContinuationToken();
+                    more = Boolean.TRUE.equals(r.isTruncated()) && token != null;
+                    return r;
+                } catch (S3Exception e) {
+                    more = false;
+                    logger.error("S3 list failed for bucket={} prefix={}", first.bucket(), first.prefix(), e);
+                    throw new S3AccessException("S3 list failed: bucket=" + first.bucket() + " prefix=" + first.prefix(), e);
+                }
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(it, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
     @Override
     public URL presignGet(S3Models.ObjectRef ref, Duration ttl) {
         try {
@@ -199,7 +344,7 @@ public class AwsSdkS3AccessLayer implements S3AccessLayer {
                     .signatureDuration(ttl == null ? Duration.ofMinutes(10) : ttl)
                     .getObjectRequest(getReq)
             );
-            logger.info("S3 presignGet succeeded for s3://{}/{}", ref.bucket(), ref.key());
+            logger.debug("S3 presignGet succeeded for s3://{}/{}", ref.bucket(), ref.key());
             return presigned.url();
         } catch (Exception e) {
             logger.error("S3 presignGet failed for s3://{}/{}", ref.bucket(), ref.key(), e);
@@ -222,7 +367,7 @@ public class AwsSdkS3AccessLayer implements S3AccessLayer {
                     .signatureDuration(ttl == null ? Duration.ofMinutes(10) : ttl)
                     .putObjectRequest(putReqFinal.build())
             );
-            logger.info("S3 presignPut succeeded for s3://{}/{}", ref.bucket(), ref.key());
+            logger.debug("S3 presignPut succeeded for s3://{}/{}", ref.bucket(), ref.key());
             return presigned.url();
         } catch (Exception e) {
             logger.error("S3 presignPut failed for s3://{}/{}", ref.bucket(), ref.key(), e);
@@ -231,18 +376,23 @@ public class AwsSdkS3AccessLayer implements S3AccessLayer {
     }
 
     /**
-     * Multipart upload helper. Useful when contentLength is large and you want to avoid single PUT limits/timeouts.
-     * This is a conservative implementation: 8 MiB parts.
+     * Multipart upload with up to multipartConcurrency parts in flight. The caller's thread reads parts into
+     * pooled buffers and hands them to the upload pool; a part buffer is only reused once its upload finished,
+     * so memory stays at roughly concurrency x partSize per upload. Each part carries its CRC32, which S3
+     * verifies on receipt. Any failure cancels the remaining parts and aborts the upload.
      */
     @Override
     public String multipartUpload(S3Models.ObjectRef ref, InputStream in, long contentLength, String contentType, Map<String, String> userMetadata) {
-        final long partSize = 8L * 1024 * 1024;
+        final int partSize = multipartPartSize();
+        final int concurrency = Math.max(1, multipartConcurrency);
 
         CreateMultipartUploadResponse init = null;
+        List<Future<CompletedPart>> parts = new ArrayList<>();
         try {
             CreateMultipartUploadRequest.Builder initReq = CreateMultipartUploadRequest.builder()
                     .bucket(ref.bucket())
-                    .key(ref.key());
+                    .key(ref.key())
+                    .checksumAlgorithm(ChecksumAlgorithm.CRC32);
 
             if (contentType != null && !contentType.isBlank()) initReq = initReq.contentType(contentType);
             if (userMetadata != null && !userMetadata.isEmpty()) initReq = initReq.metadata(userMetadata);
@@ -250,28 +400,46 @@ public class AwsSdkS3AccessLayer implements S3AccessLayer {
             init = s3.createMultipartUpload(initReq.build());
             String uploadId = init.uploadId();
 
-            List<CompletedPart> completed = new ArrayList<>();
+            Semaphore inFlight = new Semaphore(concurrency);
             long bytesRemaining = contentLength;
             int partNumber = 1;
 
             while (bytesRemaining > 0) {
-                long thisPart = Math.min(partSize, bytesRemaining);
-                byte[] buf = readExactly(in, thisPart);
-
-                UploadPartResponse up = s3.uploadPart(UploadPartRequest.builder()
-                        .bucket(ref.bucket())
-                        .key(ref.key())
-                        .uploadId(uploadId)
-                        .partNumber(partNumber)
-                        .contentLength((long) buf.length)
-                        .build(), RequestBody.fromBytes(buf));
+                inFlight.acquire();
+                failFastIfAnyPartFailed(parts);
+
+                byte[] buf = partBuffers.acquire(partSize);
+                int len;
+                try {
+                    len = readFully(in, buf, (int) Math.min(partSize, bytesRemaining));
+                } catch (IOException | RuntimeException e) {
+                    partBuffers.release(buf);
+                    throw e;
+                }
+                if (len == 0) {
+                    // upstream lied about the length; complete with what we have
+                    partBuffers.release(buf);
+                    inFlight.release();
+                    break;
+                }
 
-                completed.add(CompletedPart.builder().partNumber(partNumber).eTag(up.eTag()).build());
+                int pn = partNumber++;
+                parts.add(uploadPool.submit(() -> {
+                    try {
+                        return uploadPart(ref, uploadId, pn, buf, len);
+                    } finally {
+                        partBuffers.release(buf);
+                        inFlight.release();
+                    }
+                }));
+                bytesRemaining -= len;
+            }
 
-                bytesRemaining -= buf.length;
-                partNumber++;
+            List<CompletedPart> completed = new ArrayList<>(parts.size());
+            for (Future<CompletedPart> f : parts) {
+                completed.add(f.get());
             }
-            logger.info("S3 multipartUpload uploadParts succeeded for s3://{}/{} uploaded {} parts", ref.bucket(), ref.key(), completed.size());
+            logger.debug("S3 multipartUpload uploadParts succeeded for s3://{}/{} uploaded {} parts", ref.bucket(), ref.key(), completed.size());
             CompleteMultipartUploadResponse done = s3.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
                     .bucket(ref.bucket())
                     .key(ref.key())
@@ -281,7 +449,10 @@ public class AwsSdkS3AccessLayer implements S3AccessLayer {
 
             return done.eTag() == null ? "" : done.eTag();
         } catch (Exception e) {
-            logger.error("S3 multipartUpload failed for s3://{}/{}", ref.bucket(), ref.key(), e);
+            if (e instanceof InterruptedException) Thread.currentThread().interrupt();
+            Throwable cause = e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e;
+            logger.error("S3 multipartUpload failed for s3://{}/{}", ref.bucket(), ref.key(), cause);
+            for (Future<CompletedPart> f : parts) f.cancel(true);
             try {
                 logger.error("Abort best-effort for multipart upload s3://{}/{}", ref.bucket(), ref.key());
                 if (init != null && init.uploadId() != null) {
@@ -292,32 +463,98 @@ public class AwsSdkS3AccessLayer implements S3AccessLayer {
                             .build());
                 }
             } catch (Exception ignored) { }
-            throw new S3AccessException("S3 multipartUpload failed: s3://" + ref.bucket() + "/" + ref.key(), e);
+            throw new S3AccessException("S3 multipartUpload failed: s3://" + ref.bucket() + "/" + ref.key(), cause);
         }
     }
 
+    private CompletedPart uploadPart(S3Models.ObjectRef ref, String uploadId, int partNumber, byte[] buf, int len) {
+        CRC32 crc = new CRC32();
+        crc.update(buf, 0, len);
+        String checksum = crc32Base64(crc.getValue());
+
+        // Content provider over the pooled buffer: no copy, and a retry just re-reads it
+        UploadPartResponse up = s3.uploadPart(UploadPartRequest.builder()
+                .bucket(ref.bucket())
+                .key(ref.key())
+                .uploadId(uploadId)
+                .partNumber(partNumber)
+                .contentLength((long) len)
+                .checksumAlgorithm(ChecksumAlgorithm.CRC32)
+                .checksumCRC32(checksum)
+                .build(), RequestBody.fromContentProvider(() -> new ByteArrayInputStream(buf, 0, len), len,
+                "application/octet-stream"));
+
+        return CompletedPart.builder().partNumber(partNumber).eTag(up.eTag()).checksumCRC32(checksum).build();
+    }
+
+    /** Stops reading further parts as soon as an upload already in flight has failed. */
+    private static void failFastIfAnyPartFailed(List<Future<CompletedPart>> parts) throws ExecutionException, InterruptedException {
+        for (Future<CompletedPart> f : parts) {
+            if (f.isDone()) f.get();
+        }
+    }
+
+    private int multipartPartSize() {
+        long size = DataSizeExpressionEvaluator.evaluate(multipartPartSizeExpr);
+        if (size < MIN_PART_SIZE || size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("skadi.aws.s3.multipart.partSize must be between 5Mb and 2Gb: " + multipartPartSizeExpr);
+        }
+        return (int) size;
+    }
+
+    static String crc32Base64(long crc) {
+        byte[] b = {(byte) (crc >>> 24), (byte) (crc >>> 16), (byte) (crc >>> 8), (byte) crc};
+        return Base64.getEncoder().encodeToString(b);
+    }
+
     private static byte[] readAllBytes(InputStream in) throws IOException {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         byte[] buf = new byte[8192];
         int r;
         while ((r = in.read(buf)) != -1) baos.write(buf, 0, r);
-        logger.info("S3 readAllBytes read {} bytes", baos.size());
+        logger.debug("S3 readAllBytes read {} bytes", baos.size());
         return baos.toByteArray();
     }
 
-    private static byte[] readExactly(InputStream in, long bytes) throws IOException {
-        if (bytes > Integer.MAX_VALUE) throw new IllegalArgumentException("Part too large for this helper: " + bytes);
-
-        int target = (int) bytes;
-        byte[] out = new byte[target];
+    /** Reads up to len bytes into buf; fewer only at end of stream. */
+    private static int readFully(InputStream in, byte[] buf, int len) throws IOException {
         int off = 0;
-        while (off < target) {
-            int r = in.read(out, off, target - off);
+        while (off < len) {
+            int r = in.read(buf, off, len - off);
             if (r == -1) break;
             off += r;
         }
-        if (off == target) return out;
-        logger.info("S3 readExactly read fewer bytes than requested: requested={} got={}", target, off);
-        return Arrays.copyOf(out, off); // last part might be smaller if upstream lied about length
+        if (off < len) {
+            logger.info("S3 readFully read fewer bytes than requested: requested={} got={}", len, off);
+        }
+        return off;
+    }
+
+    /**
+     * Free part buffers, shared by all uploads. Buffers of another size (after a part size change) are
+     * dropped; at most maxRetained are kept.
+     */
+    static final class PartBufferPool {
+        private final BlockingQueue<byte[]> free;
+
+        PartBufferPool(int maxRetained) {
+            this.free = new ArrayBlockingQueue<>(Math.max(1, maxRetained));
+        }
+
+        byte[] acquire(int size) {
+            byte[] b;
+            while ((b = free.poll()) != null) {
+                if (b.length == size) return b;
+            }
+            return new byte[size];
+        }
+
+        void release(byte[] b) {
+            free.offer(b);
+        }
+
+        int retained() {
+            return free.size();
+        }
     }
 }
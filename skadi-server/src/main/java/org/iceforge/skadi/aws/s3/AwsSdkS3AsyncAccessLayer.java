@@ -0,0 +1,217 @@
+package org.iceforge.skadi.aws.s3;
+
+import jakarta.annotation.PreDestroy;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.core.async.SdkPublisher;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.LongConsumer;
+
+/**
+ * {@link S3AsyncAccessLayer} on {@link S3AsyncClient}. With the client's multipart support enabled (see
+ * {@link S3ClientConfig#s3AsyncClient}) large puts are split into concurrent parts; ranged GETs stream their body
+ * straight into the caller's file channel instead of collecting it on the heap.
+ */
+@Component
+@ConditionalOnProperty(prefix = "skadi.query-cache", name = "store", havingValue = "s3", matchIfMissing = true)
+public class AwsSdkS3AsyncAccessLayer implements S3AsyncAccessLayer {
+    private static final Logger logger = LoggerFactory.getLogger(AwsSdkS3AsyncAccessLayer.class);
+
+    private final S3AsyncClient s3;
+
+    // Reads the InputStream of a putStream into the client; one thread per upload, not per part
+    private final ExecutorService streamReaders = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "skadi-s3-upload-reader");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public AwsSdkS3AsyncAccessLayer(S3AsyncClient s3) {
+        this.s3 = s3;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        streamReaders.shutdownNow();
+    }
+
+    @Override
+    public CompletableFuture<String> putBytes(S3Models.ObjectRef ref, byte[] bytes, String contentType,
+                                              Map<String, String> userMetadata) {
+        return put("putBytes", ref, contentType, userMetadata, AsyncRequestBody.fromBytesUnsafe(bytes));
+    }
+
+    @Override
+    public CompletableFuture<String> putStream(S3Models.ObjectRef ref, InputStream in, long contentLength,
+                                               String contentType, Map<String, String> userMetadata) {
+        CompletableFuture<String> f;
+        try {
+            f = put("putStream", ref, contentType, userMetadata,
+                    AsyncRequestBody.fromInputStream(in, contentLength, streamReaders));
+        } catch (RuntimeException e) {
+            f = CompletableFuture.failedFuture(e);
+        }
+        return f.whenComplete((etag, err) -> {
+            try {
+                in.close();
+            } catch (IOException ignore) {
+                // best-effort
+            }
+        });
+    }
+
+    private CompletableFuture<String> put(String op, S3Models.ObjectRef ref, String contentType,
+                                          Map<String, String> userMetadata, AsyncRequestBody body) {
+        PutObjectRequest.Builder req = PutObjectRequest.builder().bucket(ref.bucket()).key(ref.key());
+        if (contentType != null && !contentType.isBlank()) req = req.contentType(contentType);
+        if (userMetadata != null && !userMetadata.isEmpty()) req = req.metadata(userMetadata);
+        return s3.putObject(req.build(), body)
+                .handle((resp, err) -> {
+                    if (err != null) throw translate(op, ref, err);
+                    logger.debug("S3 async {} succeeded for s3://{}/{} ETag={}", op, ref.bucket(), ref.key(), resp.eTag());
+                    return resp.eTag() == null ? "" : resp.eTag();
+                });
+    }
+
+    @Override
+    public CompletableFuture<Long> getRange(S3Models.ObjectRef ref, long offset, long length,
+                                            FileChannel target, long position, LongConsumer progress) {
+        if (offset < 0 || length <= 0) {
+            return CompletableFuture.failedFuture(
+                    new IllegalArgumentException("Invalid range offset=" + offset + " length=" + length));
+        }
+        // HTTP byte ranges are inclusive on both ends.
+        String range = "bytes=" + offset + "-" + (offset + length - 1);
+        return s3.getObject(GetObjectRequest.builder().bucket(ref.bucket()).key(ref.key()).range(range).build(),
+                        new ChannelWriter(target, position, length, progress))
+                .handle((written, err) -> {
+                    if (err != null) throw translate("getRange", ref, err);
+                    return written;
+                });
+    }
+
+    /**
+     * Writes a response body to a file channel at a fixed position as each buffer arrives. A retried attempt
+     * rewrites the same region from the start; progress only reports bytes past what earlier attempts reached.
+     */
+    private static final class ChannelWriter implements AsyncResponseTransformer<GetObjectResponse, Long> {
+        private final FileChannel target;
+        private final long position;
+        private final long limit;
+        private final LongConsumer progress;
+        private long reported; // touched by one attempt's subscriber at a time
+        private volatile CompletableFuture<Long> attempt;
+
+        ChannelWriter(FileChannel target, long position, long limit, LongConsumer progress) {
+            this.target = target;
+            this.position = position;
+            this.limit = limit;
+            this.progress = progress;
+        }
+
+        @Override
+        public CompletableFuture<Long> prepare() {
+            attempt = new CompletableFuture<>();
+            return attempt;
+        }
+
+        @Override
+        public void onResponse(GetObjectResponse response) {
+        }
+
+        @Override
+        public void onStream(SdkPublisher<ByteBuffer> publisher) {
+            CompletableFuture<Long> result = attempt;
+            publisher.subscribe(new Subscriber<ByteBuffer>() {
+                private Subscription subscription;
+                private long written;
+
+                @Override
+                public void onSubscribe(Subscription s) {
+                    subscription = s;
+                    s.request(1);
+                }
+
+                @Override
+                public void onNext(ByteBuffer b) {
+                    try {
+                        if (written + b.remaining() > limit) {
+                            throw new IOException("Range response longer than the " + limit + " bytes requested");
+                        }
+                        while (b.hasRemaining()) {
+                            written += target.write(b, position + written);
+                        }
+                        if (written > reported) {
+                            progress.accept(written - reported);
+                            reported = written;
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        subscription.cancel();
+                        result.completeExceptionally(e);
+                        return;
+                    }
+                    subscription.request(1);
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    result.completeExceptionally(t);
+                }
+
+                @Override
+                public void onComplete() {
+                    result.complete(written);
+                }
+            });
+        }
+
+        @Override
+        public void exceptionOccurred(Throwable error) {
+            CompletableFuture<Long> result = attempt;
+            if (result != null) result.completeExceptionally(error);
+        }
+    }
+
+    /** Same exception types as the blocking layer, wrapped so they propagate through the future. */
+    private static CompletionException translate(String op, S3Models.ObjectRef ref, Throwable err) {
+        Throwable cause = unwrap(err);
+        if (cause instanceof NoSuchKeyException nsk) {
+            return new CompletionException(new S3CacheMissException(ref.bucket(), ref.key(), nsk));
+        }
+        if (cause instanceof S3AccessException || cause instanceof S3CacheMissException) {
+            return new CompletionException(cause);
+        }
+        logger.error("S3 async {} failed for s3://{}/{}", op, ref.bucket(), ref.key(), cause);
+        return new CompletionException(
+                new S3AccessException("S3 " + op + " failed: s3://" + ref.bucket() + "/" + ref.key(), cause));
+    }
+
+    private static Throwable unwrap(Throwable err) {
+        Throwable t = err;
+        while ((t instanceof CompletionException || t instanceof ExecutionException) && t.getCause() != null) {
+            t = t.getCause();
+        }
+        return t;
+    }
+}
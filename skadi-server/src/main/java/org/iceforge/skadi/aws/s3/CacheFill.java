@@ -0,0 +1,162 @@
+package org.iceforge.skadi.aws.s3;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Shared state of one in-flight download into the local cache.
+ * <p>
+ * The writer appends to {@link #tmp()} and publishes progress with {@link #advance(long)}; any number
+ * of readers follow the growing temp file through {@link #newReader()}. Readers only see EOF once the
+ * writer has called {@link #complete()}, i.e. after the temp file was moved into the cache.
+ * <p>
+ * A fill whose source breaks off can {@link #restart} from another one, rewriting the temp file in place
+ * from byte 0. Readers that have not read anything yet carry on transparently; the others fail, as they
+ * cannot tell which source the bytes they already returned came from.
+ */
+final class CacheFill {
+
+    private final Path tmp;
+    private long written;
+    private boolean done;
+    private Throwable error;
+    private int generation;
+    private volatile CacheFetchContext.Source source;
+
+    CacheFill(Path tmp) {
+        this(tmp, CacheFetchContext.Source.S3);
+    }
+
+    CacheFill(Path tmp, CacheFetchContext.Source source) {
+        this.tmp = tmp;
+        this.source = source;
+    }
+
+    Path tmp() {
+        return tmp;
+    }
+
+    /** Where the bytes currently come from. */
+    CacheFetchContext.Source source() {
+        return source;
+    }
+
+    /**
+     * Starts over from byte 0 with another source. The writer overwrites the temp file without truncating it,
+     * so bytes a reader is about to read never disappear under it, and trims it to the new length at commit.
+     */
+    synchronized void restart(CacheFetchContext.Source source) {
+        this.source = source;
+        written = 0;
+        generation++;
+        notifyAll();
+    }
+
+    synchronized void advance(long bytes) {
+        written += bytes;
+        notifyAll();
+    }
+
+    synchronized void complete() {
+        done = true;
+        notifyAll();
+    }
+
+    synchronized void fail(Throwable t) {
+        error = t;
+        done = true;
+        notifyAll();
+    }
+
+    /** Blocks until the fill has finished; rethrows the writer's failure. */
+    synchronized void awaitDone() throws IOException {
+        while (!done) {
+            waitInterruptibly();
+        }
+        rethrowIfFailed();
+    }
+
+
+    private void waitInterruptibly() throws InterruptedIOException {
+        try {
+            wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for cache fill of " + tmp);
+        }
+    }
+
+    private void rethrowIfFailed() throws IOException {
+        if (error != null) {
+            throw new IOException("Cache fill failed for " + tmp, error);
+        }
+    }
+
+    /**
+     * Opens a reader positioned at byte 0. The channel is opened immediately, so it keeps working
+     * after the temp file is renamed into the cache.
+     */
+    InputStream newReader() throws IOException {
+        return new Reader(FileChannel.open(tmp, StandardOpenOption.READ));
+    }
+
+    private final class Reader extends InputStream {
+        private final FileChannel ch;
+        private long pos;
+        private int generation;
+
+        private Reader(FileChannel ch) {
+            this.ch = ch;
+            synchronized (CacheFill.this) {
+                this.generation = CacheFill.this.generation;
+            }
+        }
+
+        /**
+         * Blocks until bytes beyond pos are available or the fill has finished.
+         *
+         * @return the number of bytes written so far
+         */
+        private long awaitBeyond(long pos) throws IOException {
+            synchronized (CacheFill.this) {
+                while (written <= pos && !done) {
+                    waitInterruptibly();
+                }
+                rethrowIfFailed();
+                if (generation != CacheFill.this.generation) {
+                    if (pos > 0) throw new IOException("Cache fill of " + tmp + " restarted from another source");
+                    generation = CacheFill.this.generation;
+                }
+                return written;
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            int r = read(one, 0, 1);
+            return r < 0 ? -1 : (one[0] & 0xff);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            long available = awaitBeyond(pos) - pos;
+            if (available <= 0) return -1;
+            int r = ch.read(ByteBuffer.wrap(b, off, (int) Math.min(len, available)), pos);
+            if (r < 0) return -1;
+            pos += r;
+            return r;
+        }
+
+        @Override
+        public void close() throws IOException {
+            ch.close();
+        }
+    }
+}
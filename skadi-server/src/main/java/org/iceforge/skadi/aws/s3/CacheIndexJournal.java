@@ -0,0 +1,386 @@
+package org.iceforge.skadi.aws.s3;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32C;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Append-only index of the local cache (relative path, size, CRC32C, last access).
+ * <p>
+ * Replaying the journal at startup replaces a walk of the whole cache directory. Records are one
+ * tab-separated line each:
+ * <pre>
+ *   P  path  size  crc32c|-  lastAccessMillis    put / replace
+ *   A  path  lastAccessMillis                    access
+ *   D  path                                      remove
+ * </pre>
+ * A torn last line (crash mid-append) is cut off before replay, so the next record starts on a line of its
+ * own. Once the journal holds much more history
+ * than live entries it is compacted into a snapshot of P records, written aside and moved into place.
+ * <p>
+ * Puts and removes are written through. Accesses, one per cache hit, only update memory; their records are
+ * collected (latest per path) and appended in batches once enough are pending or a second has passed, and
+ * before any other record, compaction and close. Batch flushes and compaction run on the maintenance
+ * executor, never on the reading thread. Access times lost in a crash only make eviction slightly less exact.
+ */
+final class CacheIndexJournal implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(CacheIndexJournal.class);
+
+    static final String FILE_NAME = "index.journal";
+    static final long NO_CRC = -1L;
+
+    private static final int MIN_COMPACT_RECORDS = 10_000;
+    private static final int ACCESS_BATCH = 1_024;
+    private static final long ACCESS_FLUSH_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    record Entry(long size, long crc32c, long lastAccessMillis) {}
+
+    private final Path root;
+    private final Path file;
+    private final boolean loaded;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong totalBytes = new AtomicLong();
+    private final Executor maintenance;
+
+    // path -> latest access not yet in the journal
+    private final ConcurrentHashMap<String, Long> pendingAccess = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushQueued = new AtomicBoolean();
+    private final AtomicBoolean compactionQueued = new AtomicBoolean();
+    private volatile long lastAccessFlushNanos = System.nanoTime();
+
+    // guarded by this
+    private Writer out;
+    private long records;
+
+    private CacheIndexJournal(Path root, boolean loaded, Executor maintenance) {
+        this.root = root;
+        this.file = root.resolve(FILE_NAME);
+        this.loaded = loaded;
+        this.maintenance = maintenance;
+    }
+
+    /** Opens (and replays) the journal in root; batch flushes and compaction run on the calling thread. */
+    static CacheIndexJournal open(Path root) throws IOException {
+        return open(root, Runnable::run);
+    }
+
+    /**
+     * Opens (and replays) the journal in root, creating an empty one if there is none yet.
+     *
+     * @param maintenance runs access-record flushes and compaction
+     */
+    static CacheIndexJournal open(Path root, Executor maintenance) throws IOException {
+        Path file = root.resolve(FILE_NAME);
+        CacheIndexJournal j = new CacheIndexJournal(root, Files.exists(file), maintenance);
+        if (j.loaded) {
+            j.dropTornTail();
+            j.replay();
+        }
+        j.out = Files.newBufferedWriter(file, StandardCharsets.UTF_8, CREATE, WRITE, APPEND);
+        return j;
+    }
+
+    /** False when the journal did not exist yet and the caller has to index the directory once. */
+    boolean loaded() {
+        return loaded;
+    }
+
+    long totalBytes() {
+        return totalBytes.get();
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    Optional<Entry> get(Path p) {
+        return Optional.ofNullable(entries.get(rel(p)));
+    }
+
+    /** Point-in-time copy keyed by absolute path. */
+    Map<Path, Entry> snapshot() {
+        Map<Path, Entry> copy = new HashMap<>();
+        entries.forEach((k, v) -> copy.put(root.resolve(k), v));
+        return copy;
+    }
+
+    /**
+     * The least recently accessed entries whose sizes add up to at least bytes (every entry if they do not),
+     * oldest first. One pass over the index, keeping only the candidates in a heap.
+     */
+    List<Path> leastRecentlyUsed(long bytes) {
+        record Candidate(String path, long size, long lastAccessMillis) {}
+        PriorityQueue<Candidate> newestOnTop = new PriorityQueue<>(
+                Comparator.comparingLong(Candidate::lastAccessMillis).reversed());
+        long covered = 0;
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            Entry v = e.getValue();
+            newestOnTop.add(new Candidate(e.getKey(), v.size(), v.lastAccessMillis()));
+            covered += v.size();
+            while (covered - newestOnTop.peek().size() >= bytes) {
+                covered -= newestOnTop.poll().size();
+            }
+        }
+        List<Candidate> oldestFirst = new ArrayList<>(newestOnTop);
+        oldestFirst.sort(Comparator.comparingLong(Candidate::lastAccessMillis));
+        List<Path> out = new ArrayList<>(oldestFirst.size());
+        for (Candidate c : oldestFirst) out.add(root.resolve(c.path()));
+        return out;
+    }
+
+    synchronized void put(Path p, long size, long crc32c, long lastAccessMillis) {
+        String k = rel(p);
+        Entry prev = entries.put(k, new Entry(size, crc32c, lastAccessMillis));
+        totalBytes.addAndGet(size - (prev == null ? 0 : prev.size()));
+        append("P\t" + k + "\t" + size + "\t" + crcText(crc32c) + "\t" + lastAccessMillis);
+    }
+
+    synchronized boolean putIfAbsent(Path p, long size, long crc32c, long lastAccessMillis) {
+        if (entries.containsKey(rel(p))) return false;
+        put(p, size, crc32c, lastAccessMillis);
+        return true;
+    }
+
+    /** Replaces expected with a verified copy; false if the entry changed in the meantime. */
+    synchronized boolean replace(Path p, Entry expected, Entry verified) {
+        if (!expected.equals(entries.get(rel(p)))) return false;
+        put(p, verified.size(), verified.crc32c(), verified.lastAccessMillis());
+        return true;
+    }
+
+    /** Records an access in memory; the journal record follows with the next batch. */
+    void touch(Path p, long lastAccessMillis) {
+        String k = rel(p);
+        if (entries.computeIfPresent(k, (key, e) -> new Entry(e.size(), e.crc32c(), lastAccessMillis)) == null) return;
+        pendingAccess.put(k, lastAccessMillis);
+        if ((pendingAccess.size() >= ACCESS_BATCH || System.nanoTime() - lastAccessFlushNanos >= ACCESS_FLUSH_NANOS)
+                && flushQueued.compareAndSet(false, true)) {
+            submit(() -> {
+                flushQueued.set(false);
+                flushAccess();
+            }, flushQueued);
+        }
+    }
+
+    /** Appends the pending access records. */
+    synchronized void flushAccess() {
+        lastAccessFlushNanos = System.nanoTime();
+        if (pendingAccess.isEmpty()) return;
+        try {
+            writePendingAccess();
+            out.flush();
+            compactIfDue();
+        } catch (IOException e) {
+            logger.warn("Failed to append to cache index {}", file, e);
+        }
+    }
+
+    /** @return the size of the removed entry, 0 if there was none */
+    synchronized long remove(Path p) {
+        String k = rel(p);
+        Entry prev = entries.remove(k);
+        if (prev == null) return 0;
+        totalBytes.addAndGet(-prev.size());
+        append("D\t" + k);
+        return prev.size();
+    }
+
+    /** Removes the entry only if it is still expected (used by background verification). */
+    synchronized boolean remove(Path p, Entry expected) {
+        if (!expected.equals(entries.get(rel(p)))) return false;
+        remove(p);
+        return true;
+    }
+
+    /** Rewrites the journal as one P record per live entry. */
+    synchronized void compact() throws IOException {
+        pendingAccess.clear(); // the snapshot below carries every access time
+        Path tmp = root.resolve(FILE_NAME + ".tmp-" + UUID.randomUUID());
+        try {
+            try (Writer w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8, CREATE_NEW, WRITE)) {
+                for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                    Entry v = e.getValue();
+                    w.write("P\t" + e.getKey() + "\t" + v.size() + "\t" + crcText(v.crc32c()) + "\t" + v.lastAccessMillis() + "\n");
+                }
+            }
+            try (FileChannel ch = FileChannel.open(tmp, WRITE)) {
+                ch.force(true);
+            }
+            out.close();
+            try {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+            try {
+                out.close(); // no-op unless writing the snapshot failed before the move
+            } finally {
+                out = Files.newBufferedWriter(file, StandardCharsets.UTF_8, CREATE, WRITE, APPEND);
+            }
+        }
+        records = entries.size();
+        logger.info("Compacted cache index {} to {} entries", file, records);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            writePendingAccess();
+        } finally {
+            out.close();
+        }
+    }
+
+    static long crc32c(Path p) throws IOException {
+        CRC32C crc = new CRC32C();
+        try (InputStream in = Files.newInputStream(p)) {
+            byte[] buf = new byte[64 * 1024];
+            int n;
+            while ((n = in.read(buf)) >= 0) {
+                crc.update(buf, 0, n);
+            }
+        }
+        return crc.getValue();
+    }
+
+    /** Truncates the journal after its last '\n'; what follows is a record a crash interrupted. */
+    private void dropTornTail() throws IOException {
+        try (FileChannel ch = FileChannel.open(file, READ, WRITE)) {
+            long end = ch.size();
+            long keep = end;
+            ByteBuffer buf = ByteBuffer.allocate(4096);
+            scan:
+            while (keep > 0) {
+                buf.clear().limit((int) Math.min(buf.capacity(), keep));
+                long from = keep - buf.limit();
+                while (buf.hasRemaining()) {
+                    if (ch.read(buf, from + buf.position()) < 0) break;
+                }
+                for (int i = buf.position() - 1; i >= 0; i--) {
+                    if (buf.get(i) == '\n') {
+                        keep = from + i + 1;
+                        break scan;
+                    }
+                }
+                keep = from;
+            }
+            if (keep < end) {
+                logger.warn("Dropping torn record ({} bytes) at the end of cache index {}", end - keep, file);
+                ch.truncate(keep);
+            }
+        }
+    }
+
+    private void replay() throws IOException {
+        long lines = 0;
+        try (BufferedReader r = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = r.readLine()) != null) {
+                lines++;
+                try {
+                    apply(line.split("\t", -1));
+                } catch (RuntimeException e) {
+                    logger.warn("Skipping unreadable cache index record {} in {}", lines, file);
+                }
+            }
+        }
+        records = lines;
+        entries.values().forEach(e -> totalBytes.addAndGet(e.size()));
+    }
+
+    private void apply(String[] f) {
+        switch (f[0]) {
+            case "P" -> entries.put(f[1], new Entry(Long.parseLong(f[2]),
+                    "-".equals(f[3]) ? NO_CRC : Long.parseLong(f[3], 16), Long.parseLong(f[4])));
+            case "A" -> entries.computeIfPresent(f[1], (k, e) -> new Entry(e.size(), e.crc32c(), Long.parseLong(f[2])));
+            case "D" -> entries.remove(f[1]);
+            default -> throw new IllegalArgumentException("Unknown record type " + f[0]);
+        }
+    }
+
+    // guarded by this
+    private void append(String line) {
+        try {
+            writePendingAccess(); // keep accesses ahead of a later remove / replace of the same path
+            out.write(line);
+            out.write('\n');
+            out.flush();
+            records++;
+            compactIfDue();
+        } catch (IOException e) {
+            // The journal is an accelerator; a lost record is repaired by the next startup reconciliation.
+            logger.warn("Failed to append to cache index {}", file, e);
+        }
+    }
+
+    // guarded by this
+    private void writePendingAccess() throws IOException {
+        for (String k : pendingAccess.keySet()) {
+            Long at = pendingAccess.remove(k);
+            if (at == null) continue;
+            out.write("A\t" + k + "\t" + at + "\n");
+            records++;
+        }
+    }
+
+    private void compactIfDue() {
+        if (records > Math.max(MIN_COMPACT_RECORDS, 2L * entries.size()) && compactionQueued.compareAndSet(false, true)) {
+            submit(() -> {
+                try {
+                    compact();
+                } catch (IOException e) {
+                    logger.warn("Failed to compact cache index {}", file, e);
+                } finally {
+                    compactionQueued.set(false);
+                }
+            }, compactionQueued);
+        }
+    }
+
+    private void submit(Runnable task, AtomicBoolean queued) {
+        try {
+            maintenance.execute(task);
+        } catch (RejectedExecutionException e) {
+            queued.set(false); // shutting down; close() writes what is pending
+        }
+    }
+
+    private String rel(Path p) {
+        return root.relativize(p).toString().replace('\\', '/');
+    }
+
+    private static String crcText(long crc32c) {
+        return crc32c == NO_CRC ? "-" : Long.toHexString(crc32c);
+    }
+}
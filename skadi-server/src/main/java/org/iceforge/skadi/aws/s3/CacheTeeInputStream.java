@@ -0,0 +1,110 @@
+package org.iceforge.skadi.aws.s3;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32C;
+
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Passes an upload body through unchanged while copying it into a cache temp file and computing its CRC32C.
+ * <p>
+ * A failed local write only marks the copy as not {@link #intact()}; reads from the upload side never fail
+ * because of the cache.
+ */
+final class CacheTeeInputStream extends FilterInputStream {
+
+    private final Path tmp;
+    private final CRC32C crc = new CRC32C();
+    private OutputStream out;
+    private long count;
+    private boolean intact = true;
+
+    CacheTeeInputStream(InputStream in, Path tmp) throws IOException {
+        super(in);
+        this.tmp = tmp;
+        this.out = Files.newOutputStream(tmp, CREATE_NEW, WRITE);
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0) copy(new byte[]{(byte) b}, 0, 1);
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = super.read(b, off, len);
+        if (n > 0) copy(b, off, n);
+        return n;
+    }
+
+    @Override
+    public long skip(long n) {
+        // Skipped bytes would leave a hole in the copy.
+        intact = false;
+        return 0;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            finishWriting();
+        }
+    }
+
+    private void copy(byte[] b, int off, int n) {
+        count += n;
+        if (!intact) return;
+        if (out == null) {
+            intact = false;
+            return;
+        }
+        try {
+            out.write(b, off, n);
+            crc.update(b, off, n);
+        } catch (IOException e) {
+            intact = false;
+        }
+    }
+
+    /** Closes the copy; idempotent. */
+    void finishWriting() {
+        if (out == null) return;
+        try {
+            out.close();
+        } catch (IOException e) {
+            intact = false;
+        }
+        out = null;
+    }
+
+    Path tmp() {
+        return tmp;
+    }
+
+    long count() {
+        return count;
+    }
+
+    long crc32c() {
+        return crc.getValue();
+    }
+
+    boolean intact() {
+        return intact;
+    }
+}
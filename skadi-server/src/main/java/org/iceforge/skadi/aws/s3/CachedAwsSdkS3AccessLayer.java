@@ -1,6 +1,9 @@
 package org.iceforge.skadi.aws.s3;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,13 +15,26 @@ import org.springframework.stereotype.Service;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.nio.file.attribute.FileTime;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
 
 import static java.nio.file.StandardOpenOption.*;
 
@@ -31,10 +47,28 @@ public class CachedAwsSdkS3AccessLayer implements S3AccessLayer {
     private final ConcurrentHashMap<Path, CacheMetadata> metadataMap = new ConcurrentHashMap<>();
     private final ConcurrentHashMap<String, Object> locks = new ConcurrentHashMap<>();
 
+    // In-flight S3 downloads by lock key; readers of the same key follow the growing temp file.
+    private final ConcurrentHashMap<String, CacheFill> fills = new ConcurrentHashMap<>();
+    private final ExecutorService fillExecutor = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "skadi-cache-fill");
+        t.setDaemon(true);
+        return t;
+    });
+
     private final AwsSdkS3AccessLayer delegate;
     private final PeerCacheClient peerCacheClient;
 
-    private long currentCacheSize;
+    // Persistent index of cached files; its total is the current cache size
+    private CacheIndexJournal index;
+    // Bounded: prefetch must never crowd out fills that readers are waiting on
+    private ExecutorService prefetchExecutor;
+    private final Set<String> prefetching = ConcurrentHashMap.newKeySet();
+
+    private final ExecutorService maintenanceExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "skadi-cache-maintenance");
+        t.setDaemon(true);
+        return t;
+    });
 
     @Value("${skadi.local.cacheMaxSize}")
     private String cacheMaxSize = "9";
@@ -44,6 +78,58 @@ public class CachedAwsSdkS3AccessLayer implements S3AccessLayer {
     private String cacheRootDir;
     private Path cacheDir;
 
+    // Ranged reads: objects at or above blockCacheAboveSize are cached as fixed-size blocks on demand
+    @Value("${skadi.local.blockSize:8Mb}")
+    private String blockSizeExpr = "8Mb";
+    private long blockSize;
+
+    @Value("${skadi.local.blockCacheAboveSize:64Mb}")
+    private String blockCacheAboveSizeExpr = "64Mb";
+    private long blockCacheAboveBytes;
+
+    // Cold fills of objects at or above parallelFillAboveSize use concurrent ranged GETs
+    @Value("${skadi.local.parallelFillAboveSize:128Mb}")
+    private String parallelFillAboveSizeExpr = "128Mb";
+    private long parallelFillAboveBytes;
+
+    @Value("${skadi.local.parallelFillPartSize:16Mb}")
+    private String parallelFillPartSizeExpr = "16Mb";
+    private long parallelFillPartSize;
+
+    @Value("${skadi.local.parallelFillConcurrency:8}")
+    private int parallelFillConcurrency = 8;
+
+    @Value("${skadi.local.prefetchConcurrency:4}")
+    private int prefetchConcurrency = 4;
+
+    // HEAD / exists results; 0 disables caching of that kind
+    @Value("${skadi.local.headCache.ttlMs:2000}")
+    private long headCacheTtlMs = 2_000;
+
+    @Value("${skadi.local.headCache.negativeTtlMs:1000}")
+    private long headCacheNegativeTtlMs = 1_000;
+
+    @Value("${skadi.local.headCache.maxEntries:10000}")
+    private int headCacheMaxEntries = 10_000;
+
+    private HeadCache headCache;
+
+    // Off-heap tier in front of the disk cache for small, frequently read files; maxSize 0 disables it
+    @Value("${skadi.local.ramTier.maxSize:0}")
+    private String ramTierMaxSizeExpr = "0";
+
+    @Value("${skadi.local.ramTier.maxObjectSize:1Mb}")
+    private String ramTierMaxObjectSizeExpr = "1Mb";
+
+    @Value("${skadi.local.ramTier.promoteAfterHits:2}")
+    private int ramTierPromoteAfterHits = 2;
+
+    private RamTier ramTier;
+
+    // Background check of cached files against their recorded CRC32C, plus cleanup of stale temp files
+    @Value("${skadi.local.verifyOnStartup:true}")
+    private boolean verifyOnStartup;
+
     // Peer cache config
     @Value("${skadi.peer-cache.enabled:false}")
     private boolean peerEnabled;
@@ -54,12 +140,47 @@ public class CachedAwsSdkS3AccessLayer implements S3AccessLayer {
     @Value("${skadi.peer-cache.maxPeersToTry:2}")
     private int maxPeersToTry;
 
-    @Value("${skadi.peer-cache.headTimeoutMs:250}")
-    private long headTimeoutMs;
+    // Ownership: this node's URL as peers see it, and how many owners each entry has
+    @Value("${skadi.peer-cache.selfUrl:}")
+    private String selfUrl;
+
+    @Value("${skadi.peer-cache.replicas:2}")
+    private int ownerReplicas = 2;
+
+    @Value("${skadi.peer-cache.warmOwnersOnFill:true}")
+    private boolean warmOwnersOnFill;
+
+    // Replication: push objects written here to their owner peers as soon as they are committed
+    @Value("${skadi.peer-cache.replication.pushOnPut:false}")
+    private boolean pushOnPut;
+
+    private volatile PeerRing ring;
+    private volatile List<String> ringSource;
 
     @Value("${skadi.peer-cache.getTimeoutMs:8000}")
     private long getTimeoutMs;
 
+    // Hedging: how long an attempt may stay unanswered before the next peer (or S3) is raced against it
+    @Value("${skadi.peer-cache.hedgeDelayMs:50}")
+    private long hedgeDelayMs = 50;
+
+    @Value("${skadi.peer-cache.hedgeToS3:true}")
+    private boolean hedgeToS3 = true;
+
+    // Cluster-wide single flight: cold misses ask the primary owner to fill from S3 and stream it to them
+    @Value("${skadi.peer-cache.coalesce.enabled:true}")
+    private boolean coalesceColdFills;
+
+    @Value("${skadi.peer-cache.coalesce.maxWaitMs:2000}")
+    private long coalesceMaxWaitMs = 2_000;
+
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    // Live members and per-peer health; absent in non-Spring tests, which use peerBaseUrls as is
+    private PeerMembership membership;
+    // When present, parallel cold fills keep their ranged GETs in flight without a thread per part
+    private S3AsyncAccessLayer asyncDelegate;
+
     // HMAC auth config (client-side)
     @Value("${skadi.peer-cache.auth.keyId:}")
     private String peerKeyId;
@@ -73,6 +194,21 @@ public class CachedAwsSdkS3AccessLayer implements S3AccessLayer {
         this.peerCacheClient = peerCacheClient;
     }
 
+    @Autowired(required = false)
+    void setMeterRegistry(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Autowired(required = false)
+    void setPeerMembership(PeerMembership membership) {
+        this.membership = membership;
+    }
+
+    @Autowired(required = false)
+    void setAsyncDelegate(S3AsyncAccessLayer asyncDelegate) {
+        this.asyncDelegate = asyncDelegate;
+    }
+
     /** used only by non-spring tests **/
     public CachedAwsSdkS3AccessLayer(AwsSdkS3AccessLayer delegate, String cacheMaxSize, String cacheRootDir) {
         this.delegate = delegate;
@@ -91,6 +227,21 @@ public class CachedAwsSdkS3AccessLayer implements S3AccessLayer {
         this.maxCapacityBytes = DataSizeExpressionEvaluator.evaluate(cacheMaxSize);
         logger.info("Initialized cache with max capacity: {} bytes from property value {}", maxCapacityBytes, cacheMaxSize);
 
+        this.blockSize = Math.max(1, DataSizeExpressionEvaluator.evaluate(blockSizeExpr));
+        this.blockCacheAboveBytes = DataSizeExpressionEvaluator.evaluate(blockCacheAboveSizeExpr);
+        this.parallelFillAboveBytes = DataSizeExpressionEvaluator.evaluate(parallelFillAboveSizeExpr);
+        this.parallelFillPartSize = Math.max(1, DataSizeExpressionEvaluator.evaluate(parallelFillPartSizeExpr));
+        this.headCache = new HeadCache(headCacheTtlMs, headCacheNegativeTtlMs, headCacheMaxEntries);
+        this.ramTier = new RamTier(DataSizeExpressionEvaluator.evaluate(ramTierMaxSizeExpr),
+                DataSizeExpressionEvaluator.evaluate(ramTierMaxObjectSizeExpr), ramTierPromoteAfterHits);
+        if (ramTier.enabled()) {
+            RamTier tier = ramTier;
+            meterRegistry.gauge("skadi.cache.ram.bytes", tier, RamTier::bytes);
+            meterRegistry.gauge("skadi.cache.ram.entries", tier, RamTier::size);
+            logger.info("RAM tier enabled: {} bytes, objects up to {} bytes, promoted after {} reads",
+                    ramTierMaxSizeExpr, ramTierMaxObjectSizeExpr, ramTierPromoteAfterHits);
+        }
+
         this.cacheDir = Path.of(this.cacheRootDir);
         logger.info("Cache directory set to: {}", cacheDir);
 
@@ -100,8 +251,105 @@ public class CachedAwsSdkS3AccessLayer implements S3AccessLayer {
             throw new RuntimeException("Failed to create cache directory: " + cacheDir, e);
         }
 
-        this.currentCacheSize = calculateCurrentCacheSize();
-        logger.info("Current cache size at startup: {} bytes", currentCacheSize);
+        long t0 = System.nanoTime();
+        Instant startedAt = Instant.now();
+        try {
+            if (this.index != null) this.index.close();
+            this.index = CacheIndexJournal.open(cacheDir, maintenanceExecutor);
+            if (!index.loaded()) {
+                // First start with an index: walk the directory once.
+                indexExistingFiles();
+                index.compact();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open cache index in " + cacheDir, e);
+        }
+        logger.info("Current cache size at startup: {} bytes in {} entries (index {} in {} ms)",
+                index.totalBytes(), index.size(), index.loaded() ? "loaded" : "rebuilt",
+                (System.nanoTime() - t0) / 1_000_000);
+
+        if (verifyOnStartup) {
+            maintenanceExecutor.execute(() -> {
+                try {
+                    verifyAndCleanup(startedAt);
+                } catch (Exception e) {
+                    logger.warn("Background cache verification failed", e);
+                }
+            });
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (prefetchExecutor != null) prefetchExecutor.shutdownNow();
+        fillExecutor.shutdownNow();
+        maintenanceExecutor.shutdownNow();
+        try {
+            index.compact();
+            index.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close cache index", e);
+        }
+    }
+
+    long currentCacheSizeBytes() {
+        return index.totalBytes();
+    }
+
+    /**
+     * Reconciles the index with the disk: deletes temp files left over from before startedAt, indexes
+     * files the journal missed (crash between move and append), and re-checks every entry's size and
+     * CRC32C. Corrupt entries are deleted so the next read re-fetches them.
+     *
+     * @return the number of entries dropped as missing or corrupt
+     */
+    int verifyAndCleanup(Instant startedAt) throws IOException {
+        long t0 = System.nanoTime();
+        int staleTemps = 0;
+        int adopted = 0;
+        try (var files = Files.walk(cacheDir)) {
+            for (Path p : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                String name = p.getFileName().toString();
+                if (name.contains(".tmp-")) {
+                    if (getFileLastModified(p) < startedAt.toEpochMilli() && Files.deleteIfExists(p)) staleTemps++;
+                } else if (isCacheDataFile(p) && index.get(p).isEmpty()) {
+                    if (index.putIfAbsent(p, getFileSize(p), CacheIndexJournal.crc32c(p), getFileLastModified(p))) adopted++;
+                }
+            }
+        }
+
+        int dropped = 0;
+        for (Map.Entry<Path, CacheIndexJournal.Entry> e : index.snapshot().entrySet()) {
+            Path p = e.getKey();
+            CacheIndexJournal.Entry expected = e.getValue();
+            try {
+                if (!Files.exists(p)) {
+                    if (index.remove(p, expected)) dropped++;
+                    continue;
+                }
+                long crc = CacheIndexJournal.crc32c(p);
+                boolean sizeOk = Files.size(p) == expected.size();
+                if (sizeOk && expected.crc32c() == CacheIndexJournal.NO_CRC) {
+                    // Indexed without a checksum (first start after upgrade): record it now.
+                    index.replace(p, expected, new CacheIndexJournal.Entry(expected.size(), crc, expected.lastAccessMillis()));
+                } else if ((!sizeOk || crc != expected.crc32c()) && index.remove(p, expected)) {
+                    logger.warn("Dropping corrupt cache file {} (size ok={}, crc expected={} actual={})",
+                            p, sizeOk, Long.toHexString(expected.crc32c()), Long.toHexString(crc));
+                    ramTier.invalidate(p);
+                    Files.deleteIfExists(p);
+                    deleteMetaIfExists(p);
+                    metadataMap.remove(p);
+                    dropped++;
+                }
+            } catch (IOException ex) {
+                logger.debug("Skipping verification of {}", p, ex);
+            }
+        }
+
+        index.compact();
+        logger.info("Cache verification done in {} ms: {} entries, {} dropped, {} adopted, {} stale temp files removed",
+                (System.nanoTime() - t0) / 1_000_000, index.size(), dropped, adopted, staleTemps);
+        return dropped;
     }
 
     /** For PeerCacheController */
@@ -110,6 +358,14 @@ public class CachedAwsSdkS3AccessLayer implements S3AccessLayer {
         return Files.exists(p) ? Optional.of(p) : Optional.empty();
     }
 
+    /** For PeerCacheController: the recorded CRC32C of the cached copy, if the index has one. */
+    public OptionalLong localCrc32c(S3Models.ObjectRef ref) {
+        return index.get(cachePath(ref))
+                .filter(e -> e.crc32c() != CacheIndexJournal.NO_CRC)
+                .map(e -> OptionalLong.of(e.crc32c()))
+                .orElse(OptionalLong.empty());
+    }
+
     @Override
     public byte[] getBytes(S3Models.ObjectRef ref) {
         try (InputStream in = getStream(ref)) {
@@ -121,6 +377,272 @@ public class CachedAwsSdkS3AccessLayer implements S3AccessLayer {
 
     @Override
     public InputStream getStream(S3Models.ObjectRef ref) {
+        Path cacheFile = cachePath(ref);
+        ByteBuffer hot = ramHit(cacheFile);
+        if (hot != null) return RamTier.stream(hot);
+
+        long epoch = ramTier.epoch();
+        Resolved r = resolve(ref);
+        if (r.fill() == null) {
+            ByteBuffer promoted = promoteToRam(r.file(), epoch);
+            if (promoted != null) return RamTier.stream(promoted);
+        } else {
+            ramTier.recordAccess(cacheFile, -1); // a miss still counts towards promotion
+        }
+        return open(ref, r);
+    }
+
+    /**
+     * ref's bytes from the RAM tier, recorded as a local hit, or null. The disk copy is touched as well, so eviction
+     * does not take the hottest files first just because their reads never reach the disk.
+     */
+    private ByteBuffer ramHit(Path cacheFile) {
+        ByteBuffer hot = ramTier.get(cacheFile);
+        if (hot == null) return null;
+        metadataMap.computeIfAbsent(cacheFile, p -> new CacheMetadata()).addAccessTime();
+        touch(cacheFile);
+        CacheFetchContext.set(CacheFetchContext.Source.LOCAL);
+        meterRegistry.counter("skadi.cache.ram.hits").increment();
+        return hot;
+    }
+
+    /**
+     * Counts a read of a committed cache file and copies it into the RAM tier once it is popular enough.
+     *
+     * @param epoch {@link RamTier#epoch()} taken before the file was resolved
+     * @return the promoted bytes, or null to read the file as usual
+     */
+    private ByteBuffer promoteToRam(Path cacheFile, long epoch) {
+        long size = index.get(cacheFile).map(CacheIndexJournal.Entry::size).orElse(-1L);
+        if (!ramTier.recordAccess(cacheFile, size)) return null;
+        try {
+            ByteBuffer b = ramTier.promote(cacheFile, size, epoch);
+            if (b != null) meterRegistry.counter("skadi.cache.ram.promotions").increment();
+            return b;
+        } catch (IOException e) {
+            logger.debug("Not promoting {} to the RAM tier", cacheFile, e);
+            return null;
+        }
+    }
+
+    private static InputStream open(S3Models.ObjectRef ref, Resolved r) {
+        try {
+            if (r.fill() != null) {
+                // On a miss the caller reads the temp file while the download is still running.
+                try {
+                    return r.fill().newReader();
+                } catch (NoSuchFileException alreadyMoved) {
+                    r.fill().awaitDone();
+                }
+            }
+            return Files.newInputStream(r.file());
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open cached stream for s3://" + ref.bucket() + "/" + ref.key(), e);
+        }
+    }
+
+    /**
+     * The committed cache file for ref, recorded as a local hit; never fetches. Empty on a miss or while a fill is
+     * running, so the caller streams through {@link #getStream} and gets the first bytes before the download ends.
+     * Also empty when the RAM tier holds ref or the read makes it due for promotion, so hot files stay off disk.
+     */
+    @Override
+    public Optional<Path> getLocalFile(S3Models.ObjectRef ref) {
+        Path cacheFile = cachePath(ref);
+        if (ramTier.contains(cacheFile) || !Files.exists(cacheFile)) return Optional.empty();
+        long size = index.get(cacheFile).map(CacheIndexJournal.Entry::size).orElse(-1L);
+        if (ramTier.recordAccess(cacheFile, size)) return Optional.empty();
+        metadataMap.computeIfAbsent(cacheFile, p -> new CacheMetadata()).addAccessTime();
+        touch(cacheFile);
+        CacheFetchContext.set(CacheFetchContext.Source.LOCAL);
+        return Optional.of(cacheFile);
+    }
+
+    /**
+     * Ranged read. A fully cached object is sliced locally. Large objects that are not cached are
+     * fetched block by block (peer Range GET, then S3 Range GET), so only the blocks covering the
+     * requested range are downloaded and the first bytes are available after one block round trip.
+     */
+    @Override
+    public InputStream getRange(S3Models.ObjectRef ref, long offset, long length) {
+        if (offset < 0 || length < 0) {
+            throw new IllegalArgumentException("Invalid range offset=" + offset + " length=" + length);
+        }
+        Path cacheFile = cachePath(ref);
+        ByteBuffer hot = ramHit(cacheFile);
+        if (hot != null) return RamTier.stream(hot, offset, length);
+
+        long epoch = ramTier.epoch();
+        try {
+            if (Files.exists(cacheFile)) {
+                metadataMap.computeIfAbsent(cacheFile, p -> new CacheMetadata()).addAccessTime();
+                touch(cacheFile);
+                CacheFetchContext.set(CacheFetchContext.Source.LOCAL);
+                ByteBuffer promoted = promoteToRam(cacheFile, epoch);
+                if (promoted != null) return RamTier.stream(promoted, offset, length);
+                return new FileRangeInputStream(cacheFile, offset, length);
+            }
+
+            long size = objectSize(ref);
+            if (size < blockCacheAboveBytes) {
+                // Small object: caching it whole is cheaper than tracking blocks.
+                return new FileRangeInputStream(fetchToLocal(ref), offset, length);
+            }
+
+            long end = (length > size - offset) ? size : offset + length;
+            if (offset >= end) {
+                return InputStream.nullInputStream();
+            }
+            return new BlockRangeInputStream(ref, offset, end, size);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed ranged read of s3://" + ref.bucket() + "/" + ref.key()
+                    + " offset=" + offset + " length=" + length, e);
+        }
+    }
+
+    /** Resolves ref to a file in the local cache (local -> peer -> S3) and records the fetch source. */
+    private Path fetchToLocal(S3Models.ObjectRef ref) {
+        Resolved r = resolve(ref);
+        if (r.fill() == null) return r.file();
+        try {
+            r.fill().awaitDone();
+            return r.file();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to fetch and cache s3://" + ref.bucket() + "/" + ref.key(), e);
+        }
+    }
+
+    /**
+     * Fetches refs in the background, at most prefetchConcurrency at a time. Refs that are cached, filling or
+     * already queued are skipped. The owners of the rest are asked in one batch lookup per owner which of them
+     * they hold; those are pulled straight from the owner, the others go through the normal miss path (owner
+     * fill, hedging, S3).
+     */
+    @Override
+    public void prefetch(List<S3Models.ObjectRef> refs) {
+        List<S3Models.ObjectRef> todo = new ArrayList<>();
+        for (S3Models.ObjectRef ref : refs) {
+            String lockKey = ref.bucket() + ":" + ref.key();
+            if (Files.exists(cachePath(ref)) || fills.containsKey(lockKey)) continue;
+            if (prefetching.add(lockKey)) todo.add(ref);
+        }
+        if (todo.isEmpty()) return;
+
+        ExecutorService pool = prefetchPool();
+        try {
+            pool.execute(() -> {
+                Map<S3Models.ObjectRef, String> holders = lookupHolders(todo);
+                for (S3Models.ObjectRef ref : todo) {
+                    pool.execute(() -> prefetchOne(ref, holders.get(ref)));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            todo.forEach(r -> prefetching.remove(r.bucket() + ":" + r.key()));
+        }
+    }
+
+    private void prefetchOne(S3Models.ObjectRef ref, String holder) {
+        String lockKey = ref.bucket() + ":" + ref.key();
+        try {
+            if (holder != null) {
+                String secret = peerSecretOrNull();
+                Object lock = locks.computeIfAbsent(lockKey, k -> new Object());
+                synchronized (lock) {
+                    Path cacheFile = cachePath(ref);
+                    if (Files.exists(cacheFile) || fills.containsKey(lockKey)) return;
+                    if (secret != null && pullFromPeer(ref, cacheFile, holder, secret)) {
+                        logger.debug("Prefetched s3://{}/{} from {}", ref.bucket(), ref.key(), holder);
+                        return;
+                    }
+                }
+            }
+            resolve(ref);
+        } catch (RuntimeException e) {
+            logger.debug("Prefetch of s3://{}/{} failed", ref.bucket(), ref.key(), e);
+        } finally {
+            CacheFetchContext.getAndClear();
+            prefetching.remove(lockKey);
+        }
+    }
+
+    /** One lookup round trip per owner: which of refs does it hold. */
+    private Map<S3Models.ObjectRef, String> lookupHolders(List<S3Models.ObjectRef> refs) {
+        String secret = peerSecretOrNull();
+        if (secret == null) return Map.of();
+
+        Map<String, Map<String, List<S3Models.ObjectRef>>> byOwnerAndBucket = new HashMap<>();
+        for (S3Models.ObjectRef ref : refs) {
+            List<String> owners = peersToAsk(ref);
+            if (owners.isEmpty()) continue;
+            byOwnerAndBucket.computeIfAbsent(owners.get(0), k -> new HashMap<>())
+                    .computeIfAbsent(ref.bucket(), k -> new ArrayList<>())
+                    .add(ref);
+        }
+
+        Map<S3Models.ObjectRef, String> holders = new ConcurrentHashMap<>();
+        List<CompletableFuture<Void>> calls = new ArrayList<>();
+        byOwnerAndBucket.forEach((owner, byBucket) -> byBucket.forEach((bucket, group) -> {
+            if (!claimPeer(owner)) return;
+            List<String> keys = group.stream().map(S3Models.ObjectRef::key).toList();
+            PeerSignedHeaders hdrs = PeerSignedHeaders.sign("POST", "/internal/cache/lookup", "bucket=" + bucket, peerKeyId, secret);
+            long started = System.nanoTime();
+            calls.add(peerCacheClient.lookup(owner, bucket, keys, hdrs, Duration.ofMillis(getTimeoutMs))
+                    .thenAccept(held -> {
+                        peerSucceeded(owner, started);
+                        for (S3Models.ObjectRef ref : group) {
+                            if (held.containsKey(ref.key())) holders.put(ref, owner);
+                        }
+                    })
+                    .exceptionally(err -> {
+                        peerFailed(owner);
+                        return null;
+                    }));
+        }));
+        CompletableFuture.allOf(calls.toArray(CompletableFuture[]::new)).join();
+        return holders;
+    }
+
+    /**
+     * Batch lookup for peers: size of each of keys held here, -1 for one still filling. Keys not here are
+     * left out.
+     */
+    public Map<String, Long> holdings(String bucket, List<String> keys) {
+        Map<String, Long> out = new LinkedHashMap<>();
+        for (String key : keys) {
+            S3Models.ObjectRef ref = new S3Models.ObjectRef(bucket, key);
+            Path cacheFile = cachePath(ref);
+            Optional<CacheIndexJournal.Entry> e = index.get(cacheFile);
+            if (e.isPresent() && Files.exists(cacheFile)) {
+                out.put(key, e.get().size());
+            } else if (fills.containsKey(bucket + ":" + key)) {
+                out.put(key, -1L);
+            }
+        }
+        return out;
+    }
+
+    private synchronized ExecutorService prefetchPool() {
+        if (prefetchExecutor == null) {
+            int n = Math.max(1, prefetchConcurrency);
+            prefetchExecutor = new java.util.concurrent.ThreadPoolExecutor(n, n, 30, TimeUnit.SECONDS,
+                    new java.util.concurrent.LinkedBlockingQueue<>(), r -> {
+                Thread t = new Thread(r, "skadi-cache-prefetch");
+                t.setDaemon(true);
+                return t;
+            });
+            ((java.util.concurrent.ThreadPoolExecutor) prefetchExecutor).allowCoreThreadTimeOut(true);
+        }
+        return prefetchExecutor;
+    }
+
+    /** A committed cache file, or the in-flight fill that will become it. */
+    private record Resolved(Path file, CacheFill fill) {}
+
+    /**
+     * Local hit, then peer pull, then S3. An S3 miss is not waited for: the download runs in the
+     * background and concurrent callers for the same key share its {@link CacheFill}.
+     */
+    private Resolved resolve(S3Models.ObjectRef ref) {
         String lockKey = ref.bucket() + ":" + ref.key();
         Object lock = locks.computeIfAbsent(lockKey, k -> new Object());
 
@@ -129,141 +651,733 @@ public class CachedAwsSdkS3AccessLayer implements S3AccessLayer {
 
             // 1) Local
             if (Files.exists(cacheFile)) {
-                try {
-                    logger.info("Local cache hit for s3://{}/{}", ref.bucket(), ref.key());
-                    metadataMap.computeIfAbsent(cacheFile, p -> new CacheMetadata()).addAccessTime();
-                    validateMetaOrWarn(ref, cacheFile);
-                    touch(cacheFile);
-                    CacheFetchContext.set(CacheFetchContext.Source.LOCAL);
-                    return Files.newInputStream(cacheFile);
-                } catch (IOException e) {
-                    logger.warn("Failed to open cached stream: {}", cacheFile, e);
-                }
+                logger.info("Local cache hit for s3://{}/{}", ref.bucket(), ref.key());
+                metadataMap.computeIfAbsent(cacheFile, p -> new CacheMetadata()).addAccessTime();
+                validateMetaOrWarn(ref, cacheFile);
+                touch(cacheFile);
+                CacheFetchContext.set(CacheFetchContext.Source.LOCAL);
+                return new Resolved(cacheFile, null);
             }
 
-            // 2) Peer
-            if (tryPullFromPeers(ref, cacheFile) && Files.exists(cacheFile)) {
-                try {
-                    logger.info("Peer cache hit (pulled locally) for s3://{}/{}", ref.bucket(), ref.key());
-                    metadataMap.computeIfAbsent(cacheFile, p -> new CacheMetadata()).addAccessTime();
-                    touch(cacheFile);
-                    CacheFetchContext.set(CacheFetchContext.Source.PEER);
-                    return Files.newInputStream(cacheFile);
-                } catch (IOException e) {
-                    logger.warn("Failed to open cached stream after peer pull: {}", cacheFile, e);
-                }
+            // 1b) Someone else is already downloading it
+            CacheFill inFlight = fills.get(lockKey);
+            if (inFlight != null) {
+                logger.debug("Joining in-flight cache fill for s3://{}/{}", ref.bucket(), ref.key());
+                CacheFetchContext.set(inFlight.source());
+                return new Resolved(cacheFile, inFlight);
             }
 
-            // 3) S3 fallback (stream to disk, then open)
+            // 2) Peers and S3, hedged (either streams to disk while callers read along)
             try {
-                pullFromS3ToLocal(ref, cacheFile);
-                metadataMap.computeIfAbsent(cacheFile, p -> new CacheMetadata()).addAccessTime();
-                touch(cacheFile);
-                CacheFetchContext.set(CacheFetchContext.Source.S3);
-                return Files.newInputStream(cacheFile);
+                CacheFill fill = fetchHedged(ref, lockKey, cacheFile);
+                if (fill.source() == CacheFetchContext.Source.PEER) {
+                    logger.info("Peer cache hit (pulling locally) for s3://{}/{}", ref.bucket(), ref.key());
+                    metadataMap.computeIfAbsent(cacheFile, p -> new CacheMetadata()).addAccessTime();
+                }
+                CacheFetchContext.set(fill.source());
+                return new Resolved(cacheFile, fill);
             } catch (IOException e) {
                 throw new RuntimeException("Failed to fetch and cache s3://" + ref.bucket() + "/" + ref.key(), e);
             }
         }
     }
 
-    private void pullFromS3ToLocal(S3Models.ObjectRef ref, Path cacheFile) throws IOException {
+    /**
+     * Read on behalf of a peer that missed ref: the cached file, or a reader following an in-progress fill.
+     * With fillIfOwner, an owner that has neither starts the S3 fill itself, so concurrent cold misses across
+     * the cluster coalesce into one S3 download that every requester streams from. Owners never ask other
+     * peers here, which keeps requests from bouncing around the ring.
+     *
+     * @return empty when ref is not here, not filling, and not to be filled here (or S3 does not have it)
+     */
+    public Optional<InputStream> openForPeer(S3Models.ObjectRef ref, boolean fillIfOwner) {
+        String lockKey = ref.bucket() + ":" + ref.key();
+        Object lock = locks.computeIfAbsent(lockKey, k -> new Object());
+
+        Resolved r;
+        synchronized (lock) {
+            Path cacheFile = cachePath(ref);
+            CacheFill inFlight = fills.get(lockKey);
+            if (Files.exists(cacheFile)) {
+                r = new Resolved(cacheFile, null);
+            } else if (inFlight != null) {
+                r = new Resolved(cacheFile, inFlight);
+            } else if (fillIfOwner && isOwner(ref)) {
+                try {
+                    r = new Resolved(cacheFile, startFillFromS3(ref, lockKey, cacheFile, openS3(ref)));
+                } catch (IOException | RuntimeException e) {
+                    logger.debug("Coalesced fill of s3://{}/{} failed to start", ref.bucket(), ref.key(), e);
+                    return Optional.empty();
+                }
+                meterRegistry.counter("skadi.cache.fetch.coalesced").increment();
+                logger.debug("Filling s3://{}/{} from S3 on behalf of a peer", ref.bucket(), ref.key());
+            } else {
+                return Optional.empty();
+            }
+        }
+        return Optional.of(open(ref, r));
+    }
+
+    private boolean isOwner(S3Models.ObjectRef ref) {
+        return self() != null
+                && ring().isOwner(CacheKeyUtil.cacheId(ref.bucket(), ref.key()), ownerReplicas);
+    }
+
+    /**
+     * An S3 object opened for a fill: a single GET stream, and the object's size when it is large enough for a
+     * parallel ranged fill (-1 otherwise). A parallel fill with a stream reads part 0 from it.
+     */
+    private record S3Source(InputStream stream, long parallelSize) {}
+
+    /** A GET against one peer, streaming into its own fill that becomes the key's fill if it wins. */
+    private record PeerAttempt(String peer, CacheFill fill, PeerCacheClient.Download download) {
+        void cancel() {
+            download.cancel();
+            deleteQuietly(fill.tmp());
+        }
+    }
+
+    /**
+     * Owner peers (best first) and S3, hedged for tail latency. Each attempt gets hedgeDelayMs to answer
+     * before the next candidate is raced against it, and a peer miss moves on at once. The first peer to
+     * answer 200, or S3 once it is raced and responds, wins; every other attempt is cancelled. Either way the
+     * winner streams on in the background as the key's fill.
+     */
+    private CacheFill fetchHedged(S3Models.ObjectRef ref, String lockKey, Path cacheFile) throws IOException {
+        String secret = peerSecretOrNull();
+        List<String> peers = secret == null ? List.of() : peersToAsk(ref);
+        if (peers.isEmpty()) {
+            return startFillFromS3(ref, lockKey, cacheFile, openS3(ref));
+        }
+
         ensureParentDir(cacheFile);
+        List<PeerAttempt> attempts = new ArrayList<>();
+        CompletableFuture<S3Source> s3 = null;
+        PeerAttempt winner = null;
+        int nextPeer = 0;
+        boolean hedged = false;
+        long started = System.nanoTime();
+        long deadline = started + TimeUnit.MILLISECONDS.toNanos(getTimeoutMs);
+
+        // Cluster-wide single flight: the primary owner fills from S3 for everyone, so S3 is only raced
+        // once it had coalesceMaxWaitMs to answer (a miss there still falls through immediately).
+        String primaryOwner = coalesceColdFills
+                ? ring().owners(CacheKeyUtil.cacheId(ref.bucket(), ref.key()), 1).stream().findFirst().orElse(null)
+                : null;
+        boolean coalescing = primaryOwner != null && primaryOwner.equals(peers.get(0));
+        long s3NotBefore = coalescing ? started + TimeUnit.MILLISECONDS.toNanos(coalesceMaxWaitMs) : started;
 
-        // temp file in same dir for atomic move
-        Path tmp = cacheFile.getParent().resolve(cacheFile.getFileName().toString() + ".tmp-" + UUID.randomUUID());
+        try {
+            while (true) {
+                List<CompletableFuture<?>> pending = new ArrayList<>();
+                for (PeerAttempt a : attempts) {
+                    if (!a.download().found().isDone()) pending.add(a.download().found());
+                }
+                if (pending.isEmpty() && s3 == null) {
+                    // Nothing outstanding (first attempt, or every peer so far missed): next candidate right away.
+                    nextPeer = nextClaimedPeer(peers, nextPeer);
+                    if (nextPeer < peers.size()) {
+                        PeerAttempt a = startPeerAttempt(ref, cacheFile, peers.get(nextPeer), secret,
+                                coalescing && nextPeer == 0);
+                        nextPeer++;
+                        attempts.add(a);
+                        pending.add(a.download().found());
+                    } else {
+                        s3 = openS3Async(ref);
+                    }
+                }
+                if (s3 != null) pending.add(s3);
 
-        long written = 0;
-        try (InputStream in = delegate.getStream(ref)) {
-            try (var out = Files.newOutputStream(tmp, CREATE, TRUNCATE_EXISTING, WRITE)) {
-                written = in.transferTo(out);
+                try {
+                    CompletableFuture.anyOf(pending.toArray(CompletableFuture[]::new))
+                            .get(Math.max(1, hedgeDelayMs), TimeUnit.MILLISECONDS);
+                } catch (TimeoutException slow) {
+                    nextPeer = nextClaimedPeer(peers, nextPeer);
+                    if (nextPeer < peers.size()) {
+                        attempts.add(startPeerAttempt(ref, cacheFile, peers.get(nextPeer++), secret, false));
+                        hedges("peer");
+                        hedged = true;
+                    } else if (s3 == null && (System.nanoTime() >= deadline
+                            || (hedgeToS3 && System.nanoTime() >= s3NotBefore))) {
+                        s3 = openS3Async(ref);
+                        hedges("s3");
+                        hedged = true;
+                    }
+                    continue;
+                } catch (ExecutionException ignored) {
+                    // S3 open failed; rethrown below unless a peer wins
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while fetching s3://" + ref.bucket() + "/" + ref.key(), e);
+                }
+
+                winner = attempts.stream()
+                        .filter(a -> a.download().found().isDone() && a.download().found().join())
+                        .findFirst().orElse(null);
+                if (winner != null || (s3 != null && s3.isDone())) break;
             }
-        } catch (Exception e) {
+        } finally {
+            for (PeerAttempt a : attempts) {
+                if (a != winner) a.cancel();
+            }
+            if (winner != null && s3 != null) {
+                // Lost the race: release the S3 response whenever it arrives.
+                s3.thenAccept(src -> AwsSdkS3AccessLayer.abortQuietly(src.stream()));
+            }
+        }
+
+        if (winner != null) {
+            wins("peer", hedged);
+            return followPeer(ref, lockKey, cacheFile, winner);
+        }
+
+        wins("s3", hedged);
+        try {
+            return startFillFromS3(ref, lockKey, cacheFile, s3.join());
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw e;
+        }
+    }
+
+    private CompletableFuture<S3Source> openS3Async(S3Models.ObjectRef ref) {
+        return CompletableFuture.supplyAsync(() -> openS3(ref), fillExecutor);
+    }
+
+    /**
+     * Opens ref for a fill without a HEAD round trip. A size already in the HEAD cache that calls for a
+     * parallel ranged fill skips the whole-object GET; otherwise the single GET is opened here (so a missing
+     * key or access error surfaces to the caller) and its Content-Length decides: large objects continue as
+     * concurrent ranged GETs with that response serving part 0.
+     */
+    private S3Source openS3(S3Models.ObjectRef ref) {
+        if (parallelFillConcurrency > 1) {
+            long known = headCache.peek(ref).map(S3Models.ObjectMetadata::contentLength).orElse(-1L);
+            if (wantsParallelFill(known)) return new S3Source(null, known);
+        }
+        InputStream in = delegate.getStream(ref);
+        long size = AwsSdkS3AccessLayer.contentLength(in);
+        return new S3Source(in, parallelFillConcurrency > 1 && wantsParallelFill(size) ? size : -1L);
+    }
+
+    private boolean wantsParallelFill(long size) {
+        return size >= parallelFillAboveBytes && size > parallelFillPartSize;
+    }
+
+    private void hedges(String target) {
+        meterRegistry.counter("skadi.cache.fetch.hedges", "target", target).increment();
+    }
+
+    private void wins(String source, boolean hedged) {
+        meterRegistry.counter("skadi.cache.fetch.wins", "source", source, "hedged", String.valueOf(hedged)).increment();
+    }
+
+    /**
+     * Starts the background download of an opened S3 source into a temp file: a parallel ranged fill for
+     * large objects, otherwise a copy of the single GET stream. Commit (eviction, atomic move, meta)
+     * happens under the key lock before readers are released at EOF.
+     */
+    private CacheFill startFillFromS3(S3Models.ObjectRef ref, String lockKey, Path cacheFile, S3Source src) throws IOException {
+        Path tmp;
+        try {
+            ensureParentDir(cacheFile);
+            // temp file in same dir for atomic move
+            tmp = cacheFile.getParent().resolve(cacheFile.getFileName().toString() + ".tmp-" + UUID.randomUUID());
+            Files.createFile(tmp);
+        } catch (IOException e) {
+            AwsSdkS3AccessLayer.abortQuietly(src.stream());
+            throw e;
+        }
+        CacheFill fill = new CacheFill(tmp);
+        fills.put(lockKey, fill);
+        try {
+            fillFromS3(ref, lockKey, cacheFile, fill, src);
+            return fill;
+        } catch (IOException | RuntimeException e) {
+            fills.remove(lockKey, fill);
             Files.deleteIfExists(tmp);
             throw e;
         }
+    }
+
+    /** Runs fill from an opened S3 source in the background; the source is released if that cannot start. */
+    private void fillFromS3(S3Models.ObjectRef ref, String lockKey, Path cacheFile, CacheFill fill, S3Source src)
+            throws IOException {
+        try {
+            if (src.parallelSize() > 0) {
+                long size = src.parallelSize();
+                logger.info("Parallel fill of s3://{}/{} ({} bytes, part={} x{})",
+                        ref.bucket(), ref.key(), size, parallelFillPartSize, parallelFillConcurrency);
+                CompletableFuture<Long> download = asyncDelegate != null
+                        ? ParallelRangeDownload.startAsync(asyncDelegate, ref, size, parallelFillPartSize,
+                                parallelFillConcurrency, fill, src.stream(), fillExecutor)
+                        : ParallelRangeDownload.start(delegate, ref, size, parallelFillPartSize, parallelFillConcurrency,
+                                fillExecutor, fill, src.stream());
+                // Checksum and commit off the S3 client's event loop
+                download.whenCompleteAsync((written, err) -> {
+                            if (err != null) {
+                                abortFill(ref, lockKey, fill, err);
+                                return;
+                            }
+                            long crc;
+                            try {
+                                trimTo(fill.tmp(), written);
+                                crc = CacheIndexJournal.crc32c(fill.tmp());
+                            } catch (IOException e) {
+                                abortFill(ref, lockKey, fill, e);
+                                return;
+                            }
+                            commitFill(ref, lockKey, cacheFile, fill, written, crc);
+                        }, fillExecutor);
+                return;
+            }
+
+            fillExecutor.execute(() -> runFill(ref, lockKey, cacheFile, src.stream(), fill));
+        } catch (IOException | RuntimeException e) {
+            AwsSdkS3AccessLayer.abortQuietly(src.stream());
+            throw e;
+        }
+    }
+
+    private void runFill(S3Models.ObjectRef ref, String lockKey, Path cacheFile, InputStream in, CacheFill fill) {
+        long written = 0;
+        CRC32C crc = new CRC32C();
+        // No truncation: a restarted fill overwrites in place (see CacheFill#restart) and is trimmed at commit
+        try (InputStream src = in; var out = Files.newOutputStream(fill.tmp(), WRITE)) {
+            byte[] buf = new byte[64 * 1024];
+            int n;
+            while ((n = src.read(buf)) >= 0) {
+                out.write(buf, 0, n);
+                crc.update(buf, 0, n);
+                // unbuffered file stream: bytes are in the page cache once write returns
+                written += n;
+                fill.advance(n);
+            }
+        } catch (Exception e) {
+            abortFill(ref, lockKey, fill, e);
+            return;
+        }
+        commitFill(ref, lockKey, cacheFile, fill, written, crc.getValue());
+    }
 
-        evictIfNeeded(written);
-        moveAtomically(tmp, cacheFile);
+    private void commitFill(S3Models.ObjectRef ref, String lockKey, Path cacheFile, CacheFill fill, long written, long crc) {
+        try {
+            trimTo(fill.tmp(), written);
+            synchronized (locks.computeIfAbsent(lockKey, k -> new Object())) {
+                evictIfNeeded(written);
+                moveAtomically(fill.tmp(), cacheFile);
 
-        currentCacheSize += written;
-        metadataMap.put(cacheFile, new CacheMetadata());
-        writeMeta(cacheFile, new CacheEntryMeta(ref.bucket(), ref.key(), written, java.time.Instant.now(), "S3"));
+                index.put(cacheFile, written, crc, System.currentTimeMillis());
+                metadataMap.put(cacheFile, new CacheMetadata());
+                writeMeta(cacheFile, new CacheEntryMeta(ref.bucket(), ref.key(), written, java.time.Instant.now(), "S3"));
+                fills.remove(lockKey, fill);
+            }
+        } catch (Exception e) {
+            abortFill(ref, lockKey, fill, e);
+            return;
+        }
         logger.info("Cached from S3 to {} ({} bytes)", cacheFile, written);
+        fill.complete();
+        warmOwners(ref);
+    }
+
+    /** Cuts off what an earlier source of a restarted fill left past the end. */
+    private static void trimTo(Path tmp, long size) throws IOException {
+        try (FileChannel ch = FileChannel.open(tmp, WRITE)) {
+            if (ch.size() > size) ch.truncate(size);
+        }
+    }
 
+    private void abortFill(S3Models.ObjectRef ref, String lockKey, CacheFill fill, Throwable e) {
+        logger.warn("Cache fill from {} failed for s3://{}/{}", fill.source(), ref.bucket(), ref.key(), e);
+        fills.remove(lockKey, fill);
+        try {
+            Files.deleteIfExists(fill.tmp());
+        } catch (IOException ignore) {
+            // best-effort
+        }
+        fill.fail(e);
     }
+
     private void touch(Path p) {
+        Instant now = Instant.now();
         try {
-            Files.setLastModifiedTime(p, FileTime.from(Instant.now()));
+            Files.setLastModifiedTime(p, FileTime.from(now));
         } catch (Exception ignore) {
             // best-effort; never break reads
         }
+        index.touch(p, now.toEpochMilli());
     }
 
-    private boolean tryPullFromPeers(S3Models.ObjectRef ref, Path cacheFile) {
-        if (!peerEnabled || peerCacheClient == null || peerBaseUrls == null || peerBaseUrls.isEmpty()) return false;
-        if (peerSecrets == null || peerSecrets.isEmpty()) return false;
-        if (peerKeyId == null || peerKeyId.isBlank()) return false;
-        String secret = peerSecrets.get(peerKeyId);
-        if (secret == null || secret.isBlank()) return false;
+    /** @param fill ask the peer (an owner) to fill from S3 for us if it does not have ref either */
+    private PeerAttempt startPeerAttempt(S3Models.ObjectRef ref, Path cacheFile, String peer, String secret, boolean fill)
+            throws IOException {
+        String query = "bucket=" + ref.bucket() + "&key=" + ref.key() + (fill ? "&fill=true" : "");
+        Path tmp = cacheFile.getParent().resolve(cacheFile.getFileName().toString() + ".tmp-" + UUID.randomUUID());
+        // Created up front so readers can open it as soon as the peer answers
+        Files.createFile(tmp);
+        CacheFill peerFill = new CacheFill(tmp, CacheFetchContext.Source.PEER);
+        PeerSignedHeaders getHdrs = PeerSignedHeaders.sign("GET", "/internal/cache/object", query, peerKeyId, secret);
+        long started = System.nanoTime();
+        PeerCacheClient.Download download = peerCacheClient.startFetch(
+                peer, ref.bucket(), ref.key(), fill, getHdrs, tmp, Duration.ofMillis(getTimeoutMs), peerFill::advance);
+        download.found().thenAccept(found -> {
+            if (found) peerSucceeded(peer, started);
+            else if (download.failed()) peerFailed(peer);
+        });
+        return new PeerAttempt(peer, peerFill, download);
+    }
 
-        List<String> peers = new ArrayList<>(peerBaseUrls);
-        Collections.shuffle(peers);
+    /**
+     * Makes a peer that answered 200 the key's fill: callers read along while the body streams in, and it is
+     * committed once validated. Called under the key lock.
+     */
+    private CacheFill followPeer(S3Models.ObjectRef ref, String lockKey, Path cacheFile, PeerAttempt attempt) {
+        CacheFill fill = attempt.fill();
+        fills.put(lockKey, fill);
+        attempt.download().done().whenCompleteAsync(
+                (transfer, err) -> commitPeerFill(ref, lockKey, cacheFile, attempt, transfer), fillExecutor);
+        return fill;
+    }
 
-        int tries = 0;
-        for (String peer : peers) {
-            if (tries++ >= maxPeersToTry) break;
+    /**
+     * Commits a validated peer transfer. One that broke off or did not validate is not held against the
+     * callers following it: the same fill carries on from S3.
+     */
+    private void commitPeerFill(S3Models.ObjectRef ref, String lockKey, Path cacheFile, PeerAttempt attempt,
+                                Optional<PeerCacheClient.Transfer> transfer) {
+        String peer = attempt.peer();
+        CacheFill fill = attempt.fill();
+        if (transfer == null || transfer.isEmpty()) {
+            if (attempt.download().failed()) peerFailed(peer);
+            logger.warn("Peer transfer from {} failed for s3://{}/{}; continuing from S3", peer, ref.bucket(), ref.key());
+            continueFromS3(ref, lockKey, cacheFile, fill);
+            return;
+        }
 
-            String query = "bucket=" + ref.bucket() + "&key=" + ref.key();
+        long actual = transfer.get().length();
+        try {
+            synchronized (locks.computeIfAbsent(lockKey, k -> new Object())) {
+                evictIfNeeded(actual);
+                moveAtomically(fill.tmp(), cacheFile);
+                index.put(cacheFile, actual, transfer.get().crc32c(), System.currentTimeMillis());
+                metadataMap.put(cacheFile, new CacheMetadata());
+                writeMeta(cacheFile, new CacheEntryMeta(ref.bucket(), ref.key(), actual, java.time.Instant.now(), "PEER:" + peer));
+                fills.remove(lockKey, fill);
+            }
+        } catch (Exception e) {
+            abortFill(ref, lockKey, fill, e);
+            return;
+        }
+        logger.info("Pulled {} bytes from peer {} into {}", actual, peer, cacheFile);
+        fill.complete();
+    }
 
-            // HEAD
-            PeerSignedHeaders headHdrs = PeerSignedHeaders.sign("HEAD", "/internal/cache/object", query, peerKeyId, secret);
-            Optional<Long> len = peerCacheClient.headLength(
-                    peer, ref.bucket(), ref.key(),
-                    headHdrs, Duration.ofMillis(headTimeoutMs)
-            );
-            if (len.isEmpty()) continue;
+    private void continueFromS3(S3Models.ObjectRef ref, String lockKey, Path cacheFile, CacheFill fill) {
+        try {
+            S3Source src = openS3(ref);
+            fill.restart(CacheFetchContext.Source.S3);
+            fillFromS3(ref, lockKey, cacheFile, fill, src);
+        } catch (IOException | RuntimeException e) {
+            abortFill(ref, lockKey, fill, e);
+        }
+    }
 
-            // GET stream -> tmp
-            try {
-                ensureParentDir(cacheFile);
-                Path tmp = cacheFile.getParent().resolve(cacheFile.getFileName().toString() + ".tmp-" + UUID.randomUUID());
+    /**
+     * One peer, no hedging (prefetch and warm hints). Waits only for the peer's answer; the body streams in
+     * as the key's fill. Called under the key lock.
+     *
+     * @return false if the peer does not have ref (or could not be asked)
+     */
+    private boolean pullFromPeer(S3Models.ObjectRef ref, Path cacheFile, String peer, String secret) {
+        if (!claimPeer(peer)) return false;
+        PeerAttempt attempt;
+        try {
+            ensureParentDir(cacheFile);
+            attempt = startPeerAttempt(ref, cacheFile, peer, secret, false);
+        } catch (IOException e) {
+            return false;
+        }
+        if (!attempt.download().found().join()) {
+            attempt.cancel();
+            return false;
+        }
+        followPeer(ref, ref.bucket() + ":" + ref.key(), cacheFile, attempt);
+        return true;
+    }
+
+    /**
+     * Owners of ref to ask, best first, skipping peers whose circuit is open. Only a candidate list: each
+     * peer is claimed with {@link #claimPeer} when a request is actually sent to it.
+     */
+    private List<String> peersToAsk(S3Models.ObjectRef ref) {
+        PeerRing r = ring();
+        List<String> out = new ArrayList<>(maxPeersToTry);
+        for (String peer : r.peersToAsk(CacheKeyUtil.cacheId(ref.bucket(), ref.key()), r.members().size())) {
+            if (out.size() >= maxPeersToTry) break;
+            if (membership == null || membership.mightBeAvailable(peer)) out.add(peer);
+        }
+        return out;
+    }
 
-                PeerSignedHeaders getHdrs = PeerSignedHeaders.sign("GET", "/internal/cache/object", query, peerKeyId, secret);
-                boolean ok = peerCacheClient.streamToFile(
-                        peer, ref.bucket(), ref.key(),
-                        getHdrs, tmp, Duration.ofMillis(getTimeoutMs)
-                );
+    /** Right before a request whose outcome is reported: false if the peer went unavailable (or its probe is out). */
+    private boolean claimPeer(String peer) {
+        return membership == null || membership.isAvailable(peer);
+    }
 
-                if (!ok) {
-                    Files.deleteIfExists(tmp);
-                    continue;
+    /** Index of the first peer from 'from' on that could be claimed, or peers.size(). */
+    private int nextClaimedPeer(List<String> peers, int from) {
+        int i = from;
+        while (i < peers.size() && !claimPeer(peers.get(i))) i++;
+        return i;
+    }
+
+    private void peerSucceeded(String peer, long startedNanos) {
+        if (membership != null) membership.recordSuccess(peer, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedNanos));
+    }
+
+    private void peerFailed(String peer) {
+        if (membership != null) membership.recordFailure(peer);
+    }
+
+    /** This node on the ring: as the membership service resolved it, else selfUrl (null if unset). */
+    private String self() {
+        if (membership != null) return membership.self();
+        return selfUrl == null || selfUrl.isBlank() ? null : selfUrl;
+    }
+
+    /** Cluster members from the membership service, or the static peer list when there is none (tests). */
+    private List<String> currentPeers() {
+        return membership != null ? membership.members() : peerBaseUrls;
+    }
+
+    /** Ownership ring over the current members, rebuilt when the member list changes. */
+    PeerRing ring() {
+        List<String> peers = currentPeers();
+        PeerRing r = ring;
+        if (r == null || ringSource != peers) {
+            r = new PeerRing(peers, self());
+            ring = r;
+            ringSource = peers;
+        }
+        return r;
+    }
+
+    /**
+     * After an S3 fill on a node that does not own ref, tell the owners they can pull it from here,
+     * so the next miss anywhere in the cluster is served by the owner instead of S3.
+     */
+    private void warmOwners(S3Models.ObjectRef ref) {
+        String self = self();
+        if (!warmOwnersOnFill || self == null) return;
+        String secret = peerSecretOrNull();
+        if (secret == null) return;
+
+        PeerRing r = ring();
+        String id = CacheKeyUtil.cacheId(ref.bucket(), ref.key());
+        if (r.isOwner(id, ownerReplicas)) return;
+
+        String query = "bucket=" + ref.bucket() + "&key=" + ref.key() + "&from=" + self;
+        for (String owner : r.owners(id, ownerReplicas)) {
+            // A hint reports no outcome, so it must not take a half-open circuit's probe
+            if (membership != null && !membership.isClosed(owner)) continue;
+            PeerSignedHeaders hdrs = PeerSignedHeaders.sign("POST", "/internal/cache/warm", query, peerKeyId, secret);
+            peerCacheClient.warm(owner, ref.bucket(), ref.key(), self, hdrs, Duration.ofMillis(getTimeoutMs));
+        }
+    }
+
+    /**
+     * Warm hint from a peer that just filled ref: pull it from that peer in the background unless it is
+     * already here. Only known cluster members are pulled from; nothing falls through to S3 unless that
+     * member's transfer breaks off after it answered.
+     */
+    public void warmFrom(S3Models.ObjectRef ref, String fromPeer) {
+        String secret = peerSecretOrNull();
+        if (secret == null || !ring().members().contains(fromPeer)) return;
+        if (Files.exists(cachePath(ref))) return;
+
+        fillExecutor.execute(() -> {
+            Object lock = locks.computeIfAbsent(ref.bucket() + ":" + ref.key(), k -> new Object());
+            synchronized (lock) {
+                Path cacheFile = cachePath(ref);
+                if (Files.exists(cacheFile)) return;
+                if (pullFromPeer(ref, cacheFile, fromPeer, secret)) {
+                    logger.debug("Warmed s3://{}/{} from {}", ref.bucket(), ref.key(), fromPeer);
                 }
+            }
+        });
+    }
 
+    /** Object size from the block-cache sidecar, else a HEAD against S3 (recorded for next time). */
+    private long objectSize(S3Models.ObjectRef ref) throws IOException {
+        Path mp = blockMetaPath(ref);
+        if (Files.exists(mp)) {
+            try {
+                return CacheMetaCodec.decode(Files.readString(mp, StandardCharsets.UTF_8)).sizeBytes();
+            } catch (Exception e) {
+                logger.debug("Ignoring unreadable block meta {}", mp, e);
+            }
+        }
+        S3Models.ObjectMetadata md = head(ref)
+                .orElseThrow(() -> new S3CacheMissException(ref.bucket(), ref.key(), null));
+        if (md.contentLength() >= blockCacheAboveBytes) {
+            ensureParentDir(mp);
+            Files.writeString(mp, CacheMetaCodec.encode(new CacheEntryMeta(ref.bucket(), ref.key(),
+                    md.contentLength(), Instant.now(), "S3")), StandardCharsets.UTF_8, CREATE, TRUNCATE_EXISTING, WRITE);
+        }
+        return md.contentLength();
+    }
+
+    /** Makes block #index of ref available locally (peer, then S3) and returns its path. */
+    private Path ensureBlock(S3Models.ObjectRef ref, long blockIndex, long objectSize) throws IOException {
+        Path block = blockPath(ref, blockIndex);
+        Object lock = locks.computeIfAbsent(ref.bucket() + ":" + ref.key() + "#" + blockIndex, k -> new Object());
+
+        synchronized (lock) {
+            if (Files.exists(block)) {
+                touch(block);
+                CacheFetchContext.set(CacheFetchContext.Source.LOCAL);
+                return block;
+            }
+
+            long start = blockIndex * blockSize;
+            long len = Math.min(blockSize, objectSize - start);
+            ensureParentDir(block);
+            Path tmp = block.resolveSibling(block.getFileName().toString() + ".tmp-" + UUID.randomUUID());
+
+            CacheFetchContext.Source src = CacheFetchContext.Source.PEER;
+            try {
+                if (!tryPullRangeFromPeers(ref, start, len, tmp)) {
+                    src = CacheFetchContext.Source.S3;
+                    try (InputStream in = delegate.getRange(ref, start, len);
+                         var out = Files.newOutputStream(tmp, CREATE, TRUNCATE_EXISTING, WRITE)) {
+                        in.transferTo(out);
+                    }
+                }
                 long actual = Files.size(tmp);
-                if (len.get() != null && len.get() > 0 && actual != len.get()) {
-                    logger.warn("Peer transfer size mismatch from {} expected {} got {}", peer, len.get(), actual);
-                    Files.deleteIfExists(tmp);
-                    continue;
+                if (actual != len) {
+                    throw new IOException("Short block " + blockIndex + " for s3://" + ref.bucket() + "/" + ref.key()
+                            + ": expected " + len + " got " + actual);
                 }
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(tmp);
+                throw e;
+            }
 
-                evictIfNeeded(actual);
-                moveAtomically(tmp, cacheFile);
-                touch(cacheFile);
-                currentCacheSize += actual;
-                metadataMap.put(cacheFile, new CacheMetadata());
-                writeMeta(cacheFile, new CacheEntryMeta(ref.bucket(), ref.key(), actual, java.time.Instant.now(), "PEER:" + peer));
-                logger.info("Pulled {} bytes from peer {} into {}", actual, peer, cacheFile);
-                return true;
+            long crc = CacheIndexJournal.crc32c(tmp);
+            evictIfNeeded(len);
+            moveAtomically(tmp, block);
+            this.index.put(block, len, crc, System.currentTimeMillis());
+            CacheFetchContext.set(src);
+            logger.debug("Cached block {} ({} bytes) of s3://{}/{} from {}", blockIndex, len, ref.bucket(), ref.key(), src);
+            return block;
+        }
+    }
 
+    private boolean tryPullRangeFromPeers(S3Models.ObjectRef ref, long offset, long length, Path tmp) {
+        String secret = peerSecretOrNull();
+        if (secret == null) return false;
 
+        for (String peer : peersToAsk(ref)) {
+            if (!claimPeer(peer)) continue;
+            String query = "bucket=" + ref.bucket() + "&key=" + ref.key();
+            PeerSignedHeaders hdrs = PeerSignedHeaders.sign("GET", "/internal/cache/object", query, peerKeyId, secret);
+            long started = System.nanoTime();
+            try {
+                if (peerCacheClient.streamRangeToFile(peer, ref.bucket(), ref.key(), hdrs, offset, length,
+                        tmp, Duration.ofMillis(getTimeoutMs)) && Files.size(tmp) == length) {
+                    peerSucceeded(peer, started);
+                    return true;
+                }
+                Files.deleteIfExists(tmp);
             } catch (Exception e) {
-                logger.warn("Peer transfer failed from {} for s3://{}/{}", peer, ref.bucket(), ref.key(), e);
+                peerFailed(peer);
+                logger.debug("Peer range transfer failed from {} for s3://{}/{}", peer, ref.bucket(), ref.key(), e);
             }
         }
         return false;
     }
 
+    private String peerSecretOrNull() {
+        List<String> peers = currentPeers();
+        if (!peerEnabled || peerCacheClient == null || peers == null || peers.isEmpty()) return null;
+        if (peerSecrets == null || peerSecrets.isEmpty()) return null;
+        if (peerKeyId == null || peerKeyId.isBlank()) return null;
+        String secret = peerSecrets.get(peerKeyId);
+        return (secret == null || secret.isBlank()) ? null : secret;
+    }
+
+    private Path blockDir(S3Models.ObjectRef ref) {
+        String id = CacheKeyUtil.cacheId(ref.bucket(), ref.key());
+        return cacheDir.resolve(id.substring(0, 2)).resolve(id + ".blocks");
+    }
+
+    private Path blockPath(S3Models.ObjectRef ref, long index) {
+        return blockDir(ref).resolve(index + ".blk");
+    }
+
+    private Path blockMetaPath(S3Models.ObjectRef ref) {
+        return blockDir(ref).resolve("object.meta");
+    }
+
+    /** Streams [pos, end) of a block-cached object, fetching each block only when the reader reaches it. */
+    private final class BlockRangeInputStream extends InputStream {
+        private final S3Models.ObjectRef ref;
+        private final long end;
+        private final long objectSize;
+        private long pos;
+        private InputStream current;
+
+        BlockRangeInputStream(S3Models.ObjectRef ref, long start, long end, long objectSize) throws IOException {
+            this.ref = ref;
+            this.pos = start;
+            this.end = end;
+            this.objectSize = objectSize;
+            // Fetch the first block eagerly: errors surface at open time, like getStream().
+            this.current = openBlockSlice();
+        }
+
+        private InputStream openBlockSlice() throws IOException {
+            long index = pos / blockSize;
+            long within = pos - index * blockSize;
+            long len = Math.min(blockSize - within, end - pos);
+            Path block = ensureBlock(ref, index, objectSize);
+            try {
+                return new FileRangeInputStream(block, within, len);
+            } catch (NoSuchFileException evicted) {
+                return new FileRangeInputStream(ensureBlock(ref, index, objectSize), within, len);
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            int r = read(one, 0, 1);
+            return r < 0 ? -1 : (one[0] & 0xff);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            while (pos < end) {
+                if (current == null) current = openBlockSlice();
+                int r = current.read(b, off, len);
+                if (r > 0) {
+                    pos += r;
+                    return r;
+                }
+                current.close();
+                current = null;
+            }
+            return -1;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (current != null) current.close();
+        }
+    }
+
     private Path cachePath(S3Models.ObjectRef ref) {
         String id = CacheKeyUtil.cacheId(ref.bucket(), ref.key());
         String shard = id.substring(0, 2);
@@ -276,49 +1390,47 @@ public class CachedAwsSdkS3AccessLayer implements S3AccessLayer {
     }
 
     private void moveAtomically(Path tmp, Path dest) throws IOException {
+        ramTier.invalidate(dest);
         try {
             Files.move(tmp, dest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
         } catch (AtomicMoveNotSupportedException e) {
             Files.move(tmp, dest, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            // Again once the new file is in place: a promotion that read the old file after the first
+            // invalidation would otherwise be stored
+            ramTier.invalidate(dest);
         }
     }
 
+    /** Evicts least recently accessed entries, chosen from the index, until newDataSize more bytes fit. */
     private void evictIfNeeded(long newDataSize) {
-        while (currentCacheSize + newDataSize > maxCapacityBytes) {
-            Optional<Path> oldestFile = getOldestCacheFile();
-            if (oldestFile.isPresent()) {
-                try {
-                    Path fileToEvict = oldestFile.get();
-                    long fileSize = Files.size(fileToEvict);
-                    Files.delete(fileToEvict);
-                    deleteMetaIfExists(fileToEvict);
-                    currentCacheSize -= fileSize;
-                    metadataMap.remove(fileToEvict);
-
-                    metadataMap.remove(fileToEvict);
-                    logger.info("Evicted cache file: {} (size: {} bytes)", fileToEvict, fileSize);
-                } catch (IOException e) {
-                    logger.warn("Failed to evict cache file: {}", oldestFile.get(), e);
-                }
-            } else {
-                logger.warn("No files to evict, but cache is over capacity!");
-                break;
+        long excess = index.totalBytes() + newDataSize - maxCapacityBytes;
+        if (excess <= 0) return;
+        List<Path> victims = index.leastRecentlyUsed(excess);
+        if (victims.isEmpty()) {
+            logger.warn("No files to evict, but cache is over capacity!");
+            return;
+        }
+        for (Path fileToEvict : victims) {
+            if (index.totalBytes() + newDataSize <= maxCapacityBytes) break;
+            long fileSize = index.remove(fileToEvict);
+            metadataMap.remove(fileToEvict);
+            // A RAM tier copy is left alone: the object did not change, only its disk copy is gone
+            try {
+                Files.deleteIfExists(fileToEvict);
+                deleteMetaIfExists(fileToEvict);
+                logger.info("Evicted cache file: {} (size: {} bytes)", fileToEvict, fileSize);
+            } catch (IOException e) {
+                // Unindexed leftovers are picked up again by the next verification
+                logger.warn("Failed to evict cache file: {}", fileToEvict, e);
             }
         }
     }
 
-    private Optional<Path> getOldestCacheFile() {
-        try {
-            return Files.walk(cacheDir)
-                    .filter(Files::isRegularFile)
-                    .filter(p -> !p.getFileName().toString().contains(".tmp-"))
-                    .filter(p -> p.getFileName().toString().endsWith(".bin"))
-                    .sorted(Comparator.comparingLong(this::getFileLastModified))
-                    .findFirst();
-        } catch (IOException e) {
-            logger.warn("Failed to list cache files for eviction", e);
-            return Optional.empty();
-        }
+    /** Whole objects (.bin) and blocks of block-cached objects (.blk) count towards the cache size. */
+    private boolean isCacheDataFile(Path p) {
+        String name = p.getFileName().toString();
+        return name.endsWith(".bin") || name.endsWith(".blk");
     }
 
     private long getFileLastModified(Path file) {
@@ -329,17 +1441,13 @@ public class CachedAwsSdkS3AccessLayer implements S3AccessLayer {
         }
     }
 
-    private long calculateCurrentCacheSize() {
-        try {
-            return Files.walk(cacheDir)
-                    .filter(Files::isRegularFile)
+    /** One-time indexing of a cache directory that has no journal yet; checksums are filled in by verification. */
+    private void indexExistingFiles() throws IOException {
+        try (var files = Files.walk(cacheDir)) {
+            files.filter(Files::isRegularFile)
                     .filter(p -> !p.getFileName().toString().contains(".tmp-"))
-                    .filter(p -> p.getFileName().toString().endsWith(".bin"))
-                    .mapToLong(this::getFileSize)
-                    .sum();
-        } catch (IOException e) {
-            logger.warn("Failed to calculate current cache size", e);
-            return 0;
+                    .filter(this::isCacheDataFile)
+                    .forEach(p -> index.put(p, getFileSize(p), CacheIndexJournal.NO_CRC, getFileLastModified(p)));
         }
     }
 
@@ -387,22 +1495,57 @@ public class CachedAwsSdkS3AccessLayer implements S3AccessLayer {
 
     @Override
     public void delete(S3Models.ObjectRef ref) {
-        delegate.delete(ref);
+        try {
+            delegate.delete(ref);
+        } finally {
+            headCache.invalidate(ref);
+        }
+        dropCached(ref);
+    }
+
+    /** Removes every local copy of ref: the whole file (index entry, sidecar, RAM tier) and its blocks. */
+    private void dropCached(S3Models.ObjectRef ref) {
         Path cacheFile = cachePath(ref);
         try {
+            ramTier.invalidate(cacheFile);
             if (Files.exists(cacheFile)) {
-                long fileSize = Files.size(cacheFile);
                 Files.deleteIfExists(cacheFile);
                 deleteMetaIfExists(cacheFile);
-                currentCacheSize -= fileSize;
+                index.remove(cacheFile);
                 metadataMap.remove(cacheFile);
             }
+            deleteBlocks(ref);
             logger.info("Deleted cache file {} for s3://{}/{}", cacheFile, ref.bucket(), ref.key());
         } catch (IOException e) {
             logger.warn("Failed to delete cache file: {}", cacheFile, e);
         }
     }
 
+    /**
+     * ref was just overwritten: drop its cached HEAD and any blocks (and their size sidecar) of the previous
+     * object, so ranged reads refetch instead of slicing stale blocks.
+     */
+    private void invalidateWritten(S3Models.ObjectRef ref) {
+        headCache.invalidate(ref);
+        try {
+            deleteBlocks(ref);
+        } catch (IOException e) {
+            logger.warn("Failed to drop cached blocks of s3://{}/{}", ref.bucket(), ref.key(), e);
+        }
+    }
+
+    private void deleteBlocks(S3Models.ObjectRef ref) throws IOException {
+        Path dir = blockDir(ref);
+        if (!Files.isDirectory(dir)) return;
+        try (var files = Files.list(dir)) {
+            for (Path p : files.toList()) {
+                Files.deleteIfExists(p);
+                index.remove(p);
+            }
+        }
+        Files.deleteIfExists(dir);
+    }
+
     public Optional<CacheEntryMeta> readLocalMeta(S3Models.ObjectRef ref) {
         Path p = cachePath(ref);
         if (!Files.exists(p)) return Optional.empty();
@@ -427,73 +1570,285 @@ public class CachedAwsSdkS3AccessLayer implements S3AccessLayer {
         Objects.requireNonNull(bytes, "bytes");
 
         // 1) Commit to S3 first: local cache should mirror shared source of truth.
-        String etag = delegate.putBytes(ref, bytes, contentType, userMetadata);
+        String etag;
+        try {
+            etag = delegate.putBytes(ref, bytes, contentType, userMetadata);
+        } finally {
+            invalidateWritten(ref);
+        }
 
         // 2) Best-effort: warm local cache (do NOT fail the PUT if cache update fails).
-        String lockKey = ref.bucket() + ":" + ref.key();
-        Object lock = locks.computeIfAbsent(lockKey, k -> new Object());
+        cachePut(ref, bytes);
+        return etag;
+    }
 
-        synchronized (lock) {
-            Path cacheFile = cachePath(ref);
+    /**
+     * Uploads on the non-blocking client when there is one, so chunk writers need no thread per upload in flight;
+     * the local cache is warmed once S3 has the object, as in putBytes.
+     */
+    @Override
+    public CompletableFuture<String> putBytesAsync(S3Models.ObjectRef ref, byte[] bytes, String contentType,
+                                                   Map<String, String> userMetadata, Executor executor) {
+        if (asyncDelegate == null) return S3AccessLayer.super.putBytesAsync(ref, bytes, contentType, userMetadata, executor);
+        Objects.requireNonNull(ref, "ref");
+        Objects.requireNonNull(bytes, "bytes");
+        return asyncDelegate.putBytes(ref, bytes, contentType, userMetadata)
+                .whenComplete((etag, err) -> invalidateWritten(ref))
+                .thenApply(etag -> {
+                    cachePut(ref, bytes);
+                    return etag;
+                });
+    }
+
+    /** Writes bytes just uploaded for ref into the cache; failures are logged, never thrown. */
+    private void cachePut(S3Models.ObjectRef ref, byte[] bytes) {
+        Path cacheFile = cachePath(ref);
+        Path tmp = null;
+        try {
+            ensureParentDir(cacheFile);
+            // temp file in same dir for atomic-ish move
+            tmp = cacheFile.getParent().resolve(cacheFile.getFileName().toString() + ".tmp-" + UUID.randomUUID());
+            Files.write(tmp, bytes, CREATE, TRUNCATE_EXISTING, WRITE);
+            CRC32C crc = new CRC32C();
+            crc.update(bytes);
+            commitPut(ref, cacheFile, tmp, bytes.length, crc.getValue(), "PUT");
+        } catch (Exception e) {
+            deleteQuietly(tmp);
+            logger.warn("S3 put succeeded but failed to update local cache for s3://{}/{}", ref.bucket(), ref.key(), e);
+        }
+    }
+
+    @Override
+    public String putStream(S3Models.ObjectRef ref, InputStream in, long contentLength, String contentType, Map<String, String> userMetadata) {
+        if (asyncDelegate != null) {
+            return putThroughCache(ref, in, contentLength,
+                    body -> joinUpload(asyncDelegate.putStream(ref, body, contentLength, contentType, userMetadata)));
+        }
+        return putThroughCache(ref, in, contentLength, body -> delegate.putStream(ref, body, contentLength, contentType, userMetadata));
+    }
+
+    /** Waits for an async upload, rethrowing its failure as the blocking layer would. */
+    private static String joinUpload(CompletableFuture<String> upload) {
+        try {
+            return upload.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw e;
+        }
+    }
+
+    /**
+     * Uploads via upload while teeing the bytes into a local temp file; once S3 has the object the copy
+     * becomes the cache entry (and is pushed to the owners), just like putBytes. The tee is best-effort:
+     * a local write failure stops the tee, never the upload.
+     */
+    private String putThroughCache(S3Models.ObjectRef ref, InputStream in, long contentLength,
+                                   java.util.function.Function<InputStream, String> upload) {
+        Path cacheFile = cachePath(ref);
+        CacheTeeInputStream tee = null;
+        try {
+            ensureParentDir(cacheFile);
+            Path tmp = cacheFile.getParent().resolve(cacheFile.getFileName().toString() + ".tmp-" + UUID.randomUUID());
+            tee = new CacheTeeInputStream(in, tmp);
+        } catch (IOException e) {
+            logger.debug("Not teeing upload of s3://{}/{} into the cache", ref.bucket(), ref.key(), e);
+        }
+        if (tee == null) {
             try {
-                ensureParentDir(cacheFile);
-
-                long oldSize = 0;
-                if (Files.exists(cacheFile)) {
-                    try {
-                        oldSize = Files.size(cacheFile);
-                    } catch (IOException ignore) {
-                        oldSize = 0;
-                    }
-                }
+                return upload.apply(in);
+            } finally {
+                invalidateWritten(ref);
+            }
+        }
 
-                // temp file in same dir for atomic-ish move
-                Path tmp = cacheFile.getParent().resolve(cacheFile.getFileName().toString() + ".tmp-" + UUID.randomUUID());
+        boolean committed = false;
+        try {
+            String etag;
+            try {
+                etag = upload.apply(tee);
+            } finally {
+                invalidateWritten(ref);
+            }
+            tee.finishWriting();
+            if (tee.intact() && (contentLength < 0 || tee.count() == contentLength)) {
                 try {
-                    Files.write(tmp, bytes, CREATE, TRUNCATE_EXISTING, WRITE);
-                } catch (Exception e) {
-                    Files.deleteIfExists(tmp);
-                    throw e;
+                    commitPut(ref, cacheFile, tee.tmp(), tee.count(), tee.crc32c(), "PUT");
+                    committed = true;
+                } catch (IOException e) {
+                    logger.warn("S3 put succeeded but failed to update local cache for s3://{}/{}", ref.bucket(), ref.key(), e);
                 }
+            }
+            return etag;
+        } finally {
+            tee.finishWriting();
+            if (!committed) deleteQuietly(tee.tmp());
+        }
+    }
 
-                long newSize = bytes.length;
-                long delta = newSize - oldSize;
-                if (delta > 0) {
-                    evictIfNeeded(delta);
-                }
+    /** Moves a fully written tmp into place as the cache entry for a PUT or push, then replicates if enabled. */
+    private void commitPut(S3Models.ObjectRef ref, Path cacheFile, Path tmp, long size, long crc32c, String source) throws IOException {
+        String lockKey = ref.bucket() + ":" + ref.key();
+        Object lock = locks.computeIfAbsent(lockKey, k -> new Object());
 
-                moveAtomically(tmp, cacheFile);
+        boolean push = "PUT".equals(source) && pushOnPut && peerSecretOrNull() != null;
+        Path pinned = null;
+        synchronized (lock) {
+            long oldSize = index.get(cacheFile).map(CacheIndexJournal.Entry::size).orElse(0L);
+            long delta = size - oldSize;
+            if (delta > 0) {
+                evictIfNeeded(delta);
+            }
 
-                currentCacheSize += delta; // delta can be negative if overwriting with smaller
-                metadataMap.put(cacheFile, new CacheMetadata());
-                writeMeta(cacheFile, new CacheEntryMeta(ref.bucket(), ref.key(), newSize, java.time.Instant.now(), "PUT"));
-                logger.info("Cached from PUT to {} ({} bytes) for s3://{}/{}", cacheFile, newSize, ref.bucket(), ref.key());
-            } catch (Exception e) {
-                logger.warn("S3 put succeeded but failed to update local cache for s3://{}/{}", ref.bucket(), ref.key(), e);
+            moveAtomically(tmp, cacheFile);
+
+            index.put(cacheFile, size, crc32c, System.currentTimeMillis()); // replaces the old entry's size
+            metadataMap.put(cacheFile, new CacheMetadata());
+            writeMeta(cacheFile, new CacheEntryMeta(ref.bucket(), ref.key(), size, java.time.Instant.now(), source));
+            logger.info("Cached from {} to {} ({} bytes) for s3://{}/{}", source, cacheFile, size, ref.bucket(), ref.key());
+            if (push) pinned = pinForPush(cacheFile);
+        }
+        if (pinned != null) {
+            pushToOwners(ref, pinned, size, crc32c);
+        }
+    }
+
+    /**
+     * A second name for the committed file, taken under the key lock, so the pushes read exactly these bytes
+     * even if the entry is overwritten or evicted before they finish. A hard link where the file system has
+     * them, a copy otherwise; the .tmp- name is swept at startup if the process dies first.
+     */
+    private Path pinForPush(Path cacheFile) {
+        Path pinned = cacheFile.getParent().resolve(cacheFile.getFileName().toString() + ".tmp-push-" + UUID.randomUUID());
+        try {
+            try {
+                Files.createLink(pinned, cacheFile);
+            } catch (UnsupportedOperationException | IOException e) {
+                Files.copy(cacheFile, pinned);
             }
+            return pinned;
+        } catch (IOException e) {
+            deleteQuietly(pinned);
+            logger.warn("Not pushing {}: could not pin it", cacheFile, e);
+            return null;
         }
+    }
 
-        return etag;
+    /**
+     * Replication mode: send a freshly committed object to its owner peers with a signed PUT, so the next
+     * read anywhere in the cluster is served from a local copy instead of pulled on demand. Only owners that
+     * could not be reached count against the peer; a rejected copy (4xx) leaves its circuit alone.
+     *
+     * @param pinned private copy of the committed file, deleted once every push has finished
+     */
+    private void pushToOwners(S3Models.ObjectRef ref, Path pinned, long size, long crc32c) {
+        String secret = peerSecretOrNull();
+        String query = "bucket=" + ref.bucket() + "&key=" + ref.key();
+        List<CompletableFuture<?>> pushes = new ArrayList<>();
+        for (String owner : ring().ownerPeers(CacheKeyUtil.cacheId(ref.bucket(), ref.key()), ownerReplicas)) {
+            if (membership != null && !membership.isAvailable(owner)) continue;
+            PeerSignedHeaders hdrs = PeerSignedHeaders.sign("PUT", "/internal/cache/object", query, peerKeyId, secret);
+            long started = System.nanoTime();
+            pushes.add(peerCacheClient.push(owner, ref.bucket(), ref.key(), hdrs, pinned, size, crc32c,
+                            Duration.ofMillis(getTimeoutMs))
+                    .thenAccept(outcome -> {
+                        switch (outcome) {
+                            case STORED -> {
+                                peerSucceeded(owner, started);
+                                logger.debug("Pushed s3://{}/{} to {}", ref.bucket(), ref.key(), owner);
+                            }
+                            case REJECTED -> logger.debug("{} rejected pushed copy of s3://{}/{}", owner, ref.bucket(), ref.key());
+                            case FAILED -> peerFailed(owner);
+                        }
+                    }));
+        }
+        CompletableFuture.allOf(pushes.toArray(CompletableFuture[]::new))
+                .whenComplete((v, e) -> deleteQuietly(pinned));
     }
 
-    @Override
-    public String putStream(S3Models.ObjectRef ref, InputStream in, long contentLength, String contentType, Map<String, String> userMetadata) {
-        return delegate.putStream(ref, in, contentLength, contentType, userMetadata);
+    /** Largest object this cache can hold: its whole capacity. */
+    public long maxObjectBytes() {
+        return maxCapacityBytes;
+    }
+
+    /**
+     * Receives a copy pushed by the peer that wrote ref. The body is checked against length and, when given,
+     * CRC32C before it replaces anything (cached HEAD and blocks included); a copy that is already here with the
+     * same checksum is kept.
+     *
+     * @return false if the body did not match or is larger than the cache
+     */
+    public boolean acceptPush(S3Models.ObjectRef ref, InputStream body, long length, OptionalLong crc32c) throws IOException {
+        if (length > maxCapacityBytes) {
+            logger.warn("Rejected pushed copy of s3://{}/{}: {} bytes exceed the cache size", ref.bucket(), ref.key(), length);
+            return false;
+        }
+        Path cacheFile = cachePath(ref);
+        if (crc32c.isPresent() && Files.exists(cacheFile)
+                && index.get(cacheFile).map(e -> e.crc32c() == crc32c.getAsLong()).orElse(false)) {
+            return true;
+        }
+
+        ensureParentDir(cacheFile);
+        Path tmp = cacheFile.getParent().resolve(cacheFile.getFileName().toString() + ".tmp-" + UUID.randomUUID());
+        try {
+            CRC32C crc = new CRC32C();
+            long n = 0;
+            try (var out = Files.newOutputStream(tmp, CREATE_NEW, WRITE)) {
+                byte[] buf = new byte[64 * 1024];
+                int r;
+                while ((r = body.read(buf)) >= 0) {
+                    n += r;
+                    if (n > length) break; // longer than announced; no need to store the rest
+                    out.write(buf, 0, r);
+                    crc.update(buf, 0, r);
+                }
+            }
+            if (n != length || (crc32c.isPresent() && crc32c.getAsLong() != crc.getValue())) {
+                logger.warn("Rejected pushed copy of s3://{}/{}: {} bytes (expected {})", ref.bucket(), ref.key(), n, length);
+                return false;
+            }
+            // A push means the object was just written elsewhere
+            invalidateWritten(ref);
+            commitPut(ref, cacheFile, tmp, n, crc.getValue(), "PUSH");
+            return true;
+        } finally {
+            deleteQuietly(tmp);
+        }
+    }
+
+    private static void deleteQuietly(Path p) {
+        if (p == null) return;
+        try {
+            Files.deleteIfExists(p);
+        } catch (IOException ignore) {
+            // best-effort
+        }
     }
 
     @Override
     public Optional<S3Models.ObjectMetadata> head(S3Models.ObjectRef ref) {
-        return delegate.head(ref);
+        return headCache.get(ref, () -> delegate.head(ref));
     }
 
     @Override
     public boolean exists(S3Models.ObjectRef ref) {
-        return delegate.exists(ref);
+        return head(ref).isPresent();
+    }
+
+    @Override
+    public void invalidateMetadata(S3Models.ObjectRef ref) {
+        headCache.invalidate(ref);
     }
 
     @Override
     public String copy(S3Models.ObjectRef from, S3Models.ObjectRef to) {
-        return delegate.copy(from, to);
+        try {
+            return delegate.copy(from, to);
+        } finally {
+            // Nothing replaces the old local copy of to, unlike a put; drop it (move goes through here too)
+            headCache.invalidate(to);
+            dropCached(to);
+        }
     }
 
     @Override
@@ -501,6 +1856,16 @@ public class CachedAwsSdkS3AccessLayer implements S3AccessLayer {
         return delegate.list(bucket, prefix, maxKeys);
     }
 
+    @Override
+    public Stream<S3Models.ListItem> listAll(String bucket, String prefix) {
+        return delegate.listAll(bucket, prefix);
+    }
+
+    @Override
+    public S3Models.Listing listFolder(String bucket, String prefix, String delimiter) {
+        return delegate.listFolder(bucket, prefix, delimiter);
+    }
+
     @Override
     public URL presignGet(S3Models.ObjectRef ref, Duration ttl) {
         return delegate.presignGet(ref, ttl);
@@ -513,6 +1878,11 @@ public class CachedAwsSdkS3AccessLayer implements S3AccessLayer {
 
     @Override
     public String multipartUpload(S3Models.ObjectRef ref, InputStream in, long contentLength, String contentType, Map<String, String> userMetadata) {
-        return delegate.multipartUpload(ref, in, contentLength, contentType, userMetadata);
+        if (asyncDelegate != null) {
+            // The async client splits it into concurrent parts without a thread per part
+            return putThroughCache(ref, in, contentLength,
+                    body -> joinUpload(asyncDelegate.putStream(ref, body, contentLength, contentType, userMetadata)));
+        }
+        return putThroughCache(ref, in, contentLength, body -> delegate.multipartUpload(ref, body, contentLength, contentType, userMetadata));
     }
 }
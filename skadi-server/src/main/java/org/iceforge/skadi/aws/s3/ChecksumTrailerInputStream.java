@@ -0,0 +1,60 @@
+package org.iceforge.skadi.aws.s3;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32C;
+
+/**
+ * Passes a body through and appends a {@value #SIZE}-byte trailer at its end: the length and the CRC32C of
+ * what came before, as two big-endian longs.
+ * <p>
+ * Used for peer responses that start before the object is complete (an in-progress fill), where neither
+ * Content-Length nor {@value PeerCacheClient#CRC32C_HEADER} is known up front. Such responses carry
+ * {@value PeerCacheClient#TRAILER_HEADER}; the client strips and checks the trailer. A body that ends in an
+ * error never gets a trailer.
+ */
+final class ChecksumTrailerInputStream extends InputStream {
+
+    static final int SIZE = 16;
+
+    private final InputStream in;
+    private final CRC32C crc = new CRC32C();
+    private long length;
+    private ByteBuffer trailer;
+
+    ChecksumTrailerInputStream(InputStream in) {
+        this.in = in;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] one = new byte[1];
+        int r = read(one, 0, 1);
+        return r < 0 ? -1 : (one[0] & 0xff);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        if (trailer == null) {
+            int r = in.read(b, off, len);
+            if (r > 0) {
+                crc.update(b, off, r);
+                length += r;
+                return r;
+            }
+            if (r == 0) return 0;
+            trailer = ByteBuffer.allocate(SIZE).putLong(length).putLong(crc.getValue()).flip();
+        }
+        if (!trailer.hasRemaining()) return -1;
+        int n = Math.min(len, trailer.remaining());
+        trailer.get(b, off, n);
+        return n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
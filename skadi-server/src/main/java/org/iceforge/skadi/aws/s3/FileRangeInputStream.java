@@ -0,0 +1,70 @@
+package org.iceforge.skadi.aws.s3;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * InputStream over bytes [start, end) of a local file using positional reads.
+ * <p>
+ * The channel is opened eagerly, so the bytes stay readable even if the file is
+ * evicted / renamed afterwards (POSIX unlink semantics).
+ */
+public final class FileRangeInputStream extends InputStream {
+
+    private final FileChannel ch;
+    private long pos;
+    private final long end;
+
+    public FileRangeInputStream(Path file, long start, long length) throws IOException {
+        if (start < 0 || length < 0) throw new IllegalArgumentException("Invalid range start=" + start + " length=" + length);
+        this.ch = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long size = ch.size();
+            this.pos = Math.min(start, size);
+            this.end = Math.min(size, start + length < 0 ? Long.MAX_VALUE : start + length);
+        } catch (IOException e) {
+            ch.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] one = new byte[1];
+        int r = read(one, 0, 1);
+        return r < 0 ? -1 : (one[0] & 0xff);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        long remaining = end - pos;
+        if (remaining <= 0) return -1;
+        int n = (int) Math.min(len, remaining);
+        int r = ch.read(ByteBuffer.wrap(b, off, n), pos);
+        if (r < 0) return -1;
+        pos += r;
+        return r;
+    }
+
+    @Override
+    public long skip(long n) {
+        long s = Math.max(0, Math.min(n, end - pos));
+        pos += s;
+        return s;
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(0, end - pos));
+    }
+
+    @Override
+    public void close() throws IOException {
+        ch.close();
+    }
+}
@@ -0,0 +1,109 @@
+package org.iceforge.skadi.aws.s3;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Short-lived, size-bounded cache of HEAD results, found and not found alike.
+ * <p>
+ * Status polls ask S3 for the same manifest several times a second; within the TTL they are answered here.
+ * Writes and deletes through this node invalidate the key. A lookup that started before an invalidation of
+ * its key is not stored, so an in-flight HEAD can never put back what a concurrent PUT just invalidated, while
+ * writes to other keys do not keep it from being cached. Changes made by other writers become visible after at
+ * most the TTL.
+ */
+final class HeadCache {
+
+    private record Entry(Optional<S3Models.ObjectMetadata> value, long expiresAtNanos) {}
+
+    /** Lookups of one key in flight, and how often the key was invalidated since the first of them started. */
+    private static final class Lookups {
+        int running;
+        long invalidations;
+    }
+
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final LongSupplier clock;
+
+    // guarded by entries; only keys with a lookup in flight, so bounded by the callers
+    private final Map<S3Models.ObjectRef, Lookups> inFlight = new HashMap<>();
+
+    // guarded by itself; access order, eldest evicted past maxEntries
+    private final LinkedHashMap<S3Models.ObjectRef, Entry> entries;
+
+    HeadCache(long ttlMillis, long negativeTtlMillis, int maxEntries) {
+        this(ttlMillis, negativeTtlMillis, maxEntries, System::nanoTime);
+    }
+
+    HeadCache(long ttlMillis, long negativeTtlMillis, int maxEntries, LongSupplier clock) {
+        this.ttlNanos = Math.max(0, ttlMillis) * 1_000_000L;
+        this.negativeTtlNanos = Math.max(0, negativeTtlMillis) * 1_000_000L;
+        this.clock = clock;
+        int max = Math.max(1, maxEntries);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<S3Models.ObjectRef, Entry> eldest) {
+                return size() > max;
+            }
+        };
+    }
+
+    /** Cached result for ref, or lookup's result (stored unless ref was invalidated meanwhile). */
+    Optional<S3Models.ObjectMetadata> get(S3Models.ObjectRef ref, Supplier<Optional<S3Models.ObjectMetadata>> lookup) {
+        long now = clock.getAsLong();
+        Lookups lookups;
+        long seen;
+        synchronized (entries) {
+            Entry e = entries.get(ref);
+            if (e != null) {
+                if (now - e.expiresAtNanos() < 0) return e.value();
+                entries.remove(ref);
+            }
+            lookups = inFlight.computeIfAbsent(ref, k -> new Lookups());
+            lookups.running++;
+            seen = lookups.invalidations;
+        }
+
+        Optional<S3Models.ObjectMetadata> value = null;
+        try {
+            value = lookup.get();
+            return value;
+        } finally {
+            synchronized (entries) {
+                long ttl = value == null ? 0 : value.isPresent() ? ttlNanos : negativeTtlNanos;
+                if (ttl > 0 && lookups.invalidations == seen) {
+                    entries.put(ref, new Entry(value, clock.getAsLong() + ttl));
+                }
+                if (--lookups.running == 0) inFlight.remove(ref);
+            }
+        }
+    }
+
+    /** The cached result for ref if it is fresh, without looking anything up. */
+    Optional<S3Models.ObjectMetadata> peek(S3Models.ObjectRef ref) {
+        long now = clock.getAsLong();
+        synchronized (entries) {
+            Entry e = entries.get(ref);
+            return e != null && now - e.expiresAtNanos() < 0 ? e.value() : Optional.empty();
+        }
+    }
+
+    void invalidate(S3Models.ObjectRef ref) {
+        synchronized (entries) {
+            entries.remove(ref);
+            Lookups lookups = inFlight.get(ref);
+            if (lookups != null) lookups.invalidations++;
+        }
+    }
+
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+}
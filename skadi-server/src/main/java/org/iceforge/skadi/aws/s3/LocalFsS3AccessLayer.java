@@ -9,23 +9,52 @@ import org.springframework.stereotype.Service;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
 
 /**
- * Local filesystem implementation of {@link S3AccessLayer}.
- *
- * <p>This is intended for dev / integration-test mode so Skadi can run without any
- * S3 dependency. Paths are mapped as:
+ * Local filesystem implementation of {@link S3AccessLayer}, for running Skadi without S3 (single-node edge
+ * deployments as well as dev / integration tests).
+ * <p>
+ * Objects are spread over hash-sharded directories so no directory grows past a few thousand entries:
  * <pre>
- *   {localBaseDir}/{bucket}/{key}
+ *   {localBaseDir}/{bucket}/objects/{h0h1}/{h2h3}/{h}.obj    object bytes
+ *   {localBaseDir}/{bucket}/objects/{h0h1}/{h2h3}/{h}.meta   binary sidecar ({@link LocalObjectSidecar})
  * </pre>
+ * where {@code h} is {@link CacheKeyUtil#cacheId}. Keys never become paths, so no key can escape the base dir.
+ * <p>
+ * head, exists and list are answered from an in-memory index (a sorted map per bucket, so a prefix listing is
+ * a range scan) that is rebuilt from the sidecars at startup. Writes go through a {@link FileChannel} into a
+ * temp file and are renamed into place before the sidecar is, one writer per key at a time; objects without a
+ * sidecar, objects whose size disagrees with their sidecar (a crash between the two renames) and stray temp
+ * files are dropped at startup, so a crash never exposes a torn object.
+ * How much survives a crash is {@code skadi.query-cache.localFsync}:
+ * <ul>
+ *   <li>{@code none}: no fsync; the most recent writes may vanish (whole)</li>
+ *   <li>{@code data} (default): object and sidecar are fsynced before they are renamed into place</li>
+ *   <li>{@code always}: additionally fsyncs the directory after the renames, so an acknowledged put is durable</li>
+ * </ul>
+ * A base dir written by the old {@code {bucket}/{key}} layout is migrated in place on first start.
  */
 @Service
 @Primary
@@ -33,85 +62,165 @@ import java.util.Optional;
 public class LocalFsS3AccessLayer implements S3AccessLayer {
     private static final Logger log = LoggerFactory.getLogger(LocalFsS3AccessLayer.class);
 
-    private final QueryCachePropertiesView props;
+    enum Fsync { NONE, DATA, ALWAYS }
+
+    static final String LAYOUT_MARKER = ".skadi-layout";
+    private static final String LAYOUT = "sharded-v1";
+    private static final String OBJECTS_DIR = "objects";
+    private static final int COPY_BUFFER = 256 * 1024;
+    private static final int COMMIT_STRIPES = 64;
+
+    private final Path base;
+    private final Fsync fsync;
+
+    // bucket -> key -> sidecar; sorted so list(prefix) is a range scan
+    private final ConcurrentHashMap<String, ConcurrentSkipListMap<String, LocalObjectSidecar.Entry>> index =
+            new ConcurrentHashMap<>();
+
+    // Serializes the object + sidecar renames (and deletes) per key, so two writers never pair one's object
+    // with the other's sidecar
+    private final Object[] commitLocks = new Object[COMMIT_STRIPES];
+
+    {
+        for (int i = 0; i < commitLocks.length; i++) commitLocks[i] = new Object();
+    }
 
     public LocalFsS3AccessLayer(org.iceforge.skadi.query.QueryCacheProperties cacheProps) {
-        this.props = new QueryCachePropertiesView(cacheProps.getLocalBaseDir());
+        this(Path.of(cacheProps.getLocalBaseDir()), cacheProps.getLocalFsync());
+    }
+
+    LocalFsS3AccessLayer(Path baseDir, String fsync) {
+        this.base = baseDir.toAbsolutePath().normalize();
+        this.fsync = Fsync.valueOf((fsync == null || fsync.isBlank() ? "data" : fsync).trim().toUpperCase(Locale.ROOT));
         try {
-            Files.createDirectories(Path.of(this.props.localBaseDir));
+            Files.createDirectories(base);
+            if (!Files.exists(base.resolve(LAYOUT_MARKER))) {
+                migrateFlatLayout();
+                Files.writeString(base.resolve(LAYOUT_MARKER), LAYOUT + "\n", StandardCharsets.UTF_8);
+            }
+            long objects = loadIndex();
+            log.info("Using LOCAL object store: baseDir={} objects={} fsync={}", base, objects, this.fsync);
         } catch (IOException e) {
-            throw new IllegalStateException("Failed to create localBaseDir=" + this.props.localBaseDir, e);
+            throw new IllegalStateException("Failed to open local object store at " + base, e);
         }
-        log.info("Using LOCAL object store: baseDir={}", this.props.localBaseDir);
     }
 
-    private Path pathFor(S3Models.ObjectRef ref) {
-        // Prevent path traversal by normalizing and verifying base prefix.
-        Path base = Path.of(props.localBaseDir).toAbsolutePath().normalize();
-        Path p = base.resolve(ref.bucket()).resolve(ref.key()).normalize();
-        if (!p.startsWith(base)) {
-            throw new IllegalArgumentException("Illegal key (path traversal): bucket=" + ref.bucket() + " key=" + ref.key());
+    // ---------------------------------------------------------------- layout
+
+    private Path bucketDir(String bucket) {
+        if (bucket == null || bucket.isBlank() || bucket.contains("/") || bucket.contains("\\")
+                || bucket.equals(".") || bucket.equals("..")) {
+            throw new IllegalArgumentException("Illegal bucket name: " + bucket);
         }
-        return p;
+        return base.resolve(bucket);
+    }
+
+    private Path objectPath(S3Models.ObjectRef ref) {
+        String h = CacheKeyUtil.cacheId(ref.bucket(), ref.key());
+        return bucketDir(ref.bucket()).resolve(OBJECTS_DIR).resolve(h.substring(0, 2)).resolve(h.substring(2, 4))
+                .resolve(h + ".obj");
+    }
+
+    private static Path sidecarPath(Path object) {
+        String name = object.getFileName().toString();
+        return object.resolveSibling(name.substring(0, name.length() - ".obj".length()) + ".meta");
     }
 
-    private Path metaPathFor(S3Models.ObjectRef ref) {
-        Path p = pathFor(ref);
-        return p.resolveSibling(p.getFileName().toString() + ".meta");
+    private ConcurrentSkipListMap<String, LocalObjectSidecar.Entry> bucketIndex(String bucket) {
+        return index.computeIfAbsent(bucket, b -> new ConcurrentSkipListMap<>());
     }
 
-    private void writeMeta(S3Models.ObjectRef ref, String contentType, Map<String, String> userMetadata) {
+    private Object commitLock(S3Models.ObjectRef ref) {
+        return commitLocks[Math.floorMod(ref.hashCode(), commitLocks.length)];
+    }
+
+    private LocalObjectSidecar.Entry entry(S3Models.ObjectRef ref) {
+        ConcurrentSkipListMap<String, LocalObjectSidecar.Entry> b = index.get(ref.bucket());
+        return b == null ? null : b.get(ref.key());
+    }
+
+    // ---------------------------------------------------------------- writes
+
+    /** Writes an object body to ch, feeding every byte to crc; returns the number of bytes written. */
+    private interface Body {
+        long writeTo(FileChannel ch, CRC32C crc) throws IOException;
+    }
+
+    private LocalObjectSidecar.Entry store(S3Models.ObjectRef ref, Body body, String contentType,
+                                           Map<String, String> userMetadata) throws IOException {
+        Path dst = objectPath(ref);
+        Files.createDirectories(dst.getParent());
+        Path tmp = dst.resolveSibling(dst.getFileName() + ".tmp-" + UUID.randomUUID());
         try {
-            java.util.Properties props = new java.util.Properties();
-            if (contentType != null) props.setProperty("contentType", contentType);
-            if (userMetadata != null) {
-                for (var ent : userMetadata.entrySet()) {
-                    if (ent.getKey() != null && ent.getValue() != null) {
-                        props.setProperty("meta." + ent.getKey(), ent.getValue());
-                    }
-                }
+            long length;
+            CRC32C crc = new CRC32C();
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                length = body.writeTo(ch, crc);
+                if (fsync != Fsync.NONE) ch.force(false);
             }
-            Path meta = metaPathFor(ref);
-            Files.createDirectories(meta.getParent());
-            try (java.io.OutputStream out = Files.newOutputStream(meta)) {
-                props.store(out, "skadi local object metadata");
-            }
-        } catch (Exception ex) {
-            // Metadata is best-effort for UI; do not fail the upload.
-            log.debug("Failed to write local metadata for {}", ref, ex);
+            return commit(ref, dst, tmp, length, "local-" + Long.toHexString(crc.getValue()), contentType, userMetadata);
+        } finally {
+            Files.deleteIfExists(tmp);
         }
     }
 
-    private java.util.Map<String, String> readMeta(S3Models.ObjectRef ref) {
-        Path meta = metaPathFor(ref);
-        if (!Files.exists(meta)) return Map.of();
+    /** Renames tmp onto dst, then writes the sidecar and publishes the entry; one commit per key at a time. */
+    private LocalObjectSidecar.Entry commit(S3Models.ObjectRef ref, Path dst, Path tmp, long length, String eTag,
+                                            String contentType, Map<String, String> userMetadata) throws IOException {
+        synchronized (commitLock(ref)) {
+            return commitLocked(ref, dst, tmp, length, eTag, contentType, userMetadata);
+        }
+    }
+
+    private LocalObjectSidecar.Entry commitLocked(S3Models.ObjectRef ref, Path dst, Path tmp, long length, String eTag,
+                                                  String contentType, Map<String, String> userMetadata)
+            throws IOException {
+        Files.move(tmp, dst, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        Map<String, String> meta = new LinkedHashMap<>();
+        if (userMetadata != null) {
+            userMetadata.forEach((k, v) -> {
+                if (k != null && v != null) meta.put(k, v);
+            });
+        }
+        LocalObjectSidecar.Entry e = new LocalObjectSidecar.Entry(ref.key(), length, System.currentTimeMillis(),
+                eTag, contentType, meta.isEmpty() ? Map.of() : Map.copyOf(meta));
+        Path sidecar = sidecarPath(dst);
+        Path sidecarTmp = sidecar.resolveSibling(sidecar.getFileName() + ".tmp-" + UUID.randomUUID());
         try {
-            java.util.Properties props = new java.util.Properties();
-            try (java.io.InputStream in = Files.newInputStream(meta)) {
-                props.load(in);
-            }
-            java.util.Map<String, String> out = new java.util.LinkedHashMap<>();
-            for (String name : props.stringPropertyNames()) {
-                if (name != null && name.startsWith("meta.")) {
-                    out.put(name.substring("meta.".length()), props.getProperty(name));
-                }
+            try (FileChannel ch = FileChannel.open(sidecarTmp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                ByteBuffer buf = ByteBuffer.wrap(LocalObjectSidecar.encode(e));
+                while (buf.hasRemaining()) ch.write(buf);
+                if (fsync != Fsync.NONE) ch.force(false);
             }
-            return out;
-        } catch (Exception ex) {
-            return Map.of();
+            Files.move(sidecarTmp, sidecar, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(sidecarTmp);
+        }
+        if (fsync == Fsync.ALWAYS) fsyncDirectory(dst.getParent());
+
+        bucketIndex(ref.bucket()).put(ref.key(), e);
+        return e;
+    }
+
+    private static void fsyncDirectory(Path dir) {
+        try (FileChannel ch = FileChannel.open(dir, StandardOpenOption.READ)) {
+            ch.force(true);
+        } catch (IOException e) {
+            // Not supported everywhere (e.g. Windows); the renames are still atomic
+            log.debug("Directory fsync not supported for {}: {}", dir, e.toString());
         }
     }
 
     @Override
     public String putBytes(S3Models.ObjectRef ref, byte[] bytes, String contentType, Map<String, String> userMetadata) {
         try {
-            Path dst = pathFor(ref);
-            Files.createDirectories(dst.getParent());
-            Path tmp = Files.createTempFile(dst.getParent(), "skadi-", ".tmp");
-            Files.write(tmp, bytes);
-            Files.move(tmp, dst, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
-            writeMeta(ref, contentType, userMetadata);
-            return "local-etag-" + bytes.length;
+            return store(ref, (ch, crc) -> {
+                crc.update(bytes);
+                ByteBuffer buf = ByteBuffer.wrap(bytes);
+                while (buf.hasRemaining()) ch.write(buf);
+                return bytes.length;
+            }, contentType, userMetadata).eTag();
         } catch (IOException e) {
             throw new RuntimeException("Local putBytes failed for " + ref, e);
         }
@@ -119,25 +228,81 @@ public class LocalFsS3AccessLayer implements S3AccessLayer {
 
     @Override
     public String putStream(S3Models.ObjectRef ref, InputStream in, long contentLength, String contentType, Map<String, String> userMetadata) {
+        try (InputStream src = in) {
+            return store(ref, (ch, crc) -> {
+                byte[] buf = new byte[COPY_BUFFER];
+                long total = 0;
+                int n;
+                while ((n = src.read(buf)) >= 0) {
+                    if (n == 0) continue;
+                    crc.update(buf, 0, n);
+                    ByteBuffer bb = ByteBuffer.wrap(buf, 0, n);
+                    while (bb.hasRemaining()) ch.write(bb);
+                    total += n;
+                }
+                return total;
+            }, contentType, userMetadata).eTag();
+        } catch (IOException e) {
+            throw new RuntimeException("Local putStream failed for " + ref, e);
+        }
+    }
+
+    @Override
+    public String multipartUpload(S3Models.ObjectRef ref, InputStream in, long contentLength, String contentType, Map<String, String> userMetadata) {
+        // Not needed for local; treat as a normal stream upload.
+        return putStream(ref, in, contentLength, contentType, userMetadata);
+    }
+
+    @Override
+    public String copy(S3Models.ObjectRef from, S3Models.ObjectRef to) {
+        LocalObjectSidecar.Entry src = entry(from);
+        if (src == null) throw new RuntimeException("Local copy failed: no such object " + from);
         try {
-            Path dst = pathFor(ref);
+            Path dst = objectPath(to);
             Files.createDirectories(dst.getParent());
-            Path tmp = Files.createTempFile(dst.getParent(), "skadi-", ".tmp");
-            try (InputStream src = in) {
-                Files.copy(src, tmp, StandardCopyOption.REPLACE_EXISTING);
+            Path tmp = dst.resolveSibling(dst.getFileName() + ".tmp-" + UUID.randomUUID());
+            try {
+                try (FileChannel in = FileChannel.open(objectPath(from), StandardOpenOption.READ);
+                     FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                    long size = in.size();
+                    long pos = 0;
+                    while (pos < size) {
+                        // In-kernel copy where the platform has one
+                        pos += in.transferTo(pos, size - pos, out);
+                    }
+                    if (fsync != Fsync.NONE) out.force(false);
+                }
+                return commit(to, dst, tmp, src.size(), src.eTag(), src.contentType(), src.userMetadata()).eTag();
+            } finally {
+                Files.deleteIfExists(tmp);
             }
-            Files.move(tmp, dst, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
-            writeMeta(ref, contentType, userMetadata);
-            return "local-etag-" + contentLength;
         } catch (IOException e) {
-            throw new RuntimeException("Local putStream failed for " + ref, e);
+            throw new RuntimeException("Local copy failed from=" + from + " to=" + to, e);
         }
     }
 
+    @Override
+    public void delete(S3Models.ObjectRef ref) {
+        Path obj = objectPath(ref);
+        synchronized (commitLock(ref)) {
+            ConcurrentSkipListMap<String, LocalObjectSidecar.Entry> b = index.get(ref.bucket());
+            if (b != null) b.remove(ref.key());
+            try {
+                // Sidecar first: an object without one is invisible and swept at startup
+                Files.deleteIfExists(sidecarPath(obj));
+                Files.deleteIfExists(obj);
+            } catch (IOException e) {
+                throw new RuntimeException("Local delete failed for " + ref, e);
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------- reads
+
     @Override
     public byte[] getBytes(S3Models.ObjectRef ref) {
         try {
-            return Files.readAllBytes(pathFor(ref));
+            return Files.readAllBytes(objectPath(ref));
         } catch (IOException e) {
             throw new RuntimeException("Local getBytes failed for " + ref, e);
         }
@@ -146,98 +311,60 @@ public class LocalFsS3AccessLayer implements S3AccessLayer {
     @Override
     public InputStream getStream(S3Models.ObjectRef ref) {
         try {
-            return Files.newInputStream(pathFor(ref));
+            return Files.newInputStream(objectPath(ref));
         } catch (IOException e) {
             throw new RuntimeException("Local getStream failed for " + ref, e);
         }
     }
 
     @Override
-    public Optional<S3Models.ObjectMetadata> head(S3Models.ObjectRef ref) {
+    public InputStream getRange(S3Models.ObjectRef ref, long offset, long length) {
         try {
-            Path p = pathFor(ref);
-            if (!Files.exists(p)) return Optional.empty();
-            long len = Files.size(p);
-            Instant lm = Files.getLastModifiedTime(p).toInstant();
-            // Provide eTag and contentType to match the 7-arg constructor
-            String eTag = "local-etag-" + len;
-            String contentType = null;
-            Map<String, String> userMeta = readMeta(ref);
-
-            // Also read the stored contentType (if present) from the sidecar.
-            Path meta = metaPathFor(ref);
-            if (Files.exists(meta)) {
-                try {
-                    java.util.Properties props = new java.util.Properties();
-                    try (java.io.InputStream in = Files.newInputStream(meta)) {
-                        props.load(in);
-                    }
-                    contentType = props.getProperty("contentType");
-                } catch (Exception ignore) { }
-            }
-
-            return Optional.of(new S3Models.ObjectMetadata(ref.bucket(), ref.key(), len, eTag, contentType, lm, userMeta));
+            return new FileRangeInputStream(objectPath(ref), offset, length);
         } catch (IOException e) {
-            throw new RuntimeException("Local head failed for " + ref, e);
+            throw new RuntimeException("Local getRange failed for " + ref, e);
         }
     }
 
     @Override
-    public boolean exists(S3Models.ObjectRef ref) {
-        return Files.exists(pathFor(ref));
+    public Optional<Path> getLocalFile(S3Models.ObjectRef ref) {
+        return entry(ref) == null ? Optional.empty() : Optional.of(objectPath(ref));
     }
 
     @Override
-    public void delete(S3Models.ObjectRef ref) {
-        try {
-            Files.deleteIfExists(pathFor(ref));
-        } catch (IOException e) {
-            throw new RuntimeException("Local delete failed for " + ref, e);
-        }
+    public Optional<S3Models.ObjectMetadata> head(S3Models.ObjectRef ref) {
+        LocalObjectSidecar.Entry e = entry(ref);
+        if (e == null) return Optional.empty();
+        return Optional.of(new S3Models.ObjectMetadata(ref.bucket(), ref.key(), e.size(), e.eTag(), e.contentType(),
+                Instant.ofEpochMilli(e.lastModifiedMillis()), e.userMetadata()));
     }
 
     @Override
-    public String copy(S3Models.ObjectRef from, S3Models.ObjectRef to) {
-        try {
-            Path src = pathFor(from);
-            Path dst = pathFor(to);
-            Files.createDirectories(dst.getParent());
-            Files.copy(src, dst, StandardCopyOption.REPLACE_EXISTING);
-            return "local-etag-copy";
-        } catch (IOException e) {
-            throw new RuntimeException("Local copy failed from=" + from + " to=" + to, e);
-        }
+    public boolean exists(S3Models.ObjectRef ref) {
+        return entry(ref) != null;
     }
 
     @Override
     public List<S3Models.ListItem> list(String bucket, String prefix, int maxKeys) {
-        Path base = Path.of(props.localBaseDir).toAbsolutePath().normalize();
-        Path root = base.resolve(bucket).resolve(prefix).normalize();
-        if (!root.startsWith(base)) {
-            throw new IllegalArgumentException("Illegal list prefix: " + prefix);
-        }
-        if (!Files.exists(root)) return List.of();
-        try (var stream = Files.walk(root)) {
-            return stream
-                    .filter(Files::isRegularFile)
-                    .limit(Math.max(0, maxKeys))
-                    .map(p -> {
-                        String key = base.resolve(bucket).relativize(p).toString().replace('\\', '/');
-                        try {
-                            long sz = Files.size(p);
-                            Instant lm = Files.getLastModifiedTime(p).toInstant();
-                            // ListItem signature expects (key, size, bucket, lastModified)
-                            return new S3Models.ListItem(key, sz, bucket, lm);
-                        } catch (IOException e) {
-                            return new S3Models.ListItem(key, -1, bucket, Instant.EPOCH);
-                        }
-                    })
-                    .toList();
-        } catch (IOException e) {
-            throw new RuntimeException("Local list failed bucket=" + bucket + " prefix=" + prefix, e);
+        try (Stream<S3Models.ListItem> all = listAll(bucket, prefix)) {
+            return all.limit(Math.max(0, maxKeys)).toList();
         }
     }
 
+    /** Range scan of the index in key order; no filesystem access. */
+    @Override
+    public Stream<S3Models.ListItem> listAll(String bucket, String prefix) {
+        bucketDir(bucket);
+        ConcurrentSkipListMap<String, LocalObjectSidecar.Entry> b = index.get(bucket);
+        if (b == null) return Stream.empty();
+        String p = prefix == null ? "" : prefix;
+        Map<String, LocalObjectSidecar.Entry> range = p.isEmpty()
+                ? b
+                : b.subMap(p, true, p + Character.MAX_VALUE, false);
+        return range.values().stream()
+                .map(e -> new S3Models.ListItem(e.key(), e.size(), e.eTag(), Instant.ofEpochMilli(e.lastModifiedMillis())));
+    }
+
     @Override
     public URL presignGet(S3Models.ObjectRef ref, Duration ttl) {
         throw new UnsupportedOperationException("presignGet not supported for local store");
@@ -248,17 +375,133 @@ public class LocalFsS3AccessLayer implements S3AccessLayer {
         throw new UnsupportedOperationException("presignPut not supported for local store");
     }
 
-    @Override
-    public String multipartUpload(S3Models.ObjectRef ref, InputStream in, long contentLength, String contentType, Map<String, String> userMetadata) {
-        // Not needed for local; treat as a normal stream upload.
-        return putStream(ref, in, contentLength, contentType, userMetadata);
+    // ---------------------------------------------------------------- startup
+
+    /**
+     * Rebuilds the index from the sidecars, dropping temp files, objects that never got a sidecar and objects
+     * whose size does not match their sidecar (replaced, but the crash came before the new sidecar).
+     */
+    private long loadIndex() throws IOException {
+        AtomicLong count = new AtomicLong();
+        List<Path> buckets;
+        try (Stream<Path> s = Files.list(base)) {
+            buckets = s.filter(Files::isDirectory).toList();
+        }
+        for (Path bucketDir : buckets) {
+            Path objects = bucketDir.resolve(OBJECTS_DIR);
+            if (!Files.isDirectory(objects)) continue;
+            String bucket = bucketDir.getFileName().toString();
+            ConcurrentSkipListMap<String, LocalObjectSidecar.Entry> b = bucketIndex(bucket);
+
+            List<Path> shards;
+            try (Stream<Path> s = Files.list(objects)) {
+                shards = s.filter(Files::isDirectory).toList();
+            }
+            // Top-level shards are independent; read them in parallel (millions of small sidecars on NVMe)
+            shards.parallelStream().forEach(shard -> {
+                List<Path> files;
+                // Listed up front: checking a sidecar may delete its object before the walk reaches it
+                try (Stream<Path> walk = Files.walk(shard)) {
+                    files = walk.filter(Files::isRegularFile).toList();
+                } catch (IOException e) {
+                    throw new IllegalStateException("Failed to index " + shard, e);
+                }
+                files.forEach(f -> {
+                    String name = f.getFileName().toString();
+                    try {
+                        if (name.contains(".tmp-")) {
+                            Files.deleteIfExists(f);
+                        } else if (name.endsWith(".meta")) {
+                            Path obj = f.resolveSibling(name.substring(0, name.length() - ".meta".length()) + ".obj");
+                            if (!Files.exists(obj)) {
+                                Files.deleteIfExists(f);
+                                return;
+                            }
+                            LocalObjectSidecar.Entry e = LocalObjectSidecar.decode(Files.readAllBytes(f));
+                            long onDisk = Files.size(obj);
+                            if (onDisk != e.size()) {
+                                log.warn("Dropping local object {}: {} bytes on disk, sidecar says {}",
+                                        e.key(), onDisk, e.size());
+                                Files.deleteIfExists(f);
+                                Files.deleteIfExists(obj);
+                                return;
+                            }
+                            b.put(e.key(), e);
+                            count.incrementAndGet();
+                        } else if (name.endsWith(".obj") && !Files.exists(sidecarPath(f))) {
+                            Files.deleteIfExists(f);
+                        }
+                    } catch (IOException e) {
+                        log.warn("Skipping unreadable local object file {}: {}", f, e.toString());
+                    }
+                });
+            });
+        }
+        return count.get();
     }
 
-    private static final class QueryCachePropertiesView {
-        private final String localBaseDir;
+    /** One-time move of a {bucket}/{key} tree (with Properties sidecars) into the sharded layout. */
+    private void migrateFlatLayout() throws IOException {
+        List<Path> buckets;
+        try (Stream<Path> s = Files.list(base)) {
+            buckets = s.filter(Files::isDirectory).toList();
+        }
+        for (Path bucketDir : buckets) {
+            String bucket = bucketDir.getFileName().toString();
+            List<Path> files;
+            try (Stream<Path> s = Files.walk(bucketDir)) {
+                files = s.filter(Files::isRegularFile).toList();
+            }
+            int moved = 0;
+            for (Path f : files) {
+                String name = f.getFileName().toString();
+                if (name.endsWith(".meta") || (name.startsWith("skadi-") && name.endsWith(".tmp"))) continue;
 
-        private QueryCachePropertiesView(String localBaseDir) {
-            this.localBaseDir = localBaseDir;
+                String key = bucketDir.relativize(f).toString().replace('\\', '/');
+                S3Models.ObjectRef ref = new S3Models.ObjectRef(bucket, key);
+                Path legacyMeta = f.resolveSibling(name + ".meta");
+                String contentType = null;
+                Map<String, String> userMeta = new LinkedHashMap<>();
+                if (Files.exists(legacyMeta)) {
+                    Properties p = new Properties();
+                    try (InputStream in = Files.newInputStream(legacyMeta)) {
+                        p.load(in);
+                    }
+                    contentType = p.getProperty("contentType");
+                    for (String n : p.stringPropertyNames()) {
+                        if (n.startsWith("meta.")) userMeta.put(n.substring("meta.".length()), p.getProperty(n));
+                    }
+                }
+
+                Path dst = objectPath(ref);
+                Files.createDirectories(dst.getParent());
+                Path tmp = dst.resolveSibling(dst.getFileName() + ".tmp-" + UUID.randomUUID());
+                Files.move(f, tmp, StandardCopyOption.ATOMIC_MOVE);
+                long size = Files.size(tmp);
+                // Keep the old layout's ETag; recomputing checksums would read every byte of the store
+                commit(ref, dst, tmp, size, "local-etag-" + size, contentType, userMeta);
+                Files.deleteIfExists(legacyMeta);
+                moved++;
+            }
+            if (moved > 0) {
+                removeEmptyDirectories(bucketDir);
+                log.info("Migrated {} objects of bucket {} to the sharded local layout", moved, bucket);
+            }
+        }
+        index.clear(); // rebuilt by loadIndex
+    }
+
+    private static void removeEmptyDirectories(Path root) throws IOException {
+        List<Path> dirs;
+        try (Stream<Path> s = Files.walk(root)) {
+            dirs = s.filter(Files::isDirectory).sorted(Comparator.reverseOrder()).toList();
+        }
+        for (Path d : dirs) {
+            if (d.equals(root) || d.startsWith(root.resolve(OBJECTS_DIR))) continue;
+            try (Stream<Path> s = Files.list(d)) {
+                if (s.findAny().isPresent()) continue;
+            }
+            Files.deleteIfExists(d);
         }
     }
-}
\ No newline at end of file
+}
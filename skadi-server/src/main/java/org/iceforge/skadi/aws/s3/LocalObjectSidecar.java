@@ -0,0 +1,72 @@
+package org.iceforge.skadi.aws.s3;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Binary sidecar of an object in the local store: everything head and list need, so neither touches the
+ * object file, and enough (the key) to rebuild the in-memory index from the sidecars alone.
+ * <pre>
+ *   int magic "SKM1" | UTF key | long size | long lastModifiedMillis | UTF eTag
+ *   | bool hasContentType [UTF contentType] | int n | n x (UTF name, UTF value)
+ * </pre>
+ */
+final class LocalObjectSidecar {
+
+    private static final int MAGIC = 0x534B4D31; // "SKM1"
+
+    record Entry(String key, long size, long lastModifiedMillis, String eTag, String contentType,
+                 Map<String, String> userMetadata) {}
+
+    private LocalObjectSidecar() {}
+
+    static byte[] encode(Entry e) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeUTF(e.key());
+            out.writeLong(e.size());
+            out.writeLong(e.lastModifiedMillis());
+            out.writeUTF(e.eTag() == null ? "" : e.eTag());
+            out.writeBoolean(e.contentType() != null);
+            if (e.contentType() != null) out.writeUTF(e.contentType());
+            Map<String, String> meta = e.userMetadata() == null ? Map.of() : e.userMetadata();
+            int n = 0;
+            for (Map.Entry<String, String> m : meta.entrySet()) {
+                if (m.getKey() != null && m.getValue() != null) n++;
+            }
+            out.writeInt(n);
+            for (Map.Entry<String, String> m : meta.entrySet()) {
+                if (m.getKey() == null || m.getValue() == null) continue;
+                out.writeUTF(m.getKey());
+                out.writeUTF(m.getValue());
+            }
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex); // in-memory stream
+        }
+        return bytes.toByteArray();
+    }
+
+    static Entry decode(byte[] data) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            if (in.readInt() != MAGIC) throw new IOException("Not a local object sidecar");
+            String key = in.readUTF();
+            long size = in.readLong();
+            long lastModified = in.readLong();
+            String eTag = in.readUTF();
+            String contentType = in.readBoolean() ? in.readUTF() : null;
+            int n = in.readInt();
+            if (n < 0) throw new IOException("Corrupt sidecar");
+            Map<String, String> meta = n == 0 ? Map.of() : new LinkedHashMap<>();
+            for (int i = 0; i < n; i++) {
+                meta.put(in.readUTF(), in.readUTF());
+            }
+            return new Entry(key, size, lastModified, eTag, contentType, meta);
+        }
+    }
+}
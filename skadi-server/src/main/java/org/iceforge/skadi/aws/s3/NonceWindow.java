@@ -0,0 +1,57 @@
+package org.iceforge.skadi.aws.s3;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Replay guard for signed peer requests: remembers nonces only as long as their timestamp is acceptable.
+ * <p>
+ * A request timestamped in second {@code s} is only accepted while {@code |now - s| <= skew}, so its nonce
+ * only needs remembering for that long. Nonces are kept in a ring of per-second sets indexed by the request
+ * second; the ring has {@code 2 * skew + 2} slots, so two live seconds never share a slot and a slot still
+ * holding another second is expired and is cleared in O(1) on reuse. Memory is bounded by the request rate
+ * over the skew window, not by uptime.
+ */
+final class NonceWindow {
+
+    private final Slot[] slots;
+
+    private static final class Slot {
+        long second = Long.MIN_VALUE;
+        final Set<String> nonces = new HashSet<>();
+    }
+
+    NonceWindow(long skewSeconds) {
+        int n = (int) Math.max(2, 2 * skewSeconds + 2);
+        this.slots = new Slot[n];
+        for (int i = 0; i < n; i++) slots[i] = new Slot();
+    }
+
+    /**
+     * Records nonce for a request timestamped at requestMillis, which the caller has already checked to be
+     * within the skew window.
+     *
+     * @return false if the nonce was already seen for that second (a replay)
+     */
+    boolean firstUse(String nonce, long requestMillis) {
+        long second = Math.floorDiv(requestMillis, 1000L);
+        Slot slot = slots[(int) Math.floorMod(second, (long) slots.length)];
+        synchronized (slot) {
+            if (slot.second != second) {
+                slot.nonces.clear();
+                slot.second = second;
+            }
+            return slot.nonces.add(nonce);
+        }
+    }
+
+    int size() {
+        int n = 0;
+        for (Slot s : slots) {
+            synchronized (s) {
+                n += s.nonces.size();
+            }
+        }
+        return n;
+    }
+}
@@ -0,0 +1,234 @@
+package org.iceforge.skadi.aws.s3;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Downloads one object as concurrent ranged GETs into the (preallocated) temp file of a {@link CacheFill}.
+ * <p>
+ * Parts are handed out in order, each worker writes at its part's offset with positional writes, and the
+ * fill only advances over the contiguous prefix that is complete, so readers following the fill never see
+ * unwritten regions.
+ * <p>
+ * {@link #start} runs blocking ranged GETs on an executor, one thread per part in flight. {@link #startAsync}
+ * keeps the same number of non-blocking GETs in flight on an {@link S3AsyncAccessLayer} and holds no thread
+ * while they transfer; each part's body is written at its offset as it arrives, never buffered whole.
+ * <p>
+ * A whole-object GET that is already open (it told the caller the size) can be handed in as firstPart; it is
+ * read for part 0 instead of issuing another request, then closed.
+ */
+final class ParallelRangeDownload {
+
+    private final S3AccessLayer source;
+    private final S3Models.ObjectRef ref;
+    private final long size;
+    private final long partSize;
+    private final int parts;
+    private final CacheFill fill;
+    private final FileChannel ch;
+
+    private final AtomicInteger nextPart = new AtomicInteger();
+    private volatile boolean aborted;
+    private final InputStream firstPart;
+
+    // guarded by this
+    private final long[] partWritten;
+    private int firstIncompletePart;
+    private long contiguous;
+
+    private ParallelRangeDownload(S3AccessLayer source, S3Models.ObjectRef ref, long size, long partSize,
+                                  CacheFill fill, FileChannel ch, InputStream firstPart) {
+        this.source = source;
+        this.firstPart = firstPart;
+        this.ref = ref;
+        this.size = size;
+        this.partSize = partSize;
+        this.parts = (int) ((size + partSize - 1) / partSize);
+        this.fill = fill;
+        this.ch = ch;
+        this.partWritten = new long[parts];
+    }
+
+    /**
+     * Starts the download on executor.
+     *
+     * @return completes with the number of bytes written once every part is on disk, or exceptionally
+     *         after all workers stopped on the first failure
+     */
+    static CompletableFuture<Long> start(S3AccessLayer source, S3Models.ObjectRef ref, long size, long partSize,
+                                         int concurrency, Executor executor, CacheFill fill) throws IOException {
+        return start(source, ref, size, partSize, concurrency, executor, fill, null);
+    }
+
+    /** As above, reading part 0 from firstPart (an open GET of the whole object) when it is not null. */
+    static CompletableFuture<Long> start(S3AccessLayer source, S3Models.ObjectRef ref, long size, long partSize,
+                                         int concurrency, Executor executor, CacheFill fill,
+                                         InputStream firstPart) throws IOException {
+        ParallelRangeDownload d = new ParallelRangeDownload(source, ref, size, partSize, fill,
+                preallocate(fill, size, partSize), firstPart);
+        int workers = Math.max(1, Math.min(concurrency, d.parts));
+        CompletableFuture<?>[] running = new CompletableFuture<?>[workers];
+        for (int i = 0; i < workers; i++) {
+            running[i] = CompletableFuture.runAsync(d::work, executor);
+        }
+        return CompletableFuture.allOf(running)
+                .whenComplete((v, err) -> d.closeQuietly())
+                .thenApply(v -> size);
+    }
+
+    /**
+     * Starts the download with at most concurrency parts in flight on source, reading part 0 from firstPart
+     * (an open GET of the whole object) on executor when it is not null; that blocking read takes one slot of
+     * the window until it is done.
+     *
+     * @return completes with the number of bytes written once every part is on disk, or exceptionally on the
+     *         first failure
+     */
+    static CompletableFuture<Long> startAsync(S3AsyncAccessLayer source, S3Models.ObjectRef ref, long size, long partSize,
+                                              int concurrency, CacheFill fill, InputStream firstPart,
+                                              Executor executor) throws IOException {
+        ParallelRangeDownload d = new ParallelRangeDownload(null, ref, size, partSize, fill,
+                preallocate(fill, size, partSize), firstPart);
+        int window = Math.max(1, Math.min(concurrency, d.parts));
+        CompletableFuture<Long> done = new CompletableFuture<>();
+        AtomicInteger inFlight = new AtomicInteger(window);
+        int first = 0;
+        if (firstPart != null) {
+            d.nextPart.set(1);
+            first = 1;
+            CompletableFuture.runAsync(() -> {
+                try {
+                    d.downloadPart(0);
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            }, executor).whenComplete((v, err) -> {
+                if (err != null) {
+                    d.aborted = true;
+                    done.completeExceptionally(err instanceof CompletionException && err.getCause() != null
+                            ? err.getCause() : err);
+                    return;
+                }
+                d.nextAsync(source, done, inFlight);
+            });
+        }
+        for (int i = first; i < window; i++) {
+            d.nextAsync(source, done, inFlight);
+        }
+        return done.whenComplete((v, err) -> d.closeQuietly());
+    }
+
+    private static FileChannel preallocate(CacheFill fill, long size, long partSize) throws IOException {
+        if (size <= 0 || partSize <= 0) throw new IllegalArgumentException("size and partSize must be > 0");
+
+        FileChannel ch = FileChannel.open(fill.tmp(), StandardOpenOption.WRITE);
+        try {
+            // Preallocate (sparse) so every worker can write at its own offset.
+            ch.write(ByteBuffer.wrap(new byte[1]), size - 1);
+        } catch (IOException e) {
+            ch.close();
+            throw e;
+        }
+        return ch;
+    }
+
+    /** Issues the next part, or retires this slot of the window once none are left. */
+    private void nextAsync(S3AsyncAccessLayer source, CompletableFuture<Long> done, AtomicInteger inFlight) {
+        int p;
+        if (aborted || (p = nextPart.getAndIncrement()) >= parts) {
+            if (inFlight.decrementAndGet() == 0 && !aborted) done.complete(size);
+            return;
+        }
+        long start = p * partSize;
+        long len = partLength(p);
+        source.getRange(ref, start, len, ch, start, n -> progress(p, n)).whenComplete((written, err) -> {
+            if (aborted) return;
+            try {
+                if (err != null) throw new CompletionException(err);
+                if (written != len) {
+                    throw new IOException("Short part " + p + " of s3://" + ref.bucket() + "/" + ref.key()
+                            + ": expected " + len + " got " + written);
+                }
+            } catch (IOException | RuntimeException e) {
+                aborted = true;
+                done.completeExceptionally(e);
+                return;
+            }
+            nextAsync(source, done, inFlight);
+        });
+    }
+
+    private void work() {
+        int p;
+        while (!aborted && (p = nextPart.getAndIncrement()) < parts) {
+            try {
+                downloadPart(p);
+            } catch (IOException | RuntimeException e) {
+                aborted = true;
+                throw new CompletionException(e);
+            }
+        }
+    }
+
+    private void downloadPart(int p) throws IOException {
+        long start = p * partSize;
+        long len = partLength(p);
+        long pos = start;
+
+        boolean first = p == 0 && firstPart != null;
+        InputStream in = first ? firstPart : source.getRange(ref, start, len);
+        try {
+            byte[] buf = new byte[64 * 1024];
+            int n;
+            while (!aborted && pos - start < len && (n = in.read(buf, 0, (int) Math.min(buf.length, start + len - pos))) >= 0) {
+                ByteBuffer bb = ByteBuffer.wrap(buf, 0, n);
+                while (bb.hasRemaining()) {
+                    pos += ch.write(bb, pos);
+                }
+                progress(p, n);
+            }
+        } finally {
+            // The whole-object GET still has the other parts' bytes pending: abort it instead of draining
+            if (first) AwsSdkS3AccessLayer.abortQuietly(in);
+            else in.close();
+        }
+        if (!aborted && pos - start != len) {
+            throw new IOException("Short part " + p + " of s3://" + ref.bucket() + "/" + ref.key()
+                    + ": expected " + len + " got " + (pos - start));
+        }
+    }
+
+    private long partLength(int p) {
+        return Math.min(partSize, size - p * partSize);
+    }
+
+    private synchronized void progress(int p, long n) {
+        partWritten[p] += n;
+        while (firstIncompletePart < parts && partWritten[firstIncompletePart] == partLength(firstIncompletePart)) {
+            firstIncompletePart++;
+        }
+        long now = firstIncompletePart == parts
+                ? size
+                : firstIncompletePart * partSize + partWritten[firstIncompletePart];
+        if (now > contiguous) {
+            fill.advance(now - contiguous);
+            contiguous = now;
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            ch.close();
+        } catch (IOException ignore) {
+            // best-effort
+        }
+        AwsSdkS3AccessLayer.abortQuietly(firstPart); // no-op once part 0 was read; releases the GET if it never was
+    }
+}
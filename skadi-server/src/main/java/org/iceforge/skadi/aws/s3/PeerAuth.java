@@ -3,13 +3,9 @@ package org.iceforge.skadi.aws.s3;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
 import java.nio.charset.StandardCharsets;
 import java.time.Instant;
-import java.util.Base64;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 @Component
 public class PeerAuth {
@@ -21,8 +17,8 @@ public class PeerAuth {
     @Value("#{${skadi.peerCache.auth.sharedSecrets:{}}}")
     private Map<String, String> sharedSecrets;
 
-    // Optional replay protection
-    private final ConcurrentHashMap<String, Long> nonceSeen = new ConcurrentHashMap<>();
+    // Replay protection, sized from allowedSkewSeconds on first use
+    private volatile NonceWindow nonces;
 
     public void verify(String method, String path, String query,
                        String keyId, String ts, String nonce, String sigB64Url) {
@@ -41,26 +37,33 @@ public class PeerAuth {
         long skewMs = allowedSkewSeconds * 1000L;
         if (Math.abs(now - t) > skewMs) throw new Unauthorized();
 
-        Long prev = nonceSeen.putIfAbsent(keyId + ":" + nonce, now);
-        if (prev != null) throw new Unauthorized();
-
         String secret = sharedSecrets.get(keyId);
         if (secret == null || secret.isBlank()) throw new Unauthorized();
 
         String canonical = method + "\n" + path + "\n" + query + "\n" + ts + "\n" + nonce;
         String expected = hmacB64Url(secret, canonical);
         if (!constantTimeEquals(expected, sigB64Url)) throw new Unauthorized();
+
+        // Only authentic requests consume a nonce, so forged ones cannot fill the window.
+        if (!nonceWindow().firstUse(keyId + ":" + nonce, t)) throw new Unauthorized();
     }
 
-    private static String hmacB64Url(String secret, String data) {
-        try {
-            Mac mac = Mac.getInstance("HmacSHA256");
-            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
-            byte[] out = mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
-            return Base64.getUrlEncoder().withoutPadding().encodeToString(out);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+    private NonceWindow nonceWindow() {
+        NonceWindow w = nonces;
+        if (w == null) {
+            synchronized (this) {
+                w = nonces;
+                if (w == null) {
+                    w = new NonceWindow(allowedSkewSeconds);
+                    nonces = w;
+                }
+            }
         }
+        return w;
+    }
+
+    private static String hmacB64Url(String secret, String data) {
+        return PeerHmac.signB64Url(secret, data);
     }
 
     private static boolean constantTimeEquals(String a, String b) {
@@ -1,62 +1,467 @@
 package org.iceforge.skadi.aws.s3;
 
+import io.netty.channel.ChannelOption;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.http.HttpProtocol;
 import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.client.HttpClientRequest;
+import reactor.netty.resources.ConnectionProvider;
 
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongConsumer;
+import java.util.zip.CRC32C;
 
 @Component
 public class PeerCacheClient {
 
+    /** Hex CRC32C of the full object, sent by the serving peer when its cache index has one. */
+    public static final String CRC32C_HEADER = "X-Skadi-Crc32c";
+
+    /** Decoded object length, sent instead of a meaningful Content-Length when the body is deflated. */
+    public static final String LENGTH_HEADER = "X-Skadi-Length";
+
+    /**
+     * Sent instead of Content-Length and {@value #CRC32C_HEADER} on a response that streams an in-progress fill:
+     * the body ends with a {@link ChecksumTrailerInputStream} trailer.
+     */
+    public static final String TRAILER_HEADER = "X-Skadi-Trailer";
+
+    /** A validated peer transfer. */
+    public record Transfer(long length, long crc32c) {}
+
+    /** Answer of a lock lease call; token identifies the granted lease. */
+    public record LeaseGrant(boolean granted, long token, long expiresAtMillis) {}
+
+    /** Result of a push: the owner kept the copy, turned it down (a 4xx, owner is healthy), or could not be reached. */
+    public enum PushOutcome { STORED, REJECTED, FAILED }
+
+    private final HttpClient httpClient;
     private final WebClient webClient;
 
+    // Offer deflate for payloads that are not compressed already (see PeerTransferEncoding)
+    @Value("${skadi.peer-cache.compressTransfers:true}")
+    private boolean compressTransfers = true;
+
+    /** Defaults only; used by tests. */
     public PeerCacheClient(WebClient.Builder builder) {
-        HttpClient httpClient = HttpClient.create().compress(true);
+        this(builder, "h2c", 64, 1000, 5000, 60000, 600000, 100);
+    }
+
+    /**
+     * Peer transport: h2c (cleartext HTTP/2, negotiated by upgrade so HTTP/1.1 peers keep working) over a
+     * dedicated, bounded connection pool. With HTTP/2 one connection per peer multiplexes all concurrent
+     * fetches, so bursts do not queue behind connection setup. Pool gauges (active, idle, pending) are
+     * published under reactor.netty.connection.provider.* with name "skadi-peers".
+     */
+    @Autowired
+    public PeerCacheClient(WebClient.Builder builder,
+                           @Value("${skadi.peer-cache.http.protocol:h2c}") String protocol,
+                           @Value("${skadi.peer-cache.http.maxConnections:64}") int maxConnections,
+                           @Value("${skadi.peer-cache.http.pendingAcquireMaxCount:1000}") int pendingAcquireMaxCount,
+                           @Value("${skadi.peer-cache.http.pendingAcquireTimeoutMs:5000}") long pendingAcquireTimeoutMs,
+                           @Value("${skadi.peer-cache.http.maxIdleTimeMs:60000}") long maxIdleTimeMs,
+                           @Value("${skadi.peer-cache.http.maxLifeTimeMs:600000}") long maxLifeTimeMs,
+                           @Value("${skadi.peer-cache.http.maxConcurrentStreams:100}") long maxConcurrentStreams) {
+        ConnectionProvider pool = ConnectionProvider.builder("skadi-peers")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(pendingAcquireMaxCount)
+                .pendingAcquireTimeout(Duration.ofMillis(pendingAcquireTimeoutMs))
+                .maxIdleTime(Duration.ofMillis(maxIdleTimeMs))
+                .maxLifeTime(Duration.ofMillis(maxLifeTimeMs))
+                .evictInBackground(Duration.ofMillis(Math.max(1000, maxIdleTimeMs / 2)))
+                .metrics(true)
+                .build();
+
+        HttpProtocol[] protocols = "http11".equalsIgnoreCase(protocol)
+                ? new HttpProtocol[]{HttpProtocol.HTTP11}
+                : new HttpProtocol[]{HttpProtocol.H2C, HttpProtocol.HTTP11};
+
+        // compress(true) installs the response decoder; the Accept-Encoding actually offered is set per request.
+        this.httpClient = HttpClient.create(pool)
+                .protocol(protocols)
+                .http2Settings(s -> s.maxConcurrentStreams(maxConcurrentStreams))
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .compress(true);
         this.webClient = builder.clientConnector(new ReactorClientHttpConnector(httpClient)).build();
     }
 
-    public Optional<Long> headLength(String peerBaseUrl, String bucket, String key,
-                                     PeerSignedHeaders signed, Duration timeout) {
+    /**
+     * Initializes the event loops, DNS resolver and native transport before the first peer request, so it
+     * does not pay for them. Connections to the known peers are opened by the first membership heartbeat.
+     */
+    @PostConstruct
+    public void warmup() {
         try {
-            return webClient.head()
-                    .uri(peerBaseUrl + "/internal/cache/object?bucket={b}&key={k}", bucket, key)
-                    .headers(h -> signed.apply(h))
-                    .retrieve()
-                    .toBodilessEntity()
-                    .timeout(timeout)
-                    .map(resp -> {
-                        String cl = resp.getHeaders().getFirst(HttpHeaders.CONTENT_LENGTH);
-                        return cl == null ? null : Long.parseLong(cl);
-                    })
-                    .blockOptional();
-        } catch (Exception e) {
-            return Optional.empty();
+            httpClient.warmup().block(Duration.ofSeconds(10));
+        } catch (RuntimeException e) {
+            // Not fatal: the first request initializes lazily instead.
         }
     }
 
-    /** Stream GET body directly into destTmp */
-    public boolean streamToFile(String peerBaseUrl, String bucket, String key,
-                                PeerSignedHeaders signed, Path destTmp, Duration timeout) {
+    /**
+     * Single-request fetch: GET the peer's copy into destTmp. A miss is a fast 404; a hit carries
+     * Content-Length and {@value #CRC32C_HEADER} (or a trailer with both), which are checked against the bytes.
+     *
+     * @return the validated length and CRC32C, or empty on a miss, a mismatch or any transport error
+     */
+    public Optional<Transfer> fetchToFile(String peerBaseUrl, String bucket, String key,
+                                          PeerSignedHeaders signed, Path destTmp, Duration timeout) {
+        return startFetch(peerBaseUrl, bucket, key, false, signed, destTmp, timeout, n -> {}).await();
+    }
+
+    /**
+     * Non-blocking form of {@link #fetchToFile}: {@link Download#found()} completes as soon as the peer
+     * has answered (true on 200, false on a miss or error), before the body has streamed, so callers can
+     * hedge on response latency and cancel the losers.
+     * <p>
+     * timeout bounds the wait for the response and every gap between reads, not the whole transfer: a large
+     * body from a healthy peer takes as long as it takes.
+     *
+     * @param fill    ask an owner peer that does not have the object to fill it from S3 and stream it back
+     *                (cluster-wide single flight); {@code fill=true} must be part of the signed query
+     * @param written told how many more body bytes are in destTmp after each write, so readers can follow it
+     */
+    public Download startFetch(String peerBaseUrl, String bucket, String key, boolean fill,
+                               PeerSignedHeaders signed, Path destTmp, Duration timeout, LongConsumer written) {
+        CompletableFuture<Boolean> found = new CompletableFuture<>();
+        CompletableFuture<Optional<Transfer>> done = new CompletableFuture<>();
+        AtomicBoolean failed = new AtomicBoolean();
+
+        Disposable subscription = webClient.get()
+                .uri(peerBaseUrl + "/internal/cache/object?bucket={b}&key={k}" + (fill ? "&fill=true" : ""), bucket, key)
+                .headers(h -> {
+                    signed.apply(h);
+                    h.set(HttpHeaders.ACCEPT_ENCODING, PeerTransferEncoding.acceptEncodingFor(key, compressTransfers));
+                })
+                .httpRequest(r -> ((HttpClientRequest) r.getNativeRequest()).responseTimeout(timeout))
+                .exchangeToMono(resp -> {
+                    if (resp.statusCode().value() != HttpStatus.OK.value()) {
+                        return resp.releaseBody().then(Mono.<Transfer>empty());
+                    }
+                    found.complete(true);
+                    HttpHeaders headers = resp.headers().asHttpHeaders();
+                    if (headers.containsKey(TRAILER_HEADER)) {
+                        return receiveWithTrailer(resp.bodyToFlux(DataBuffer.class), destTmp, written);
+                    }
+                    // Deflated bodies are decoded by the connector; their decoded length comes in LENGTH_HEADER.
+                    String decodedLength = headers.getFirst(LENGTH_HEADER);
+                    long expectedLength = decodedLength != null
+                            ? Long.parseLong(decodedLength)
+                            : resp.headers().contentLength().orElse(-1L);
+                    String expectedCrc = headers.getFirst(CRC32C_HEADER);
+
+                    CRC32C crc = new CRC32C();
+                    long[] received = {0};
+                    return Mono.using(() -> openForWrite(destTmp),
+                            ch -> writeBody(resp.bodyToFlux(DataBuffer.class), ch, crc, n -> {
+                                received[0] += n;
+                                written.accept(n);
+                            }).then(Mono.fromCallable(() -> {
+                                if (expectedLength >= 0 && received[0] != expectedLength) {
+                                    throw new IllegalStateException("Peer length mismatch: expected " + expectedLength + " got " + received[0]);
+                                }
+                                if (expectedCrc != null && Long.parseLong(expectedCrc, 16) != crc.getValue()) {
+                                    throw new IllegalStateException("Peer CRC32C mismatch: expected " + expectedCrc
+                                            + " got " + Long.toHexString(crc.getValue()));
+                                }
+                                return new Transfer(received[0], crc.getValue());
+                            })),
+                            PeerCacheClient::closeQuietly);
+                })
+                .subscribe(
+                        t -> done.complete(Optional.of(t)),
+                        err -> {
+                            failed.set(true);
+                            found.complete(false);
+                            done.complete(Optional.empty());
+                        },
+                        () -> {
+                            found.complete(false);
+                            done.complete(Optional.empty());
+                        });
+
+        return new Download(found, done, subscription, failed);
+    }
+
+    /**
+     * Body of an in-progress fill: the last {@value ChecksumTrailerInputStream#SIZE} bytes are the trailer.
+     * Everything lands in destTmp, but readers are only told about bytes that are certainly not trailer; at
+     * the end the trailer is cut off and the rest checked against it.
+     */
+    private static Mono<Transfer> receiveWithTrailer(Flux<DataBuffer> body, Path destTmp, LongConsumer written) {
+        long[] received = {0};
+        long[] published = {0};
+        return Mono.using(() -> openForWrite(destTmp),
+                ch -> writeBody(body, ch, null, n -> {
+                    received[0] += n;
+                    long visible = Math.max(0, received[0] - ChecksumTrailerInputStream.SIZE);
+                    if (visible > published[0]) {
+                        written.accept(visible - published[0]);
+                        published[0] = visible;
+                    }
+                }).then(Mono.fromCallable(() -> {
+                    long length = received[0] - ChecksumTrailerInputStream.SIZE;
+                    if (length < 0) throw new IllegalStateException("Peer body ended before its trailer");
+                    ByteBuffer trailer = ByteBuffer.allocate(ChecksumTrailerInputStream.SIZE);
+                    while (trailer.hasRemaining()) {
+                        if (ch.read(trailer, length + trailer.position()) < 0) throw new EOFException();
+                    }
+                    trailer.flip();
+                    ch.truncate(length);
+                    long expectedLength = trailer.getLong();
+                    long expectedCrc = trailer.getLong();
+                    if (expectedLength != length) {
+                        throw new IllegalStateException("Peer length mismatch: expected " + expectedLength + " got " + length);
+                    }
+                    // Checksummed from the file once complete, off the event loop
+                    long crc = CacheIndexJournal.crc32c(destTmp);
+                    if (crc != expectedCrc) {
+                        throw new IllegalStateException("Peer CRC32C mismatch: expected " + Long.toHexString(expectedCrc)
+                                + " got " + Long.toHexString(crc));
+                    }
+                    return new Transfer(length, crc);
+                }).subscribeOn(Schedulers.boundedElastic())),
+                PeerCacheClient::closeQuietly);
+    }
+
+    private static FileChannel openForWrite(Path p) throws IOException {
+        return FileChannel.open(p, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.READ,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /** Writes each buffer to ch as it arrives (then releases it), updating crc if given and reporting progress. */
+    private static Mono<Void> writeBody(Flux<DataBuffer> body, FileChannel ch, CRC32C crc, LongConsumer written) {
+        return body.doOnNext(buf -> {
+            try {
+                int n = buf.readableByteCount();
+                try (DataBuffer.ByteBufferIterator it = buf.readableByteBuffers()) {
+                    while (it.hasNext()) {
+                        ByteBuffer bb = it.next();
+                        if (crc != null) crc.update(bb.duplicate());
+                        while (bb.hasRemaining()) {
+                            ch.write(bb);
+                        }
+                    }
+                }
+                // unbuffered channel: the bytes are in the page cache for readers once write returns
+                written.accept(n);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                DataBufferUtils.release(buf);
+            }
+        }).then();
+    }
+
+    private static void closeQuietly(FileChannel ch) {
         try {
-            Flux<DataBuffer> body = webClient.get()
-                    .uri(peerBaseUrl + "/internal/cache/object?bucket={b}&key={k}", bucket, key)
-                    .headers(h -> signed.apply(h))
-                    .retrieve()
-                    .bodyToFlux(DataBuffer.class)
-                    .timeout(timeout);
+            ch.close();
+        } catch (IOException ignore) {
+            // best-effort
+        }
+    }
+
+    /** An in-flight peer fetch started by {@link #startFetch}. */
+    public static final class Download {
+        private final CompletableFuture<Boolean> found;
+        private final CompletableFuture<Optional<Transfer>> done;
+        private final Disposable subscription;
+        private final AtomicBoolean failed;
 
-            DataBufferUtils.write(body, destTmp).then().block(timeout);
-            return true;
+        Download(CompletableFuture<Boolean> found, CompletableFuture<Optional<Transfer>> done, Disposable subscription) {
+            this(found, done, subscription, new AtomicBoolean());
+        }
+
+        Download(CompletableFuture<Boolean> found, CompletableFuture<Optional<Transfer>> done, Disposable subscription,
+                 AtomicBoolean failed) {
+            this.found = found;
+            this.done = done;
+            this.subscription = subscription;
+            this.failed = failed;
+        }
+
+        /** True if the request ended in a transport error, timeout or validation failure (as opposed to a miss). */
+        public boolean failed() {
+            return failed.get();
+        }
+
+        /** Completes with true once the peer answered 200, false on a miss or failure. */
+        public CompletableFuture<Boolean> found() {
+            return found;
+        }
+
+        /** Completes once the body has been written and validated: the transfer, or empty if it failed. */
+        public CompletableFuture<Optional<Transfer>> done() {
+            return done;
+        }
+
+        /** Blocks until the body has been written and validated. */
+        public Optional<Transfer> await() {
+            return done.join();
+        }
+
+        public void cancel() {
+            subscription.dispose();
+            found.complete(false);
+            done.complete(Optional.empty());
+        }
+    }
+
+    /**
+     * Stream bytes [offset, offset+length) of the peer's copy into destTmp using an HTTP Range GET.
+     * Returns false unless the peer answers 206 (a 200 would be the whole object).
+     */
+    public boolean streamRangeToFile(String peerBaseUrl, String bucket, String key, PeerSignedHeaders signed,
+                                     long offset, long length, Path destTmp, Duration timeout) {
+        try {
+            Boolean ok = webClient.get()
+                    .uri(peerBaseUrl + "/internal/cache/object?bucket={b}&key={k}", bucket, key)
+                    .headers(h -> {
+                        signed.apply(h);
+                        h.set(HttpHeaders.RANGE, "bytes=" + offset + "-" + (offset + length - 1));
+                        h.set(HttpHeaders.ACCEPT_ENCODING, PeerTransferEncoding.IDENTITY);
+                    })
+                    .exchangeToMono(resp -> {
+                        if (resp.statusCode().value() != HttpStatus.PARTIAL_CONTENT.value()) {
+                            return resp.releaseBody().thenReturn(false);
+                        }
+                        return DataBufferUtils.write(resp.bodyToFlux(DataBuffer.class), destTmp).thenReturn(true);
+                    })
+                    .timeout(timeout)
+                    .block(timeout);
+            return Boolean.TRUE.equals(ok);
         } catch (Exception e) {
             return false;
         }
     }
+
+    /** Liveness probe against the peer's /ping; completes false on any error or timeout. */
+    public CompletableFuture<Boolean> ping(String peerBaseUrl, Duration timeout) {
+        return webClient.get()
+                .uri(peerBaseUrl + "/ping")
+                .retrieve()
+                .toBodilessEntity()
+                .map(resp -> resp.getStatusCode().is2xxSuccessful())
+                .timeout(timeout)
+                .onErrorReturn(false)
+                .defaultIfEmpty(false)
+                .toFuture();
+    }
+
+    /**
+     * Signed PUT of a committed cache file to an owner peer (push replication). The receiver validates the
+     * body against Content-Length and {@value #CRC32C_HEADER} before it replaces anything.
+     *
+     * @return completes with the outcome; never exceptionally
+     */
+    public CompletableFuture<PushOutcome> push(String ownerBaseUrl, String bucket, String key, PeerSignedHeaders signed,
+                                               Path file, long length, long crc32c, Duration timeout) {
+        return webClient.put()
+                .uri(ownerBaseUrl + "/internal/cache/object?bucket={b}&key={k}", bucket, key)
+                .headers(h -> {
+                    signed.apply(h);
+                    h.setContentLength(length);
+                    h.set(CRC32C_HEADER, Long.toHexString(crc32c));
+                })
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(BodyInserters.fromResource(new FileSystemResource(file)))
+                .exchangeToMono(resp -> resp.releaseBody().thenReturn(
+                        resp.statusCode().is2xxSuccessful() ? PushOutcome.STORED
+                                : resp.statusCode().is4xxClientError() ? PushOutcome.REJECTED
+                                : PushOutcome.FAILED))
+                .timeout(timeout)
+                .onErrorReturn(PushOutcome.FAILED)
+                .defaultIfEmpty(PushOutcome.FAILED)
+                .toFuture();
+    }
+
+    /**
+     * Batch lookup: which of keys the peer holds, in one round trip.
+     *
+     * @return key to size (-1 while the peer is still filling it) for the keys the peer has
+     */
+    public CompletableFuture<Map<String, Long>> lookup(String peerBaseUrl, String bucket, List<String> keys,
+                                                       PeerSignedHeaders signed, Duration timeout) {
+        return webClient.post()
+                .uri(peerBaseUrl + "/internal/cache/lookup?bucket={b}", bucket)
+                .headers(h -> signed.apply(h))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(keys)
+                .retrieve()
+                .bodyToMono(new ParameterizedTypeReference<Map<String, Long>>() {})
+                .timeout(timeout)
+                .toFuture();
+    }
+
+    /**
+     * Lease call (acquire, renew or release) against the peer that owns the lock key on the ring.
+     *
+     * @return the grantor's answer; completes exceptionally on transport errors and timeouts
+     */
+    public CompletableFuture<LeaseGrant> lease(String ownerBaseUrl, String action, String bucket, String key,
+                                               String owner, long ttlSeconds, long token,
+                                               PeerSignedHeaders signed, Duration timeout) {
+        return webClient.post()
+                .uri(ownerBaseUrl + "/internal/lock/{a}?bucket={b}&key={k}&owner={o}&ttlSeconds={t}&token={f}",
+                        action, bucket, key, owner, ttlSeconds, token)
+                .headers(h -> signed.apply(h))
+                .retrieve()
+                .bodyToMono(LeaseGrant.class)
+                .timeout(timeout)
+                .toFuture();
+    }
+
+    /** Fire-and-forget notice that queryId finished (manifest at bucket/manifestKey) or failed; wakes peer waiters. */
+    public void notifyQueryDone(String peerBaseUrl, String queryId, String bucket, String manifestKey, boolean failed,
+                                PeerSignedHeaders signed, Duration timeout) {
+        webClient.post()
+                .uri(peerBaseUrl + "/internal/query/done?queryId={q}&bucket={b}&key={k}" + (failed ? "&failed=true" : ""),
+                        queryId, bucket, manifestKey)
+                .headers(h -> signed.apply(h))
+                .retrieve()
+                .toBodilessEntity()
+                .timeout(timeout)
+                .subscribe(ok -> { }, err -> { });
+    }
+
+    /** Fire-and-forget hint that fromPeer has bucket/key cached; the owner pulls it in the background. */
+    public void warm(String ownerBaseUrl, String bucket, String key, String fromPeer,
+                     PeerSignedHeaders signed, Duration timeout) {
+        webClient.post()
+                .uri(ownerBaseUrl + "/internal/cache/warm?bucket={b}&key={k}&from={f}", bucket, key, fromPeer)
+                .headers(h -> signed.apply(h))
+                .retrieve()
+                .toBodilessEntity()
+                .timeout(timeout)
+                .subscribe(ok -> { }, err -> { });
+    }
 }
@@ -1,7 +1,11 @@
 package org.iceforge.skadi.aws.s3;
 
+import jakarta.servlet.http.HttpServletRequest;
+import org.iceforge.skadi.api.LocalFileServing;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
 import org.springframework.http.*;
 import org.springframework.web.bind.annotation.*;
 
@@ -9,13 +13,21 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterInputStream;
 
 @RestController
 @RequestMapping("/internal/cache")
 @ConditionalOnProperty(prefix = "skadi.query-cache", name = "store", havingValue = "s3", matchIfMissing = true)
 public class PeerCacheController {
 
+    static final String SOURCE_HEADER = "X-Skadi-Source";
+    static final String CACHED_AT_HEADER = "X-Skadi-Cached-At";
+
     private final CachedAwsSdkS3AccessLayer cache;
     private final PeerAuth peerAuth;
 
@@ -53,28 +65,176 @@ public class PeerCacheController {
     }
 
     @GetMapping(value = "/object", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
-    public ResponseEntity<InputStreamResource> get(
+    public ResponseEntity<Resource> get(
             @RequestParam("bucket") String bucket,
             @RequestParam("key") String key,
             @RequestHeader(value = "X-Skadi-KeyId", required = false) String keyId,
             @RequestHeader(value = "X-Skadi-Ts", required = false) String ts,
             @RequestHeader(value = "X-Skadi-Nonce", required = false) String nonce,
-            @RequestHeader(value = "X-Skadi-Signature", required = false) String sig
+            @RequestHeader(value = "X-Skadi-Signature", required = false) String sig,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            @RequestParam(value = "fill", defaultValue = "false") boolean fill,
+            HttpServletRequest request
     ) throws IOException {
-        String query = "bucket=" + bucket + "&key=" + key;
+        String query = "bucket=" + bucket + "&key=" + key + (fill ? "&fill=true" : "");
         authorize("GET", "/internal/cache/object", query, keyId, ts, nonce, sig);
 
         Optional<Path> p = cache.localPathIfCached(new S3Models.ObjectRef(bucket, key));
-        if (p.isEmpty() || !Files.exists(p.get())) return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        if (p.isEmpty() || !Files.exists(p.get())) {
+            if (range != null) return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+            // Not on disk yet: stream an in-progress fill, or (fill=true, owner) start one for the cluster.
+            // Length and checksum are not known up front, so they follow the body in a trailer; a failed
+            // fill aborts the response mid-body, before the trailer.
+            return cache.openForPeer(new S3Models.ObjectRef(bucket, key), fill)
+                    .<ResponseEntity<Resource>>map(in -> ResponseEntity.ok()
+                            .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                            .header(SOURCE_HEADER, "FILLING")
+                            .header(PeerCacheClient.TRAILER_HEADER, "length-crc32c")
+                            .body(new InputStreamResource(new ChecksumTrailerInputStream(in))))
+                    .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND).build());
+        }
 
         Path file = p.get();
         long size = Files.size(file);
-        InputStream in = Files.newInputStream(file);
 
-        return ResponseEntity.ok()
+        if (range != null) {
+            // Single byte range (block fetches from peers). Answered here so the slice can go out
+            // via sendfile, with a positional-read stream as the fallback.
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(range);
+            } catch (IllegalArgumentException e) {
+                ranges = List.of();
+            }
+            if (ranges.size() != 1 || size == 0 || !rangeSatisfiable(ranges.get(0), size)) {
+                return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                        .header(HttpHeaders.CONTENT_RANGE, "bytes */" + size)
+                        .build();
+            }
+            long start = ranges.get(0).getRangeStart(size);
+            long end = ranges.get(0).getRangeEnd(size);
+            ResponseEntity.BodyBuilder partial = ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                    .contentLength(end - start + 1)
+                    .header(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+            if (LocalFileServing.trySendfile(request, file, start, end + 1)) {
+                return partial.build();
+            }
+            return partial.body(new InputStreamResource(new FileRangeInputStream(file, start, end - start + 1)));
+        }
+
+        // Everything the caller needs comes with the body: no HEAD or /meta round trip.
+        S3Models.ObjectRef ref = new S3Models.ObjectRef(bucket, key);
+        HttpHeaders headers = new HttpHeaders();
+        cache.localCrc32c(ref).ifPresent(crc -> headers.set(PeerCacheClient.CRC32C_HEADER, Long.toHexString(crc)));
+        cache.readLocalMeta(ref).ifPresent(m -> {
+            headers.set(SOURCE_HEADER, m.source());
+            headers.set(CACHED_AT_HEADER, m.cachedAt().toString());
+        });
+
+        if (PeerTransferEncoding.shouldDeflate(acceptEncoding, key, size)) {
+            // Compressible payload and the peer asked for it: deflate on the fly (zlib-wrapped, as HTTP wants).
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            InputStream in = new DeflaterInputStream(Files.newInputStream(file), deflater) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        deflater.end();
+                    }
+                }
+            };
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                    .header(HttpHeaders.CONTENT_ENCODING, PeerTransferEncoding.DEFLATE)
+                    .header(PeerCacheClient.LENGTH_HEADER, String.valueOf(size))
+                    .headers(headers)
+                    .body(new InputStreamResource(in));
+        }
+
+        ResponseEntity.BodyBuilder ok = ResponseEntity.ok()
                 .contentType(MediaType.APPLICATION_OCTET_STREAM)
                 .contentLength(size)
-                .body(new InputStreamResource(in));
+                .headers(headers);
+        // Identity: the connector sends the file straight from the page cache when it can.
+        if (LocalFileServing.trySendfile(request, file, 0, size)) {
+            return ok.build();
+        }
+        return ok.body(new FileSystemResource(file));
+    }
+
+    private static boolean rangeSatisfiable(HttpRange r, long size) {
+        try {
+            return r.getRangeStart(size) <= r.getRangeEnd(size);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    static final int MAX_LOOKUP_KEYS = 1000;
+
+    /** Batch lookup: which of the posted keys are held here, with their sizes (-1 while filling). */
+    @PostMapping(value = "/lookup", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Long>> lookup(
+            @RequestParam("bucket") String bucket,
+            @RequestHeader(value = "X-Skadi-KeyId", required = false) String keyId,
+            @RequestHeader(value = "X-Skadi-Ts", required = false) String ts,
+            @RequestHeader(value = "X-Skadi-Nonce", required = false) String nonce,
+            @RequestHeader(value = "X-Skadi-Signature", required = false) String sig,
+            @RequestBody List<String> keys
+    ) {
+        authorize("POST", "/internal/cache/lookup", "bucket=" + bucket, keyId, ts, nonce, sig);
+
+        if (keys.size() > MAX_LOOKUP_KEYS) return ResponseEntity.badRequest().build();
+        return ResponseEntity.ok(cache.holdings(bucket, keys));
+    }
+
+    /** Push replication: the peer that wrote bucket/key sends its committed copy to this owner. */
+    @PutMapping(value = "/object", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<Void> put(
+            @RequestParam("bucket") String bucket,
+            @RequestParam("key") String key,
+            @RequestHeader(value = "X-Skadi-KeyId", required = false) String keyId,
+            @RequestHeader(value = "X-Skadi-Ts", required = false) String ts,
+            @RequestHeader(value = "X-Skadi-Nonce", required = false) String nonce,
+            @RequestHeader(value = "X-Skadi-Signature", required = false) String sig,
+            @RequestHeader(value = HttpHeaders.CONTENT_LENGTH, required = false) Long length,
+            @RequestHeader(value = PeerCacheClient.CRC32C_HEADER, required = false) String crc,
+            InputStream body
+    ) throws IOException {
+        String query = "bucket=" + bucket + "&key=" + key;
+        authorize("PUT", "/internal/cache/object", query, keyId, ts, nonce, sig);
+
+        if (length == null || length < 0) return ResponseEntity.status(HttpStatus.LENGTH_REQUIRED).build();
+        if (length > cache.maxObjectBytes()) return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        OptionalLong expectedCrc;
+        try {
+            expectedCrc = crc == null ? OptionalLong.empty() : OptionalLong.of(Long.parseLong(crc, 16));
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        boolean ok = cache.acceptPush(new S3Models.ObjectRef(bucket, key), body, length, expectedCrc);
+        return ok ? ResponseEntity.noContent().build() : ResponseEntity.unprocessableEntity().build();
+    }
+
+    @PostMapping("/warm")
+    public ResponseEntity<Void> warm(
+            @RequestParam("bucket") String bucket,
+            @RequestParam("key") String key,
+            @RequestParam("from") String from,
+            @RequestHeader(value = "X-Skadi-KeyId", required = false) String keyId,
+            @RequestHeader(value = "X-Skadi-Ts", required = false) String ts,
+            @RequestHeader(value = "X-Skadi-Nonce", required = false) String nonce,
+            @RequestHeader(value = "X-Skadi-Signature", required = false) String sig
+    ) {
+        String query = "bucket=" + bucket + "&key=" + key + "&from=" + from;
+        authorize("POST", "/internal/cache/warm", query, keyId, ts, nonce, sig);
+
+        cache.warmFrom(new S3Models.ObjectRef(bucket, key), from);
+        return ResponseEntity.accepted().build();
     }
 
     @ResponseStatus(HttpStatus.UNAUTHORIZED)
@@ -0,0 +1,46 @@
+package org.iceforge.skadi.aws.s3;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * HMAC-SHA256 for peer request signing and verification.
+ * <p>
+ * Peer calls sit on the path of every cluster cache hit, so the provider lookup of {@code Mac.getInstance}
+ * is paid once per thread rather than per request, and the key spec once per secret.
+ */
+final class PeerHmac {
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private static final ThreadLocal<Mac> MAC = ThreadLocal.withInitial(() -> {
+        try {
+            return Mac.getInstance(ALGORITHM);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " not available", e);
+        }
+    });
+
+    // Secrets are a handful of configured values; the cache does not grow with traffic.
+    private static final Map<String, SecretKeySpec> KEYS = new ConcurrentHashMap<>();
+
+    private PeerHmac() {}
+
+    static String signB64Url(String secret, String data) {
+        SecretKeySpec key = KEYS.computeIfAbsent(secret,
+                s -> new SecretKeySpec(s.getBytes(StandardCharsets.UTF_8), ALGORITHM));
+        Mac mac = MAC.get();
+        try {
+            mac.init(key);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] out = mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(out);
+    }
+}
@@ -0,0 +1,353 @@
+package org.iceforge.skadi.aws.s3;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.naming.NamingEnumeration;
+import javax.naming.directory.Attribute;
+import javax.naming.directory.InitialDirContext;
+import java.net.InetAddress;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Live view of the peer cache cluster.
+ * <p>
+ * Members are the configured seeds ({@code skadi.peer-cache.peers}) plus, optionally, whatever a DNS lookup of
+ * {@code skadi.peer-cache.discovery.name} returns: the A records of a headless service ({@code mode: dns}) or
+ * the targets of an SRV record ({@code mode: srv}). Every member is pinged on a fixed interval and real
+ * transfers report their outcome too; both feed a per-peer latency EWMA, error-rate EWMA and circuit breaker.
+ * <p>
+ * An open circuit takes the peer out of {@link #isAvailable} until {@code circuitOpenMs} has passed, after which
+ * one probe is let through (half-open): success closes the circuit, failure opens it again. The member list
+ * itself only changes with discovery, so entry ownership on the {@link PeerRing} stays stable while a peer flaps.
+ * <p>
+ * DNS discovery lists members as {@code scheme://ip:port}. {@link #self()} is this node in that same form
+ * (selfUrl's host resolved), so it is left out of the members and every node hashes the same ring.
+ */
+@Component
+public class PeerMembership {
+    private static final Logger logger = LoggerFactory.getLogger(PeerMembership.class);
+
+    private static final double EWMA_ALPHA = 0.2;
+    // A half-open probe that never reports back (e.g. cancelled as a hedge loser) frees the slot after this long
+    private static final long PROBE_TIMEOUT_MS = 10_000;
+
+    public enum Circuit { CLOSED, OPEN, HALF_OPEN }
+
+    /** Dashboard / selection view of one peer. */
+    public record PeerStatus(String url, Circuit circuit, double latencyEwmaMs, double errorRate,
+                             long lastSuccessMillis) {}
+
+    @Value("${skadi.peer-cache.enabled:false}")
+    private boolean enabled;
+
+    @Value("${skadi.peer-cache.peers:}")
+    private List<String> seeds;
+
+    @Value("${skadi.peer-cache.selfUrl:}")
+    private String selfUrl;
+
+    // none | dns (headless service A records) | srv
+    @Value("${skadi.peer-cache.discovery.mode:none}")
+    private String discoveryMode = "none";
+
+    @Value("${skadi.peer-cache.discovery.name:}")
+    private String discoveryName;
+
+    @Value("${skadi.peer-cache.discovery.scheme:http}")
+    private String discoveryScheme = "http";
+
+    @Value("${skadi.peer-cache.discovery.port:8080}")
+    private int discoveryPort = 8080;
+
+    @Value("${skadi.peer-cache.discovery.refreshMs:30000}")
+    private long discoveryRefreshMs = 30_000;
+
+    @Value("${skadi.peer-cache.heartbeat.intervalMs:5000}")
+    private long heartbeatIntervalMs = 5_000;
+
+    @Value("${skadi.peer-cache.heartbeat.timeoutMs:1000}")
+    private long heartbeatTimeoutMs = 1_000;
+
+    @Value("${skadi.peer-cache.circuit.failureThreshold:3}")
+    private int failureThreshold = 3;
+
+    @Value("${skadi.peer-cache.circuit.openMs:30000}")
+    private long circuitOpenMs = 30_000;
+
+    private final PeerCacheClient client;
+    private final Map<String, Health> health = new ConcurrentHashMap<>();
+    private volatile List<String> members = List.of();
+    // written before members, so a reader that sees new members sees the matching self
+    private volatile String self;
+    private ScheduledExecutorService scheduler;
+
+    public PeerMembership(PeerCacheClient client) {
+        this.client = client;
+    }
+
+    @PostConstruct
+    public void start() {
+        refreshMembers();
+        if (!enabled || client == null) return;
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "skadi-peer-membership");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::heartbeat, 0, heartbeatIntervalMs, TimeUnit.MILLISECONDS);
+        if (!"none".equalsIgnoreCase(discoveryMode)) {
+            scheduler.scheduleWithFixedDelay(this::refreshMembers, discoveryRefreshMs, discoveryRefreshMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) scheduler.shutdownNow();
+    }
+
+    /** Known peers (seeds + discovered, this node excluded). The same instance is returned until it changes. */
+    public List<String> members() {
+        return members;
+    }
+
+    /**
+     * This node's URL as the other members know it (see the class comment), or selfUrl as configured when
+     * discovery is off or it does not resolve; null when no selfUrl is set.
+     */
+    public String self() {
+        String s = self;
+        return s != null ? s : (selfUrl == null || selfUrl.isBlank() ? null : normalize(selfUrl));
+    }
+
+    /**
+     * False while the peer's circuit is open; the peer is skipped instead of costing a timeout. Once the open
+     * period is over this claims the single half-open probe, so call it only right before a request whose
+     * outcome is reported back through {@link #recordSuccess} / {@link #recordFailure}.
+     */
+    public boolean isAvailable(String peer) {
+        Health h = health.get(peer);
+        return h == null || h.available(System.currentTimeMillis());
+    }
+
+    /**
+     * Read-only variant of {@link #isAvailable} for fire-and-forget messages (hints, notices) that never report
+     * an outcome: false while the circuit is open or half-open, and it never takes the probe slot.
+     */
+    public boolean isClosed(String peer) {
+        Health h = health.get(peer);
+        return h == null || h.closed();
+    }
+
+    /**
+     * Read-only check for picking candidates ahead of time: false while the circuit is open or its half-open
+     * probe is already out. Claim the peer with {@link #isAvailable} right before actually sending to it.
+     */
+    public boolean mightBeAvailable(String peer) {
+        Health h = health.get(peer);
+        return h == null || h.probeable(System.currentTimeMillis());
+    }
+
+    public void recordSuccess(String peer, long latencyMillis) {
+        Health h = health.get(peer);
+        if (h != null) h.success(latencyMillis, System.currentTimeMillis());
+    }
+
+    public void recordFailure(String peer) {
+        Health h = health.get(peer);
+        if (h != null && h.failure(System.currentTimeMillis(), failureThreshold, circuitOpenMs)) {
+            logger.warn("Peer {} circuit opened for {} ms", peer, circuitOpenMs);
+        }
+    }
+
+    public List<PeerStatus> statuses() {
+        long now = System.currentTimeMillis();
+        List<PeerStatus> out = new ArrayList<>();
+        for (String m : members) {
+            Health h = health.get(m);
+            if (h != null) out.add(h.status(m, now));
+        }
+        return out;
+    }
+
+    void heartbeat() {
+        Duration timeout = Duration.ofMillis(heartbeatTimeoutMs);
+        for (String peer : members) {
+            // An open circuit is only probed once its open period is over.
+            if (!isAvailable(peer)) continue;
+            long started = System.nanoTime();
+            client.ping(peer, timeout).whenComplete((ok, err) -> {
+                if (err == null && Boolean.TRUE.equals(ok)) {
+                    recordSuccess(peer, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+                } else {
+                    recordFailure(peer);
+                }
+            });
+        }
+    }
+
+    void refreshMembers() {
+        LinkedHashSet<String> all = new LinkedHashSet<>();
+        if (seeds != null) {
+            for (String s : seeds) {
+                if (s != null && !s.isBlank()) all.add(normalize(s));
+            }
+        }
+        try {
+            all.addAll(discover());
+        } catch (Exception e) {
+            // Keep the last known members; seeds are always present.
+            logger.warn("Peer discovery via {} {} failed", discoveryMode, discoveryName, e);
+            all.addAll(members);
+        }
+        String nextSelf = null;
+        if (selfUrl != null && !selfUrl.isBlank()) {
+            nextSelf = normalize(selfUrl);
+            all.remove(nextSelf);
+            if ("dns".equalsIgnoreCase(discoveryMode)) {
+                // Discovered by address: that address is how the others list (and hash) this node
+                List<String> resolved = resolvedForms(nextSelf);
+                if (!resolved.isEmpty()) nextSelf = resolved.get(0);
+                for (String r : resolved) {
+                    if (all.remove(r)) nextSelf = r;
+                }
+            }
+        }
+
+        List<String> next = List.copyOf(all);
+        if (!next.equals(members) || !java.util.Objects.equals(nextSelf, self)) {
+            for (String m : next) health.computeIfAbsent(m, k -> new Health());
+            health.keySet().retainAll(next);
+            self = nextSelf;
+            members = next;
+            logger.info("Peer cache members: {} (self {})", next, nextSelf);
+        }
+    }
+
+    /** url with its host replaced by each address it resolves to, as scheme://ip:port; empty if it does not resolve. */
+    static List<String> resolvedForms(String url) {
+        List<String> out = new ArrayList<>();
+        try {
+            URI u = URI.create(url);
+            if (u.getHost() == null) return out;
+            int port = u.getPort() >= 0 ? u.getPort() : ("https".equalsIgnoreCase(u.getScheme()) ? 443 : 80);
+            for (InetAddress a : InetAddress.getAllByName(u.getHost())) {
+                out.add(u.getScheme() + "://" + a.getHostAddress() + ":" + port);
+            }
+        } catch (Exception e) {
+            logger.debug("Could not resolve self URL {}", url, e);
+        }
+        return out;
+    }
+
+    private List<String> discover() throws Exception {
+        if (discoveryName == null || discoveryName.isBlank()) return List.of();
+        List<String> out = new ArrayList<>();
+        switch (discoveryMode.toLowerCase()) {
+            case "dns" -> {
+                for (InetAddress a : InetAddress.getAllByName(discoveryName)) {
+                    out.add(discoveryScheme + "://" + a.getHostAddress() + ":" + discoveryPort);
+                }
+            }
+            case "srv" -> {
+                Hashtable<String, String> env = new Hashtable<>();
+                env.put("java.naming.factory.initial", "com.sun.jndi.dns.DnsContextFactory");
+                InitialDirContext ctx = new InitialDirContext(env);
+                try {
+                    Attribute srv = ctx.getAttributes(discoveryName, new String[]{"SRV"}).get("SRV");
+                    if (srv == null) return out;
+                    NamingEnumeration<?> records = srv.getAll();
+                    while (records.hasMore()) {
+                        // priority weight port target
+                        String[] f = records.next().toString().trim().split("\\s+");
+                        String target = f[3].endsWith(".") ? f[3].substring(0, f[3].length() - 1) : f[3];
+                        out.add(discoveryScheme + "://" + target + ":" + f[2]);
+                    }
+                } finally {
+                    ctx.close();
+                }
+            }
+            case "none" -> { }
+            default -> throw new IllegalArgumentException("Unknown peer discovery mode: " + discoveryMode);
+        }
+        return out;
+    }
+
+    private static String normalize(String url) {
+        String u = url.trim();
+        return u.endsWith("/") ? u.substring(0, u.length() - 1) : u;
+    }
+
+    /** Per-peer health; guarded by its own monitor. */
+    static final class Health {
+        private double latencyEwmaMs = -1;
+        private double errorRate;
+        private int consecutiveFailures;
+        private long openUntilMillis;
+        private long probeStartedMillis;
+        private boolean probing;
+        private long lastSuccessMillis;
+
+        synchronized boolean closed() {
+            return openUntilMillis == 0;
+        }
+
+        synchronized boolean probeable(long now) {
+            if (openUntilMillis == 0) return true;
+            if (now < openUntilMillis) return false;
+            // Half-open: one request goes through (again, if the last probe never reported back).
+            return !probing || now - probeStartedMillis >= PROBE_TIMEOUT_MS;
+        }
+
+        synchronized boolean available(long now) {
+            if (!probeable(now)) return false;
+            if (openUntilMillis == 0) return true;
+            probing = true;
+            probeStartedMillis = now;
+            return true;
+        }
+
+        synchronized void success(long latencyMillis, long now) {
+            latencyEwmaMs = latencyEwmaMs < 0 ? latencyMillis : EWMA_ALPHA * latencyMillis + (1 - EWMA_ALPHA) * latencyEwmaMs;
+            errorRate = (1 - EWMA_ALPHA) * errorRate;
+            consecutiveFailures = 0;
+            openUntilMillis = 0;
+            probing = false;
+            lastSuccessMillis = now;
+        }
+
+        /** @return true if this failure opened the circuit */
+        synchronized boolean failure(long now, int threshold, long openMs) {
+            errorRate = EWMA_ALPHA + (1 - EWMA_ALPHA) * errorRate;
+            consecutiveFailures++;
+            boolean wasOpen = openUntilMillis != 0;
+            if (probing || consecutiveFailures >= threshold) {
+                openUntilMillis = now + openMs;
+                probing = false;
+                return !wasOpen;
+            }
+            return false;
+        }
+
+        synchronized PeerStatus status(String url, long now) {
+            Circuit c = openUntilMillis == 0 ? Circuit.CLOSED
+                    : (now < openUntilMillis && !probing) ? Circuit.OPEN : Circuit.HALF_OPEN;
+            return new PeerStatus(url, c, latencyEwmaMs, errorRate, lastSuccessMillis);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package org.iceforge.skadi.aws.s3;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Deterministic ownership of cache entries across the peer cluster (rendezvous / highest-random-weight hashing).
+ * <p>
+ * Every node scores each member against a cache id and the highest scores own the entry. All nodes with the same
+ * member list agree on the owners without coordination, and adding or removing a node only moves the entries that
+ * node owns (about 1/N of them). Unlike a token ring no virtual nodes are needed for an even spread.
+ */
+public final class PeerRing {
+
+    private final List<String> members;
+    private final long[] memberSeeds;
+    private final String self;
+
+    /**
+     * @param peers   base URLs of the cluster members
+     * @param selfUrl this node's own base URL as the others see it; it takes part in ownership but is never
+     *                returned as a peer to fetch from. Blank when this node is not a member.
+     */
+    public PeerRing(List<String> peers, String selfUrl) {
+        LinkedHashSet<String> all = new LinkedHashSet<>();
+        if (peers != null) {
+            for (String p : peers) {
+                if (p != null && !p.isBlank()) all.add(normalize(p));
+            }
+        }
+        this.self = (selfUrl == null || selfUrl.isBlank()) ? null : normalize(selfUrl);
+        if (self != null) all.add(self);
+
+        this.members = List.copyOf(all);
+        this.memberSeeds = new long[members.size()];
+        for (int i = 0; i < members.size(); i++) {
+            memberSeeds[i] = fnv1a64(members.get(i));
+        }
+    }
+
+    public List<String> members() {
+        return members;
+    }
+
+    /** The first n members in owner order for cacheId (this node included). */
+    public List<String> owners(String cacheId, int n) {
+        long keyHash = fnv1a64(cacheId);
+        List<Integer> idx = new ArrayList<>(members.size());
+        for (int i = 0; i < members.size(); i++) idx.add(i);
+        idx.sort(Comparator.comparingLong((Integer i) -> mix64(memberSeeds[i] ^ keyHash)).reversed());
+
+        List<String> out = new ArrayList<>(Math.min(n, idx.size()));
+        for (int i = 0; i < idx.size() && out.size() < n; i++) {
+            out.add(members.get(idx.get(i)));
+        }
+        return out;
+    }
+
+    /** The peers to ask for cacheId, best owner first, excluding this node. */
+    public List<String> peersToAsk(String cacheId, int n) {
+        List<String> ordered = owners(cacheId, members.size());
+        ordered.removeIf(p -> p.equals(self));
+        return ordered.size() > n ? ordered.subList(0, n) : ordered;
+    }
+
+    /** The first replicas owners of cacheId other than this node (push targets). */
+    public List<String> ownerPeers(String cacheId, int replicas) {
+        List<String> owners = owners(cacheId, replicas);
+        owners.removeIf(p -> p.equals(self));
+        return owners;
+    }
+
+    /** True if this node is among the first replicas owners of cacheId. */
+    public boolean isOwner(String cacheId, int replicas) {
+        return self != null && owners(cacheId, replicas).contains(self);
+    }
+
+    private static String normalize(String url) {
+        String u = url.trim();
+        return u.endsWith("/") ? u.substring(0, u.length() - 1) : u;
+    }
+
+    private static long fnv1a64(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : s.getBytes(StandardCharsets.UTF_8)) {
+            h ^= (b & 0xff);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    /** MurmurHash3 finalizer: spreads the combined hash so scores are independent per member. */
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+}
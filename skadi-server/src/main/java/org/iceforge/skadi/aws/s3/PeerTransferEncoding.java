@@ -0,0 +1,48 @@
+package org.iceforge.skadi.aws.s3;
+
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Content-aware compression for peer cache transfers.
+ * <p>
+ * Most cached objects are gzip'd NDJSON chunks or Arrow streams; compressing them again burns CPU on both
+ * peers for no gain. The client only offers {@code deflate} for keys that do not look compressed already,
+ * and the serving peer only deflates when offered, so compressed payloads always go out as identity
+ * (and can be sendfile'd).
+ */
+final class PeerTransferEncoding {
+
+    static final String DEFLATE = "deflate";
+    static final String IDENTITY = "identity";
+
+    /** Below this size the deflate stream is not worth giving up sendfile for. */
+    static final long MIN_DEFLATE_BYTES = 64 * 1024;
+
+    private static final Set<String> COMPRESSED_SUFFIXES = Set.of(
+            ".gz", ".gzip", ".zst", ".zstd", ".lz4", ".snappy", ".bz2", ".xz", ".zip",
+            ".arrow", ".arrows", ".feather", ".parquet", ".orc", ".avro");
+
+    private PeerTransferEncoding() {}
+
+    /** True if the key's extension says the payload is already compressed (or a compressed columnar format). */
+    static boolean alreadyCompressed(String key) {
+        if (key == null) return false;
+        String k = key.toLowerCase(Locale.ROOT);
+        int dot = k.lastIndexOf('.');
+        return dot >= 0 && COMPRESSED_SUFFIXES.contains(k.substring(dot));
+    }
+
+    /** Accept-Encoding the client sends for key. */
+    static String acceptEncodingFor(String key, boolean compressionEnabled) {
+        return compressionEnabled && !alreadyCompressed(key) ? DEFLATE : IDENTITY;
+    }
+
+    /** Whether the serving peer should deflate a full-object response. */
+    static boolean shouldDeflate(String acceptEncoding, String key, long size) {
+        return acceptEncoding != null
+                && acceptEncoding.toLowerCase(Locale.ROOT).contains(DEFLATE)
+                && size >= MIN_DEFLATE_BYTES
+                && !alreadyCompressed(key);
+    }
+}
@@ -0,0 +1,263 @@
+package org.iceforge.skadi.aws.s3;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Off-heap RAM tier in front of the disk cache, keyed by cache file.
+ * <p>
+ * Small files that are read again and again (manifests, the hottest chunks) are copied into direct buffers and
+ * served from there, without opening the file. Every read of the disk tier is counted in a small count-min
+ * sketch; a file is promoted once it has been seen promoteAfterHits times, and only if it is more popular than
+ * the least recently used entries it would push out (TinyLFU admission). The sketch halves its counters
+ * periodically, so old popularity fades. The tier is bounded by bytes, not entries.
+ * <p>
+ * Any change to a cache file invalidates it here. A promotion whose read started before an invalidation is not
+ * stored, so a file replaced while it was being copied never becomes visible from RAM.
+ * <p>
+ * Direct buffers are released by the GC after eviction; -XX:MaxDirectMemorySize needs headroom above maxBytes.
+ */
+final class RamTier {
+
+    private final long maxBytes;
+    private final long maxObjectBytes;
+    private final int promoteAfterHits;
+    private final FrequencySketch sketch;
+    private final AtomicLong invalidations = new AtomicLong();
+
+    // guarded by itself; access order, so iteration starts at the least recently used entry
+    private final LinkedHashMap<Path, ByteBuffer> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    RamTier(long maxBytes, long maxObjectBytes, int promoteAfterHits) {
+        this.maxBytes = Math.max(0, maxBytes);
+        this.maxObjectBytes = Math.min(Math.max(0, maxObjectBytes), Math.min(this.maxBytes, Integer.MAX_VALUE));
+        this.promoteAfterHits = Math.max(1, promoteAfterHits);
+        this.sketch = enabled() ? new FrequencySketch(this.maxBytes) : null;
+    }
+
+    boolean enabled() {
+        return maxBytes > 0;
+    }
+
+    /** A read-only view of file's bytes if it is held here, else null. */
+    ByteBuffer get(Path file) {
+        if (!enabled()) return null;
+        synchronized (entries) {
+            ByteBuffer b = entries.get(file);
+            if (b != null) sketch.increment(file);
+            return b == null ? null : b.asReadOnlyBuffer();
+        }
+    }
+
+    /** Whether file is held here; unlike {@link #get} this does not count as a read. */
+    boolean contains(Path file) {
+        if (!enabled()) return false;
+        synchronized (entries) {
+            return entries.containsKey(file);
+        }
+    }
+
+    /** Take before reading a file to promote; pass to {@link #promote}. */
+    long epoch() {
+        return invalidations.get();
+    }
+
+    /**
+     * Count a disk-tier read of file.
+     *
+     * @return true if file should now be copied into this tier
+     */
+    boolean recordAccess(Path file, long size) {
+        if (!enabled()) return false;
+        synchronized (entries) {
+            sketch.increment(file);
+            return size >= 0 && size <= maxObjectBytes && sketch.frequency(file) >= promoteAfterHits;
+        }
+    }
+
+    /**
+     * Copy file (size bytes) into a direct buffer and admit it.
+     *
+     * @return the admitted buffer (read-only), or null if it was not admitted
+     */
+    ByteBuffer promote(Path file, long size, long epoch) throws IOException {
+        if (!enabled() || size > maxObjectBytes) return null;
+        ByteBuffer data = ByteBuffer.allocateDirect((int) size);
+        try (FileChannel ch = FileChannel.open(file, READ)) {
+            while (data.hasRemaining()) {
+                if (ch.read(data) < 0) return null; // shrank under us; let the next hit retry
+            }
+            if (ch.size() != size) return null;
+        }
+        data.flip();
+        return put(file, data, epoch) ? data.asReadOnlyBuffer() : null;
+    }
+
+    boolean put(Path file, ByteBuffer data, long epoch) {
+        if (!enabled() || data.remaining() > maxObjectBytes) return false;
+        synchronized (entries) {
+            if (invalidations.get() != epoch) return false;
+
+            ByteBuffer old = entries.remove(file);
+            if (old != null) bytes -= old.capacity();
+
+            // Victims from the LRU end; the candidate has to be more popular than each of them
+            int candidate = sketch.frequency(file);
+            long needed = bytes + data.capacity() - maxBytes;
+            List<Path> victims = new ArrayList<>();
+            Iterator<Map.Entry<Path, ByteBuffer>> it = entries.entrySet().iterator();
+            while (needed > 0 && it.hasNext()) {
+                Map.Entry<Path, ByteBuffer> e = it.next();
+                if (sketch.frequency(e.getKey()) > candidate) return false;
+                victims.add(e.getKey());
+                needed -= e.getValue().capacity();
+            }
+            if (needed > 0) return false;
+
+            for (Path v : victims) {
+                bytes -= entries.remove(v).capacity();
+            }
+            entries.put(file, data);
+            bytes += data.capacity();
+            return true;
+        }
+    }
+
+    void invalidate(Path file) {
+        if (!enabled()) return;
+        invalidations.incrementAndGet();
+        synchronized (entries) {
+            ByteBuffer old = entries.remove(file);
+            if (old != null) bytes -= old.capacity();
+        }
+    }
+
+    long bytes() {
+        synchronized (entries) {
+            return bytes;
+        }
+    }
+
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /** Stream over buffer from its position to its limit. */
+    static InputStream stream(ByteBuffer buffer) {
+        return new BufferInputStream(buffer);
+    }
+
+    /** Stream over [offset, offset + length) of buffer, clamped to its end. */
+    static InputStream stream(ByteBuffer buffer, long offset, long length) {
+        int size = buffer.remaining();
+        int from = (int) Math.min(offset, size);
+        int to = (int) Math.min(size, from + Math.min(length, (long) size));
+        return new BufferInputStream(buffer.slice(buffer.position() + from, to - from));
+    }
+
+    private static final class BufferInputStream extends InputStream {
+        private final ByteBuffer buf;
+
+        BufferInputStream(ByteBuffer buf) {
+            this.buf = buf;
+        }
+
+        @Override
+        public int read() {
+            return buf.hasRemaining() ? buf.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) return 0;
+            if (!buf.hasRemaining()) return -1;
+            int n = Math.min(len, buf.remaining());
+            buf.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) {
+            int k = (int) Math.max(0, Math.min(n, buf.remaining()));
+            buf.position(buf.position() + k);
+            return k;
+        }
+
+        @Override
+        public int available() {
+            return buf.remaining();
+        }
+    }
+
+    /**
+     * Count-min sketch with four rows of saturating 4-bit counters (one byte each here). After width * 10
+     * increments every counter is halved.
+     */
+    static final class FrequencySketch {
+        private static final int MAX = 15;
+        private static final long[] SEEDS = {0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0x27D4EB2F165667C5L};
+
+        private final byte[][] rows = new byte[SEEDS.length][];
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        /** Sized for the number of 4 KiB objects maxBytes could hold, within [1 Ki, 1 Mi] counters per row. */
+        FrequencySketch(long maxBytes) {
+            long wanted = Math.max(1024, Math.min(1 << 20, maxBytes / 4096));
+            int width = Integer.highestOneBit((int) wanted);
+            for (int i = 0; i < rows.length; i++) rows[i] = new byte[width];
+            this.mask = width - 1;
+            this.sampleSize = width * 10;
+        }
+
+        void increment(Object key) {
+            int h = key.hashCode();
+            boolean added = false;
+            for (int i = 0; i < rows.length; i++) {
+                int idx = index(h, i);
+                if (rows[i][idx] < MAX) {
+                    rows[i][idx]++;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) halve();
+        }
+
+        int frequency(Object key) {
+            int h = key.hashCode();
+            int min = MAX;
+            for (int i = 0; i < rows.length; i++) {
+                min = Math.min(min, rows[i][index(h, i)]);
+            }
+            return min;
+        }
+
+        private int index(int h, int row) {
+            long x = (h + SEEDS[row]) * SEEDS[row];
+            x ^= x >>> 32;
+            return (int) x & mask;
+        }
+
+        private void halve() {
+            for (byte[] row : rows) {
+                for (int i = 0; i < row.length; i++) row[i] >>= 1;
+            }
+            additions /= 2;
+        }
+    }
+}
@@ -60,8 +60,10 @@ public class ResultSetToS3ChunkWriter {
         Objects.requireNonNull(plan);
         Objects.requireNonNull(opt);
 
-        // Backpressure: (1) bounded queue of chunks, (2) bounded bytes in-flight.
-        BlockingQueue<SealedChunk> queue = new ArrayBlockingQueue<>(opt.maxInFlightChunks());
+        // Backpressure: (1) bounded chunks in flight, (2) bounded bytes in flight.
+        // Uploads are futures: a layer with a non-blocking client holds no thread while they run; otherwise its
+        // blocking put runs on uploadPool, whose threads are only started when a put is handed to it.
+        Semaphore inflightChunks = new Semaphore(opt.maxInFlightChunks());
         Semaphore inflightBytes = new Semaphore(opt.maxInFlightBytes());
         AtomicReference<Throwable> firstError = new AtomicReference<>(null);
 
@@ -72,13 +74,7 @@ public class ResultSetToS3ChunkWriter {
         });
 
         List<ChunkDescriptor> chunks = Collections.synchronizedList(new ArrayList<>());
-        List<Future<?>> workers = new ArrayList<>();
-        for (int i = 0; i < opt.uploadThreads(); i++) {
-            int workerId = i;
-            workers.add(uploadPool.submit(() ->
-                    uploaderLoop(plan, opt, queue, inflightBytes, chunks, firstError, workerId)
-            ));
-        }
+        List<CompletableFuture<?>> uploads = new ArrayList<>();
 
         long totalRows = 0;
         long totalUncompressedBytes = 0;
@@ -104,8 +100,7 @@ public class ResultSetToS3ChunkWriter {
                         );
                         builder.reset();
 
-                        inflightBytes.acquire(sealed.payload.length);
-                        queue.put(sealed);
+                        uploads.add(upload(plan, sealed, inflightChunks, inflightBytes, chunks, firstError, uploadPool));
 
                         totalUncompressedBytes += sealed.uncompressedBytes;
                     }
@@ -120,8 +115,7 @@ public class ResultSetToS3ChunkWriter {
                             part
                     );
 
-                    inflightBytes.acquire(sealed.payload.length);
-                    queue.put(sealed);
+                    uploads.add(upload(plan, sealed, inflightChunks, inflightBytes, chunks, firstError, uploadPool));
 
                     totalUncompressedBytes += sealed.uncompressedBytes;
                 }
@@ -130,20 +124,15 @@ public class ResultSetToS3ChunkWriter {
             firstError.compareAndSet(null, t);
             throw t;
         } finally {
-            // signal workers to stop
-            for (int i = 0; i < opt.uploadThreads(); i++) {
-                queue.offer(SealedChunk.poison());
-            }
-
-            uploadPool.shutdown();
-            for (Future<?> f : workers) {
+            // wait for every upload already started, failed or not
+            for (CompletableFuture<?> f : uploads) {
                 try {
-                    // wait "forever" now that we know workers can exit cleanly
-                    f.get();
+                    f.join();
                 } catch (Exception e) {
                     firstError.compareAndSet(null, e);
                 }
             }
+            uploadPool.shutdown();
         }
 
         Throwable err = firstError.get();
@@ -174,53 +163,49 @@ public class ResultSetToS3ChunkWriter {
                 chunks.size()
         );
     }
-    private void uploaderLoop(
+    /**
+     * Starts the upload of one sealed chunk once it fits into the in-flight limits. Fails fast with the first
+     * error of an earlier upload instead of starting more.
+     */
+    private CompletableFuture<?> upload(
             S3WritePlan plan,
-            StreamOptions opt,
-            BlockingQueue<SealedChunk> queue,
+            SealedChunk chunk,
+            Semaphore inflightChunks,
             Semaphore inflightBytes,
             List<ChunkDescriptor> chunks,
             AtomicReference<Throwable> firstError,
-            int workerId
-    ) {
-        int emptyPolls = 0;
-        final int maxEmptyPolls = 5;
-
+            ExecutorService uploadPool
+    ) throws Exception {
+        inflightChunks.acquire();
         try {
-            while (true) {
-                if (firstError.get() != null) {
-                    return;
-                }
-
-                SealedChunk chunk;
-                try {
-                    chunk = queue.poll(1, TimeUnit.SECONDS);
-                } catch (InterruptedException ie) {
-                    Thread.currentThread().interrupt();
-                    return;
-                }
-
-                if (chunk == null) {
-                    emptyPolls++;
-                    if (emptyPolls >= maxEmptyPolls) {
-                        // assume producer is done and poison already sent or no more work
-                        return;
-                    }
-                    continue;
-                }
-                emptyPolls = 0;
-
-                if (chunk.poison) {
-                    return;
-                }
-
-                try {
-                    Map<String, String> userMeta = new HashMap<>();
-                    userMeta.put("skadi-runId", plan.runId());
-                    userMeta.put("skadi-part", String.valueOf(chunk.part));
+            inflightBytes.acquire(chunk.payload.length);
+        } catch (InterruptedException ie) {
+            inflightChunks.release();
+            throw ie;
+        }
+        Throwable earlier = firstError.get();
+        if (earlier != null) {
+            inflightBytes.release(chunk.payload.length);
+            inflightChunks.release();
+            throw (earlier instanceof Exception) ? (Exception) earlier : new RuntimeException(earlier);
+        }
 
-                    String etag = s3.putBytes(chunk.ref, chunk.payload, chunk.contentType, userMeta);
+        Map<String, String> userMeta = new HashMap<>();
+        userMeta.put("skadi-runId", plan.runId());
+        userMeta.put("skadi-part", String.valueOf(chunk.part));
 
+        CompletableFuture<String> put;
+        try {
+            put = s3.putBytesAsync(chunk.ref, chunk.payload, chunk.contentType, userMeta, uploadPool);
+        } catch (RuntimeException e) {
+            put = CompletableFuture.failedFuture(e);
+        }
+        return put.whenComplete((etag, err) -> {
+            try {
+                if (err != null) {
+                    firstError.compareAndSet(null, err instanceof CompletionException && err.getCause() != null
+                            ? err.getCause() : err);
+                } else {
                     chunks.add(new ChunkDescriptor(
                             chunk.part,
                             chunk.ref.key(),
@@ -228,16 +213,12 @@ public class ResultSetToS3ChunkWriter {
                             chunk.uncompressedBytes,
                             etag
                     ));
-                } catch (Throwable t) {
-                    firstError.compareAndSet(null, t);
-                    return;
-                } finally {
-                    inflightBytes.release(chunk.payload.length);
                 }
+            } finally {
+                inflightBytes.release(chunk.payload.length);
+                inflightChunks.release();
             }
-        } finally {
-            // nothing extra
-        }
+        });
     }
 
     // --------------------------------------------------------------------------------------------
@@ -378,19 +359,13 @@ public class ResultSetToS3ChunkWriter {
         final String contentType;
         final long uncompressedBytes;
         final int part;
-        final boolean poison;
 
-        private SealedChunk(S3Models.ObjectRef ref, byte[] payload, String contentType, long uncompressedBytes, int part, boolean poison) {
+        private SealedChunk(S3Models.ObjectRef ref, byte[] payload, String contentType, long uncompressedBytes, int part) {
             this.ref = ref;
             this.payload = payload;
             this.contentType = contentType;
             this.uncompressedBytes = uncompressedBytes;
             this.part = part;
-            this.poison = poison;
-        }
-
-        static SealedChunk poison() {
-            return new SealedChunk(new S3Models.ObjectRef("",""), new byte[0], "application/octet-stream", 0, -1, true);
         }
     }
 
@@ -422,7 +397,7 @@ public class ResultSetToS3ChunkWriter {
                 ct = contentType;
             }
 
-            return new SealedChunk(ref, payload, ct, uncompressed, part, false);
+            return new SealedChunk(ref, payload, ct, uncompressed, part);
         }
 
         void reset() {
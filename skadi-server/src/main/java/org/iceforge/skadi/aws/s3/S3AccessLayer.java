@@ -2,10 +2,17 @@ package org.iceforge.skadi.aws.s3;
 
 import java.io.InputStream;
 import java.net.URL;
+import java.nio.file.Path;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
 
 public interface S3AccessLayer {
 
@@ -13,16 +20,51 @@ public interface S3AccessLayer {
     String putBytes(S3Models.ObjectRef ref, byte[] bytes, String contentType, Map<String, String> userMetadata);
     String putStream(S3Models.ObjectRef ref, InputStream in, long contentLength, String contentType, Map<String, String> userMetadata);
 
+    /**
+     * putBytes as a future. The default runs the blocking put on executor; layers with a non-blocking client
+     * complete it without holding a thread.
+     */
+    default CompletableFuture<String> putBytesAsync(S3Models.ObjectRef ref, byte[] bytes, String contentType,
+                                                    Map<String, String> userMetadata, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> putBytes(ref, bytes, contentType, userMetadata), executor);
+    }
+
     // Download
     byte[] getBytes(S3Models.ObjectRef ref);
 
     // Delegate other methods to the wrapped AwsSdkS3AccessLayer
     InputStream getStream(S3Models.ObjectRef ref); // caller closes
 
+    // Bytes [offset, offset + length) of the object; a range running past the end is truncated. Caller closes.
+    InputStream getRange(S3Models.ObjectRef ref, long offset, long length);
+
+    /**
+     * Local file holding the full object if it is already stored locally; never fetches.
+     * Lets controllers serve raw objects with sendfile instead of copying through the heap.
+     * Empty on a miss, or when this layer has no local file representation: stream with {@link #getStream} then.
+     */
+    default Optional<Path> getLocalFile(S3Models.ObjectRef ref) {
+        return Optional.empty();
+    }
+
+    /**
+     * Hint that refs will be read soon (e.g. the next chunks of a manifest being streamed). Layers with a
+     * local cache start fetching them in the background; the default does nothing.
+     */
+    default void prefetch(List<S3Models.ObjectRef> refs) {
+    }
+
     // Metadata / existence
     Optional<S3Models.ObjectMetadata> head(S3Models.ObjectRef ref);
     boolean exists(S3Models.ObjectRef ref);
 
+    /**
+     * Forget cached metadata for ref because another writer (e.g. a peer) just changed it; the next head or
+     * exists goes to the store. The default does nothing.
+     */
+    default void invalidateMetadata(S3Models.ObjectRef ref) {
+    }
+
     // Delete
     void delete(S3Models.ObjectRef ref);
 
@@ -37,6 +79,32 @@ public interface S3AccessLayer {
     // List
     List<S3Models.ListItem> list(String bucket, String prefix, int maxKeys);
 
+    /**
+     * Every object under prefix, fetched page by page as the stream is consumed. Close the stream (it may
+     * hold a directory walk).
+     */
+    default Stream<S3Models.ListItem> listAll(String bucket, String prefix) {
+        return list(bucket, prefix, Integer.MAX_VALUE).stream();
+    }
+
+    /** Folder-style listing: objects directly under prefix plus the prefixes one delimiter deeper. */
+    default S3Models.Listing listFolder(String bucket, String prefix, String delimiter) {
+        String p = prefix == null ? "" : prefix;
+        List<S3Models.ListItem> objects = new ArrayList<>();
+        Set<String> common = new LinkedHashSet<>();
+        try (Stream<S3Models.ListItem> all = listAll(bucket, p)) {
+            all.forEach(it -> {
+                int idx = it.key().indexOf(delimiter, p.length());
+                if (idx >= 0) {
+                    common.add(it.key().substring(0, idx + delimiter.length()));
+                } else {
+                    objects.add(it);
+                }
+            });
+        }
+        return new S3Models.Listing(objects, List.copyOf(common));
+    }
+
     // Presigned URLs
     URL presignGet(S3Models.ObjectRef ref, Duration ttl);
     URL presignPut(S3Models.ObjectRef ref, Duration ttl, String contentType);
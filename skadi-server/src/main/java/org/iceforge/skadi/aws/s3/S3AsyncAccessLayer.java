@@ -0,0 +1,34 @@
+package org.iceforge.skadi.aws.s3;
+
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.LongConsumer;
+
+/**
+ * Non-blocking counterpart of {@link S3AccessLayer} for the transfers: uploads and the ranged GETs of a parallel
+ * cache fill run on the client's event loop, so no thread is held per request (or per part) in flight. Large
+ * uploads are split into concurrent multipart parts by the client.
+ * <p>
+ * Failures complete the future exceptionally with the same exceptions the blocking layer throws
+ * ({@link S3CacheMissException} for a missing key, {@link S3AccessException} otherwise).
+ */
+public interface S3AsyncAccessLayer {
+
+    // Upload; complete with the ETag
+    CompletableFuture<String> putBytes(S3Models.ObjectRef ref, byte[] bytes, String contentType, Map<String, String> userMetadata);
+
+    // in is read on a background thread and closed when the upload ends; multipart above the client's threshold
+    CompletableFuture<String> putStream(S3Models.ObjectRef ref, InputStream in, long contentLength, String contentType,
+                                        Map<String, String> userMetadata);
+
+    /**
+     * Writes bytes [offset, offset + length) of the object to target, starting at position, as they arrive; a range
+     * running past the end is truncated. progress gets the number of new bytes after each write.
+     *
+     * @return completes with the number of bytes written
+     */
+    CompletableFuture<Long> getRange(S3Models.ObjectRef ref, long offset, long length,
+                                     FileChannel target, long position, LongConsumer progress);
+}
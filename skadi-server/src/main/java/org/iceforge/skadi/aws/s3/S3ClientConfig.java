@@ -1,12 +1,22 @@
 package org.iceforge.skadi.aws.s3;
 
 import org.iceforge.skadi.aws.SkadiAwsProperties;
+import org.iceforge.skadi.s3.spi.S3ClientFactory;
+import org.iceforge.skadi.s3.spi.S3ClientProvider;
+import org.iceforge.skadi.s3.spi.S3ProviderConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3AsyncClientBuilder;
 import software.amazon.awssdk.services.s3.S3Configuration;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.S3ClientBuilder;
@@ -16,14 +26,28 @@ import java.net.URI;
 /** * Configuration class for AWS S3 client and presigner.
  */
 @Configuration
+@EnableConfigurationProperties(S3ProviderConfig.class)
 @ConditionalOnProperty(prefix = "skadi.query-cache", name = "store", havingValue = "s3", matchIfMissing = true)
 public class S3ClientConfig {
     @Value("${skadi.aws.region}")
     private String region;
+    /** Request metrics for every S3 call; lands on /actuator/metrics and /actuator/prometheus. */
     @Bean
-    public S3Client s3Client(SkadiAwsProperties props) {
+    public S3MetricsInterceptor s3MetricsInterceptor(ObjectProvider<MeterRegistry> meterRegistry) {
+        return new S3MetricsInterceptor(meterRegistry.getIfAvailable(SimpleMeterRegistry::new));
+    }
+
+    /** S3ClientProvider beans plus any on the classpath (ServiceLoader); none by default. */
+    @Bean
+    public S3ClientFactory s3ClientFactory(ObjectProvider<S3ClientProvider> providers) {
+        return new S3ClientFactory(providers.orderedStream().toList());
+    }
+
+    @Bean
+    public S3Client s3Client(SkadiAwsProperties props, S3MetricsInterceptor metrics) {
         S3ClientBuilder b = S3Client.builder()
                 .credentialsProvider(DefaultCredentialsProvider.create())
+                .overrideConfiguration(c -> c.addExecutionInterceptor(metrics))
                 .region(Region.of(props.region()))
                 .serviceConfiguration(
                         S3Configuration.builder()
@@ -38,6 +62,39 @@ public class S3ClientConfig {
         return b.build();
     }
 
+    /**
+     * Non-blocking client on Netty for uploads and the ranged GETs of parallel cache fills. maxConcurrency caps the
+     * connections (and so the requests in flight). Puts at or above multipartThreshold are uploaded as concurrent
+     * parts of multipartPartSize.
+     * <p>
+     * A registered {@link S3ClientProvider} builds it from these settings with its own credentials (see
+     * {@link S3ClientFactory#s3AsyncClient}); without one, or if it declines, they are used as they are.
+     */
+    @Bean(destroyMethod = "close")
+    public S3AsyncClient s3AsyncClient(SkadiAwsProperties props, S3MetricsInterceptor metrics,
+                                       S3ClientFactory s3ClientFactory, S3ProviderConfig providerConfig,
+                                       @Value("${skadi.aws.s3.async.maxConcurrency:64}") int maxConcurrency,
+                                       @Value("${skadi.aws.s3.async.multipartThreshold:16Mb}") String multipartThreshold,
+                                       @Value("${skadi.aws.s3.async.multipartPartSize:8Mb}") String multipartPartSize) {
+        S3AsyncClientBuilder b = S3AsyncClient.builder()
+                .credentialsProvider(DefaultCredentialsProvider.create())
+                .region(Region.of(props.region()))
+                .overrideConfiguration(c -> c.addExecutionInterceptor(metrics))
+                .httpClientBuilder(NettyNioAsyncHttpClient.builder().maxConcurrency(maxConcurrency))
+                .forcePathStyle(props.s3().pathStyleAccess())
+                .multipartEnabled(true)
+                .multipartConfiguration(c -> c
+                        .thresholdInBytes(DataSizeExpressionEvaluator.evaluate(multipartThreshold))
+                        .minimumPartSizeInBytes(DataSizeExpressionEvaluator.evaluate(multipartPartSize)));
+
+        if (props.s3().endpoint() != null && !props.s3().endpoint().isBlank()) {
+            b = b.endpointOverride(URI.create(props.s3().endpoint()));
+        }
+
+        S3AsyncClientBuilder skadiDefaults = b;
+        return s3ClientFactory.s3AsyncClient(providerConfig, skadiDefaults).orElseGet(skadiDefaults::build);
+    }
+
     @Bean
     public S3Presigner s3Presigner(SkadiAwsProperties props) {
         S3Presigner.Builder b = S3Presigner.builder()
@@ -0,0 +1,106 @@
+package org.iceforge.skadi.aws.s3;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttribute;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+import software.amazon.awssdk.core.interceptor.SdkExecutionAttribute;
+import software.amazon.awssdk.http.SdkHttpHeaders;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-operation S3 metrics, recorded by the SDK itself for every call of both the blocking and the async
+ * client (retries included in the latency):
+ * <ul>
+ *   <li>{@code skadi.s3.requests} timer with percentile histogram, tagged operation / outcome / status</li>
+ *   <li>{@code skadi.s3.bytes} counter, tagged operation / direction (sent, received) from Content-Length</li>
+ *   <li>{@code skadi.s3.errors} counter, tagged operation / status (0 when no response arrived)</li>
+ *   <li>{@code skadi.s3.throttles} counter, tagged operation (503 SlowDown and friends)</li>
+ * </ul>
+ */
+public class S3MetricsInterceptor implements ExecutionInterceptor {
+
+    private static final ExecutionAttribute<Long> STARTED_NANOS = new ExecutionAttribute<>("SkadiS3StartedNanos");
+
+    private final MeterRegistry registry;
+
+    public S3MetricsInterceptor(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void beforeExecution(Context.BeforeExecution context, ExecutionAttributes attrs) {
+        attrs.putAttribute(STARTED_NANOS, System.nanoTime());
+    }
+
+    @Override
+    public void afterExecution(Context.AfterExecution context, ExecutionAttributes attrs) {
+        String op = operation(attrs);
+        int status = context.httpResponse().statusCode();
+        timer(op, "success", status).record(elapsedNanos(attrs), TimeUnit.NANOSECONDS);
+
+        contentLength(context.httpRequest()).ifPresent(n -> bytes(op, "sent").increment(n));
+        contentLength(context.httpResponse()).ifPresent(n -> bytes(op, "received").increment(n));
+    }
+
+    @Override
+    public void onExecutionFailure(Context.FailedExecution context, ExecutionAttributes attrs) {
+        String op = operation(attrs);
+        Throwable e = context.exception();
+        int status = e instanceof SdkServiceException se ? se.statusCode() : 0;
+
+        timer(op, "error", status).record(elapsedNanos(attrs), TimeUnit.NANOSECONDS);
+        Counter.builder("skadi.s3.errors")
+                .tag("operation", op)
+                .tag("status", String.valueOf(status))
+                .register(registry)
+                .increment();
+        // S3 signals throttling as 503 SlowDown, which the SDK only classifies when the error code was parsed
+        if (e instanceof SdkServiceException se && (se.isThrottlingException() || status == 503)) {
+            Counter.builder("skadi.s3.throttles").tag("operation", op).register(registry).increment();
+        }
+    }
+
+    private Timer timer(String op, String outcome, int status) {
+        return Timer.builder("skadi.s3.requests")
+                .tag("operation", op)
+                .tag("outcome", outcome)
+                .tag("status", String.valueOf(status))
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private Counter bytes(String op, String direction) {
+        return Counter.builder("skadi.s3.bytes")
+                .baseUnit("bytes")
+                .tag("operation", op)
+                .tag("direction", direction)
+                .register(registry);
+    }
+
+    private static String operation(ExecutionAttributes attrs) {
+        String op = attrs.getAttribute(SdkExecutionAttribute.OPERATION_NAME);
+        return op == null ? "unknown" : op;
+    }
+
+    private static long elapsedNanos(ExecutionAttributes attrs) {
+        Long started = attrs.getAttribute(STARTED_NANOS);
+        return started == null ? 0 : System.nanoTime() - started;
+    }
+
+    private static Optional<Long> contentLength(SdkHttpHeaders headers) {
+        return headers.firstMatchingHeader("Content-Length").flatMap(v -> {
+            try {
+                return Optional.of(Long.parseLong(v.trim()));
+            } catch (NumberFormatException e) {
+                return Optional.empty();
+            }
+        });
+    }
+}
@@ -25,5 +25,13 @@ public final class S3Models {
             String eTag,
             Instant lastModified
     ) {}
+
+    /** One level of a folder-style listing: the objects directly under the prefix and its sub-prefixes. */
+    public record Listing(
+            java.util.List<ListItem> objects,
+            java.util.List<String> commonPrefixes
+    ) {}
+
+    public record ListSummary(long objectCount, long bytes) {}
 }
 
@@ -0,0 +1,88 @@
+package org.iceforge.skadi.query;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.LongSupplier;
+
+/**
+ * Grant side of the peer lease lock: the leases this node hands out for the lock keys it owns on the ring.
+ * <p>
+ * Every grant carries a token that identifies the lease. Tokens only grow, also across grantor restarts and
+ * ownership moves, because they are seeded from the wall clock (milliseconds x 1000); renew and release must
+ * present the token of the current lease, so a holder whose lease ran out and was re-granted cannot touch the
+ * new one. Tokens guard the lease calls only; writes to the store do not check them.
+ * A renew for a key this node does not know (the ring moved ownership here, or this node restarted) adopts
+ * the presented lease as long as nobody else holds the key.
+ */
+final class LeaseTable {
+
+    record Lease(String owner, long token, long expiresAtMillis) {}
+
+    private static final int SWEEP_EVERY = 256;
+
+    private final LongSupplier clock;
+    private final Map<String, Lease> leases = new HashMap<>();
+    private long lastToken;
+    private int grantsSinceSweep;
+
+    LeaseTable() {
+        this(System::currentTimeMillis);
+    }
+
+    LeaseTable(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * A new lease, or null while the key is held. A live lease is refused to its own owner as well: owners name
+     * a node, not a run, and two runs on one node must not both get the lock. Holders extend through renew.
+     */
+    synchronized Lease acquire(String key, String owner, long ttlMillis) {
+        long now = clock.getAsLong();
+        if (++grantsSinceSweep >= SWEEP_EVERY) sweep(now);
+
+        Lease current = leases.get(key);
+        if (current != null && current.expiresAtMillis() > now) return null;
+        return put(key, new Lease(owner, nextToken(now), now + ttlMillis));
+    }
+
+    /** The extended lease, or null if the key is held under another owner or token. */
+    synchronized Lease renew(String key, String owner, long token, long ttlMillis) {
+        long now = clock.getAsLong();
+        Lease current = leases.get(key);
+        if (current == null || current.expiresAtMillis() <= now) {
+            if (current != null && current.token() > token) return null;
+            lastToken = Math.max(lastToken, token);
+            return put(key, new Lease(owner, token, now + ttlMillis));
+        }
+        if (!Objects.equals(current.owner(), owner) || current.token() != token) return null;
+        return put(key, new Lease(owner, token, now + ttlMillis));
+    }
+
+    synchronized boolean release(String key, String owner, long token) {
+        Lease current = leases.get(key);
+        if (current == null || !Objects.equals(current.owner(), owner) || current.token() != token) return false;
+        leases.remove(key);
+        return true;
+    }
+
+    synchronized int size() {
+        return leases.size();
+    }
+
+    private Lease put(String key, Lease lease) {
+        leases.put(key, lease);
+        return lease;
+    }
+
+    private long nextToken(long now) {
+        lastToken = Math.max(lastToken + 1, now * 1000L);
+        return lastToken;
+    }
+
+    private void sweep(long now) {
+        grantsSinceSweep = 0;
+        leases.values().removeIf(l -> l.expiresAtMillis() <= now);
+    }
+}
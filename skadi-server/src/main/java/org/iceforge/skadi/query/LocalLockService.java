@@ -50,6 +50,15 @@ public class LocalLockService implements LockService {
         return false;
     }
 
+    @Override
+    public boolean renew(String bucket, String key, String owner, long ttlSeconds) {
+        String fullKey = bucket + ":" + key;
+        Instant exp = Instant.now().plusSeconds(Math.max(1, ttlSeconds));
+        Lock renewed = locks.computeIfPresent(fullKey,
+                (k, existing) -> Objects.equals(existing.owner(), owner) ? new Lock(owner, exp) : existing);
+        return renewed != null && renewed.expiresAt() == exp;
+    }
+
     @Override
     public void release(String bucket, String key) {
         String fullKey = bucket + ":" + key;
@@ -3,10 +3,23 @@ package org.iceforge.skadi.query;
 /**
  * Simple distributed (or local) lock abstraction used by QueryService to ensure
  * only one writer materializes a given query cache key.
+ * <p>
+ * Locks are leases: they expire after {@code ttlSeconds} unless the holder renews them, so a crashed
+ * writer cannot block a query forever.
  */
 public interface LockService {
 
     boolean tryAcquire(String bucket, String key, String owner, long ttlSeconds);
 
+    /**
+     * Extend a lock this instance holds by another {@code ttlSeconds}.
+     *
+     * @return false when the lock was lost (expired and taken over by another owner)
+     * @throws RuntimeException on a transient failure that says nothing about ownership; the caller retries
+     */
+    default boolean renew(String bucket, String key, String owner, long ttlSeconds) {
+        return true;
+    }
+
     void release(String bucket, String key);
 }
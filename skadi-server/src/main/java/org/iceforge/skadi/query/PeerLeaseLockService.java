@@ -0,0 +1,232 @@
+package org.iceforge.skadi.query;
+
+import org.iceforge.skadi.aws.s3.CacheKeyUtil;
+import org.iceforge.skadi.aws.s3.PeerCacheClient;
+import org.iceforge.skadi.aws.s3.PeerMembership;
+import org.iceforge.skadi.aws.s3.PeerRing;
+import org.iceforge.skadi.aws.s3.PeerSignedHeaders;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lock leases granted by the peer cluster itself ({@code skadi.query-cache.lockBackend: peer}).
+ * <p>
+ * The lock key's primary owner on the {@link PeerRing} is its grantor: it keeps the lease in memory and answers
+ * acquire / renew / release over {@code /internal/lock}, one signed round trip on the LAN instead of two or three
+ * S3 requests. Renew and release present the lease token (see {@link LeaseTable}). When this node owns the key,
+ * or there are no peers, the lease is granted locally without any network call.
+ * <p>
+ * If the grantor cannot be reached (or peer auth is not configured) the call falls back to the store lock
+ * ({@link S3LockService}, or {@link LocalLockService} for store=local), so a dead peer delays nothing; while
+ * the grantor is merely partitioned from some nodes the two mechanisms can overlap, which costs a duplicate
+ * run but never a stuck query.
+ */
+@Service
+@Primary
+@ConditionalOnProperty(prefix = "skadi.query-cache", name = "lockBackend", havingValue = "peer")
+public class PeerLeaseLockService implements LockService {
+
+    private static final Logger log = LoggerFactory.getLogger(PeerLeaseLockService.class);
+
+    /** A lock held by this node: the lease token, or a lock taken on the fallback store. */
+    private record Held(String owner, long token, boolean fallback) {}
+
+    @Value("${skadi.peer-cache.enabled:false}")
+    private boolean peerEnabled;
+
+    @Value("${skadi.peer-cache.peers:}")
+    private List<String> peerBaseUrls = List.of();
+
+    @Value("${skadi.peer-cache.selfUrl:}")
+    private String selfUrl = "";
+
+    @Value("${skadi.peer-cache.auth.keyId:}")
+    private String peerKeyId;
+
+    @Value("#{${skadi.peer-cache.auth.sharedSecrets:{}}}")
+    private Map<String, String> peerSecrets;
+
+    @Value("${skadi.query-cache.peerLock.timeoutMs:500}")
+    private long timeoutMs = 500;
+
+    private final PeerCacheClient client;
+    private final LockService fallback;
+    private final LeaseTable leases = new LeaseTable();
+    private final ConcurrentHashMap<String, Held> held = new ConcurrentHashMap<>();
+
+    private PeerMembership membership;
+    private volatile PeerRing ring;
+    private volatile List<String> ringSource;
+
+    @Autowired
+    public PeerLeaseLockService(PeerCacheClient client,
+                                ObjectProvider<S3LockService> storeLocks,
+                                ObjectProvider<LocalLockService> localLocks) {
+        this(client, storeLock(storeLocks, localLocks));
+    }
+
+    PeerLeaseLockService(PeerCacheClient client, LockService fallback) {
+        this.client = client;
+        this.fallback = Objects.requireNonNull(fallback);
+    }
+
+    private static LockService storeLock(ObjectProvider<S3LockService> storeLocks,
+                                         ObjectProvider<LocalLockService> localLocks) {
+        LockService s3 = storeLocks.getIfAvailable();
+        return s3 != null ? s3 : localLocks.getIfAvailable(LocalLockService::new);
+    }
+
+    @Autowired(required = false)
+    void setPeerMembership(PeerMembership membership) {
+        this.membership = membership;
+    }
+
+    @Override
+    public boolean tryAcquire(String bucket, String key, String owner, long ttlSeconds) {
+        String id = id(bucket, key);
+        String grantor = grantor(bucket, key);
+        if (grantor == null) {
+            LeaseTable.Lease lease = leases.acquire(id, owner, Math.max(1, ttlSeconds) * 1000L);
+            if (lease == null) return false;
+            held.put(id, new Held(owner, lease.token(), false));
+            return true;
+        }
+
+        try {
+            PeerCacheClient.LeaseGrant grant = call(grantor, "acquire", bucket, key, owner, ttlSeconds, 0L);
+            if (!grant.granted()) return false;
+            held.put(id, new Held(owner, grant.token(), false));
+            return true;
+        } catch (RuntimeException e) {
+            log.warn("Lock grantor {} unreachable for {}, using the store lock: {}", grantor, id, e.toString());
+            if (membership != null) membership.recordFailure(grantor);
+            if (!fallback.tryAcquire(bucket, key, owner, ttlSeconds)) return false;
+            held.put(id, new Held(owner, 0L, true));
+            return true;
+        }
+    }
+
+    /** Renews at the current grantor, which adopts the lease if ring ownership moved since it was granted. */
+    @Override
+    public boolean renew(String bucket, String key, String owner, long ttlSeconds) {
+        String id = id(bucket, key);
+        Held h = held.get(id);
+        if (h == null) return false;
+        if (h.fallback()) return fallback.renew(bucket, key, owner, ttlSeconds);
+
+        String grantor = grantor(bucket, key);
+        boolean renewed = grantor == null
+                ? leases.renew(id, owner, h.token(), Math.max(1, ttlSeconds) * 1000L) != null
+                : call(grantor, "renew", bucket, key, owner, ttlSeconds, h.token()).granted();
+        if (!renewed) held.remove(id, h);
+        return renewed;
+    }
+
+    @Override
+    public void release(String bucket, String key) {
+        String id = id(bucket, key);
+        Held h = held.remove(id);
+        if (h == null) return;
+        if (h.fallback()) {
+            fallback.release(bucket, key);
+            return;
+        }
+
+        String grantor = grantor(bucket, key);
+        if (grantor == null) {
+            leases.release(id, h.owner(), h.token());
+            return;
+        }
+        String secret = peerSecretOrNull();
+        if (secret == null) return;
+        // Best effort: an unreleased lease just runs out
+        client.lease(grantor, "release", bucket, key, h.owner(), 0L, h.token(),
+                        sign("release", bucket, key, h.owner(), 0L, h.token(), secret), Duration.ofMillis(timeoutMs))
+                .whenComplete((g, err) -> {
+                    if (err != null) log.debug("Lock release at {} failed for {}: {}", grantor, id, err.toString());
+                });
+    }
+
+    /** Grantor side: answers a peer's lease call for a key this node owns. */
+    PeerCacheClient.LeaseGrant grant(String action, String bucket, String key, String owner, long ttlSeconds, long token) {
+        String id = id(bucket, key);
+        long ttlMillis = Math.max(1, ttlSeconds) * 1000L;
+        LeaseTable.Lease lease = switch (action) {
+            case "acquire" -> leases.acquire(id, owner, ttlMillis);
+            case "renew" -> leases.renew(id, owner, token, ttlMillis);
+            case "release" -> {
+                leases.release(id, owner, token);
+                yield null;
+            }
+            default -> throw new IllegalArgumentException("Unknown lock action: " + action);
+        };
+        return lease == null
+                ? new PeerCacheClient.LeaseGrant(false, 0L, 0L)
+                : new PeerCacheClient.LeaseGrant(true, lease.token(), lease.expiresAtMillis());
+    }
+
+    private PeerCacheClient.LeaseGrant call(String grantor, String action, String bucket, String key, String owner,
+                                            long ttlSeconds, long token) {
+        String secret = peerSecretOrNull();
+        if (secret == null) throw new IllegalStateException("peer auth is not configured");
+        try {
+            return client.lease(grantor, action, bucket, key, owner, ttlSeconds, token,
+                    sign(action, bucket, key, owner, ttlSeconds, token, secret), Duration.ofMillis(timeoutMs)).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException re ? re : e;
+        }
+    }
+
+    private PeerSignedHeaders sign(String action, String bucket, String key, String owner, long ttlSeconds,
+                                   long token, String secret) {
+        return PeerSignedHeaders.sign("POST", "/internal/lock/" + action,
+                query(bucket, key, owner, ttlSeconds, token), peerKeyId, secret);
+    }
+
+    static String query(String bucket, String key, String owner, long ttlSeconds, long token) {
+        return "bucket=" + bucket + "&key=" + key + "&owner=" + owner + "&ttlSeconds=" + ttlSeconds + "&token=" + token;
+    }
+
+    /** The peer that grants leases for bucket/key, or null when this node does (or there are no peers). */
+    private String grantor(String bucket, String key) {
+        if (!peerEnabled || client == null) return null;
+        PeerRing r = ring();
+        String cacheId = CacheKeyUtil.cacheId(bucket, key);
+        if (r.members().isEmpty() || r.isOwner(cacheId, 1)) return null;
+        return r.owners(cacheId, 1).get(0);
+    }
+
+    private PeerRing ring() {
+        List<String> peers = membership != null ? membership.members() : peerBaseUrls;
+        PeerRing r = ring;
+        if (r == null || ringSource != peers) {
+            r = new PeerRing(peers, membership != null ? membership.self() : selfUrl);
+            ring = r;
+            ringSource = peers;
+        }
+        return r;
+    }
+
+    private String peerSecretOrNull() {
+        if (peerSecrets == null || peerKeyId == null || peerKeyId.isBlank()) return null;
+        String secret = peerSecrets.get(peerKeyId);
+        return (secret == null || secret.isBlank()) ? null : secret;
+    }
+
+    private static String id(String bucket, String key) {
+        return bucket + "/" + key;
+    }
+}
@@ -0,0 +1,60 @@
+package org.iceforge.skadi.query;
+
+import org.iceforge.skadi.aws.s3.PeerAuth;
+import org.iceforge.skadi.aws.s3.PeerCacheClient;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Set;
+
+/** Grantor endpoint of {@link PeerLeaseLockService}: acquire, renew and release leases for keys this node owns. */
+@RestController
+@RequestMapping("/internal/lock")
+@ConditionalOnProperty(prefix = "skadi.query-cache", name = "lockBackend", havingValue = "peer")
+public class PeerLockController {
+
+    private static final Set<String> ACTIONS = Set.of("acquire", "renew", "release");
+
+    private final PeerLeaseLockService locks;
+    private final PeerAuth peerAuth;
+
+    public PeerLockController(PeerLeaseLockService locks, PeerAuth peerAuth) {
+        this.locks = locks;
+        this.peerAuth = peerAuth;
+    }
+
+    @PostMapping(value = "/{action}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<PeerCacheClient.LeaseGrant> lease(
+            @PathVariable("action") String action,
+            @RequestParam("bucket") String bucket,
+            @RequestParam("key") String key,
+            @RequestParam("owner") String owner,
+            @RequestParam(value = "ttlSeconds", defaultValue = "0") long ttlSeconds,
+            @RequestParam(value = "token", defaultValue = "0") long token,
+            @RequestHeader(value = "X-Skadi-KeyId", required = false) String keyId,
+            @RequestHeader(value = "X-Skadi-Ts", required = false) String ts,
+            @RequestHeader(value = "X-Skadi-Nonce", required = false) String nonce,
+            @RequestHeader(value = "X-Skadi-Signature", required = false) String sig
+    ) {
+        if (!ACTIONS.contains(action)) return ResponseEntity.notFound().build();
+        try {
+            peerAuth.verify("POST", "/internal/lock/" + action,
+                    PeerLeaseLockService.query(bucket, key, owner, ttlSeconds, token), keyId, ts, nonce, sig);
+        } catch (PeerAuth.Unauthorized e) {
+            throw new PeerUnauthorizedException();
+        }
+        return ResponseEntity.ok(locks.grant(action, bucket, key, owner, ttlSeconds, token));
+    }
+
+    @ResponseStatus(HttpStatus.UNAUTHORIZED)
+    private static class PeerUnauthorizedException extends RuntimeException {}
+}
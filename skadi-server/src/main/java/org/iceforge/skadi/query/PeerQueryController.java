@@ -0,0 +1,66 @@
+package org.iceforge.skadi.query;
+
+import org.iceforge.skadi.aws.s3.PeerAuth;
+import org.iceforge.skadi.aws.s3.S3AccessLayer;
+import org.iceforge.skadi.aws.s3.S3Models;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+/** Completion and failure notices from the peer that materialized a query (see {@link QueryCompletions}). */
+@RestController
+@RequestMapping("/internal/query")
+public class PeerQueryController {
+
+    private final QueryCompletions completions;
+    private final QueryRegistry registry;
+    private final S3AccessLayer s3;
+    private final PeerAuth peerAuth;
+
+    public PeerQueryController(QueryCompletions completions, QueryRegistry registry, S3AccessLayer s3,
+                               PeerAuth peerAuth) {
+        this.completions = completions;
+        this.registry = registry;
+        this.s3 = s3;
+        this.peerAuth = peerAuth;
+    }
+
+    @PostMapping("/done")
+    public ResponseEntity<Void> done(
+            @RequestParam("queryId") String queryId,
+            @RequestParam("bucket") String bucket,
+            @RequestParam("key") String manifestKey,
+            @RequestParam(value = "failed", defaultValue = "false") boolean failed,
+            @RequestHeader(value = "X-Skadi-KeyId", required = false) String keyId,
+            @RequestHeader(value = "X-Skadi-Ts", required = false) String ts,
+            @RequestHeader(value = "X-Skadi-Nonce", required = false) String nonce,
+            @RequestHeader(value = "X-Skadi-Signature", required = false) String sig
+    ) {
+        String query = QueryCompletions.noticeQuery(queryId, bucket, manifestKey, failed);
+        try {
+            peerAuth.verify("POST", "/internal/query/done", query, keyId, ts, nonce, sig);
+        } catch (PeerAuth.Unauthorized e) {
+            throw new PeerUnauthorizedException();
+        }
+
+        if (failed) {
+            // Followers here are RUNNING on the peer's run; a resubmit takes the lock and runs it again
+            registry.get(queryId)
+                    .filter(e -> e.status() == QueryModels.Status.RUNNING)
+                    .ifPresent(e -> registry.put(queryId, QueryModels.Status.FAILED, e.ref(), "Failed on peer"));
+        } else {
+            // A not-found HEAD of the manifest may still be cached from the waiters' last look
+            s3.invalidateMetadata(new S3Models.ObjectRef(bucket, manifestKey));
+        }
+        completions.completed(queryId);
+        return ResponseEntity.accepted().build();
+    }
+
+    @ResponseStatus(HttpStatus.UNAUTHORIZED)
+    private static class PeerUnauthorizedException extends RuntimeException {}
+}
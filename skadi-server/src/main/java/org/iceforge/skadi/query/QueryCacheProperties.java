@@ -21,6 +21,15 @@ public class QueryCacheProperties {
     /** Base directory when store=local. */
     private String localBaseDir = "./data/skadi-local-object-store";
 
+    /**
+     * Durability of the local store (store=local).
+     * <p>
+     * - "none": never fsync; a crash may drop the most recent writes (whole objects, never torn ones)
+     * - "data" (default): fsync object and sidecar before they are renamed into place
+     * - "always": also fsync the directory after the renames, so an acknowledged put survives a crash
+     */
+    private String localFsync = "data";
+
     /** S3 bucket where manifests/chunks are written. */
     private String bucket = "skadi-cache";
 
@@ -36,6 +45,23 @@ public class QueryCacheProperties {
     /** Switch to multipart upload above this many bytes (Option A). */
     private long arrowMultipartAboveBytes = 128L * 1024L * 1024L;
 
+    /**
+     * Lease of the materialization lock. The writer renews it every third of this while the query runs;
+     * if the writer dies, another instance may take the query over once the lease has run out.
+     */
+    private long lockLeaseSeconds = 120;
+
+    /**
+     * Who grants the materialization lock.
+     * <p>
+     * - "store" (default): the object store itself (S3 conditional writes, or in-process for store=local)
+     * - "peer": the lock key's owner on the peer ring, falling back to the store lock when it is unreachable
+     */
+    private String lockBackend = "store";
+
+    /** Upper bound for long-polling status and stream calls ({@code waitMs}) on a RUNNING query. */
+    private long statusMaxWaitMs = 30_000;
+
     public String getBucket() {
         return bucket;
     }
@@ -91,4 +117,36 @@ public class QueryCacheProperties {
     public void setArrowMultipartAboveBytes(long arrowMultipartAboveBytes) {
         this.arrowMultipartAboveBytes = arrowMultipartAboveBytes;
     }
+
+    public long getLockLeaseSeconds() {
+        return lockLeaseSeconds;
+    }
+
+    public void setLockLeaseSeconds(long lockLeaseSeconds) {
+        this.lockLeaseSeconds = lockLeaseSeconds;
+    }
+
+    public String getLockBackend() {
+        return lockBackend;
+    }
+
+    public void setLockBackend(String lockBackend) {
+        this.lockBackend = lockBackend;
+    }
+
+    public long getStatusMaxWaitMs() {
+        return statusMaxWaitMs;
+    }
+
+    public void setStatusMaxWaitMs(long statusMaxWaitMs) {
+        this.statusMaxWaitMs = statusMaxWaitMs;
+    }
+
+    public String getLocalFsync() {
+        return localFsync;
+    }
+
+    public void setLocalFsync(String localFsync) {
+        this.localFsync = localFsync;
+    }
 }
@@ -0,0 +1,139 @@
+package org.iceforge.skadi.query;
+
+import org.iceforge.skadi.aws.s3.PeerCacheClient;
+import org.iceforge.skadi.aws.s3.PeerMembership;
+import org.iceforge.skadi.aws.s3.PeerSignedHeaders;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Wakes clients waiting for a running query instead of having them poll the manifest in S3.
+ * <p>
+ * Long-polling status and stream calls register a future here and return once it completes, without holding a
+ * request thread. The writer wakes the waiters on its own node directly and tells every peer over
+ * {@code /internal/query/done}, so followers that piggy-backed on another node's run (their lock was denied)
+ * return as soon as the manifest is written, or the run failed. A notice that never arrives (peer down, auth
+ * not configured) only costs the caller its wait timeout.
+ */
+@Service
+public class QueryCompletions {
+
+    private final PeerCacheClient client;
+    private PeerMembership membership;
+
+    // queryId -> one future per parked caller
+    private final ConcurrentHashMap<String, Set<CompletableFuture<Boolean>>> waiters = new ConcurrentHashMap<>();
+
+    @Value("${skadi.peer-cache.enabled:false}")
+    private boolean peerEnabled;
+
+    @Value("${skadi.peer-cache.peers:}")
+    private List<String> peerBaseUrls = List.of();
+
+    @Value("${skadi.peer-cache.auth.keyId:}")
+    private String peerKeyId;
+
+    @Value("#{${skadi.peer-cache.auth.sharedSecrets:{}}}")
+    private Map<String, String> peerSecrets;
+
+    @Value("${skadi.query-cache.notifyTimeoutMs:2000}")
+    private long notifyTimeoutMs = 2_000;
+
+    @Autowired
+    public QueryCompletions(PeerCacheClient client) {
+        this.client = client;
+    }
+
+    /** Local waiters only; used by non-Spring tests. */
+    public QueryCompletions() {
+        this(null);
+    }
+
+    @Autowired(required = false)
+    void setPeerMembership(PeerMembership membership) {
+        this.membership = membership;
+    }
+
+    /**
+     * Register for queryId's completion; the future yields true once woken (or if done already held) and false
+     * after timeoutMs. No thread is parked meanwhile. done is checked after registering, so a completion that
+     * lands between the caller's last look and this call is not missed.
+     */
+    public CompletableFuture<Boolean> await(String queryId, long timeoutMs, BooleanSupplier done) {
+        CompletableFuture<Boolean> f = new CompletableFuture<>();
+        waiters.compute(queryId, (k, set) -> {
+            Set<CompletableFuture<Boolean>> s = set != null ? set : ConcurrentHashMap.newKeySet();
+            s.add(f);
+            return s;
+        });
+        f.whenComplete((woken, err) -> waiters.computeIfPresent(queryId, (k, set) -> {
+            set.remove(f);
+            return set.isEmpty() ? null : set;
+        }));
+        try {
+            if (done.getAsBoolean()) f.complete(true);
+        } catch (RuntimeException e) {
+            f.completeExceptionally(e);
+        }
+        return f.completeOnTimeout(false, Math.max(0, timeoutMs), TimeUnit.MILLISECONDS);
+    }
+
+    /** Wake this node's waiters for queryId (finished here, failed here, or a peer reported either). */
+    public void completed(String queryId) {
+        Set<CompletableFuture<Boolean>> set = waiters.remove(queryId);
+        if (set != null) set.forEach(f -> f.complete(true));
+    }
+
+    /** The writer on this node finished queryId: wake local waiters and notify every peer. */
+    public void publish(String queryId, String bucket, String manifestKey) {
+        publish(queryId, bucket, manifestKey, false);
+    }
+
+    /**
+     * The writer on this node failed queryId: wake local waiters and tell every peer, whose followers would
+     * otherwise wait out their timeout for a manifest that is not coming.
+     */
+    public void publishFailure(String queryId, String bucket, String manifestKey) {
+        publish(queryId, bucket, manifestKey, true);
+    }
+
+    /** Query string of a completion notice, as signed by the sender and verified by {@link PeerQueryController}. */
+    static String noticeQuery(String queryId, String bucket, String manifestKey, boolean failed) {
+        return "queryId=" + queryId + "&bucket=" + bucket + "&key=" + manifestKey + (failed ? "&failed=true" : "");
+    }
+
+    private void publish(String queryId, String bucket, String manifestKey, boolean failed) {
+        completed(queryId);
+
+        String secret = peerSecretOrNull();
+        if (secret == null) return;
+        String query = noticeQuery(queryId, bucket, manifestKey, failed);
+        for (String peer : membership != null ? membership.members() : peerBaseUrls) {
+            if (membership != null && !membership.isClosed(peer)) continue; // no outcome reported: keep the probe
+            PeerSignedHeaders hdrs = PeerSignedHeaders.sign("POST", "/internal/query/done", query, peerKeyId, secret);
+            client.notifyQueryDone(peer, queryId, bucket, manifestKey, failed, hdrs,
+                    Duration.ofMillis(notifyTimeoutMs));
+        }
+    }
+
+    int pending() {
+        return waiters.size();
+    }
+
+    private String peerSecretOrNull() {
+        if (!peerEnabled || client == null) return null;
+        if (peerSecrets == null || peerKeyId == null || peerKeyId.isBlank()) return null;
+        String secret = peerSecrets.get(peerKeyId);
+        return (secret == null || secret.isBlank()) ? null : secret;
+    }
+}
@@ -7,18 +7,31 @@ import org.iceforge.skadi.jdbc.spi.JdbcClientFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.iceforge.skadi.api.CacheMetricsRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.sql.Connection;
 import java.time.Instant;
 import java.util.Map;
 import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class QueryService {
     private static final Logger logger = LoggerFactory.getLogger(QueryService.class);
 
+    // Unique per process: in containers every instance tends to be pid 1
+    private static final String LOCK_OWNER = "skadi@" + ProcessHandle.current().pid() + "-"
+            + UUID.randomUUID().toString().substring(0, 8);
+
     private final QueryCacheProperties props;
     private final CacheMetricsRegistry cacheMetrics;
     private final ResultSetToS3ChunkWriter writer;
@@ -28,6 +41,18 @@ public class QueryService {
     private final ManifestReader manifestReader;
     private final ExecutorService queryExecutor;
     private final JdbcClientFactory jdbcClientFactory;
+    private QueryCompletions completions = new QueryCompletions();
+    private final ScheduledExecutorService lockHeartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "skadi-lock-heartbeat");
+        t.setDaemon(true);
+        return t;
+    });
+    // Re-reads status for long polls once they are woken or time out; the wait itself holds no thread
+    private final ExecutorService statusRecheck = Executors.newFixedThreadPool(2, r -> {
+        Thread t = new Thread(r, "skadi-status-recheck");
+        t.setDaemon(true);
+        return t;
+    });
 
     public QueryService(QueryCacheProperties props,
                         CacheMetricsRegistry cacheMetrics,
@@ -49,6 +74,11 @@ public class QueryService {
         this.jdbcClientFactory = Objects.requireNonNull(jdbcClientFactory);
     }
 
+    @Autowired(required = false)
+    void setCompletions(QueryCompletions completions) {
+        this.completions = completions;
+    }
+
     public QueryModels.QueryResponse submit(QueryModels.QueryRequest req) throws Exception {
         String queryId = QueryKeyUtil.queryId(req);
 
@@ -72,10 +102,10 @@ public class QueryService {
 
         // Try to acquire a cross-instance lock
         String lockKey = prefix + "/" + runId + "/.lock";
-        String owner = "skadi@" + ProcessHandle.current().pid();
-        long ttl = req.cache() != null && req.cache().ttlSeconds() != null ? req.cache().ttlSeconds() : 3600L;
+        String owner = LOCK_OWNER;
+        long lease = Math.max(3, props.getLockLeaseSeconds());
 
-        boolean acquired = lockService.tryAcquire(bucket, lockKey, owner, ttl);
+        boolean acquired = lockService.tryAcquire(bucket, lockKey, owner, lease);
 
         ResultSetToS3ChunkWriter.S3ResultSetRef ref = new ResultSetToS3ChunkWriter.S3ResultSetRef(
                 bucket, prefix, runId, plan.manifestRef().key(), 0L, 0
@@ -87,21 +117,58 @@ public class QueryService {
         }
 
         // We are the writer. Execute asynchronously.
+        // Keep the lease alive from now on, including while the task waits for a free writer thread.
         registry.put(queryId, QueryModels.Status.RUNNING, ref, null);
-        queryExecutor.submit(() -> {
-            try {
-                materialize(req, plan, queryId);
-            } catch (Exception e) {
-                registry.put(queryId, QueryModels.Status.FAILED, ref, e.getMessage());
-                logger.warn("Query materialization failed queryId={}: {}", queryId, e.toString());
-            } finally {
-                lockService.release(bucket, lockKey);
-            }
-        });
+        long renewEveryMs = lease * 1000L / 3;
+        ScheduledFuture<?> heartbeat = lockHeartbeat.scheduleWithFixedDelay(
+                () -> renewLock(bucket, lockKey, owner, lease, queryId),
+                renewEveryMs, renewEveryMs, TimeUnit.MILLISECONDS);
+        try {
+            queryExecutor.submit(() -> {
+                try {
+                    materialize(req, plan, queryId);
+                    completions.publish(queryId, bucket, plan.manifestRef().key());
+                } catch (Exception e) {
+                    registry.put(queryId, QueryModels.Status.FAILED, ref, e.getMessage());
+                    logger.warn("Query materialization failed queryId={}: {}", queryId, e.toString());
+                    completions.publishFailure(queryId, bucket, plan.manifestRef().key());
+                } finally {
+                    heartbeat.cancel(false);
+                    lockService.release(bucket, lockKey);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            heartbeat.cancel(false);
+            lockService.release(bucket, lockKey);
+            throw e;
+        }
 
         return new QueryModels.QueryResponse(QueryModels.Status.RUNNING, queryId, ref, Map.of("startedAt", Instant.now().toString()));
     }
 
+    private void renewLock(String bucket, String lockKey, String owner, long lease, String queryId) {
+        boolean renewed;
+        try {
+            renewed = lockService.renew(bucket, lockKey, owner, lease);
+        } catch (Exception e) {
+            // transient; the next beat retries well before the lease runs out
+            logger.warn("Lock renewal failed s3://{}/{}: {}", bucket, lockKey, e.toString());
+            return;
+        }
+        if (!renewed) {
+            logger.warn("Lost materialization lock s3://{}/{} for queryId={}; another instance may run it too",
+                    bucket, lockKey, queryId);
+            // throwing ends the fixed-delay schedule: a lost lease cannot be renewed
+            throw new IllegalStateException("lock lost: " + lockKey);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        lockHeartbeat.shutdownNow();
+        statusRecheck.shutdownNow();
+    }
+
     public QueryModels.QueryStatusResponse status(String queryId) {
         QueryRegistry.Entry entry = registry.get(queryId).orElse(null);
         if (entry == null) {
@@ -124,6 +191,17 @@ public class QueryService {
         return new QueryModels.QueryStatusResponse(entry.status(), queryId, entry.ref(), entry.error(), entry.updatedAt());
     }
 
+    /**
+     * Long-poll form of {@link #status(String)}: while the query is RUNNING, completes once the writer, here or
+     * on a peer, reports completion, or after waitMs (capped by statusMaxWaitMs). No thread waits meanwhile.
+     */
+    public CompletableFuture<QueryModels.QueryStatusResponse> status(String queryId, long waitMs) {
+        long wait = Math.min(waitMs, props.getStatusMaxWaitMs());
+        if (wait <= 0) return CompletableFuture.completedFuture(status(queryId));
+        return completions.await(queryId, wait, () -> status(queryId).status() != QueryModels.Status.RUNNING)
+                .thenApplyAsync(woken -> status(queryId), statusRecheck);
+    }
+
     private void materialize(QueryModels.QueryRequest req, ResultSetToS3ChunkWriter.S3WritePlan plan, String queryId) throws Exception {
         QueryModels.QueryRequest.Jdbc jdbc = Objects.requireNonNull(req.jdbc(), "jdbc");
         String sql = Objects.requireNonNull(jdbc.sql(), "sql");
@@ -179,7 +257,10 @@ public class QueryService {
                     m.totalRows(), chunkCount
             );
         } catch (Exception e) {
-            int chunkCount = s3.list(plan.bucket(), plan.prefix() + "/" + plan.runId() + "/part-", 10_000).size();
+            int chunkCount;
+            try (var parts = s3.listAll(plan.bucket(), plan.prefix() + "/" + plan.runId() + "/part-")) {
+                chunkCount = (int) parts.count();
+            }
             return new ResultSetToS3ChunkWriter.S3ResultSetRef(
                     plan.bucket(), plan.prefix(), plan.runId(), plan.manifestRef().key(),
                     0L, chunkCount
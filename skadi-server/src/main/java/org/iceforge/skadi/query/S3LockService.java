@@ -2,89 +2,220 @@ package org.iceforge.skadi.query;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
 import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
 import software.amazon.awssdk.services.s3.model.S3Exception;
 
 import java.nio.charset.StandardCharsets;
+import java.time.Clock;
 import java.time.Instant;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Cross-instance lease stored as a small S3 object, taken with conditional writes.
+ * <p>
+ * Semantics:
+ * - No lock object → create it with {@code If-None-Match: *}; of several racing nodes exactly one PUT succeeds,
+ *   the others get 412 (or 409 while a concurrent write is still in progress) and back off
+ * - Lock object exists and has not expired → return false
+ * - Lock object expired (owner crashed or stopped renewing) → take it over with {@code If-Match: <etag>}, so
+ *   two nodes racing for the same stale lock again produce exactly one winner
+ * <p>
+ * The ETag of every lock written here is remembered; {@link #renew} and {@link #release} only touch the
+ * object while it still carries that ETag, so a node whose lease expired can never extend or delete the
+ * lock of the node that took over.
+ */
 @Service
 @ConditionalOnProperty(prefix = "skadi.query-cache", name = "store", havingValue = "s3", matchIfMissing = true)
 public class S3LockService implements LockService {
 
     private static final Logger log = LoggerFactory.getLogger(S3LockService.class);
 
+    static final String META_OWNER = "skadi-owner";
+    static final String META_TTL = "skadi-ttlSeconds";
+    static final String META_EXPIRES_AT = "skadi-expiresAt";
+
     private final S3Client s3;
+    private final Clock clock;
+
+    // "bucket/key" -> ETag of the lock object this node last wrote
+    private final ConcurrentHashMap<String, String> held = new ConcurrentHashMap<>();
 
+    @Autowired
     public S3LockService(S3Client s3) {
+        this(s3, Clock.systemUTC());
+    }
+
+    S3LockService(S3Client s3, Clock clock) {
         this.s3 = Objects.requireNonNull(s3);
+        this.clock = Objects.requireNonNull(clock);
     }
 
-    /**
-     * Best-effort cross-instance lock using a small S3 object.
-     * <p>
-     * Semantics:
-     * - If lock object exists → return false
-     * - Else write lock object and return true
-     */
     @Override
     public boolean tryAcquire(String bucket, String lockKey, String ownerId, long ttlSeconds) {
         Objects.requireNonNull(bucket);
         Objects.requireNonNull(lockKey);
 
-        // 1) Check existence
+        HeadObjectResponse current = head(bucket, lockKey);
+        if (current == null) {
+            return write(bucket, lockKey, ownerId, ttlSeconds, "If-None-Match", "*", false);
+        }
+
+        Instant expiresAt = expiresAt(current);
+        if (expiresAt == null || clock.instant().isBefore(expiresAt)) {
+            return false;
+        }
+        if (current.eTag() == null) {
+            return false;
+        }
+        log.info("Taking over expired lock s3://{}/{} (owner={}, expired {})",
+                bucket, lockKey, metadata(current, META_OWNER), expiresAt);
+        return write(bucket, lockKey, ownerId, ttlSeconds, "If-Match", current.eTag(), false);
+    }
+
+    @Override
+    public boolean renew(String bucket, String lockKey, String ownerId, long ttlSeconds) {
+        String etag = held.get(id(bucket, lockKey));
+        if (etag == null || etag.isEmpty()) return false;
+        return write(bucket, lockKey, ownerId, ttlSeconds, "If-Match", etag, true);
+    }
+
+    @Override
+    public void release(String bucket, String lockKey) {
+        String etag = held.remove(id(bucket, lockKey));
+        if (etag == null) return;
         try {
-            s3.headObject(HeadObjectRequest.builder()
-                    .bucket(bucket)
-                    .key(lockKey)
-                    .build());
-            return false; // already locked
-        } catch (NoSuchKeyException e) {
-            // expected → continue
-        } catch (S3Exception e) {
-            if (e.statusCode() != 404) {
-                throw e;
+            HeadObjectResponse current = head(bucket, lockKey);
+            if (current == null) return;
+            if (!etag.isEmpty() && !etag.equals(current.eTag())) {
+                log.info("Not releasing lock s3://{}/{}: taken over by {}", bucket, lockKey,
+                        metadata(current, META_OWNER));
+                return;
             }
+            s3.deleteObject(b -> {
+                b.bucket(bucket).key(lockKey);
+                if (!etag.isEmpty()) b.overrideConfiguration(o -> o.putHeader("If-Match", etag));
+            });
+        } catch (Exception e) {
+            log.debug("Ignoring lock release failure s3://{}/{}: {}", bucket, lockKey, e.toString());
         }
+    }
 
-        // 2) Write lock object
-        String body = "{\"owner\":\"" + ownerId + "\",\"startedAt\":\"" +
-                Instant.now() + "\",\"ttlSeconds\":" + ttlSeconds + "}";
+    /**
+     * PUT the lock object with one precondition header. SDK 2.25 has no typed builder methods for
+     * conditional writes, so the header is set on the request override configuration.
+     *
+     * @param renewal a renewal of our own lease: only 412 (taken over) and 404 (deleted) mean it is lost;
+     *                any other failure keeps the ETag and is rethrown for the heartbeat to retry
+     */
+    private boolean write(String bucket, String lockKey, String ownerId, long ttlSeconds,
+                          String condition, String conditionValue, boolean renewal) {
+        long ttl = Math.max(1, ttlSeconds);
+        Instant now = clock.instant();
+        Instant expiresAt = now.plusSeconds(ttl);
+        String owner = ownerId == null ? "" : ownerId;
+        String body = "{\"owner\":\"" + owner + "\",\"startedAt\":\"" + now
+                + "\",\"ttlSeconds\":" + ttl + ",\"expiresAt\":\"" + expiresAt + "\"}";
 
         PutObjectRequest put = PutObjectRequest.builder()
                 .bucket(bucket)
                 .key(lockKey)
                 .contentType("application/json")
                 .metadata(Map.of(
-                        "skadi-owner", ownerId == null ? "" : ownerId,
-                        "skadi-ttlSeconds", String.valueOf(ttlSeconds)
+                        META_OWNER, owner,
+                        META_TTL, String.valueOf(ttl),
+                        META_EXPIRES_AT, String.valueOf(expiresAt.toEpochMilli())
                 ))
+                .overrideConfiguration(o -> o.putHeader(condition, conditionValue))
                 .build();
 
         try {
-            s3.putObject(put, RequestBody.fromBytes(body.getBytes(StandardCharsets.UTF_8)));
+            PutObjectResponse resp = s3.putObject(put, RequestBody.fromBytes(body.getBytes(StandardCharsets.UTF_8)));
+            String etag = resp == null || resp.eTag() == null ? "" : resp.eTag();
+            held.put(id(bucket, lockKey), etag);
             return true;
         } catch (S3Exception e) {
-            log.warn("Failed to create lock object s3://{}/{}: {}",
-                    bucket, lockKey, e.getMessage());
+            int status = e.statusCode();
+            if (status == 412 || status == 404) {
+                // someone else created, took over or deleted the lock between our HEAD and PUT
+                log.debug("Lost lock race for s3://{}/{} ({} {}): {}", bucket, lockKey, condition, conditionValue, status);
+                if ("If-Match".equals(condition)) {
+                    held.remove(id(bucket, lockKey), conditionValue);
+                }
+                return false;
+            }
+            if (renewal) {
+                throw e;
+            }
+            if (status == 409) {
+                // a concurrent conditional write of the same lock is still in progress
+                log.debug("Lost lock race for s3://{}/{} ({} {}): {}", bucket, lockKey, condition, conditionValue, status);
+            } else {
+                log.warn("Failed to write lock object s3://{}/{}: {}", bucket, lockKey, e.getMessage());
+            }
             return false;
         }
     }
 
-    @Override
-    public void release(String bucket, String lockKey) {
+    private HeadObjectResponse head(String bucket, String lockKey) {
         try {
-            s3.deleteObject(b -> b.bucket(bucket).key(lockKey));
-        } catch (Exception e) {
-            log.debug("Ignoring lock release failure s3://{}/{}", bucket, lockKey, e.toString());
+            return s3.headObject(HeadObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(lockKey)
+                    .build());
+        } catch (NoSuchKeyException e) {
+            return null;
+        } catch (S3Exception e) {
+            if (e.statusCode() != 404) {
+                throw e;
+            }
+            return null;
+        }
+    }
+
+    /** Expiry from the lock metadata; locks written before expiresAt existed fall back to lastModified + ttl. */
+    private static Instant expiresAt(HeadObjectResponse head) {
+        String explicit = metadata(head, META_EXPIRES_AT);
+        if (explicit != null) {
+            try {
+                return Instant.ofEpochMilli(Long.parseLong(explicit.trim()));
+            } catch (NumberFormatException ignored) {
+                // fall through
+            }
         }
+        if (head.lastModified() == null) return null;
+        long ttl = 3600L;
+        String ttlMeta = metadata(head, META_TTL);
+        if (ttlMeta != null) {
+            try {
+                ttl = Long.parseLong(ttlMeta.trim());
+            } catch (NumberFormatException ignored) {
+                // keep default
+            }
+        }
+        return head.lastModified().plusSeconds(Math.max(1, ttl));
+    }
+
+    /** S3 returns user metadata keys lower-cased. */
+    private static String metadata(HeadObjectResponse head, String key) {
+        if (!head.hasMetadata()) return null;
+        for (Map.Entry<String, String> e : head.metadata().entrySet()) {
+            if (e.getKey().equalsIgnoreCase(key)) return e.getValue();
+        }
+        return null;
+    }
+
+    private static String id(String bucket, String lockKey) {
+        return bucket + "/" + lockKey;
     }
 }
@@ -1,8 +1,12 @@
 package org.iceforge.skadi.s3.spi;
 
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3AsyncClientBuilder;
 import software.amazon.awssdk.services.s3.S3Client;
 
+import java.util.Optional;
+
 /** Default provider (ships with Skadi)
  * <br>
  * Uses standard AWS SDK credential resolution (environment, profile, EC2/ECS roles, etc).
@@ -30,4 +34,20 @@ public final class DefaultAwsS3ClientProvider implements S3ClientProvider {
 
         return b.build();
     }
+
+    @Override
+    public Optional<S3AsyncClient> s3AsyncClient(S3ClientContext ctx) {
+        var b = S3AsyncClient.builder();
+        b.region(ctx.region().map(Region::of).orElse(DEFAULT_REGION));
+        ctx.endpointOverride().ifPresent(b::endpointOverride);
+        return Optional.of(b.build());
+    }
+
+    /** Keeps Skadi's settings; only a region or endpoint given in the context replaces its own. */
+    @Override
+    public Optional<S3AsyncClient> s3AsyncClient(S3ClientContext ctx, S3AsyncClientBuilder skadiDefaults) {
+        ctx.region().map(Region::of).ifPresent(skadiDefaults::region);
+        ctx.endpointOverride().ifPresent(skadiDefaults::endpointOverride);
+        return Optional.of(skadiDefaults.build());
+    }
 }
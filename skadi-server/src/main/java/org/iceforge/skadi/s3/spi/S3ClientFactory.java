@@ -2,6 +2,8 @@ package org.iceforge.skadi.s3.spi;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3AsyncClientBuilder;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.presigner.S3Presigner;
 
@@ -34,13 +36,32 @@ public final class S3ClientFactory {
     }
 
     public ResolvedS3 resolve(S3ProviderConfig cfg) {
-        S3ClientContext ctx = new S3ClientContext(
+        S3ClientContext ctx = context(cfg);
+        S3ClientProvider p = select(cfg, ctx);
+        return new ResolvedS3(p.id(), p.s3Client(ctx), p.presigner(ctx).orElse(null), p.s3AsyncClient(ctx).orElse(null));
+    }
+
+    /**
+     * The selected provider's non-blocking client, built from skadiDefaults (see
+     * {@link S3ClientProvider#s3AsyncClient(S3ClientContext, S3AsyncClientBuilder)}). Empty when no provider is
+     * registered or the provider leaves it to Skadi.
+     */
+    public Optional<S3AsyncClient> s3AsyncClient(S3ProviderConfig cfg, S3AsyncClientBuilder skadiDefaults) {
+        if (providers.isEmpty()) return Optional.empty();
+        S3ClientContext ctx = context(cfg);
+        return select(cfg, ctx).s3AsyncClient(ctx, skadiDefaults);
+    }
+
+    private static S3ClientContext context(S3ProviderConfig cfg) {
+        return new S3ClientContext(
                 Optional.ofNullable(cfg.getRegion()),
                 Optional.ofNullable(cfg.getEndpointOverride()),
                 cfg.getTags() == null ? Map.of() : Map.copyOf(cfg.getTags()),
                 Optional.ofNullable(cfg.getApiTimeout())
         );
+    }
 
+    private S3ClientProvider select(S3ProviderConfig cfg, S3ClientContext ctx) {
         String forced = cfg.getProvider();
         if (forced != null && !forced.isBlank()) {
             S3ClientProvider p = providers.stream()
@@ -50,7 +71,7 @@ public final class S3ClientFactory {
                             "Forced S3 provider '" + forced + "' not found. Available: " + ids()));
 
             log.info("Using forced S3 provider id='{}' with ctx={}", p.id(), safeCtx(ctx));
-            return new ResolvedS3(p.id(), p.s3Client(ctx), p.presigner(ctx).orElse(null));
+            return p;
         }
 
         List<S3ClientProvider> matching = providers.stream()
@@ -69,8 +90,7 @@ public final class S3ClientFactory {
 
         log.info("Using S3 provider id='{}' (matched {}) with ctx={}",
                 chosen.id(), matching.stream().map(S3ClientProvider::id).toList(), safeCtx(ctx));
-
-        return new ResolvedS3(chosen.id(), chosen.s3Client(ctx), chosen.presigner(ctx).orElse(null));
+        return chosen;
     }
 
     private List<String> ids() {
@@ -84,5 +104,5 @@ public final class S3ClientFactory {
                 + ", tags=" + ctx.tags();
     }
 
-    public record ResolvedS3(String providerId, S3Client s3, S3Presigner presignerOrNull) {}
+    public record ResolvedS3(String providerId, S3Client s3, S3Presigner presignerOrNull, S3AsyncClient s3AsyncOrNull) {}
 }
@@ -1,5 +1,7 @@
 package org.iceforge.skadi.s3.spi;
 
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3AsyncClientBuilder;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.presigner.S3Presigner;
 
@@ -30,4 +32,18 @@ public interface S3ClientProvider {
     default Optional<S3Presigner> presigner(S3ClientContext context) {
         return Optional.empty();
     }
+
+    /** Optional: a ready-built non-blocking client (uploads, parallel cache fills), used as is. */
+    default Optional<S3AsyncClient> s3AsyncClient(S3ClientContext context) {
+        return Optional.empty();
+    }
+
+    /**
+     * Optional: the non-blocking client built from Skadi's builder, which already carries its request metrics,
+     * Netty pool, multipart settings and default credentials/region/endpoint. Override what this environment
+     * needs, then build. Defaults to {@link #s3AsyncClient(S3ClientContext)}; empty lets Skadi build it as is.
+     */
+    default Optional<S3AsyncClient> s3AsyncClient(S3ClientContext context, S3AsyncClientBuilder skadiDefaults) {
+        return s3AsyncClient(context);
+    }
 }
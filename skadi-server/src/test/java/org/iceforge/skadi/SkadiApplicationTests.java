@@ -1,13 +1,43 @@
 package org.iceforge.skadi;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.metrics.export.prometheus.PrometheusScrapeEndpoint;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
 
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Metrics export is off in tests unless asked for; the Prometheus endpoint depends on it
 @SpringBootTest
+@AutoConfigureObservability
 class SkadiApplicationTests {
 
+	// Keep the cache (and its index journal) out of the source tree
+	@TempDir
+	static Path cacheRoot;
+
+	@DynamicPropertySource
+	static void cacheRoot(DynamicPropertyRegistry registry) {
+		registry.add("skadi.local.cacheRootDir", () -> cacheRoot.resolve("skadi-cache").toString());
+	}
+
+	@Autowired
+	ApplicationContext context;
+
 	@Test
 	void contextLoads() {
 	}
 
+	@Test
+	void prometheusEndpointIsAvailable() {
+		assertEquals(1, context.getBeanNamesForType(PrometheusScrapeEndpoint.class).length);
+	}
+
 }
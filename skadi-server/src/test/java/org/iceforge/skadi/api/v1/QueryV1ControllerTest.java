@@ -14,6 +14,7 @@ import org.mockito.Captor;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.ByteArrayOutputStream;
@@ -182,7 +183,7 @@ class QueryV1ControllerTest {
 
     @Test
     void results_notFound_when_missing() {
-        ResponseEntity<StreamingResponseBody> resp = controller.results("x", 2000L);
+        ResponseEntity<StreamingResponseBody> resp = controller.results("x", 2000L, new MockHttpServletRequest());
         assertEquals(HttpStatus.NOT_FOUND, resp.getStatusCode());
     }
 
@@ -197,7 +198,7 @@ class QueryV1ControllerTest {
         byte[] payload = "hello".getBytes();
         when(s3.getStream(any())).thenReturn(new java.io.ByteArrayInputStream(payload));
 
-        ResponseEntity<StreamingResponseBody> resp = controller.results("id", 0L);
+        ResponseEntity<StreamingResponseBody> resp = controller.results("id", 0L, new MockHttpServletRequest());
 
         assertEquals(HttpStatus.OK, resp.getStatusCode());
         assertNotNull(resp.getBody());
@@ -207,4 +208,43 @@ class QueryV1ControllerTest {
 
         assertArrayEquals(payload, baos.toByteArray());
     }
+
+    @Test
+    void results_rangeHeader_streamsOnlyRequestedBytes() throws Exception {
+        var e = registry.getOrCreate("id", req("select 1"));
+        e.setResultLocation("test-bucket", "results/arrow/id/result.arrow", "application/vnd.apache.arrow.stream");
+        e.markSucceeded();
+
+        when(s3.head(any())).thenReturn(java.util.Optional.of(new S3Models.ObjectMetadata(
+                "test-bucket", "results/arrow/id/result.arrow", 100, "etag", null, Instant.now(), java.util.Map.of())));
+        when(s3.getRange(any(), eq(90L), eq(10L))).thenReturn(new java.io.ByteArrayInputStream("0123456789".getBytes()));
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Range", "bytes=-10");
+        ResponseEntity<StreamingResponseBody> resp = controller.results("id", 0L, request);
+
+        assertEquals(HttpStatus.PARTIAL_CONTENT, resp.getStatusCode());
+        assertEquals("bytes 90-99/100", resp.getHeaders().getFirst("Content-Range"));
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        resp.getBody().writeTo(baos);
+        assertEquals("0123456789", baos.toString());
+        verify(s3, never()).getStream(any());
+    }
+
+    @Test
+    void results_unsatisfiableRange_returns416() {
+        var e = registry.getOrCreate("id", req("select 1"));
+        e.setResultLocation("test-bucket", "results/arrow/id/result.arrow", "application/vnd.apache.arrow.stream");
+        e.markSucceeded();
+
+        when(s3.head(any())).thenReturn(java.util.Optional.of(new S3Models.ObjectMetadata(
+                "test-bucket", "results/arrow/id/result.arrow", 100, "etag", null, Instant.now(), java.util.Map.of())));
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Range", "bytes=200-300");
+        ResponseEntity<StreamingResponseBody> resp = controller.results("id", 0L, request);
+
+        assertEquals(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE, resp.getStatusCode());
+        assertEquals("bytes */100", resp.getHeaders().getFirst("Content-Range"));
+    }
 }
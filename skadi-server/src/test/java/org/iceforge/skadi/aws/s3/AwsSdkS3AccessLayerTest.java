@@ -254,4 +254,121 @@ class AwsSdkS3AccessLayerTest {
 
         assertEquals("etag-copy", etag);
     }
+
+    @Test
+    void multipartUpload_uploadsPartsWithCrc32_andCompletesInPartOrder() {
+        S3Models.ObjectRef ref = new S3Models.ObjectRef("bucket", "big.arrow");
+        byte[] data = new byte[12 * 1024 * 1024 + 3];
+        new java.util.Random(7).nextBytes(data);
+
+        when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("u1").build());
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+                .thenAnswer(inv -> UploadPartResponse.builder()
+                        .eTag("e" + inv.getArgument(0, UploadPartRequest.class).partNumber()).build());
+        when(s3Client.completeMultipartUpload(any(CompleteMultipartUploadRequest.class)))
+                .thenReturn(CompleteMultipartUploadResponse.builder().eTag("final").build());
+
+        assertEquals("final", s3AccessLayer.multipartUpload(ref, new ByteArrayInputStream(data), data.length, "application/vnd.apache.arrow.stream", Map.of()));
+
+        ArgumentCaptor<UploadPartRequest> parts = ArgumentCaptor.forClass(UploadPartRequest.class);
+        verify(s3Client, times(2)).uploadPart(parts.capture(), any(RequestBody.class));
+        UploadPartRequest first = parts.getAllValues().stream().filter(p -> p.partNumber() == 1).findFirst().orElseThrow();
+        java.util.zip.CRC32 crc = new java.util.zip.CRC32();
+        crc.update(data, 0, 8 * 1024 * 1024);
+        assertEquals(AwsSdkS3AccessLayer.crc32Base64(crc.getValue()), first.checksumCRC32());
+
+        ArgumentCaptor<CompleteMultipartUploadRequest> done = ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+        verify(s3Client).completeMultipartUpload(done.capture());
+        List<CompletedPart> completed = done.getValue().multipartUpload().parts();
+        assertEquals(List.of(1, 2), completed.stream().map(CompletedPart::partNumber).toList());
+        assertEquals("e2", completed.get(1).eTag());
+    }
+
+    @Test
+    void multipartUpload_partFailure_abortsUpload() {
+        S3Models.ObjectRef ref = new S3Models.ObjectRef("bucket", "big.arrow");
+        byte[] data = new byte[9 * 1024 * 1024];
+
+        when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("u1").build());
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+                .thenThrow(S3Exception.builder().message("boom").statusCode(500).build());
+
+        assertThrows(S3AccessException.class,
+                () -> s3AccessLayer.multipartUpload(ref, new ByteArrayInputStream(data), data.length, null, Map.of()));
+
+        verify(s3Client).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+        verify(s3Client, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
+    @Test
+    void getRange_emptyOrPastTheEnd_returnsAnEmptyStream() throws Exception {
+        S3Models.ObjectRef ref = new S3Models.ObjectRef("bucket", "key");
+        when(s3Client.getObject(any(GetObjectRequest.class)))
+                .thenThrow(S3Exception.builder().message("InvalidRange").statusCode(416).build());
+
+        assertEquals(0, s3AccessLayer.getRange(ref, 5, 0).readAllBytes().length);
+        assertEquals(0, s3AccessLayer.getRange(ref, 100, 10).readAllBytes().length);
+
+        ArgumentCaptor<GetObjectRequest> req = ArgumentCaptor.forClass(GetObjectRequest.class);
+        verify(s3Client, times(1)).getObject(req.capture());
+        assertEquals("bytes=100-109", req.getValue().range());
+    }
+
+    @Test
+    void getRange_toTheEndOfTheLongRange_leavesTheRangeOpen() {
+        when(s3Client.getObject(any(GetObjectRequest.class))).thenReturn(
+                new ResponseInputStream<>(GetObjectResponse.builder().build(), new ByteArrayInputStream(new byte[0])));
+
+        s3AccessLayer.getRange(new S3Models.ObjectRef("bucket", "key"), 10, Long.MAX_VALUE);
+
+        ArgumentCaptor<GetObjectRequest> req = ArgumentCaptor.forClass(GetObjectRequest.class);
+        verify(s3Client).getObject(req.capture());
+        assertEquals("bytes=10-", req.getValue().range());
+    }
+
+    @Test
+    void listAll_followsContinuationTokens_lazily() {
+        ListObjectsV2Response page1 = ListObjectsV2Response.builder()
+                .contents(S3Object.builder().key("p/a").size(1L).build())
+                .isTruncated(true).nextContinuationToken("t1").build();
+        ListObjectsV2Response page2 = ListObjectsV2Response.builder()
+                .contents(S3Object.builder().key("p/b").size(2L).build())
+                .isTruncated(false).build();
+        when(s3Client.listObjectsV2(any(ListObjectsV2Request.class))).thenAnswer(inv ->
+                inv.getArgument(0, ListObjectsV2Request.class).continuationToken() == null ? page1 : page2);
+
+        var stream = s3AccessLayer.listAll("bucket", "p/");
+        verify(s3Client, never()).listObjectsV2(any(ListObjectsV2Request.class));
+
+        assertEquals(List.of("p/a", "p/b"), stream.map(S3Models.ListItem::key).toList());
+        ArgumentCaptor<ListObjectsV2Request> reqs = ArgumentCaptor.forClass(ListObjectsV2Request.class);
+        verify(s3Client, times(2)).listObjectsV2(reqs.capture());
+        assertEquals("t1", reqs.getAllValues().get(1).continuationToken());
+    }
+
+    @Test
+    void summarize_listsEachSubPrefixFully() {
+        when(s3Client.listObjectsV2(any(ListObjectsV2Request.class))).thenAnswer(inv -> {
+            ListObjectsV2Request r = inv.getArgument(0, ListObjectsV2Request.class);
+            if ("/".equals(r.delimiter())) {
+                return ListObjectsV2Response.builder()
+                        .contents(S3Object.builder().key("res/top.json").size(5L).build())
+                        .commonPrefixes(CommonPrefix.builder().prefix("res/r1/").build(),
+                                CommonPrefix.builder().prefix("res/r2/").build())
+                        .isTruncated(false).build();
+            }
+            // Two pages per run
+            boolean first = r.continuationToken() == null;
+            return ListObjectsV2Response.builder()
+                    .contents(S3Object.builder().key(r.prefix() + (first ? "part-1" : "part-2")).size(10L).build())
+                    .isTruncated(first).nextContinuationToken(first ? "next" : null).build();
+        });
+
+        S3Models.ListSummary s = PrefixShardedLister.summarize(s3AccessLayer, "bucket", "res/", 4);
+
+        assertEquals(5, s.objectCount());
+        assertEquals(45L, s.bytes());
+    }
 }
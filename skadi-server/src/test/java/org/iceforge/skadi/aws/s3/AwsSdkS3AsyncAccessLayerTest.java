@@ -0,0 +1,174 @@
+package org.iceforge.skadi.aws.s3;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** The real layer and SDK client against a minimal S3 stub that answers path-style ranged GETs. */
+class AwsSdkS3AsyncAccessLayerTest {
+
+    private static final byte[] OBJECT = "0123456789abcdefghijklmnopqrstuvwxyz".getBytes(StandardCharsets.UTF_8);
+
+    private HttpServer server;
+    private S3AsyncClient client;
+    private AwsSdkS3AsyncAccessLayer layer;
+    private final List<String> ranges = new CopyOnWriteArrayList<>();
+    private volatile int failWith;
+    private volatile byte[] uploaded;
+
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void start() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/bucket/", ex -> {
+            if ("PUT".equals(ex.getRequestMethod())) {
+                uploaded = ex.getRequestBody().readAllBytes();
+                // The client checks a single-part ETag against the MD5 of what it sent
+                ex.getResponseHeaders().set("ETag", "\"" + md5Hex(uploaded) + "\"");
+                ex.sendResponseHeaders(200, -1);
+                ex.close();
+                return;
+            }
+            String range = ex.getRequestHeaders().getFirst("Range");
+            ranges.add(range);
+            if (!ex.getRequestURI().getPath().equals("/bucket/object")) {
+                error(ex, 404, "NoSuchKey");
+                return;
+            }
+            if (failWith != 0) {
+                error(ex, failWith, "InternalError");
+                return;
+            }
+            String[] bounds = range.substring("bytes=".length()).split("-");
+            int from = Integer.parseInt(bounds[0]);
+            int to = Math.min(Integer.parseInt(bounds[1]), OBJECT.length - 1);
+            ex.getResponseHeaders().set("Content-Range", "bytes " + from + "-" + to + "/" + OBJECT.length);
+            ex.sendResponseHeaders(206, to - from + 1);
+            try (OutputStream out = ex.getResponseBody()) {
+                out.write(OBJECT, from, to - from + 1);
+            }
+        });
+        server.start();
+
+        client = S3AsyncClient.builder()
+                .endpointOverride(URI.create("http://127.0.0.1:" + server.getAddress().getPort()))
+                .region(Region.US_EAST_1)
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("test", "test")))
+                .forcePathStyle(true)
+                .build();
+        layer = new AwsSdkS3AsyncAccessLayer(client);
+    }
+
+    @AfterEach
+    void stop() {
+        layer.shutdown();
+        client.close();
+        server.stop(0);
+    }
+
+    private static String md5Hex(byte[] b) {
+        try {
+            return java.util.HexFormat.of().formatHex(java.security.MessageDigest.getInstance("MD5").digest(b));
+        } catch (java.security.NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void error(com.sun.net.httpserver.HttpExchange ex, int status, String code) throws java.io.IOException {
+        byte[] xml = ("<?xml version=\"1.0\" encoding=\"UTF-8\"?><Error><Code>" + code + "</Code>"
+                + "<Message>stub</Message></Error>").getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "application/xml");
+        ex.sendResponseHeaders(status, xml.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(xml);
+        }
+    }
+
+    private CompletableFuture<Long> getRange(String key, long offset, long length, FileChannel ch, long position,
+                                             AtomicLong progress) {
+        return layer.getRange(new S3Models.ObjectRef("bucket", key), offset, length, ch, position, progress::addAndGet);
+    }
+
+    @Test
+    void getRange_sendsAnInclusiveRange_andWritesThoseBytesAtThePosition() throws Exception {
+        Path file = dir.resolve("part");
+        AtomicLong progress = new AtomicLong();
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            assertEquals(5L, getRange("object", 10, 5, ch, 3, progress).get(5, TimeUnit.SECONDS));
+        }
+
+        assertEquals("\0\0\0abcde", Files.readString(file, StandardCharsets.UTF_8));
+        assertEquals(5L, progress.get());
+        assertEquals(List.of("bytes=10-14"), ranges);
+    }
+
+    @Test
+    void getRange_missingKey_failsWithCacheMiss() throws Exception {
+        try (FileChannel ch = FileChannel.open(dir.resolve("part"), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            ExecutionException e = assertThrows(ExecutionException.class,
+                    () -> getRange("absent", 0, 5, ch, 0, new AtomicLong()).get(5, TimeUnit.SECONDS));
+            assertInstanceOf(S3CacheMissException.class, e.getCause());
+        }
+    }
+
+    @Test
+    void getRange_serverError_failsWithAccessException() throws Exception {
+        failWith = 403;
+        try (FileChannel ch = FileChannel.open(dir.resolve("part"), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            ExecutionException e = assertThrows(ExecutionException.class,
+                    () -> getRange("object", 0, 5, ch, 0, new AtomicLong()).get(5, TimeUnit.SECONDS));
+            assertInstanceOf(S3AccessException.class, e.getCause());
+        }
+    }
+
+    @Test
+    void putStream_uploadsTheBody_andReturnsTheETag() throws Exception {
+        byte[] body = "streamed body".getBytes(StandardCharsets.UTF_8);
+
+        String etag = layer.putStream(new S3Models.ObjectRef("bucket", "uploaded"), new ByteArrayInputStream(body),
+                body.length, "text/plain", Map.of()).get(5, TimeUnit.SECONDS);
+
+        assertEquals("\"" + md5Hex(body) + "\"", etag);
+        assertArrayEquals(body, uploaded);
+    }
+
+    @Test
+    void parallelFill_overTheRealClient_writesTheWholeObject() throws Exception {
+        Path tmp = Files.createFile(dir.resolve("fill.tmp"));
+        CacheFill fill = new CacheFill(tmp);
+
+        long written = ParallelRangeDownload.startAsync(layer, new S3Models.ObjectRef("bucket", "object"),
+                OBJECT.length, 8, 3, fill, null, null).get(10, TimeUnit.SECONDS);
+
+        assertEquals(OBJECT.length, written);
+        assertArrayEquals(OBJECT, Files.readAllBytes(tmp));
+        assertEquals(5, ranges.size()); // 36 bytes in 8-byte parts
+    }
+}
@@ -0,0 +1,134 @@
+package org.iceforge.skadi.aws.s3;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheIndexJournalTest {
+
+    @TempDir
+    Path root;
+
+    @Test
+    void replay_restoresPutsTouchesAndRemoves() throws Exception {
+        Path a = root.resolve("ab").resolve("a.bin");
+        Path b = root.resolve("cd").resolve("b.bin");
+
+        try (CacheIndexJournal j = CacheIndexJournal.open(root)) {
+            assertFalse(j.loaded());
+            j.put(a, 10, 0xabcL, 1_000);
+            j.put(b, 20, CacheIndexJournal.NO_CRC, 2_000);
+            j.touch(a, 3_000);
+            j.put(b, 25, 0x1234L, 4_000);
+            assertEquals(35, j.totalBytes());
+            assertEquals(25, j.remove(b));
+        }
+
+        try (CacheIndexJournal j = CacheIndexJournal.open(root)) {
+            assertTrue(j.loaded());
+            assertEquals(1, j.size());
+            assertEquals(10, j.totalBytes());
+            assertEquals(new CacheIndexJournal.Entry(10, 0xabcL, 3_000), j.get(a).orElseThrow());
+            assertTrue(j.get(b).isEmpty());
+        }
+    }
+
+    @Test
+    void leastRecentlyUsed_takesTheOldestEntriesThatCoverTheBytes() throws Exception {
+        Path a = root.resolve("ab").resolve("a.bin");
+        Path b = root.resolve("cd").resolve("b.bin");
+        Path c = root.resolve("ef").resolve("c.blk");
+
+        try (CacheIndexJournal j = CacheIndexJournal.open(root)) {
+            j.put(a, 10, CacheIndexJournal.NO_CRC, 3_000);
+            j.put(b, 20, CacheIndexJournal.NO_CRC, 1_000);
+            j.put(c, 5, CacheIndexJournal.NO_CRC, 2_000);
+
+            assertEquals(List.of(b), j.leastRecentlyUsed(20));
+            assertEquals(List.of(b, c), j.leastRecentlyUsed(21));
+            assertEquals(List.of(b, c, a), j.leastRecentlyUsed(100));
+        }
+    }
+
+    @Test
+    void touch_isBatched_offTheReadingThread() throws Exception {
+        Path journal = root.resolve(CacheIndexJournal.FILE_NAME);
+        List<Runnable> maintenance = new ArrayList<>();
+        int n = 1_100;
+
+        try (CacheIndexJournal j = CacheIndexJournal.open(root, maintenance::add)) {
+            for (int i = 0; i < n; i++) j.put(root.resolve("ab").resolve(i + ".bin"), 1, 1L, 1_000);
+            for (int round = 1; round <= 2; round++) {
+                for (int i = 0; i < n; i++) j.touch(root.resolve("ab").resolve(i + ".bin"), 1_000 + round);
+            }
+
+            // in memory at once, on disk only once the queued flush runs
+            assertEquals(1_002, j.get(root.resolve("ab").resolve("7.bin")).orElseThrow().lastAccessMillis());
+            assertEquals(n, Files.readAllLines(journal).size());
+            assertEquals(1, maintenance.size(), "one flush queued, however many hits");
+
+            maintenance.remove(0).run();
+            List<String> lines = Files.readAllLines(journal);
+            assertEquals(2 * n, lines.size(), "latest access per path only");
+            assertTrue(lines.contains("A\tab/7.bin\t1002"));
+        }
+    }
+
+    @Test
+    void replay_ignoresTornLastRecord() throws Exception {
+        Path a = root.resolve("ab").resolve("a.bin");
+        try (CacheIndexJournal j = CacheIndexJournal.open(root)) {
+            j.put(a, 10, 1L, 1_000);
+        }
+        Files.writeString(root.resolve(CacheIndexJournal.FILE_NAME), "P\tcd/b.bin\t2", StandardCharsets.UTF_8,
+                StandardOpenOption.APPEND);
+
+        try (CacheIndexJournal j = CacheIndexJournal.open(root)) {
+            assertEquals(1, j.size());
+            assertEquals(10, j.totalBytes());
+            j.remove(a);
+        }
+
+        // The torn tail was cut, so the remove went onto a line of its own and survives the next replay
+        try (CacheIndexJournal j = CacheIndexJournal.open(root)) {
+            assertEquals(0, j.size());
+        }
+        assertEquals(List.of("P\tab/a.bin\t10\t1\t1000", "D\tab/a.bin"),
+                Files.readAllLines(root.resolve(CacheIndexJournal.FILE_NAME)));
+    }
+
+    @Test
+    void compact_keepsOnlyLiveEntries() throws Exception {
+        Path a = root.resolve("ab").resolve("a.bin");
+        Path b = root.resolve("cd").resolve("b.bin");
+        try (CacheIndexJournal j = CacheIndexJournal.open(root)) {
+            j.put(a, 10, 1L, 1_000);
+            for (int i = 0; i < 100; i++) j.touch(a, i);
+            j.put(b, 5, 2L, 1_000);
+            j.remove(b);
+            j.compact();
+        }
+
+        assertEquals(1, Files.readAllLines(root.resolve(CacheIndexJournal.FILE_NAME)).size());
+        try (CacheIndexJournal j = CacheIndexJournal.open(root)) {
+            assertEquals(new CacheIndexJournal.Entry(10, 1L, 99), j.get(a).orElseThrow());
+        }
+    }
+
+    @Test
+    void crc32c_matchesJdkChecksum() throws Exception {
+        byte[] data = "checksum me".getBytes(StandardCharsets.UTF_8);
+        Path f = Files.write(root.resolve("f.bin"), data);
+        java.util.zip.CRC32C expected = new java.util.zip.CRC32C();
+        expected.update(data);
+        assertEquals(expected.getValue(), CacheIndexJournal.crc32c(f));
+    }
+}
@@ -4,9 +4,15 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.api.io.TempDir;
+import org.mockito.invocation.InvocationOnMock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.Field;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
@@ -17,6 +23,8 @@ import java.time.Instant;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.LongConsumer;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -45,6 +53,9 @@ class CachedAwsSdkS3AccessLayerTest {
         setField(cachedLayer, "cacheMaxSize", "10Mb");
         setField(cachedLayer, "cacheRootDir", cacheDir.toString());
         cachedLayer.init();
+
+        // Peers miss unless a test says otherwise
+        lenient().when(peerClient.startFetch(any(), any(), any(), anyBoolean(), any(), any(), any(), any())).thenAnswer(inv -> peerMiss());
     }
 
     // ----------------------------------------------------------------------
@@ -61,6 +72,42 @@ class CachedAwsSdkS3AccessLayerTest {
         }
     }
 
+    /** Moves the last access of a cached file seconds into the past, where eviction reads it: the index. */
+    private static void backdate(CachedAwsSdkS3AccessLayer layer, Path file, long seconds) throws Exception {
+        Field f = CachedAwsSdkS3AccessLayer.class.getDeclaredField("index");
+        f.setAccessible(true);
+        ((CacheIndexJournal) f.get(layer)).touch(file, Instant.now().minusSeconds(seconds).toEpochMilli());
+    }
+
+    /** A whole-object GET as the SDK returns it, with its Content-Length. */
+    private static InputStream s3Get(byte[] data) {
+        return new ResponseInputStream<>(GetObjectResponse.builder().contentLength((long) data.length).build(),
+                AbortableInputStream.create(new ByteArrayInputStream(data)));
+    }
+
+    private static PeerCacheClient.Download peerMiss() {
+        return new PeerCacheClient.Download(CompletableFuture.completedFuture(false),
+                CompletableFuture.completedFuture(Optional.empty()), () -> {});
+    }
+
+    /** A peer that answers 200 and streams bytes into the tmp path it was given. */
+    private static PeerCacheClient.Download peerHit(InvocationOnMock startFetch, byte[] bytes) throws Exception {
+        writePeerBody(startFetch, bytes);
+        return new PeerCacheClient.Download(CompletableFuture.completedFuture(true),
+                CompletableFuture.completedFuture(Optional.of(new PeerCacheClient.Transfer(bytes.length, 42L))), () -> {});
+    }
+
+    /** Writes what the peer sent into startFetch's tmp path and reports it as written. */
+    private static void writePeerBody(InvocationOnMock startFetch, byte[] bytes) throws IOException {
+        Path tmp = startFetch.getArgument(5, Path.class);
+        Files.createDirectories(tmp.getParent());
+        Files.write(tmp, bytes,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        startFetch.getArgument(7, LongConsumer.class).accept(bytes.length);
+    }
+
     private static Path expectedCachePath(Path root, S3Models.ObjectRef ref) {
         String id = CacheKeyUtil.cacheId(ref.bucket(), ref.key());
         return root.resolve(id.substring(0, 2)).resolve(id + ".bin");
@@ -133,6 +180,82 @@ class CachedAwsSdkS3AccessLayerTest {
         assertEquals("S3", m.get().source());
     }
 
+    @Test
+    void ramTier_servesPromotedFile_untilItIsReplaced() throws Exception {
+        CachedAwsSdkS3AccessLayer tiered = new CachedAwsSdkS3AccessLayer(delegate, peerClient);
+        setField(tiered, "cacheMaxSize", "10Mb");
+        setField(tiered, "cacheRootDir", cacheDir.toString());
+        setField(tiered, "ramTierMaxSizeExpr", "1Mb");
+        tiered.init();
+
+        S3Models.ObjectRef ref = new S3Models.ObjectRef("ram-bucket", "results/q1/manifest.json");
+        byte[] v1 = "{\"v\":1}".getBytes(StandardCharsets.UTF_8);
+        when(delegate.getStream(ref)).thenReturn(new ByteArrayInputStream(v1));
+
+        assertArrayEquals(v1, tiered.getBytes(ref)); // S3 miss, counted
+        assertArrayEquals(v1, tiered.getBytes(ref)); // disk hit, promoted
+        Path bin = expectedCachePath(cacheDir, ref);
+        Files.delete(bin); // only the RAM copy is left
+        assertArrayEquals(v1, tiered.getBytes(ref));
+        try (InputStream in = tiered.getRange(ref, 1, 3)) {
+            assertEquals("\"v\"", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        assertEquals(CacheFetchContext.Source.LOCAL, CacheFetchContext.getAndClear());
+        verify(delegate, times(1)).getStream(ref);
+
+        byte[] v2 = "{\"v\":2}".getBytes(StandardCharsets.UTF_8);
+        tiered.putBytes(ref, v2, "application/json", Map.of());
+        assertArrayEquals(v2, tiered.getBytes(ref));
+        tiered.shutdown();
+    }
+
+    @Test
+    void copy_overACachedDestination_dropsItsDiskAndRamCopies() throws Exception {
+        CachedAwsSdkS3AccessLayer tiered = new CachedAwsSdkS3AccessLayer(delegate, peerClient);
+        setField(tiered, "cacheMaxSize", "10Mb");
+        setField(tiered, "cacheRootDir", cacheDir.toString());
+        setField(tiered, "ramTierMaxSizeExpr", "1Mb");
+        tiered.init();
+
+        S3Models.ObjectRef from = new S3Models.ObjectRef("ram-bucket", "staging/manifest.json");
+        S3Models.ObjectRef to = new S3Models.ObjectRef("ram-bucket", "results/manifest.json");
+        byte[] v1 = "{\"v\":1}".getBytes(StandardCharsets.UTF_8);
+        byte[] v2 = "{\"v\":2}".getBytes(StandardCharsets.UTF_8);
+        when(delegate.getStream(to)).thenReturn(new ByteArrayInputStream(v1), new ByteArrayInputStream(v2));
+        tiered.getBytes(to); // S3 miss, counted
+        tiered.getBytes(to); // disk hit, promoted
+
+        tiered.move(from, to);
+
+        assertFalse(Files.exists(expectedCachePath(cacheDir, to)));
+        assertArrayEquals(v2, tiered.getBytes(to));
+        verify(delegate).delete(from);
+        tiered.shutdown();
+    }
+
+    @Test
+    void ramTierHit_keepsTheDiskCopyRecent() throws Exception {
+        CachedAwsSdkS3AccessLayer tiered = new CachedAwsSdkS3AccessLayer(delegate, peerClient);
+        setField(tiered, "cacheMaxSize", "10Mb");
+        setField(tiered, "cacheRootDir", cacheDir.toString());
+        setField(tiered, "ramTierMaxSizeExpr", "1Mb");
+        tiered.init();
+
+        S3Models.ObjectRef ref = new S3Models.ObjectRef("ram-bucket", "results/q1/part-00001.ndjson");
+        byte[] data = "{\"a\":1}\n".getBytes(StandardCharsets.UTF_8);
+        when(delegate.getStream(ref)).thenReturn(new ByteArrayInputStream(data));
+        tiered.getBytes(ref); // S3 miss, counted
+        tiered.getBytes(ref); // disk hit, promoted
+
+        Path bin = expectedCachePath(cacheDir, ref);
+        FileTime longAgo = FileTime.fromMillis(System.currentTimeMillis() - 3_600_000L);
+        Files.setLastModifiedTime(bin, longAgo);
+        assertArrayEquals(data, tiered.getBytes(ref)); // served from RAM
+
+        assertTrue(Files.getLastModifiedTime(bin).compareTo(longAgo) > 0);
+        tiered.shutdown();
+    }
+
     @Test
     void localPathIfCached_returnsEmptyWhenNotCached() {
         S3Models.ObjectRef ref = new S3Models.ObjectRef("nope-bucket", "nope-key");
@@ -150,6 +273,17 @@ class CachedAwsSdkS3AccessLayerTest {
         assertEquals(expectedCachePath(cacheDir, ref), p.get());
     }
 
+    @Test
+    void getLocalFile_neverFetches_andReturnsTheCommittedFileOnAHit() throws Exception {
+        S3Models.ObjectRef ref = new S3Models.ObjectRef("sf-bucket", "sf-key");
+
+        assertTrue(cachedLayer.getLocalFile(ref).isEmpty());
+        verifyNoInteractions(delegate, peerClient);
+
+        seedLocalCache(cacheDir, ref, "x".getBytes(StandardCharsets.UTF_8), "TEST");
+        assertEquals(Optional.of(expectedCachePath(cacheDir, ref)), cachedLayer.getLocalFile(ref));
+    }
+
     // ----------------------------------------------------------------------
     // Delete
     // ----------------------------------------------------------------------
@@ -202,8 +336,7 @@ class CachedAwsSdkS3AccessLayerTest {
         // Make ref1 definitively "older" than ref2 for eviction order
         Path bin1 = expectedCachePath(cacheDir, ref1);
         Path meta1 = expectedMetaPath(cacheDir, ref1);
-        Files.setLastModifiedTime(bin1, FileTime.from(Instant.now().minusSeconds(10)));
-        Files.setLastModifiedTime(meta1, FileTime.from(Instant.now().minusSeconds(10)));
+        backdate(tiny, bin1, 10);
 
         assertArrayEquals(data2, tiny.getBytes(ref2));
 
@@ -227,7 +360,6 @@ class CachedAwsSdkS3AccessLayerTest {
         setField(cachedLayer, "peerEnabled", true);
         setField(cachedLayer, "peerBaseUrls", List.of("http://peer-a", "http://peer-b"));
         setField(cachedLayer, "maxPeersToTry", 1);
-        setField(cachedLayer, "headTimeoutMs", 250L);
         setField(cachedLayer, "getTimeoutMs", 8000L);
 
         setField(cachedLayer, "peerKeyId", "k1");
@@ -236,32 +368,17 @@ class CachedAwsSdkS3AccessLayerTest {
         S3Models.ObjectRef ref = new S3Models.ObjectRef("peer-bucket", "peer-key");
         byte[] peerBytes = "from-peer".getBytes(StandardCharsets.UTF_8);
 
-        // HEAD reports size, then GET streams to tmp path
-// in `getBytes_peerHit_pullsFromPeer_writesLocalBinAndMeta_withoutCallingDelegate()`
-        when(peerClient.headLength(
-                anyString(),                  // or eq("http://peer-b") if that is what code uses
-                eq(ref.bucket()),
-                eq(ref.key()),
-                any(),                        // PeerSignedHeaders matcher
-                any()))                       // Duration matcher
-                .thenReturn(Optional.of((long) peerBytes.length));
-
-        when(peerClient.streamToFile(
+        // One GET streams to the tmp path (no HEAD preflight)
+        when(peerClient.startFetch(
                 anyString(),
                 eq(ref.bucket()),
                 eq(ref.key()),
+                anyBoolean(),
                 any(),
                 any(Path.class),
+                any(),
                 any()))
-                .thenAnswer(inv -> {
-                    Path tmp = inv.getArgument(4, Path.class);
-                    Files.createDirectories(tmp.getParent());
-                    Files.write(tmp, peerBytes,
-                            StandardOpenOption.CREATE,
-                            StandardOpenOption.TRUNCATE_EXISTING,
-                            StandardOpenOption.WRITE);
-                    return true;
-                });
+                .thenAnswer(inv -> peerHit(inv, peerBytes));
 
         byte[] result = cachedLayer.getBytes(ref);
 
@@ -281,24 +398,119 @@ class CachedAwsSdkS3AccessLayerTest {
         // Critical: peer hit must not fall back to S3 delegate
         verify(delegate, never()).getStream(any());
         verify(delegate, never()).getBytes(any());
+        // The peer-validated checksum is what the local index records
+        assertEquals(42L, cachedLayer.localCrc32c(ref).getAsLong());
     }
 
     @Test
-    void getBytes_peerHeadOk_butStreamFails_fallsBackToDelegate() {
+    void getBytes_halfOpenOwners_onlyTheOwnerAskedTakesItsProbe() {
+        List<String> peers = List.of("http://peer-a", "http://peer-b");
+        setField(cachedLayer, "peerEnabled", true);
+        setField(cachedLayer, "peerBaseUrls", peers);
+        setField(cachedLayer, "maxPeersToTry", 2);
+        setField(cachedLayer, "peerKeyId", "k1");
+        setField(cachedLayer, "peerSecrets", Map.of("k1", "secret1"));
+        PeerMembership membership = new PeerMembership(peerClient);
+        setField(membership, "seeds", peers);
+        setField(membership, "failureThreshold", 1);
+        setField(membership, "circuitOpenMs", 0L);
+        membership.refreshMembers();
+        peers.forEach(membership::recordFailure);
+        setField(cachedLayer, "membership", membership);
+
+        S3Models.ObjectRef ref = new S3Models.ObjectRef("peer-bucket", "half-open");
+        byte[] bytes = "from-peer".getBytes(StandardCharsets.UTF_8);
+        List<String> asked = new java.util.concurrent.CopyOnWriteArrayList<>();
+        when(peerClient.startFetch(anyString(), eq(ref.bucket()), eq(ref.key()), anyBoolean(), any(), any(Path.class), any(), any()))
+                .thenAnswer(inv -> {
+                    asked.add(inv.getArgument(0));
+                    return peerHit(inv, bytes);
+                });
+
+        assertArrayEquals(bytes, cachedLayer.getBytes(ref));
+
+        // Both owners were candidates, but the first answered: the other one's probe is still free
+        assertEquals(1, asked.size());
+        String other = peers.stream().filter(p -> !p.equals(asked.get(0))).findFirst().orElseThrow();
+        assertTrue(membership.isClosed(asked.get(0)), "the probe succeeded");
+        assertTrue(membership.isAvailable(other));
+    }
+
+    @Test
+    void getStream_peerTransfer_isReadAlongWhileItsBodyArrives() throws Exception {
         setField(cachedLayer, "peerEnabled", true);
         setField(cachedLayer, "peerBaseUrls", List.of("http://peer-a"));
         setField(cachedLayer, "maxPeersToTry", 1);
         setField(cachedLayer, "peerKeyId", "k1");
         setField(cachedLayer, "peerSecrets", Map.of("k1", "secret1"));
 
-        S3Models.ObjectRef ref = new S3Models.ObjectRef("peer-bucket", "peer-key2");
+        S3Models.ObjectRef ref = new S3Models.ObjectRef("peer-bucket", "streamed");
+        byte[] bytes = "first-half|second-half".getBytes(StandardCharsets.UTF_8);
+        int half = 11;
+        CompletableFuture<Optional<PeerCacheClient.Transfer>> done = new CompletableFuture<>();
+        java.util.concurrent.atomic.AtomicReference<InvocationOnMock> call = new java.util.concurrent.atomic.AtomicReference<>();
+        when(peerClient.startFetch(eq("http://peer-a"), eq(ref.bucket()), eq(ref.key()), anyBoolean(), any(), any(Path.class), any(), any()))
+                .thenAnswer(inv -> {
+                    call.set(inv);
+                    writePeerBody(inv, java.util.Arrays.copyOf(bytes, half));
+                    return new PeerCacheClient.Download(CompletableFuture.completedFuture(true), done, () -> {});
+                });
+
+        try (InputStream in = cachedLayer.getStream(ref)) {
+            // Returned before the body is complete, with the first half already readable
+            assertArrayEquals(java.util.Arrays.copyOf(bytes, half), in.readNBytes(half));
+            assertFalse(Files.exists(expectedCachePath(cacheDir, ref)));
+
+            Path tmp = call.get().getArgument(5, Path.class);
+            Files.write(tmp, java.util.Arrays.copyOfRange(bytes, half, bytes.length), StandardOpenOption.APPEND);
+            call.get().getArgument(7, LongConsumer.class).accept(bytes.length - half);
+            done.complete(Optional.of(new PeerCacheClient.Transfer(bytes.length, 42L)));
+
+            assertArrayEquals(java.util.Arrays.copyOfRange(bytes, half, bytes.length), in.readAllBytes());
+        }
+        assertArrayEquals(bytes, Files.readAllBytes(expectedCachePath(cacheDir, ref)));
+        assertTrue(cachedLayer.readLocalMeta(ref).orElseThrow().source().startsWith("PEER:"));
+        verify(delegate, never()).getStream(any());
+    }
+
+    @Test
+    void getBytes_peerTransferBreaksOff_continuesTheSameFillFromS3() throws Exception {
+        setField(cachedLayer, "peerEnabled", true);
+        setField(cachedLayer, "peerBaseUrls", List.of("http://peer-a"));
+        setField(cachedLayer, "maxPeersToTry", 1);
+        setField(cachedLayer, "peerKeyId", "k1");
+        setField(cachedLayer, "peerSecrets", Map.of("k1", "secret1"));
+
+        S3Models.ObjectRef ref = new S3Models.ObjectRef("peer-bucket", "broken");
         byte[] s3Bytes = "from-s3".getBytes(StandardCharsets.UTF_8);
+        when(peerClient.startFetch(eq("http://peer-a"), eq(ref.bucket()), eq(ref.key()), anyBoolean(), any(), any(Path.class), any(), any()))
+                .thenAnswer(inv -> {
+                    // Bytes that reached the file but were never published (still held back as a possible trailer)
+                    Files.write(inv.getArgument(5, Path.class), "peer-partial".getBytes(StandardCharsets.UTF_8));
+                    return new PeerCacheClient.Download(CompletableFuture.completedFuture(true),
+                            CompletableFuture.completedFuture(Optional.empty()), () -> {},
+                            new java.util.concurrent.atomic.AtomicBoolean(true));
+                });
+        when(delegate.getStream(ref)).thenReturn(new ByteArrayInputStream(s3Bytes));
 
-        when(peerClient.headLength(eq("http://peer-a"), eq(ref.bucket()), eq(ref.key()), any(), any()))
-                .thenReturn(Optional.of(999L));
+        assertArrayEquals(s3Bytes, cachedLayer.getBytes(ref));
+        assertArrayEquals(s3Bytes, Files.readAllBytes(expectedCachePath(cacheDir, ref)));
+        assertEquals("S3", cachedLayer.readLocalMeta(ref).orElseThrow().source());
+    }
 
-        when(peerClient.streamToFile(eq("http://peer-a"), eq(ref.bucket()), eq(ref.key()), any(), any(Path.class), any()))
-                .thenReturn(false);
+    @Test
+    void getBytes_peerFetchFails_fallsBackToDelegate() {
+        setField(cachedLayer, "peerEnabled", true);
+        setField(cachedLayer, "peerBaseUrls", List.of("http://peer-a"));
+        setField(cachedLayer, "maxPeersToTry", 1);
+        setField(cachedLayer, "peerKeyId", "k1");
+        setField(cachedLayer, "peerSecrets", Map.of("k1", "secret1"));
+
+        S3Models.ObjectRef ref = new S3Models.ObjectRef("peer-bucket", "peer-key2");
+        byte[] s3Bytes = "from-s3".getBytes(StandardCharsets.UTF_8);
+
+        when(peerClient.startFetch(eq("http://peer-a"), eq(ref.bucket()), eq(ref.key()), anyBoolean(), any(), any(Path.class), any(), any()))
+                .thenAnswer(inv -> peerMiss());
 
         when(delegate.getStream(ref)).thenReturn(new ByteArrayInputStream(s3Bytes));
 
@@ -312,25 +524,40 @@ class CachedAwsSdkS3AccessLayerTest {
     // Delegate passthrough methods (non-caching)
     // ----------------------------------------------------------------------
 
+    @Test
+    void head_answersRepeatLookupsLocally_untilALocalPutInvalidates() {
+        S3Models.ObjectRef ref = new S3Models.ObjectRef("bucket", "manifest.json");
+        S3Models.ObjectMetadata md = new S3Models.ObjectMetadata(
+                ref.bucket(), ref.key(), 4, "etag", "application/json", Instant.now(), Map.of());
+        when(delegate.head(ref)).thenReturn(Optional.empty(), Optional.of(md));
+        when(delegate.putBytes(eq(ref), any(byte[].class), any(), anyMap())).thenReturn("etag");
+
+        assertFalse(cachedLayer.exists(ref));
+        assertFalse(cachedLayer.exists(ref));
+        assertTrue(cachedLayer.head(ref).isEmpty());
+        verify(delegate, times(1)).head(ref);
+
+        cachedLayer.putBytes(ref, "done".getBytes(StandardCharsets.UTF_8), "application/json", Map.of());
+
+        assertTrue(cachedLayer.exists(ref));
+        assertEquals(md, cachedLayer.head(ref).orElseThrow());
+        verify(delegate, times(2)).head(ref);
+        verify(delegate, never()).exists(any());
+    }
+
     @Test
     void passthrough_methods_callDelegate() {
         S3Models.ObjectRef ref = new S3Models.ObjectRef("bucket", "key");
         S3Models.ObjectRef ref2 = new S3Models.ObjectRef("bucket", "key2");
 
-        when(delegate.exists(ref)).thenReturn(true);
-        when(delegate.head(ref)).thenReturn(Optional.empty());
         when(delegate.putBytes(eq(ref), any(byte[].class), eq("text/plain"), anyMap())).thenReturn("etag-1");
         when(delegate.copy(ref, ref2)).thenReturn("etag-2");
         when(delegate.list("bucket", "pre", 10)).thenReturn(List.of());
 
-        assertTrue(cachedLayer.exists(ref));
-        assertTrue(cachedLayer.head(ref).isEmpty());
         assertEquals("etag-1", cachedLayer.putBytes(ref, "data".getBytes(StandardCharsets.UTF_8), "text/plain", Map.of()));
         assertEquals("etag-2", cachedLayer.copy(ref, ref2));
         assertNotNull(cachedLayer.list("bucket", "pre", 10));
 
-        verify(delegate, times(1)).exists(ref);
-        verify(delegate, times(1)).head(ref);
         verify(delegate, times(1)).putBytes(eq(ref), any(byte[].class), eq("text/plain"), anyMap());
         verify(delegate, times(1)).copy(ref, ref2);
         verify(delegate, times(1)).list("bucket", "pre", 10);
@@ -367,8 +594,8 @@ class CachedAwsSdkS3AccessLayerTest {
         assertTrue(Files.exists(bin2), "ref2 should exist after caching");
 
         // Make timestamps deterministic: bin1 older, bin2 newer
-        Files.setLastModifiedTime(bin1, FileTime.from(Instant.now().minusSeconds(20)));
-        Files.setLastModifiedTime(bin2, FileTime.from(Instant.now().minusSeconds(10)));
+        backdate(tiny, bin1, 20);
+        backdate(tiny, bin2, 10);
 
         // Access ref1 again: LRU should touch bin1 making it newest
         assertArrayEquals(data1, tiny.getBytes(ref1));
@@ -383,5 +610,603 @@ class CachedAwsSdkS3AccessLayerTest {
         assertFalse(Files.exists(bin2), "ref2 should be evicted because it is least recently used");
     }
 
+    @Test
+    void getRange_cacheHit_slicesLocalFile() throws Exception {
+        S3Models.ObjectRef ref = new S3Models.ObjectRef("hit-bucket", "range-key");
+        seedLocalCache(cacheDir, ref, "0123456789".getBytes(StandardCharsets.UTF_8), "TEST");
+
+        try (var in = cachedLayer.getRange(ref, 3, 4)) {
+            assertEquals("3456", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        verifyNoInteractions(delegate);
+    }
+
+    @Test
+    void getRange_largeObject_fetchesOnlyCoveringBlocks_andReusesThem() throws Exception {
+        setField(cachedLayer, "blockSizeExpr", "4");
+        setField(cachedLayer, "blockCacheAboveSizeExpr", "8");
+        cachedLayer.init();
+
+        S3Models.ObjectRef ref = new S3Models.ObjectRef("big-bucket", "result.arrow");
+        byte[] data = "abcdefghijklmnopqrst".getBytes(StandardCharsets.UTF_8);
+        when(delegate.head(ref)).thenReturn(Optional.of(new S3Models.ObjectMetadata(
+                ref.bucket(), ref.key(), data.length, "etag", null, Instant.now(), Map.of())));
+        when(delegate.getRange(eq(ref), anyLong(), anyLong())).thenAnswer(inv -> {
+            int off = (int) (long) inv.getArgument(1);
+            int len = (int) (long) inv.getArgument(2);
+            return new ByteArrayInputStream(data, off, len);
+        });
+
+        try (var in = cachedLayer.getRange(ref, 6, 5)) {
+            assertEquals("ghijk", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        // bytes 6..10 span blocks 1 and 2 only
+        verify(delegate).getRange(ref, 4, 4);
+        verify(delegate).getRange(ref, 8, 4);
+        verify(delegate, never()).getStream(any());
+        assertFalse(Files.exists(expectedCachePath(cacheDir, ref)), "large object must not be cached whole");
+
+        try (var in = cachedLayer.getRange(ref, 4, 8)) {
+            assertEquals("efghijkl", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        verify(delegate, times(2)).getRange(eq(ref), anyLong(), anyLong());
+        verify(delegate, times(1)).head(ref);
+
+        // Tail read clamps to the object size
+        try (var in = cachedLayer.getRange(ref, 18, 100)) {
+            assertEquals("st", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void getRange_afterOverwrite_doesNotServePreviousBlocks() throws Exception {
+        setField(cachedLayer, "blockSizeExpr", "4");
+        setField(cachedLayer, "blockCacheAboveSizeExpr", "8");
+        cachedLayer.init();
+
+        S3Models.ObjectRef ref = new S3Models.ObjectRef("big-bucket", "result.arrow");
+        byte[][] current = {"abcdefghijklmnopqrst".getBytes(StandardCharsets.UTF_8)};
+        when(delegate.head(ref)).thenAnswer(inv -> Optional.of(new S3Models.ObjectMetadata(
+                ref.bucket(), ref.key(), current[0].length, "etag", null, Instant.now(), Map.of())));
+        when(delegate.getRange(eq(ref), anyLong(), anyLong())).thenAnswer(inv -> {
+            int off = (int) (long) inv.getArgument(1);
+            int len = (int) (long) inv.getArgument(2);
+            return new ByteArrayInputStream(current[0], off, len);
+        });
+
+        try (var in = cachedLayer.getRange(ref, 4, 4)) {
+            assertEquals("efgh", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+
+        // Server-side copy onto ref: nothing is cached whole, only the old blocks are on disk
+        S3Models.ObjectRef src = new S3Models.ObjectRef("big-bucket", "other.arrow");
+        current[0] = "ABCDEFGHIJKLMNOPQRSTUVWX".getBytes(StandardCharsets.UTF_8);
+        cachedLayer.copy(src, ref);
+
+        try (var in = cachedLayer.getRange(ref, 4, 4)) {
+            assertEquals("EFGH", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        try (var in = cachedLayer.getRange(ref, 20, 100)) {
+            assertEquals("UVWX", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void getRange_smallObject_cachesWholeObject() throws Exception {
+        S3Models.ObjectRef ref = new S3Models.ObjectRef("small-bucket", "small-key");
+        byte[] data = "small-object".getBytes(StandardCharsets.UTF_8);
+        when(delegate.head(ref)).thenReturn(Optional.of(new S3Models.ObjectMetadata(
+                ref.bucket(), ref.key(), data.length, "etag", null, Instant.now(), Map.of())));
+        when(delegate.getStream(ref)).thenReturn(new ByteArrayInputStream(data));
+
+        try (var in = cachedLayer.getRange(ref, 6, 6)) {
+            assertEquals("object", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        assertTrue(Files.exists(expectedCachePath(cacheDir, ref)));
+        verify(delegate, never()).getRange(any(), anyLong(), anyLong());
+    }
+
+    @Test
+    void getStream_cacheMiss_readersFollowTheFill_beforeDownloadCompletes() throws Exception {
+        S3Models.ObjectRef ref = new S3Models.ObjectRef("cold-bucket", "cold-key");
+        var s3Side = new java.io.PipedOutputStream();
+        var s3Body = new java.io.PipedInputStream(s3Side, 1024);
+        when(delegate.getStream(ref)).thenReturn(s3Body);
+
+        try (var first = cachedLayer.getStream(ref);
+             var second = cachedLayer.getStream(ref)) {
+            s3Side.write("head-".getBytes(StandardCharsets.UTF_8));
+            s3Side.flush();
+
+            // Both readers get the first bytes while S3 is still sending
+            assertEquals("head-", new String(first.readNBytes(5), StandardCharsets.UTF_8));
+            assertEquals("head-", new String(second.readNBytes(5), StandardCharsets.UTF_8));
+            assertFalse(Files.exists(expectedCachePath(cacheDir, ref)), "not committed until the download finishes");
+
+            s3Side.write("tail".getBytes(StandardCharsets.UTF_8));
+            s3Side.close();
+
+            assertEquals("tail", new String(first.readAllBytes(), StandardCharsets.UTF_8));
+            assertEquals("tail", new String(second.readAllBytes(), StandardCharsets.UTF_8));
+        }
+
+        // EOF is only signalled after the atomic move into the cache
+        assertTrue(Files.exists(expectedCachePath(cacheDir, ref)));
+        assertTrue(Files.exists(expectedMetaPath(cacheDir, ref)));
+        verify(delegate, times(1)).getStream(ref);
+        try (var stream = Files.list(expectedCachePath(cacheDir, ref).getParent())) {
+            assertTrue(stream.noneMatch(p -> p.getFileName().toString().contains(".tmp-")));
+        }
+    }
+
+    @Test
+    void getStream_fillFailure_surfacesToReader_andLeavesNoCacheFile() throws Exception {
+        S3Models.ObjectRef ref = new S3Models.ObjectRef("cold-bucket", "broken-key");
+        InputStream broken = new InputStream() {
+            private int sent;
+            @Override
+            public int read() throws java.io.IOException {
+                if (sent++ < 3) return 'x';
+                throw new java.io.IOException("connection reset");
+            }
+        };
+        when(delegate.getStream(ref)).thenReturn(broken);
+
+        try (var in = cachedLayer.getStream(ref)) {
+            assertThrows(java.io.IOException.class, in::readAllBytes);
+        }
+        assertFalse(Files.exists(expectedCachePath(cacheDir, ref)));
+    }
+
+    @Test
+    void getBytes_largeColdObject_fetchedAsParallelRangedParts() throws Exception {
+        setField(cachedLayer, "parallelFillAboveSizeExpr", "8");
+        setField(cachedLayer, "parallelFillPartSizeExpr", "4");
+        setField(cachedLayer, "parallelFillConcurrency", 3);
+        cachedLayer.init();
+
+        S3Models.ObjectRef ref = new S3Models.ObjectRef("big-bucket", "parallel.arrow");
+        byte[] data = "abcdefghijklmnopqrstuvw".getBytes(StandardCharsets.UTF_8);
+        when(delegate.getStream(ref)).thenReturn(s3Get(data));
+        when(delegate.getRange(eq(ref), anyLong(), anyLong())).thenAnswer(inv -> {
+            int off = (int) (long) inv.getArgument(1);
+            int len = (int) (long) inv.getArgument(2);
+            return new ByteArrayInputStream(data, off, len);
+        });
 
+        assertArrayEquals(data, cachedLayer.getBytes(ref));
+
+        // 23 bytes in 4-byte parts: the GET's Content-Length switches to ranges, and that GET serves part 0
+        verify(delegate, never()).head(any());
+        verify(delegate, times(1)).getStream(ref);
+        verify(delegate, times(5)).getRange(eq(ref), anyLong(), anyLong());
+        verify(delegate, never()).getRange(ref, 0, 4);
+        verify(delegate).getRange(ref, 20, 3);
+        assertArrayEquals(data, Files.readAllBytes(expectedCachePath(cacheDir, ref)));
+    }
+
+    @Test
+    void getBytes_largeColdObject_withSizeInHeadCache_skipsTheWholeObjectGet() throws Exception {
+        setField(cachedLayer, "parallelFillAboveSizeExpr", "8");
+        setField(cachedLayer, "parallelFillPartSizeExpr", "4");
+        setField(cachedLayer, "parallelFillConcurrency", 3);
+        cachedLayer.init();
+
+        S3Models.ObjectRef ref = new S3Models.ObjectRef("big-bucket", "headed.arrow");
+        byte[] data = "abcdefghijklmnopqrstuvw".getBytes(StandardCharsets.UTF_8);
+        when(delegate.head(ref)).thenReturn(Optional.of(new S3Models.ObjectMetadata(
+                ref.bucket(), ref.key(), data.length, "etag", null, Instant.now(), Map.of())));
+        when(delegate.getRange(eq(ref), anyLong(), anyLong())).thenAnswer(inv -> {
+            int off = (int) (long) inv.getArgument(1);
+            int len = (int) (long) inv.getArgument(2);
+            return new ByteArrayInputStream(data, off, len);
+        });
+
+        assertTrue(cachedLayer.exists(ref)); // e.g. a status poll already looked at it
+        assertArrayEquals(data, cachedLayer.getBytes(ref));
+
+        verify(delegate, times(1)).head(ref);
+        verify(delegate, times(6)).getRange(eq(ref), anyLong(), anyLong());
+        verify(delegate, never()).getStream(any());
+    }
+
+    @Test
+    void getBytes_largeColdObject_withAsyncDelegate_fetchesPartsWithoutBlockingGets() throws Exception {
+        setField(cachedLayer, "parallelFillAboveSizeExpr", "8");
+        setField(cachedLayer, "parallelFillPartSizeExpr", "4");
+        setField(cachedLayer, "parallelFillConcurrency", 2);
+        cachedLayer.init();
+        S3AsyncAccessLayer async = mock(S3AsyncAccessLayer.class);
+        cachedLayer.setAsyncDelegate(async);
+
+        S3Models.ObjectRef ref = new S3Models.ObjectRef("big-bucket", "async.arrow");
+        byte[] data = "abcdefghijklmnopqrstuvw".getBytes(StandardCharsets.UTF_8);
+        when(delegate.getStream(ref)).thenReturn(s3Get(data));
+        when(async.getRange(eq(ref), anyLong(), anyLong(), any(), anyLong(), any())).thenAnswer(inv -> {
+            int off = (int) (long) inv.getArgument(1);
+            int len = (int) (long) inv.getArgument(2);
+            java.nio.channels.FileChannel ch = inv.getArgument(3);
+            long pos = inv.getArgument(4);
+            LongConsumer progress = inv.getArgument(5);
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    ch.write(java.nio.ByteBuffer.wrap(data, off, len), pos);
+                } catch (IOException e) {
+                    throw new java.io.UncheckedIOException(e);
+                }
+                progress.accept(len);
+                return (long) len;
+            });
+        });
+
+        assertArrayEquals(data, cachedLayer.getBytes(ref));
+
+        verify(async, times(5)).getRange(eq(ref), anyLong(), anyLong(), any(), anyLong(), any());
+        verify(delegate, never()).getRange(any(), anyLong(), anyLong());
+        verify(delegate, times(1)).getStream(ref);
+        assertArrayEquals(data, Files.readAllBytes(expectedCachePath(cacheDir, ref)));
+    }
+
+    @Test
+    void getStream_parallelFill_partFailure_failsReaderAndCleansUp() throws Exception {
+        setField(cachedLayer, "parallelFillAboveSizeExpr", "8");
+        setField(cachedLayer, "parallelFillPartSizeExpr", "4");
+        cachedLayer.init();
+
+        S3Models.ObjectRef ref = new S3Models.ObjectRef("big-bucket", "flaky.arrow");
+        byte[] data = "abcdefghijklmnop".getBytes(StandardCharsets.UTF_8);
+        when(delegate.getStream(ref)).thenReturn(s3Get(data));
+        when(delegate.getRange(eq(ref), anyLong(), anyLong())).thenAnswer(inv -> {
+            long off = inv.getArgument(1);
+            if (off == 8) throw new S3AccessException("boom", null);
+            return new ByteArrayInputStream(data, (int) off, (int) (long) inv.getArgument(2));
+        });
+
+        try (var in = cachedLayer.getStream(ref)) {
+            assertThrows(java.io.IOException.class, in::readAllBytes);
+        }
+        assertFalse(Files.exists(expectedCachePath(cacheDir, ref)));
+    }
+
+    @Test
+    void init_restoresCacheSizeFromIndexJournal_withoutRescanning() throws Exception {
+        S3Models.ObjectRef ref = new S3Models.ObjectRef("journal-bucket", "k1");
+        when(delegate.getStream(ref)).thenReturn(new ByteArrayInputStream("12345".getBytes(StandardCharsets.UTF_8)));
+        cachedLayer.getBytes(ref);
+        assertEquals(5, cachedLayer.currentCacheSizeBytes());
+
+        // A file the journal does not know about is not picked up by a restart...
+        Path stray = cacheDir.resolve("zz").resolve("stray.bin");
+        Files.createDirectories(stray.getParent());
+        Files.write(stray, "xyz".getBytes(StandardCharsets.UTF_8));
+
+        CachedAwsSdkS3AccessLayer restarted = new CachedAwsSdkS3AccessLayer(delegate, peerClient);
+        setField(restarted, "cacheMaxSize", "10Mb");
+        setField(restarted, "cacheRootDir", cacheDir.toString());
+        restarted.init();
+        assertEquals(5, restarted.currentCacheSizeBytes());
+
+        // ...only by background reconciliation.
+        restarted.verifyAndCleanup(Instant.now());
+        assertEquals(8, restarted.currentCacheSizeBytes());
+    }
+
+    @Test
+    void verifyAndCleanup_dropsCorruptEntries_andStaleTempFiles() throws Exception {
+        S3Models.ObjectRef good = new S3Models.ObjectRef("verify-bucket", "good");
+        S3Models.ObjectRef bad = new S3Models.ObjectRef("verify-bucket", "bad");
+        when(delegate.getStream(good)).thenReturn(new ByteArrayInputStream("good!".getBytes(StandardCharsets.UTF_8)));
+        when(delegate.getStream(bad)).thenReturn(new ByteArrayInputStream("bad!!".getBytes(StandardCharsets.UTF_8)));
+        cachedLayer.getBytes(good);
+        cachedLayer.getBytes(bad);
+
+        // Same length, different content: only the checksum can tell.
+        Files.write(expectedCachePath(cacheDir, bad), "BAD!!".getBytes(StandardCharsets.UTF_8));
+        Path staleTmp = expectedCachePath(cacheDir, good).resolveSibling("leftover.bin.tmp-1234");
+        Files.write(staleTmp, "partial".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(staleTmp, FileTime.from(Instant.now().minusSeconds(60)));
+
+        assertEquals(1, cachedLayer.verifyAndCleanup(Instant.now()));
+
+        assertTrue(Files.exists(expectedCachePath(cacheDir, good)));
+        assertFalse(Files.exists(expectedCachePath(cacheDir, bad)));
+        assertFalse(Files.exists(expectedMetaPath(cacheDir, bad)));
+        assertFalse(Files.exists(staleTmp));
+        assertEquals(5, cachedLayer.currentCacheSizeBytes());
+    }
+
+    @Test
+    void peerLookup_asksTheOwnerFirst_insteadOfRandomPeers() {
+        List<String> peers = List.of("http://peer-a", "http://peer-b", "http://peer-c");
+        setField(cachedLayer, "peerEnabled", true);
+        setField(cachedLayer, "peerBaseUrls", peers);
+        setField(cachedLayer, "maxPeersToTry", 1);
+        setField(cachedLayer, "peerKeyId", "k1");
+        setField(cachedLayer, "peerSecrets", Map.of("k1", "secret1"));
+
+        S3Models.ObjectRef ref = new S3Models.ObjectRef("ring-bucket", "ring-key");
+        String owner = new PeerRing(peers, null).owners(CacheKeyUtil.cacheId(ref.bucket(), ref.key()), 1).get(0);
+
+        for (int i = 0; i < 5; i++) {
+            cachedLayer.delete(ref);
+            when(delegate.getStream(ref)).thenReturn(new ByteArrayInputStream("x".getBytes(StandardCharsets.UTF_8)));
+            cachedLayer.getBytes(ref);
+        }
+
+        verify(peerClient, times(5)).startFetch(eq(owner), eq(ref.bucket()), eq(ref.key()), anyBoolean(), any(), any(Path.class), any(), any());
+        verify(peerClient, times(5)).startFetch(anyString(), any(), any(), anyBoolean(), any(), any(Path.class), any(), any());
+    }
+
+    @Test
+    void s3Fill_onNonOwner_sendsWarmHintToOwners() throws Exception {
+        List<String> peers = List.of("http://peer-a", "http://peer-b", "http://self");
+        setField(cachedLayer, "peerEnabled", true);
+        setField(cachedLayer, "peerBaseUrls", peers);
+        setField(cachedLayer, "maxPeersToTry", 2);
+        setField(cachedLayer, "peerKeyId", "k1");
+        setField(cachedLayer, "peerSecrets", Map.of("k1", "secret1"));
+        setField(cachedLayer, "selfUrl", "http://self");
+        setField(cachedLayer, "ownerReplicas", 1);
+        setField(cachedLayer, "warmOwnersOnFill", true);
+
+        PeerRing ring = new PeerRing(peers, "http://self");
+        S3Models.ObjectRef ref = null;
+        for (int i = 0; ref == null; i++) {
+            S3Models.ObjectRef candidate = new S3Models.ObjectRef("ring-bucket", "warm-" + i);
+            if (!ring.isOwner(CacheKeyUtil.cacheId(candidate.bucket(), candidate.key()), 1)) ref = candidate;
+        }
+        String owner = ring.owners(CacheKeyUtil.cacheId(ref.bucket(), ref.key()), 1).get(0);
+        when(delegate.getStream(ref)).thenReturn(new ByteArrayInputStream("filled".getBytes(StandardCharsets.UTF_8)));
+
+        cachedLayer.getBytes(ref);
+
+        verify(peerClient, timeout(2000)).warm(eq(owner), eq(ref.bucket()), eq(ref.key()), eq("http://self"), any(), any());
+    }
+
+    @Test
+    void peerFetch_slowOwner_isHedgedToS3_andS3WinsTheRace() throws Exception {
+        setField(cachedLayer, "peerEnabled", true);
+        setField(cachedLayer, "peerBaseUrls", List.of("http://peer-a"));
+        setField(cachedLayer, "maxPeersToTry", 1);
+        setField(cachedLayer, "peerKeyId", "k1");
+        setField(cachedLayer, "peerSecrets", Map.of("k1", "secret1"));
+        setField(cachedLayer, "hedgeDelayMs", 20L);
+        io.micrometer.core.instrument.simple.SimpleMeterRegistry registry =
+                new io.micrometer.core.instrument.simple.SimpleMeterRegistry();
+        cachedLayer.setMeterRegistry(registry);
+
+        S3Models.ObjectRef ref = new S3Models.ObjectRef("hedge-bucket", "hedge-key");
+        byte[] s3Bytes = "from-s3".getBytes(StandardCharsets.UTF_8);
+
+        // The owner never answers; the hedge has to go to S3 and cancel it.
+        java.util.concurrent.atomic.AtomicBoolean cancelled = new java.util.concurrent.atomic.AtomicBoolean();
+        when(peerClient.startFetch(eq("http://peer-a"), eq(ref.bucket()), eq(ref.key()), anyBoolean(), any(), any(Path.class), any(), any()))
+                .thenAnswer(inv -> new PeerCacheClient.Download(new CompletableFuture<>(), new CompletableFuture<>(),
+                        () -> cancelled.set(true)));
+        when(delegate.getStream(ref)).thenReturn(new ByteArrayInputStream(s3Bytes));
+
+        assertArrayEquals(s3Bytes, cachedLayer.getBytes(ref));
+
+        assertTrue(cancelled.get(), "losing peer request should be cancelled");
+        assertEquals(1.0, registry.counter("skadi.cache.fetch.hedges", "target", "s3").count());
+        assertEquals(1.0, registry.counter("skadi.cache.fetch.wins", "source", "s3", "hedged", "true").count());
+        try (var files = Files.walk(cacheDir)) {
+            assertTrue(files.noneMatch(p -> p.getFileName().toString().contains(".tmp-")), "no temp files left behind");
+        }
+    }
+
+    @Test
+    void putStream_teesUploadIntoLocalCache() throws Exception {
+        S3Models.ObjectRef ref = new S3Models.ObjectRef("put-bucket", "arrow/q1/result.arrow");
+        byte[] bytes = "arrow-bytes".getBytes(StandardCharsets.UTF_8);
+        when(delegate.putStream(eq(ref), any(InputStream.class), eq((long) bytes.length), any(), any()))
+                .thenAnswer(inv -> {
+                    inv.getArgument(1, InputStream.class).readAllBytes();
+                    return "etag-1";
+                });
+
+        assertEquals("etag-1", cachedLayer.putStream(ref, new ByteArrayInputStream(bytes), bytes.length, "x", Map.of()));
+
+        assertArrayEquals(bytes, Files.readAllBytes(expectedCachePath(cacheDir, ref)));
+        java.util.zip.CRC32C crc = new java.util.zip.CRC32C();
+        crc.update(bytes);
+        assertEquals(crc.getValue(), cachedLayer.localCrc32c(ref).getAsLong());
+        assertArrayEquals(bytes, cachedLayer.getBytes(ref));
+        verify(delegate, never()).getStream(any());
+    }
+
+    @Test
+    void putBytes_withPushReplication_sendsPinnedCopyToOwnerPeers() throws Exception {
+        List<String> peers = List.of("http://peer-a", "http://peer-b", "http://self");
+        setField(cachedLayer, "peerEnabled", true);
+        setField(cachedLayer, "peerBaseUrls", peers);
+        setField(cachedLayer, "peerKeyId", "k1");
+        setField(cachedLayer, "peerSecrets", Map.of("k1", "secret1"));
+        setField(cachedLayer, "selfUrl", "http://self");
+        setField(cachedLayer, "ownerReplicas", 2);
+        setField(cachedLayer, "pushOnPut", true);
+        PeerMembership membership = mock(PeerMembership.class);
+        when(membership.members()).thenReturn(peers);
+        when(membership.self()).thenReturn("http://self");
+        when(membership.isAvailable(anyString())).thenReturn(true);
+        setField(cachedLayer, "membership", membership);
+
+        S3Models.ObjectRef ref = new S3Models.ObjectRef("push-bucket", "results/q1/chunk-00001.ndjson.gz");
+        byte[] bytes = "chunk".getBytes(StandardCharsets.UTF_8);
+        CompletableFuture<PeerCacheClient.PushOutcome> pending = new CompletableFuture<>();
+        List<Path> pushedFiles = new java.util.concurrent.CopyOnWriteArrayList<>();
+        when(peerClient.push(anyString(), any(), any(), any(), any(Path.class), anyLong(), anyLong(), any()))
+                .thenAnswer(inv -> {
+                    pushedFiles.add(inv.getArgument(4));
+                    return pending;
+                });
+
+        cachedLayer.putBytes(ref, bytes, "application/gzip", Map.of());
+
+        List<String> owners = new PeerRing(peers, "http://self")
+                .ownerPeers(CacheKeyUtil.cacheId(ref.bucket(), ref.key()), 2);
+        for (String owner : owners) {
+            verify(peerClient).push(eq(owner), eq(ref.bucket()), eq(ref.key()), any(),
+                    any(Path.class), eq((long) bytes.length), anyLong(), any());
+        }
+        verify(peerClient, times(owners.size())).push(anyString(), any(), any(), any(), any(Path.class), anyLong(), anyLong(), any());
+
+        // The pushes read a pinned copy: an overwrite before they finish does not change what is sent
+        Path pinned = pushedFiles.get(0);
+        assertNotEquals(expectedCachePath(cacheDir, ref), pinned);
+        reset(peerClient);
+        setField(cachedLayer, "pushOnPut", false);
+        cachedLayer.putBytes(ref, "overwritten".getBytes(StandardCharsets.UTF_8), "application/gzip", Map.of());
+        assertArrayEquals(bytes, Files.readAllBytes(pinned));
+
+        // A rejection is not held against the owner, and the pin goes away once every push is done
+        pending.complete(PeerCacheClient.PushOutcome.REJECTED);
+        assertFalse(Files.exists(pinned));
+        verify(membership, never()).recordFailure(anyString());
+    }
+
+    @Test
+    void acceptPush_validatesChecksum_beforeReplacingAnything() throws Exception {
+        S3Models.ObjectRef ref = new S3Models.ObjectRef("push-bucket", "pushed");
+        byte[] bytes = "pushed-bytes".getBytes(StandardCharsets.UTF_8);
+        java.util.zip.CRC32C crc = new java.util.zip.CRC32C();
+        crc.update(bytes);
+        when(delegate.head(ref)).thenReturn(Optional.of(new S3Models.ObjectMetadata(
+                ref.bucket(), ref.key(), bytes.length, "etag", null, Instant.now(), Map.of())));
+        cachedLayer.head(ref);
+
+        assertFalse(cachedLayer.acceptPush(ref, new ByteArrayInputStream(bytes), bytes.length,
+                java.util.OptionalLong.of(crc.getValue() ^ 1)));
+        assertFalse(Files.exists(expectedCachePath(cacheDir, ref)));
+        // A rejected push leaves the cached HEAD alone
+        cachedLayer.head(ref);
+        verify(delegate, times(1)).head(ref);
+
+        assertTrue(cachedLayer.acceptPush(ref, new ByteArrayInputStream(bytes), bytes.length,
+                java.util.OptionalLong.of(crc.getValue())));
+        assertArrayEquals(bytes, Files.readAllBytes(expectedCachePath(cacheDir, ref)));
+        assertEquals("PUSH", cachedLayer.readLocalMeta(ref).orElseThrow().source());
+    }
+
+    @Test
+    void acceptPush_rejectsACopyLargerThanTheCache() throws Exception {
+        S3Models.ObjectRef ref = new S3Models.ObjectRef("push-bucket", "huge");
+        byte[] bytes = new byte[64];
+        setField(cachedLayer, "maxCapacityBytes", 32L);
+
+        assertFalse(cachedLayer.acceptPush(ref, new ByteArrayInputStream(bytes), bytes.length, java.util.OptionalLong.empty()));
+        // A body longer than announced is cut off and rejected too
+        assertFalse(cachedLayer.acceptPush(ref, new ByteArrayInputStream(bytes), 16, java.util.OptionalLong.empty()));
+        assertFalse(Files.exists(expectedCachePath(cacheDir, ref)));
+    }
+
+    @Test
+    void openForPeer_ownerFillsOnceForTheCluster_nonOwnerDoesNot() throws Exception {
+        List<String> peers = List.of("http://peer-a", "http://self");
+        setField(cachedLayer, "peerEnabled", true);
+        setField(cachedLayer, "peerBaseUrls", peers);
+        setField(cachedLayer, "selfUrl", "http://self");
+        setField(cachedLayer, "ownerReplicas", 1);
+
+        PeerRing ring = new PeerRing(peers, "http://self");
+        S3Models.ObjectRef owned = null;
+        S3Models.ObjectRef notOwned = null;
+        for (int i = 0; owned == null || notOwned == null; i++) {
+            S3Models.ObjectRef c = new S3Models.ObjectRef("sf-bucket", "chunk-" + i);
+            if (ring.isOwner(CacheKeyUtil.cacheId(c.bucket(), c.key()), 1)) owned = owned == null ? c : owned;
+            else notOwned = notOwned == null ? c : notOwned;
+        }
+        byte[] bytes = "filled-once".getBytes(StandardCharsets.UTF_8);
+        when(delegate.getStream(owned)).thenReturn(new ByteArrayInputStream(bytes));
+
+        assertTrue(cachedLayer.openForPeer(notOwned, true).isEmpty());
+        assertTrue(cachedLayer.openForPeer(owned, false).isEmpty());
+
+        try (InputStream first = cachedLayer.openForPeer(owned, true).orElseThrow();
+             InputStream second = cachedLayer.openForPeer(owned, true).orElseThrow()) {
+            assertArrayEquals(bytes, first.readAllBytes());
+            assertArrayEquals(bytes, second.readAllBytes());
+        }
+        verify(delegate, times(1)).getStream(owned);
+        verify(delegate, never()).getStream(notOwned);
+    }
+
+    @Test
+    void coldMiss_asksPrimaryOwnerToFill_andWaitsForItInsteadOfHedgingToS3() throws Exception {
+        setField(cachedLayer, "peerEnabled", true);
+        setField(cachedLayer, "peerBaseUrls", List.of("http://peer-a"));
+        setField(cachedLayer, "maxPeersToTry", 1);
+        setField(cachedLayer, "peerKeyId", "k1");
+        setField(cachedLayer, "peerSecrets", Map.of("k1", "secret1"));
+        setField(cachedLayer, "getTimeoutMs", 8000L);
+        setField(cachedLayer, "hedgeDelayMs", 10L);
+        setField(cachedLayer, "coalesceColdFills", true);
+        setField(cachedLayer, "coalesceMaxWaitMs", 5000L);
+
+        S3Models.ObjectRef ref = new S3Models.ObjectRef("sf-bucket", "shared-extract");
+        byte[] bytes = "from-owner-fill".getBytes(StandardCharsets.UTF_8);
+
+        // The owner answers only after it opened S3 itself: well past the hedge delay.
+        when(peerClient.startFetch(eq("http://peer-a"), eq(ref.bucket()), eq(ref.key()), eq(true), any(), any(Path.class), any(), any()))
+                .thenAnswer(inv -> {
+                    CompletableFuture<Boolean> found = new CompletableFuture<>();
+                    CompletableFuture<Optional<PeerCacheClient.Transfer>> done = new CompletableFuture<>();
+                    CompletableFuture.runAsync(() -> {
+                        try {
+                            writePeerBody(inv, bytes);
+                        } catch (Exception e) {
+                            throw new RuntimeException(e);
+                        }
+                        found.complete(true);
+                        done.complete(Optional.of(new PeerCacheClient.Transfer(bytes.length, 42L)));
+                    }, CompletableFuture.delayedExecutor(150, java.util.concurrent.TimeUnit.MILLISECONDS));
+                    return new PeerCacheClient.Download(found, done, () -> {});
+                });
+
+        assertArrayEquals(bytes, cachedLayer.getBytes(ref));
+        verify(delegate, never()).getStream(any());
+        verify(delegate, never()).head(any());
+    }
+
+    @Test
+    void prefetch_batchesLookupPerOwner_andPullsHeldChunksFromIt() throws Exception {
+        setField(cachedLayer, "peerEnabled", true);
+        setField(cachedLayer, "peerBaseUrls", List.of("http://peer-a"));
+        setField(cachedLayer, "maxPeersToTry", 1);
+        setField(cachedLayer, "peerKeyId", "k1");
+        setField(cachedLayer, "peerSecrets", Map.of("k1", "secret1"));
+
+        S3Models.ObjectRef c1 = new S3Models.ObjectRef("pf-bucket", "chunk-1");
+        S3Models.ObjectRef c2 = new S3Models.ObjectRef("pf-bucket", "chunk-2");
+        byte[] bytes = "prefetched".getBytes(StandardCharsets.UTF_8);
+
+        when(peerClient.lookup(eq("http://peer-a"), eq("pf-bucket"), anyList(), any(), any()))
+                .thenReturn(CompletableFuture.completedFuture(Map.of("chunk-1", (long) bytes.length, "chunk-2", (long) bytes.length)));
+        when(peerClient.startFetch(eq("http://peer-a"), eq("pf-bucket"), anyString(), eq(false), any(), any(Path.class), any(), any()))
+                .thenAnswer(inv -> peerHit(inv, bytes));
+
+        cachedLayer.prefetch(List.of(c1, c2));
+
+        long deadline = System.currentTimeMillis() + 5_000;
+        while ((!Files.exists(expectedCachePath(cacheDir, c1)) || !Files.exists(expectedCachePath(cacheDir, c2)))
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertArrayEquals(bytes, Files.readAllBytes(expectedCachePath(cacheDir, c1)));
+        assertArrayEquals(bytes, Files.readAllBytes(expectedCachePath(cacheDir, c2)));
+        verify(peerClient, times(1)).lookup(any(), any(), anyList(), any(), any());
+        verify(delegate, never()).getStream(any());
+    }
+
+    @Test
+    void holdings_listsOnlyCachedKeysWithSizes() {
+        S3Models.ObjectRef ref = new S3Models.ObjectRef("h-bucket", "held");
+        byte[] bytes = "held-bytes".getBytes(StandardCharsets.UTF_8);
+        when(delegate.getStream(ref)).thenReturn(new ByteArrayInputStream(bytes));
+        cachedLayer.getBytes(ref);
+
+        Map<String, Long> held = cachedLayer.holdings("h-bucket", List.of("held", "absent"));
+
+        assertEquals(Map.of("held", (long) bytes.length), held);
+    }
 }
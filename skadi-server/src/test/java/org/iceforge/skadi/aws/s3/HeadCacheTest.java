@@ -0,0 +1,71 @@
+package org.iceforge.skadi.aws.s3;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HeadCacheTest {
+
+    private static final S3Models.ObjectRef REF = new S3Models.ObjectRef("b", "k");
+    private static final S3Models.ObjectMetadata MD =
+            new S3Models.ObjectMetadata("b", "k", 1, "e", null, Instant.EPOCH, Map.of());
+
+    private final AtomicLong now = new AtomicLong();
+    private final AtomicInteger lookups = new AtomicInteger();
+
+    @Test
+    void positiveAndNegativeResults_expireOnTheirOwnTtl() {
+        HeadCache cache = new HeadCache(2_000, 500, 100, now::get);
+
+        assertTrue(cache.get(REF, () -> { lookups.incrementAndGet(); return Optional.empty(); }).isEmpty());
+        now.addAndGet(400_000_000L);
+        assertTrue(cache.get(REF, () -> { lookups.incrementAndGet(); return Optional.of(MD); }).isEmpty());
+        assertEquals(1, lookups.get());
+
+        now.addAndGet(200_000_000L); // negative entry expired
+        assertEquals(MD, cache.get(REF, () -> { lookups.incrementAndGet(); return Optional.of(MD); }).orElseThrow());
+        now.addAndGet(1_900_000_000L);
+        assertEquals(MD, cache.get(REF, () -> { lookups.incrementAndGet(); return Optional.empty(); }).orElseThrow());
+        assertEquals(2, lookups.get());
+    }
+
+    @Test
+    void lookupRacingAnInvalidation_isNotStored() {
+        HeadCache cache = new HeadCache(2_000, 2_000, 100, now::get);
+
+        cache.get(REF, () -> {
+            cache.invalidate(REF); // a PUT lands while the HEAD is in flight
+            return Optional.empty();
+        });
+
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void invalidatingAnotherKey_doesNotKeepALookupFromBeingStored() {
+        HeadCache cache = new HeadCache(2_000, 2_000, 100, now::get);
+
+        cache.get(REF, () -> {
+            cache.invalidate(new S3Models.ObjectRef("b", "other")); // unrelated PUTs are frequent
+            return Optional.of(MD);
+        });
+
+        assertEquals(MD, cache.get(REF, () -> { lookups.incrementAndGet(); return Optional.empty(); }).orElseThrow());
+        assertEquals(0, lookups.get());
+    }
+
+    @Test
+    void sizeIsBounded() {
+        HeadCache cache = new HeadCache(2_000, 2_000, 2, now::get);
+        for (int i = 0; i < 5; i++) {
+            cache.get(new S3Models.ObjectRef("b", "k" + i), Optional::empty);
+        }
+        assertEquals(2, cache.size());
+    }
+}
@@ -0,0 +1,153 @@
+package org.iceforge.skadi.aws.s3;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalFsS3AccessLayerTest {
+
+    @TempDir
+    Path dir;
+
+    private static S3Models.ObjectRef ref(String key) {
+        return new S3Models.ObjectRef("b", key);
+    }
+
+    @Test
+    void put_head_list_fromIndex() throws Exception {
+        LocalFsS3AccessLayer s3 = new LocalFsS3AccessLayer(dir, "data");
+        String etag = s3.putBytes(ref("results/q1/part-00001.ndjson"), "hello".getBytes(StandardCharsets.UTF_8),
+                "application/x-ndjson", Map.of("skadi-rows", "1"));
+        s3.putStream(ref("results/q1/manifest.json"), new ByteArrayInputStream("{}".getBytes(StandardCharsets.UTF_8)),
+                2, "application/json", null);
+        s3.putBytes(ref("results/q2/manifest.json"), new byte[3], null, null);
+
+        S3Models.ObjectMetadata h = s3.head(ref("results/q1/part-00001.ndjson")).orElseThrow();
+        assertEquals(5, h.contentLength());
+        assertEquals(etag, h.eTag());
+        assertEquals("application/x-ndjson", h.contentType());
+        assertEquals("1", h.userMetadata().get("skadi-rows"));
+        assertFalse(s3.exists(ref("results/q1/missing")));
+
+        List<String> keys = s3.list("b", "results/q1/", 100).stream().map(S3Models.ListItem::key).toList();
+        assertEquals(List.of("results/q1/manifest.json", "results/q1/part-00001.ndjson"), keys);
+        assertEquals("hello", new String(s3.getBytes(ref("results/q1/part-00001.ndjson")), StandardCharsets.UTF_8));
+        try (InputStream in = s3.getRange(ref("results/q1/part-00001.ndjson"), 1, 3)) {
+            assertEquals("ell", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void putStream_shorterThanAnnounced_isTruncated() {
+        LocalFsS3AccessLayer s3 = new LocalFsS3AccessLayer(dir, "none");
+        s3.putStream(ref("k"), new ByteArrayInputStream(new byte[]{1, 2, 3}), 1024, null, null);
+
+        assertEquals(3, s3.head(ref("k")).orElseThrow().contentLength());
+        assertArrayEquals(new byte[]{1, 2, 3}, s3.getBytes(ref("k")));
+    }
+
+    @Test
+    void keysNeverEscapeTheBaseDir() throws Exception {
+        LocalFsS3AccessLayer s3 = new LocalFsS3AccessLayer(dir, "data");
+        s3.putBytes(ref("../../escape"), new byte[]{1}, null, null);
+
+        Path file = s3.getLocalFile(ref("../../escape")).orElseThrow();
+        assertTrue(file.toAbsolutePath().normalize().startsWith(dir.toAbsolutePath().normalize()));
+        assertThrows(IllegalArgumentException.class,
+                () -> s3.putBytes(new S3Models.ObjectRef("..", "k"), new byte[]{1}, null, null));
+    }
+
+    @Test
+    void reopen_rebuildsIndex_andDropsDebris() throws Exception {
+        LocalFsS3AccessLayer s3 = new LocalFsS3AccessLayer(dir, "always");
+        s3.putBytes(ref("a"), new byte[]{1, 2}, "x/y", Map.of("m", "v"));
+        s3.copy(ref("a"), ref("c"));
+        s3.putBytes(ref("gone"), new byte[]{9}, null, null);
+        Path orphan = s3.getLocalFile(ref("gone")).orElseThrow();
+        s3.delete(ref("gone"));
+        // crash debris: an object without sidecar and a temp file
+        Files.write(orphan, new byte[]{9});
+        Path tmp = orphan.resolveSibling("x.obj.tmp-123");
+        Files.write(tmp, new byte[]{9});
+
+        LocalFsS3AccessLayer reopened = new LocalFsS3AccessLayer(dir, "data");
+        assertEquals("v", reopened.head(ref("c")).orElseThrow().userMetadata().get("m"));
+        assertEquals(2, reopened.head(ref("a")).orElseThrow().contentLength());
+        assertFalse(reopened.exists(ref("gone")));
+        assertFalse(Files.exists(orphan));
+        assertFalse(Files.exists(tmp));
+    }
+
+    @Test
+    void reopen_dropsAnObjectWhoseSizeDisagreesWithItsSidecar() throws Exception {
+        LocalFsS3AccessLayer s3 = new LocalFsS3AccessLayer(dir, "data");
+        s3.putBytes(ref("torn"), new byte[]{1, 2, 3}, null, null);
+        s3.putBytes(ref("kept"), new byte[]{4}, null, null);
+        // crash between the object and sidecar renames of an overwrite: new bytes, old sidecar
+        Path torn = s3.getLocalFile(ref("torn")).orElseThrow();
+        Files.write(torn, new byte[]{7, 7, 7, 7, 7});
+
+        LocalFsS3AccessLayer reopened = new LocalFsS3AccessLayer(dir, "data");
+        assertFalse(reopened.exists(ref("torn")));
+        assertFalse(Files.exists(torn));
+        assertArrayEquals(new byte[]{4}, reopened.getBytes(ref("kept")));
+    }
+
+    @Test
+    void concurrentPutsOfOneKey_leaveAMatchingObjectAndSidecar() throws Exception {
+        LocalFsS3AccessLayer s3 = new LocalFsS3AccessLayer(dir, "none");
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> puts = new ArrayList<>();
+            for (int i = 1; i <= 200; i++) {
+                byte[] body = new byte[i];
+                Arrays.fill(body, (byte) i);
+                puts.add(pool.submit(() -> s3.putBytes(ref("k"), body, null, null)));
+            }
+            for (Future<?> f : puts) f.get(30, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        LocalFsS3AccessLayer reopened = new LocalFsS3AccessLayer(dir, "data");
+        byte[] got = reopened.getBytes(ref("k"));
+        assertEquals(got.length, reopened.head(ref("k")).orElseThrow().contentLength());
+        assertEquals(s3.head(ref("k")).orElseThrow().eTag(), reopened.head(ref("k")).orElseThrow().eTag());
+    }
+
+    @Test
+    void flatLayout_isMigratedOnFirstStart() throws Exception {
+        Path legacy = dir.resolve("b").resolve("results").resolve("q1");
+        Files.createDirectories(legacy);
+        Files.write(legacy.resolve("manifest.json"), "{}".getBytes(StandardCharsets.UTF_8));
+        Files.writeString(legacy.resolve("manifest.json.meta"), "contentType=application/json\nmeta.skadi-rows=7\n");
+
+        LocalFsS3AccessLayer s3 = new LocalFsS3AccessLayer(dir, "data");
+
+        S3Models.ObjectMetadata h = s3.head(ref("results/q1/manifest.json")).orElseThrow();
+        assertEquals(2, h.contentLength());
+        assertEquals("application/json", h.contentType());
+        assertEquals("7", h.userMetadata().get("skadi-rows"));
+        assertFalse(Files.exists(dir.resolve("b").resolve("results")));
+        assertTrue(Files.exists(dir.resolve(LocalFsS3AccessLayer.LAYOUT_MARKER)));
+        try (Stream<S3Models.ListItem> all = s3.listAll("b", "")) {
+            assertEquals(1, all.count());
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package org.iceforge.skadi.aws.s3;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NonceWindowTest {
+
+    @Test
+    void replayWithinWindow_isRejected() {
+        NonceWindow w = new NonceWindow(30);
+        assertTrue(w.firstUse("k1:n1", 1_000_000));
+        assertFalse(w.firstUse("k1:n1", 1_000_000));
+        assertTrue(w.firstUse("k1:n2", 1_000_000));
+    }
+
+    @Test
+    void expiredSeconds_areDroppedWhenTheirSlotIsReused() {
+        NonceWindow w = new NonceWindow(2); // 6 slots
+        for (int i = 0; i < 100; i++) {
+            assertTrue(w.firstUse("n" + i, 1_000_000L + i * 1000L));
+        }
+        // Only the last ring's worth of seconds is still held.
+        assertEquals(6, w.size());
+    }
+}
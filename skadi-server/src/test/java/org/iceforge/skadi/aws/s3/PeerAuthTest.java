@@ -86,6 +86,16 @@ class PeerAuthTest {
                 () -> auth.verify(method, path, query, keyId, ts, nonce, sig));
     }
 
+    @Test
+    void verify_forgedRequest_doesNotBurnTheNonce() {
+        String ts = String.valueOf(Instant.now().toEpochMilli());
+        String nonce = "n6";
+
+        assertThrows(PeerAuth.Unauthorized.class,
+                () -> auth.verify(method, path, query, keyId, ts, nonce, "forged"));
+        assertDoesNotThrow(() -> auth.verify(method, path, query, keyId, ts, nonce, sig(ts, nonce)));
+    }
+
     @Test
     void verify_missingConfig() {
         // Empty secrets -> unauthorized
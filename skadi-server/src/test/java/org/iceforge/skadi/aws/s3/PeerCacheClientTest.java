@@ -0,0 +1,249 @@
+package org.iceforge.skadi.aws.s3;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32C;
+import java.util.zip.DeflaterOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PeerCacheClientTest {
+
+    private static final byte[] BODY = "peer-cached-bytes".getBytes(StandardCharsets.UTF_8);
+
+    private HttpServer server;
+    private String baseUrl;
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile String crcHeader;
+    private volatile int status = 200;
+    private volatile String acceptEncoding;
+    private volatile byte[] pushed;
+    private volatile boolean trailer;
+    private volatile boolean corruptTrailer;
+    private volatile long pauseBetweenBytesMs;
+
+    private PeerCacheClient client;
+
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void start() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/internal/cache/object", ex -> {
+            requests.incrementAndGet();
+            if ("PUT".equals(ex.getRequestMethod())) {
+                pushed = ex.getRequestBody().readAllBytes();
+                crcHeader = ex.getRequestHeaders().getFirst(PeerCacheClient.CRC32C_HEADER);
+                ex.sendResponseHeaders(204, -1);
+                ex.close();
+                return;
+            }
+            acceptEncoding = ex.getRequestHeaders().getFirst("Accept-Encoding");
+            if (status != 200) {
+                ex.sendResponseHeaders(status, -1);
+                ex.close();
+                return;
+            }
+            if (trailer) {
+                // An in-progress fill: chunked, length and CRC32C after the body
+                ex.getResponseHeaders().set(PeerCacheClient.TRAILER_HEADER, "length-crc32c");
+                byte[] framed = new ChecksumTrailerInputStream(new java.io.ByteArrayInputStream(BODY)).readAllBytes();
+                if (corruptTrailer) framed[framed.length - 1] ^= 1;
+                ex.sendResponseHeaders(200, 0);
+                try (OutputStream out = ex.getResponseBody()) {
+                    out.write(framed);
+                }
+                return;
+            }
+            if (pauseBetweenBytesMs > 0) {
+                ex.sendResponseHeaders(200, BODY.length);
+                try (OutputStream out = ex.getResponseBody()) {
+                    for (byte b : BODY) {
+                        out.write(b);
+                        out.flush();
+                        Thread.sleep(pauseBetweenBytesMs);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return;
+            }
+            if (crcHeader != null) ex.getResponseHeaders().set(PeerCacheClient.CRC32C_HEADER, crcHeader);
+            if ("deflate".equals(acceptEncoding)) {
+                ex.getResponseHeaders().set("Content-Encoding", "deflate");
+                ex.getResponseHeaders().set(PeerCacheClient.LENGTH_HEADER, String.valueOf(BODY.length));
+                ex.sendResponseHeaders(200, 0);
+                try (OutputStream out = new DeflaterOutputStream(ex.getResponseBody())) {
+                    out.write(BODY);
+                }
+                return;
+            }
+            ex.sendResponseHeaders(200, BODY.length);
+            try (OutputStream out = ex.getResponseBody()) {
+                out.write(BODY);
+            }
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        client = new PeerCacheClient(WebClient.builder());
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop(0);
+    }
+
+    private static PeerSignedHeaders signed() {
+        return PeerSignedHeaders.sign("GET", "/internal/cache/object", "bucket=b&key=k", "k1", "secret");
+    }
+
+    @Test
+    void fetchToFile_hit_validatesLengthAndChecksum_inOneRequest() throws Exception {
+        CRC32C crc = new CRC32C();
+        crc.update(BODY);
+        crcHeader = Long.toHexString(crc.getValue());
+        Path tmp = dir.resolve("hit.tmp");
+
+        Optional<PeerCacheClient.Transfer> t = client.fetchToFile(baseUrl, "b", "k", signed(), tmp, Duration.ofSeconds(5));
+
+        assertTrue(t.isPresent());
+        assertEquals(BODY.length, t.get().length());
+        assertEquals(crc.getValue(), t.get().crc32c());
+        assertArrayEquals(BODY, Files.readAllBytes(tmp));
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    void startFetch_timeoutBoundsIdleGaps_notTheWholeTransfer() throws Exception {
+        pauseBetweenBytesMs = 40; // ~0.7s in total, never idle for long
+        Path tmp = dir.resolve("slow.tmp");
+        java.util.concurrent.atomic.AtomicLong written = new java.util.concurrent.atomic.AtomicLong();
+
+        PeerCacheClient.Download d = client.startFetch(baseUrl, "b", "k", false, signed(), tmp,
+                Duration.ofMillis(400), written::addAndGet);
+
+        Optional<PeerCacheClient.Transfer> t = d.await();
+        assertTrue(t.isPresent());
+        assertFalse(d.failed());
+        assertEquals(BODY.length, written.get());
+        assertArrayEquals(BODY, Files.readAllBytes(tmp));
+    }
+
+    @Test
+    void startFetch_fillingResponse_isCheckedAgainstItsTrailer_andTheTrailerIsCutOff() throws Exception {
+        trailer = true;
+        Path tmp = dir.resolve("filling.tmp");
+        java.util.concurrent.atomic.AtomicLong written = new java.util.concurrent.atomic.AtomicLong();
+        CRC32C crc = new CRC32C();
+        crc.update(BODY);
+
+        Optional<PeerCacheClient.Transfer> t = client.startFetch(baseUrl, "b", "k", true, signed(), tmp,
+                Duration.ofSeconds(5), written::addAndGet).await();
+
+        assertTrue(t.isPresent());
+        assertEquals(BODY.length, t.get().length());
+        assertEquals(crc.getValue(), t.get().crc32c());
+        assertArrayEquals(BODY, Files.readAllBytes(tmp));
+        // Readers following the file were never told about trailer bytes
+        assertEquals(BODY.length, written.get());
+
+        corruptTrailer = true;
+        PeerCacheClient.Download bad = client.startFetch(baseUrl, "b", "k", true, signed(), dir.resolve("bad-filling.tmp"),
+                Duration.ofSeconds(5), n -> {});
+        assertTrue(bad.await().isEmpty());
+        assertTrue(bad.failed());
+    }
+
+    @Test
+    void fetchToFile_checksumMismatch_isRejected() {
+        crcHeader = "deadbeef";
+        assertTrue(client.fetchToFile(baseUrl, "b", "k", signed(), dir.resolve("bad.tmp"), Duration.ofSeconds(5)).isEmpty());
+    }
+
+    @Test
+    void fetchToFile_miss_isEmpty() {
+        status = 404;
+        assertTrue(client.fetchToFile(baseUrl, "b", "k", signed(), dir.resolve("miss.tmp"), Duration.ofSeconds(5)).isEmpty());
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    void fetchToFile_compressedKey_isRequestedAsIdentity() {
+        Path tmp = dir.resolve("gz.tmp");
+        assertTrue(client.fetchToFile(baseUrl, "b", "chunk-0001.ndjson.gz", signed(), tmp, Duration.ofSeconds(5)).isPresent());
+        assertEquals("identity", acceptEncoding);
+    }
+
+    @Test
+    void fetchToFile_compressibleKey_isDeflated_andValidatedAgainstDecodedLength() throws Exception {
+        CRC32C crc = new CRC32C();
+        crc.update(BODY);
+        crcHeader = Long.toHexString(crc.getValue());
+        Path tmp = dir.resolve("plain.tmp");
+
+        Optional<PeerCacheClient.Transfer> t =
+                client.fetchToFile(baseUrl, "b", "chunk-0001.ndjson", signed(), tmp, Duration.ofSeconds(5));
+
+        assertEquals("deflate", acceptEncoding);
+        assertTrue(t.isPresent());
+        assertEquals(BODY.length, t.get().length());
+        assertArrayEquals(BODY, Files.readAllBytes(tmp));
+    }
+
+    @Test
+    void push_sendsFileWithChecksum() throws Exception {
+        Path file = Files.write(dir.resolve("obj.bin"), BODY);
+        PeerSignedHeaders h = PeerSignedHeaders.sign("PUT", "/internal/cache/object", "bucket=b&key=k", "k1", "secret");
+
+        assertEquals(PeerCacheClient.PushOutcome.STORED,
+                client.push(baseUrl, "b", "k", h, file, BODY.length, 0xabcL, Duration.ofSeconds(5))
+                        .get(5, java.util.concurrent.TimeUnit.SECONDS));
+        assertArrayEquals(BODY, pushed);
+        assertEquals("abc", crcHeader);
+    }
+
+    @Test
+    void ping_overUpgradeCapableTransport_worksAgainstHttp11Peer() throws Exception {
+        server.createContext("/ping", ex -> {
+            byte[] ok = "ok".getBytes(StandardCharsets.UTF_8);
+            ex.sendResponseHeaders(200, ok.length);
+            try (OutputStream out = ex.getResponseBody()) {
+                out.write(ok);
+            }
+        });
+        assertTrue(client.ping(baseUrl, Duration.ofSeconds(5)).get(5, java.util.concurrent.TimeUnit.SECONDS));
+        assertFalse(client.ping("http://127.0.0.1:1", Duration.ofSeconds(2)).get(5, java.util.concurrent.TimeUnit.SECONDS));
+    }
+
+    @Test
+    void lookup_postsKeys_andReturnsHeldSizes() throws Exception {
+        server.createContext("/internal/cache/lookup", ex -> {
+            String posted = new String(ex.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            byte[] json = (posted.contains("\"a\"") ? "{\"a\":17}" : "{}").getBytes(StandardCharsets.UTF_8);
+            ex.getResponseHeaders().set("Content-Type", "application/json");
+            ex.sendResponseHeaders(200, json.length);
+            try (OutputStream out = ex.getResponseBody()) {
+                out.write(json);
+            }
+        });
+        PeerSignedHeaders h = PeerSignedHeaders.sign("POST", "/internal/cache/lookup", "bucket=b", "k1", "secret");
+
+        assertEquals(java.util.Map.of("a", 17L),
+                client.lookup(baseUrl, "b", java.util.List.of("a", "b"), h, Duration.ofSeconds(5))
+                        .get(5, java.util.concurrent.TimeUnit.SECONDS));
+    }
+}
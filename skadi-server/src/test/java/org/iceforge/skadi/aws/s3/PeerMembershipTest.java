@@ -0,0 +1,140 @@
+package org.iceforge.skadi.aws.s3;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class PeerMembershipTest {
+
+    private PeerCacheClient client;
+    private PeerMembership membership;
+
+    @BeforeEach
+    void setUp() {
+        client = mock(PeerCacheClient.class);
+        membership = new PeerMembership(client);
+        setField(membership, "seeds", List.of("http://peer-a/", "http://peer-b", "http://self"));
+        setField(membership, "selfUrl", "http://self");
+        setField(membership, "failureThreshold", 2);
+        setField(membership, "circuitOpenMs", 60_000L);
+        membership.refreshMembers();
+    }
+
+    private static void setField(Object target, String fieldName, Object value) {
+        try {
+            Field f = target.getClass().getDeclaredField(fieldName);
+            f.setAccessible(true);
+            f.set(target, value);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed setting field " + fieldName, e);
+        }
+    }
+
+    @Test
+    void members_areNormalizedSeeds_withoutThisNode_andStableUntilChanged() {
+        List<String> first = membership.members();
+        assertEquals(List.of("http://peer-a", "http://peer-b"), first);
+
+        membership.refreshMembers();
+        assertSame(first, membership.members());
+    }
+
+    @Test
+    void dnsDiscovery_listsThisNodeByAddress_soSelfIsRemovedInThatForm() {
+        PeerMembership m = new PeerMembership(client);
+        setField(m, "seeds", List.of());
+        setField(m, "selfUrl", "http://localhost:8080/");
+        setField(m, "discoveryMode", "dns");
+        setField(m, "discoveryName", "localhost");
+        m.refreshMembers();
+
+        List<String> addresses = PeerMembership.resolvedForms("http://localhost:8080");
+        assertFalse(addresses.isEmpty());
+        assertEquals(List.of(), m.members());
+        assertTrue(addresses.contains(m.self()), m.self());
+    }
+
+    @Test
+    void isClosed_neverTakesTheHalfOpenProbe() {
+        setField(membership, "circuitOpenMs", 0L);
+        membership.recordFailure("http://peer-a");
+        membership.recordFailure("http://peer-a");
+
+        assertFalse(membership.isClosed("http://peer-a"));
+        assertFalse(membership.isClosed("http://peer-a"));
+        assertTrue(membership.isAvailable("http://peer-a"), "the probe is still there for a real request");
+        assertTrue(membership.isClosed("http://peer-b"));
+    }
+
+    @Test
+    void mightBeAvailable_leavesTheProbeForTheRequest_andIsFalseOnceItIsOut() {
+        membership.recordFailure("http://peer-a");
+        membership.recordFailure("http://peer-a");
+        assertFalse(membership.mightBeAvailable("http://peer-a"), "open");
+
+        setField(membership, "circuitOpenMs", 0L);
+        membership.recordFailure("http://peer-a");
+        assertTrue(membership.mightBeAvailable("http://peer-a"));
+        assertTrue(membership.mightBeAvailable("http://peer-a"));
+        assertTrue(membership.isAvailable("http://peer-a"), "the probe is still there for a real request");
+        assertFalse(membership.mightBeAvailable("http://peer-a"), "probe out");
+        assertTrue(membership.mightBeAvailable("http://peer-b"));
+    }
+
+    @Test
+    void circuitOpens_afterConsecutiveFailures_andSuccessResets() {
+        membership.recordFailure("http://peer-a");
+        assertTrue(membership.isAvailable("http://peer-a"));
+
+        membership.recordFailure("http://peer-a");
+        assertFalse(membership.isAvailable("http://peer-a"));
+        assertTrue(membership.isAvailable("http://peer-b"));
+
+        PeerMembership.PeerStatus a = membership.statuses().get(0);
+        assertEquals(PeerMembership.Circuit.OPEN, a.circuit());
+        assertTrue(a.errorRate() > 0);
+
+        membership.recordSuccess("http://peer-a", 12);
+        assertTrue(membership.isAvailable("http://peer-a"));
+        assertEquals(PeerMembership.Circuit.CLOSED, membership.statuses().get(0).circuit());
+        assertEquals(12.0, membership.statuses().get(0).latencyEwmaMs());
+    }
+
+    @Test
+    void halfOpen_letsOneProbeThrough_andAFailedProbeReopens() {
+        setField(membership, "circuitOpenMs", 0L);
+        membership.recordFailure("http://peer-a");
+        membership.recordFailure("http://peer-a");
+
+        assertTrue(membership.isAvailable("http://peer-a"), "first call after the open period is the probe");
+        assertFalse(membership.isAvailable("http://peer-a"), "only one probe at a time");
+
+        setField(membership, "circuitOpenMs", 60_000L);
+        membership.recordFailure("http://peer-a");
+        assertFalse(membership.isAvailable("http://peer-a"));
+    }
+
+    @Test
+    void heartbeat_feedsHealth_andSkipsOpenCircuits() {
+        when(client.ping(eq("http://peer-a"), any(Duration.class))).thenReturn(CompletableFuture.completedFuture(false));
+        when(client.ping(eq("http://peer-b"), any(Duration.class))).thenReturn(CompletableFuture.completedFuture(true));
+
+        membership.heartbeat();
+        membership.heartbeat();
+        membership.heartbeat();
+
+        verify(client, times(2)).ping(eq("http://peer-a"), any(Duration.class));
+        verify(client, times(3)).ping(eq("http://peer-b"), any(Duration.class));
+        assertFalse(membership.isAvailable("http://peer-a"));
+        assertEquals(PeerMembership.Circuit.CLOSED, membership.statuses().get(1).circuit());
+    }
+}
@@ -0,0 +1,68 @@
+package org.iceforge.skadi.aws.s3;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PeerRingTest {
+
+    private static final List<String> PEERS = List.of("http://n1:8080", "http://n2:8080", "http://n3:8080", "http://n4:8080");
+
+    @Test
+    void owners_areDeterministic_andIndependentOfListOrder() {
+        PeerRing a = new PeerRing(PEERS, null);
+        PeerRing b = new PeerRing(List.of("http://n3:8080/", "http://n1:8080", "http://n4:8080", "http://n2:8080"), null);
+
+        for (int i = 0; i < 100; i++) {
+            String id = CacheKeyUtil.cacheId("bucket", "key-" + i);
+            assertEquals(a.owners(id, 2), b.owners(id, 2));
+        }
+    }
+
+    @Test
+    void owners_spreadEvenly() {
+        PeerRing ring = new PeerRing(PEERS, null);
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 4_000; i++) {
+            counts.merge(ring.owners(CacheKeyUtil.cacheId("bucket", "key-" + i), 1).get(0), 1, Integer::sum);
+        }
+        assertEquals(4, counts.size());
+        counts.values().forEach(c -> assertTrue(c > 800 && c < 1200, "unbalanced: " + counts));
+    }
+
+    @Test
+    void addingANode_onlyMovesKeysToTheNewNode() {
+        PeerRing before = new PeerRing(PEERS, null);
+        PeerRing after = new PeerRing(List.of("http://n1:8080", "http://n2:8080", "http://n3:8080", "http://n4:8080", "http://n5:8080"), null);
+
+        int moved = 0;
+        for (int i = 0; i < 2_000; i++) {
+            String id = CacheKeyUtil.cacheId("bucket", "key-" + i);
+            String o1 = before.owners(id, 1).get(0);
+            String o2 = after.owners(id, 1).get(0);
+            if (!o1.equals(o2)) {
+                assertEquals("http://n5:8080", o2);
+                moved++;
+            }
+        }
+        assertTrue(moved > 250 && moved < 550, "expected about 1/5 of keys to move, moved " + moved);
+    }
+
+    @Test
+    void peersToAsk_excludesSelf_butSelfStillOwns() {
+        PeerRing ring = new PeerRing(List.of("http://n1:8080", "http://n2:8080"), "http://n3:8080");
+        assertEquals(3, ring.members().size());
+
+        for (int i = 0; i < 50; i++) {
+            String id = CacheKeyUtil.cacheId("bucket", "key-" + i);
+            List<String> ask = ring.peersToAsk(id, 3);
+            assertEquals(2, ask.size());
+            assertFalse(ask.contains("http://n3:8080"));
+            assertEquals(ring.owners(id, 1).get(0).equals("http://n3:8080"), ring.isOwner(id, 1));
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package org.iceforge.skadi.aws.s3;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PeerTransferEncodingTest {
+
+    @Test
+    void compressedPayloads_areNeverOfferedOrServedDeflated() {
+        assertTrue(PeerTransferEncoding.alreadyCompressed("results/q1/chunk-00001.ndjson.gz"));
+        assertTrue(PeerTransferEncoding.alreadyCompressed("arrow/q1/result.ARROW"));
+        assertFalse(PeerTransferEncoding.alreadyCompressed("results/q1/chunk-00001.ndjson"));
+        assertFalse(PeerTransferEncoding.alreadyCompressed("manifest"));
+
+        assertEquals("identity", PeerTransferEncoding.acceptEncodingFor("a/result.arrow", true));
+        assertEquals("deflate", PeerTransferEncoding.acceptEncodingFor("a/chunk.ndjson", true));
+        assertEquals("identity", PeerTransferEncoding.acceptEncodingFor("a/chunk.ndjson", false));
+
+        long big = PeerTransferEncoding.MIN_DEFLATE_BYTES;
+        assertTrue(PeerTransferEncoding.shouldDeflate("gzip, deflate", "a/chunk.ndjson", big));
+        assertFalse(PeerTransferEncoding.shouldDeflate("deflate", "a/chunk.ndjson.gz", big));
+        assertFalse(PeerTransferEncoding.shouldDeflate("deflate", "a/chunk.ndjson", big - 1));
+        assertFalse(PeerTransferEncoding.shouldDeflate("identity", "a/chunk.ndjson", big));
+        assertFalse(PeerTransferEncoding.shouldDeflate(null, "a/chunk.ndjson", big));
+    }
+}
@@ -0,0 +1,114 @@
+package org.iceforge.skadi.aws.s3;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RamTierTest {
+
+    @TempDir
+    Path dir;
+
+    private Path file(String name, int size) throws Exception {
+        Path p = dir.resolve(name);
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) data[i] = (byte) i;
+        Files.write(p, data);
+        return p;
+    }
+
+    @Test
+    void promotesAfterEnoughReads_andServesRanges() throws Exception {
+        RamTier tier = new RamTier(1024, 256, 2);
+        Path a = file("a", 100);
+
+        assertFalse(tier.recordAccess(a, 100));
+        assertTrue(tier.recordAccess(a, 100));
+        assertNotNull(tier.promote(a, 100, tier.epoch()));
+        assertEquals(100, tier.bytes());
+
+        ByteBuffer hit = tier.get(a);
+        assertEquals(100, hit.remaining());
+        try (InputStream in = RamTier.stream(hit, 10, 5)) {
+            assertArrayEquals(new byte[]{10, 11, 12, 13, 14}, in.readAllBytes());
+        }
+        try (InputStream in = RamTier.stream(tier.get(a), 98, 10)) {
+            assertEquals(2, in.readAllBytes().length);
+        }
+        // the held buffer is not consumed by readers
+        assertEquals(100, RamTier.stream(tier.get(a)).readAllBytes().length);
+    }
+
+    @Test
+    void oversizedObjects_areNeverPromoted() throws Exception {
+        RamTier tier = new RamTier(1024, 256, 1);
+        Path big = file("big", 300);
+
+        assertFalse(tier.recordAccess(big, 300));
+        assertNull(tier.promote(big, 300, tier.epoch()));
+        assertFalse(new RamTier(0, 256, 1).recordAccess(big, 10));
+    }
+
+    @Test
+    void promotionRacingAnInvalidation_isNotStored() throws Exception {
+        RamTier tier = new RamTier(1024, 256, 1);
+        Path a = file("a", 10);
+
+        long epoch = tier.epoch();
+        tier.invalidate(a); // the file was replaced while we were reading it
+        assertNull(tier.promote(a, 10, epoch));
+        assertNull(tier.get(a));
+
+        assertNotNull(tier.promote(a, 10, tier.epoch()));
+        tier.invalidate(a);
+        assertNull(tier.get(a));
+        assertEquals(0, tier.bytes());
+    }
+
+    @Test
+    void byteBudget_evictsLeastRecentlyUsed_butNotForAColderCandidate() throws Exception {
+        RamTier tier = new RamTier(200, 100, 1);
+        Path a = file("a", 100);
+        Path b = file("b", 100);
+        Path c = file("c", 100);
+        Path d = file("d", 100);
+
+        for (Path p : new Path[]{a, b}) {
+            tier.recordAccess(p, 100);
+            tier.recordAccess(p, 100);
+            assertNotNull(tier.promote(p, 100, tier.epoch()));
+        }
+
+        // c was seen once, both residents twice: it does not push one of them out
+        tier.recordAccess(c, 100);
+        assertNull(tier.promote(c, 100, tier.epoch()));
+
+        // d is the most popular; it replaces a, the least recently used
+        tier.get(b);
+        for (int i = 0; i < 5; i++) tier.recordAccess(d, 100);
+        assertNotNull(tier.promote(d, 100, tier.epoch()));
+        assertNull(tier.get(a));
+        assertNotNull(tier.get(b));
+        assertEquals(200, tier.bytes());
+        assertEquals(2, tier.size());
+    }
+
+    @Test
+    void sketch_halvesOldCounts() {
+        RamTier.FrequencySketch sketch = new RamTier.FrequencySketch(0);
+        for (int i = 0; i < 20; i++) sketch.increment("hot");
+        assertEquals(15, sketch.frequency("hot")); // saturated
+
+        // 1024 counters per row: halved after 10240 increments, so "hot" cools down without being read
+        int i = 0;
+        while (sketch.frequency("hot") == 15 && i < 20_000) sketch.increment("k" + i++);
+        assertTrue(i <= 10_240, "halved after " + i);
+        assertTrue(sketch.frequency("hot") <= 8);
+    }
+}
@@ -2,7 +2,7 @@ package org.iceforge.skadi.aws.s3;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
-import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
 import org.springframework.http.ResponseEntity;
 
 import java.nio.file.Files;
@@ -236,9 +236,9 @@ public class ResultSetToS3ChunkWriterLocalCacheTightTest {
                         head.getHeaders().getFirst("Content-Length"));
 
                 // GET should return bytes
-                ResponseEntity<InputStreamResource> get = controller.get(
+                ResponseEntity<Resource> get = controller.get(
                         chunk1.bucket(), chunk1.key(),
-                        null, null, null, null
+                        null, null, null, null, null, null, false, null
                 );
                 assertEquals(200, get.getStatusCode().value());
                 assertNotNull(get.getBody());
@@ -248,6 +248,17 @@ public class ResultSetToS3ChunkWriterLocalCacheTightTest {
                     served = in.readAllBytes();
                 }
                 assertEquals(Files.size(chunk1Path), served.length);
+
+                // Range GET should return just that slice
+                ResponseEntity<Resource> ranged = controller.get(
+                        chunk1.bucket(), chunk1.key(),
+                        null, null, null, null, "bytes=1-4", null, false, null
+                );
+                assertEquals(206, ranged.getStatusCode().value());
+                assertEquals("bytes 1-4/" + served.length, ranged.getHeaders().getFirst("Content-Range"));
+                try (var in = ranged.getBody().getInputStream()) {
+                    assertArrayEquals(java.util.Arrays.copyOfRange(served, 1, 5), in.readAllBytes());
+                }
             }
         });
     }
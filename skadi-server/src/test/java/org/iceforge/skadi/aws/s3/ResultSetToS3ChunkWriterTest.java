@@ -30,6 +30,9 @@ class ResultSetToS3ChunkWriterTest {
     @BeforeEach
     void setup() {
         mockS3 = Mockito.mock(AwsSdkS3AccessLayer.class);
+        // Chunk uploads go through the default putBytesAsync, which calls putBytes
+        Mockito.when(mockS3.putBytesAsync(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any()))
+                .thenCallRealMethod();
         writer = new ResultSetToS3ChunkWriter(mockS3);
     }
 
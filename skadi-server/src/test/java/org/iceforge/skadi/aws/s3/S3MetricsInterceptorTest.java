@@ -0,0 +1,60 @@
+package org.iceforge.skadi.aws.s3;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.SdkExecutionAttribute;
+import software.amazon.awssdk.http.SdkHttpFullRequest;
+import software.amazon.awssdk.http.SdkHttpMethod;
+import software.amazon.awssdk.http.SdkHttpResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class S3MetricsInterceptorTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final S3MetricsInterceptor interceptor = new S3MetricsInterceptor(registry);
+
+    private static ExecutionAttributes attrs(String op) {
+        ExecutionAttributes a = new ExecutionAttributes();
+        a.putAttribute(SdkExecutionAttribute.OPERATION_NAME, op);
+        return a;
+    }
+
+    @Test
+    void success_recordsLatencyAndBytes() {
+        ExecutionAttributes a = attrs("GetObject");
+        interceptor.beforeExecution(mock(Context.BeforeExecution.class), a);
+
+        Context.AfterExecution ctx = mock(Context.AfterExecution.class);
+        when(ctx.httpRequest()).thenReturn(SdkHttpFullRequest.builder()
+                .method(SdkHttpMethod.GET).protocol("https").host("s3").build());
+        when(ctx.httpResponse()).thenReturn(SdkHttpResponse.builder()
+                .statusCode(206).putHeader("Content-Length", "4096").build());
+        interceptor.afterExecution(ctx, a);
+
+        assertEquals(1, registry.get("skadi.s3.requests")
+                .tags("operation", "GetObject", "outcome", "success", "status", "206").timer().count());
+        assertEquals(4096.0, registry.get("skadi.s3.bytes")
+                .tags("operation", "GetObject", "direction", "received").counter().count());
+        assertNull(registry.find("skadi.s3.bytes").tags("direction", "sent").counter());
+    }
+
+    @Test
+    void throttledFailure_countsErrorAndThrottle() {
+        ExecutionAttributes a = attrs("PutObject");
+        interceptor.beforeExecution(mock(Context.BeforeExecution.class), a);
+
+        Context.FailedExecution ctx = mock(Context.FailedExecution.class);
+        when(ctx.exception()).thenReturn(S3Exception.builder().statusCode(503).message("SlowDown").build());
+        interceptor.onExecutionFailure(ctx, a);
+
+        assertEquals(1, registry.get("skadi.s3.requests")
+                .tags("operation", "PutObject", "outcome", "error", "status", "503").timer().count());
+        assertEquals(1.0, registry.get("skadi.s3.errors").tags("status", "503").counter().count());
+        assertEquals(1.0, registry.get("skadi.s3.throttles").tags("operation", "PutObject").counter().count());
+    }
+}
@@ -0,0 +1,57 @@
+package org.iceforge.skadi.query;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LeaseTableTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000L);
+    private final LeaseTable table = new LeaseTable(now::get);
+
+    @Test
+    void acquire_isExclusiveUntilExpiry_andTokensGrow() {
+        LeaseTable.Lease a = table.acquire("k", "a", 10_000);
+        assertNotNull(a);
+        assertNull(table.acquire("k", "b", 10_000));
+
+        now.addAndGet(10_001);
+        LeaseTable.Lease b = table.acquire("k", "b", 10_000);
+        assertNotNull(b);
+        assertTrue(b.token() > a.token());
+    }
+
+    @Test
+    void acquire_refusesALiveLease_evenToItsOwner() {
+        LeaseTable.Lease a = table.acquire("k", "a", 10_000);
+        assertNull(table.acquire("k", "a", 10_000));
+        assertNotNull(table.renew("k", "a", a.token(), 10_000));
+    }
+
+    @Test
+    void staleHolder_cannotRenewOrReleaseTheNewLease() {
+        LeaseTable.Lease a = table.acquire("k", "a", 1_000);
+        now.addAndGet(1_001);
+        LeaseTable.Lease b = table.acquire("k", "b", 1_000);
+
+        assertNull(table.renew("k", "a", a.token(), 1_000));
+        assertFalse(table.release("k", "a", a.token()));
+        assertNotNull(table.renew("k", "b", b.token(), 1_000));
+        assertTrue(table.release("k", "b", b.token()));
+        assertEquals(0, table.size());
+    }
+
+    @Test
+    void renew_adoptsUnknownLease_andKeepsTokensAboveIt() {
+        LeaseTable.Lease adopted = table.renew("k", "a", 5_000_000_000L, 1_000);
+        assertNotNull(adopted);
+        assertEquals(5_000_000_000L, adopted.token());
+        assertNull(table.acquire("k", "b", 1_000));
+
+        now.addAndGet(1_001);
+        LeaseTable.Lease b = table.acquire("k", "b", 1_000);
+        assertTrue(b.token() > adopted.token());
+    }
+}
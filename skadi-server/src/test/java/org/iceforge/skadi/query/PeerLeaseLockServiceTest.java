@@ -0,0 +1,85 @@
+package org.iceforge.skadi.query;
+
+import org.iceforge.skadi.aws.s3.PeerCacheClient;
+import org.iceforge.skadi.aws.s3.PeerSignedHeaders;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
+
+class PeerLeaseLockServiceTest {
+
+    private final PeerCacheClient client = mock(PeerCacheClient.class);
+    private final LockService fallback = mock(LockService.class);
+    private final PeerLeaseLockService locks = new PeerLeaseLockService(client, fallback);
+
+    private void remoteGrantor() {
+        setField(locks, "peerEnabled", true);
+        setField(locks, "peerBaseUrls", List.of("http://p1:8080"));
+        setField(locks, "selfUrl", "");
+        setField(locks, "peerKeyId", "k1");
+        setField(locks, "peerSecrets", Map.of("k1", "secret"));
+    }
+
+    @Test
+    void withoutPeers_leasesAreGrantedLocally() {
+        assertTrue(locks.tryAcquire("b", "k", "a", 60));
+        assertFalse(locks.tryAcquire("b", "k", "b", 60));
+        assertFalse(locks.tryAcquire("b", "k", "a", 60)); // a second run on the same node
+        assertTrue(locks.renew("b", "k", "a", 60));
+
+        locks.release("b", "k");
+        assertTrue(locks.tryAcquire("b", "k", "b", 60));
+        verifyNoInteractions(client, fallback);
+    }
+
+    @Test
+    void remoteGrantor_renewsWithTheGrantedToken() {
+        remoteGrantor();
+        when(client.lease(eq("http://p1:8080"), eq("acquire"), eq("b"), eq("k"), eq("a"), eq(60L), eq(0L),
+                any(PeerSignedHeaders.class), any(Duration.class)))
+                .thenReturn(CompletableFuture.completedFuture(new PeerCacheClient.LeaseGrant(true, 42L, 0L)));
+        when(client.lease(eq("http://p1:8080"), eq("renew"), eq("b"), eq("k"), eq("a"), eq(60L), eq(42L),
+                any(PeerSignedHeaders.class), any(Duration.class)))
+                .thenReturn(CompletableFuture.completedFuture(new PeerCacheClient.LeaseGrant(false, 0L, 0L)));
+
+        assertTrue(locks.tryAcquire("b", "k", "a", 60));
+
+        // grantor says the lease is gone: lost, and nothing left to renew
+        assertFalse(locks.renew("b", "k", "a", 60));
+        assertFalse(locks.renew("b", "k", "a", 60));
+        verify(client, times(1)).lease(eq("http://p1:8080"), eq("renew"), eq("b"), eq("k"), eq("a"), eq(60L), eq(42L),
+                any(PeerSignedHeaders.class), any(Duration.class));
+        verifyNoInteractions(fallback);
+    }
+
+    @Test
+    void unreachableGrantor_fallsBackToStoreLock() {
+        remoteGrantor();
+        when(client.lease(anyString(), anyString(), anyString(), anyString(), anyString(), anyLong(), anyLong(),
+                any(PeerSignedHeaders.class), any(Duration.class)))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("connection refused")));
+        when(fallback.tryAcquire("b", "k", "a", 60)).thenReturn(true);
+        when(fallback.renew("b", "k", "a", 60)).thenReturn(true);
+
+        assertTrue(locks.tryAcquire("b", "k", "a", 60));
+        assertTrue(locks.renew("b", "k", "a", 60));
+        locks.release("b", "k");
+
+        verify(fallback).release("b", "k");
+    }
+
+    @Test
+    void grant_rejectsUnknownAction() {
+        assertTrue(locks.grant("acquire", "b", "k", "a", 60, 0L).granted());
+        assertFalse(locks.grant("acquire", "b", "k", "b", 60, 0L).granted());
+        assertThrows(IllegalArgumentException.class, () -> locks.grant("steal", "b", "k", "b", 60, 0L));
+    }
+}
@@ -0,0 +1,112 @@
+package org.iceforge.skadi.query;
+
+import org.iceforge.skadi.aws.s3.PeerAuth;
+import org.iceforge.skadi.aws.s3.PeerCacheClient;
+import org.iceforge.skadi.aws.s3.PeerSignedHeaders;
+import org.iceforge.skadi.aws.s3.ResultSetToS3ChunkWriter;
+import org.iceforge.skadi.aws.s3.S3AccessLayer;
+import org.iceforge.skadi.aws.s3.S3Models;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/** A notice published by the writer's node, delivered to the peer's controller. */
+class PeerQueryControllerTest {
+
+    private static final String PEER = "http://p1:8080";
+
+    private final PeerCacheClient client = mock(PeerCacheClient.class);
+    private final S3AccessLayer s3 = mock(S3AccessLayer.class);
+    private final QueryCompletions writerSide = new QueryCompletions(client);
+    private final QueryCompletions peerSide = new QueryCompletions();
+    private final QueryRegistry registry = new QueryRegistry();
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        setField(writerSide, "peerEnabled", true);
+        setField(writerSide, "peerBaseUrls", List.of(PEER));
+        setField(writerSide, "peerKeyId", "k1");
+        setField(writerSide, "peerSecrets", Map.of("k1", "secret"));
+
+        PeerAuth auth = new PeerAuth();
+        setField(auth, "allowedSkewSeconds", 30L);
+        setField(auth, "sharedSecrets", Map.of("k1", "secret"));
+        mockMvc = MockMvcBuilders.standaloneSetup(new PeerQueryController(peerSide, registry, s3, auth)).build();
+    }
+
+    /** What the writer's node sent to PEER, as the request the peer receives. */
+    private MockHttpServletRequestBuilder deliveredNotice() {
+        ArgumentCaptor<String> queryId = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<String> bucket = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<String> key = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<Boolean> failed = ArgumentCaptor.forClass(Boolean.class);
+        ArgumentCaptor<PeerSignedHeaders> signed = ArgumentCaptor.forClass(PeerSignedHeaders.class);
+        verify(client).notifyQueryDone(eq(PEER), queryId.capture(), bucket.capture(), key.capture(),
+                failed.capture(), signed.capture(), any(Duration.class));
+
+        MockHttpServletRequestBuilder req = post("/internal/query/done")
+                .param("queryId", queryId.getValue())
+                .param("bucket", bucket.getValue())
+                .param("key", key.getValue())
+                .header("X-Skadi-KeyId", signed.getValue().keyId())
+                .header("X-Skadi-Ts", signed.getValue().ts())
+                .header("X-Skadi-Nonce", signed.getValue().nonce())
+                .header("X-Skadi-Signature", signed.getValue().signature());
+        return failed.getValue() ? req.param("failed", "true") : req;
+    }
+
+    @Test
+    void publishedCompletion_invalidatesTheManifestHead_andWakesThePeersWaiter() throws Exception {
+        CompletableFuture<Boolean> waiter = peerSide.await("q1", 10_000, () -> false);
+
+        writerSide.publish("q1", "bucket", "results/q1/manifest.json");
+        mockMvc.perform(deliveredNotice()).andExpect(status().isAccepted());
+
+        verify(s3).invalidateMetadata(new S3Models.ObjectRef("bucket", "results/q1/manifest.json"));
+        assertTrue(waiter.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void publishedFailure_failsThePeersFollower_andWakesItsWaiter() throws Exception {
+        registry.put("q1", QueryModels.Status.RUNNING,
+                new ResultSetToS3ChunkWriter.S3ResultSetRef("bucket", "results", "q1", "results/q1/manifest.json", 0L, 0),
+                null);
+        CompletableFuture<Boolean> waiter = peerSide.await("q1", 10_000, () -> false);
+
+        writerSide.publishFailure("q1", "bucket", "results/q1/manifest.json");
+        mockMvc.perform(deliveredNotice()).andExpect(status().isAccepted());
+
+        assertTrue(waiter.get(5, TimeUnit.SECONDS));
+        assertEquals(QueryModels.Status.FAILED, registry.get("q1").orElseThrow().status());
+        verify(s3, never()).invalidateMetadata(any());
+    }
+
+    @Test
+    void unsignedNotice_isRejected_andWakesNobody() throws Exception {
+        CompletableFuture<Boolean> waiter = peerSide.await("q1", 10_000, () -> false);
+
+        mockMvc.perform(post("/internal/query/done")
+                        .param("queryId", "q1").param("bucket", "bucket").param("key", "m"))
+                .andExpect(status().isUnauthorized());
+
+        assertFalse(waiter.isDone());
+        verifyNoInteractions(s3);
+    }
+}
@@ -0,0 +1,41 @@
+package org.iceforge.skadi.query;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryCompletionsTest {
+
+    private final QueryCompletions completions = new QueryCompletions();
+
+    @Test
+    void await_completesAsSoonAsCompleted() throws Exception {
+        CompletableFuture<Boolean> waiter = completions.await("q1", 10_000, () -> false);
+        assertFalse(waiter.isDone());
+        assertEquals(1, completions.pending());
+
+        long started = System.nanoTime();
+        completions.completed("q1");
+
+        assertTrue(waiter.get(5, TimeUnit.SECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) < 5_000);
+        assertEquals(0, completions.pending());
+    }
+
+    @Test
+    void await_timesOut_andUnregisters() throws Exception {
+        assertFalse(completions.await("q1", 20, () -> false).get(5, TimeUnit.SECONDS));
+        assertEquals(0, completions.pending());
+    }
+
+    @Test
+    void await_doesNotMissCompletionBeforeRegistration() {
+        AtomicBoolean done = new AtomicBoolean(true);
+        assertTrue(completions.await("q1", 10_000, done::get).getNow(false));
+        assertEquals(0, completions.pending());
+    }
+}
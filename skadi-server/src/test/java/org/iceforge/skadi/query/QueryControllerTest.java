@@ -9,20 +9,26 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Instant;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -126,12 +132,52 @@ class QueryControllerTest {
 
         when(queryService.status("q1")).thenReturn(st);
 
-        mockMvc.perform(get("/v1/query/q1"))
+        MvcResult result = mockMvc.perform(get("/v1/query/q1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.status").value("HIT"))
                 .andExpect(jsonPath("$.queryId").value("q1"));
     }
 
+    @Test
+    void status_withWaitMs_longPolls() throws Exception {
+        QueryModels.QueryStatusResponse done = new QueryModels.QueryStatusResponse(
+                QueryModels.Status.DONE, "q1",
+                new ResultSetToS3ChunkWriter.S3ResultSetRef("bucket", "prefix", "run-1", "manifest", 100L, 1),
+                null, Instant.now());
+        CompletableFuture<QueryModels.QueryStatusResponse> pending = new CompletableFuture<>();
+        when(queryService.status("q1", 5000L)).thenReturn(pending);
+
+        MvcResult parked = mockMvc.perform(get("/v1/query/q1").param("waitMs", "5000"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        pending.complete(done);
+
+        mockMvc.perform(asyncDispatch(parked))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("DONE"));
+        verify(queryService, never()).status("q1");
+    }
+
+    @Test
+    void stream_stillRunningAfterWait_returns202() throws Exception {
+        QueryModels.QueryStatusResponse running = new QueryModels.QueryStatusResponse(
+                QueryModels.Status.RUNNING, "q1",
+                new ResultSetToS3ChunkWriter.S3ResultSetRef("bucket", "prefix", "run-1", "manifest", 0L, 0),
+                null, Instant.now());
+        when(queryService.status("q1")).thenReturn(running);
+        when(queryService.status("q1", 100L)).thenReturn(CompletableFuture.completedFuture(running));
+
+        MvcResult parked = mockMvc.perform(get("/v1/query/q1/stream").param("waitMs", "100"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(parked))
+                .andExpect(status().isAccepted());
+        verifyNoInteractions(manifestReader);
+    }
+
 
 
 
@@ -293,6 +339,37 @@ class QueryControllerTest {
     }
 
 
+    @Test
+    void chunk_localFile_withSendfileSupport_handsFileToConnector() throws Exception {
+        Path file = Files.createTempFile("skadi-chunk-", ".bin");
+        Files.write(file, "hello".getBytes(StandardCharsets.UTF_8));
+        try {
+            QueryModels.QueryStatusResponse st = new QueryModels.QueryStatusResponse(
+                    QueryModels.Status.HIT, "q1",
+                    new ResultSetToS3ChunkWriter.S3ResultSetRef("bucket", "prefix", "run-1", "manifest", 100L, 1),
+                    null, Instant.now());
+            ResultSetToS3ChunkWriter.Manifest manifest = new ResultSetToS3ChunkWriter.Manifest(
+                    "run-1", "bucket", "prefix", false, 100L, 456L,
+                    List.of(new ResultSetToS3ChunkWriter.ChunkDescriptor(0, "k1", 5L, 5L, "etag-1")));
+
+            when(queryService.status("q1")).thenReturn(st);
+            when(manifestReader.read("bucket", "manifest")).thenReturn(manifest);
+            when(s3.getLocalFile(any())).thenReturn(Optional.of(file));
+
+            mockMvc.perform(get("/v1/query/q1/chunk/0")
+                            .requestAttr("org.apache.tomcat.sendfile.support", Boolean.TRUE))
+                    .andExpect(status().isOk())
+                    .andExpect(header().longValue("Content-Length", 5L))
+                    .andExpect(request().attribute("org.apache.tomcat.sendfile.filename", file.toAbsolutePath().toString()))
+                    .andExpect(request().attribute("org.apache.tomcat.sendfile.end", 5L));
+
+            verify(s3, never()).getStream(any());
+            verify(stats).recordServe(eq("q1"), eq(5L), any());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
     @Test
     void chunk_missingPart_returns404() throws Exception {
         QueryModels.QueryStatusResponse st =
@@ -384,7 +461,11 @@ class QueryControllerTest {
         when(manifestReader.read("bucket", "manifest")).thenReturn(manifest);
         when(s3.getStream(any())).thenReturn(new ByteArrayInputStream(data));
 
-        mockMvc.perform(get("/v1/query/q1/stream"))
+        MvcResult result = mockMvc.perform(get("/v1/query/q1/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
                 .andExpect(status().isOk());
+        verify(queryService, never()).status(eq("q1"), anyLong());
     }
 }
@@ -1,32 +1,51 @@
 package org.iceforge.skadi.query;
 
-import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
 import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
 import software.amazon.awssdk.services.s3.model.S3Exception;
 
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 class S3LockServiceTest {
 
+    private static final Instant NOW = Instant.parse("2025-01-01T00:00:00Z");
+
     private S3Client s3 = Mockito.mock(S3Client.class);
-    private S3LockService service = new S3LockService(s3);
+    private S3LockService service = new S3LockService(s3, Clock.fixed(NOW, ZoneOffset.UTC));
+
+    private static HeadObjectResponse lockHead(String etag, Instant expiresAt) {
+        return HeadObjectResponse.builder()
+                .eTag(etag)
+                .lastModified(NOW.minusSeconds(10))
+                .metadata(Map.of("skadi-owner", "other", "skadi-expiresat", String.valueOf(expiresAt.toEpochMilli())))
+                .build();
+    }
 
-    @BeforeEach
-    void setup() {
-        S3Client s3 = mock(S3Client.class);
-        S3LockService service = new S3LockService(s3);
+    private static String header(PutObjectRequest put, String name) {
+        return put.overrideConfiguration()
+                .flatMap(o -> o.headers().getOrDefault(name, List.of()).stream().findFirst())
+                .orElse(null);
     }
 
     @Test
     void tryAcquire_returnsFalse_whenLockExists() {
-        when(s3.headObject(any(HeadObjectRequest.class))).thenReturn(null);
+        when(s3.headObject(any(HeadObjectRequest.class))).thenReturn(lockHead("\"e1\"", NOW.plusSeconds(60)));
 
         boolean acquired = service.tryAcquire("b", "k", "owner", 60);
 
@@ -35,6 +54,79 @@ class S3LockServiceTest {
         verify(s3, never()).putObject(any(PutObjectRequest.class), any(RequestBody.class));
     }
 
+    @Test
+    void tryAcquire_createsWithIfNoneMatch_whenAbsent() {
+        when(s3.headObject(any(HeadObjectRequest.class))).thenThrow(NoSuchKeyException.builder().build());
+        when(s3.putObject(any(PutObjectRequest.class), any(RequestBody.class)))
+                .thenReturn(PutObjectResponse.builder().eTag("\"e1\"").build());
+
+        assertTrue(service.tryAcquire("b", "k", "owner", 45));
+
+        ArgumentCaptor<PutObjectRequest> put = ArgumentCaptor.forClass(PutObjectRequest.class);
+        verify(s3).putObject(put.capture(), any(RequestBody.class));
+        assertEquals("*", header(put.getValue(), "If-None-Match"));
+        assertEquals(String.valueOf(NOW.plusSeconds(45).toEpochMilli()), put.getValue().metadata().get("skadi-expiresAt"));
+    }
+
+    @Test
+    void tryAcquire_returnsFalse_whenConditionalCreateLosesRace() {
+        when(s3.headObject(any(HeadObjectRequest.class))).thenThrow(NoSuchKeyException.builder().build());
+        S3Exception precondition = (S3Exception) S3Exception.builder().statusCode(412).build();
+        doThrow(precondition).when(s3).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+
+        assertFalse(service.tryAcquire("b", "k", "owner", 45));
+    }
+
+    @Test
+    void tryAcquire_takesOverExpiredLock_withIfMatch() {
+        when(s3.headObject(any(HeadObjectRequest.class))).thenReturn(lockHead("\"stale\"", NOW.minusSeconds(1)));
+        when(s3.putObject(any(PutObjectRequest.class), any(RequestBody.class)))
+                .thenReturn(PutObjectResponse.builder().eTag("\"mine\"").build());
+
+        assertTrue(service.tryAcquire("b", "k", "owner", 45));
+
+        ArgumentCaptor<PutObjectRequest> put = ArgumentCaptor.forClass(PutObjectRequest.class);
+        verify(s3).putObject(put.capture(), any(RequestBody.class));
+        assertEquals("\"stale\"", header(put.getValue(), "If-Match"));
+        assertNull(header(put.getValue(), "If-None-Match"));
+    }
+
+    @Test
+    void renew_usesOwnEtag_andFailsOnceTakenOver() {
+        when(s3.headObject(any(HeadObjectRequest.class))).thenThrow(NoSuchKeyException.builder().build());
+        when(s3.putObject(any(PutObjectRequest.class), any(RequestBody.class)))
+                .thenReturn(PutObjectResponse.builder().eTag("\"e1\"").build())
+                .thenReturn(PutObjectResponse.builder().eTag("\"e2\"").build())
+                .thenThrow(S3Exception.builder().statusCode(412).build());
+
+        assertTrue(service.tryAcquire("b", "k", "owner", 30));
+        assertTrue(service.renew("b", "k", "owner", 30));
+        assertFalse(service.renew("b", "k", "owner", 30));
+        assertFalse(service.renew("b", "k", "owner", 30));
+
+        ArgumentCaptor<PutObjectRequest> put = ArgumentCaptor.forClass(PutObjectRequest.class);
+        verify(s3, times(3)).putObject(put.capture(), any(RequestBody.class));
+        assertEquals("\"e1\"", header(put.getAllValues().get(1), "If-Match"));
+        assertEquals("\"e2\"", header(put.getAllValues().get(2), "If-Match"));
+    }
+
+    @Test
+    void renew_transientFailure_isRethrown_andKeepsTheEtag() {
+        when(s3.headObject(any(HeadObjectRequest.class))).thenThrow(NoSuchKeyException.builder().build());
+        when(s3.putObject(any(PutObjectRequest.class), any(RequestBody.class)))
+                .thenReturn(PutObjectResponse.builder().eTag("\"e1\"").build())
+                .thenThrow(S3Exception.builder().statusCode(503).build())
+                .thenReturn(PutObjectResponse.builder().eTag("\"e2\"").build());
+
+        assertTrue(service.tryAcquire("b", "k", "owner", 30));
+        assertThrows(S3Exception.class, () -> service.renew("b", "k", "owner", 30));
+        assertTrue(service.renew("b", "k", "owner", 30));
+
+        ArgumentCaptor<PutObjectRequest> put = ArgumentCaptor.forClass(PutObjectRequest.class);
+        verify(s3, times(3)).putObject(put.capture(), any(RequestBody.class));
+        assertEquals("\"e1\"", header(put.getAllValues().get(2), "If-Match"));
+    }
+
     @Test
     void tryAcquire_returnsFalse_whenPutFails() {
         when(s3.headObject(any(HeadObjectRequest.class))).thenThrow(NoSuchKeyException.builder().build());
@@ -56,17 +148,32 @@ class S3LockServiceTest {
     }
 
     @Test
-    void release_deletesObject_and_ignoresErrors() {
-        // success path
-        assertDoesNotThrow(() -> service.release("b", "k"));
-        //verify(s3, times(1)).deleteObject(any());
+    @SuppressWarnings("unchecked")
+    void release_deletesOnlyOwnLock() {
+        when(s3.headObject(any(HeadObjectRequest.class))).thenThrow(NoSuchKeyException.builder().build());
+        when(s3.putObject(any(PutObjectRequest.class), any(RequestBody.class)))
+                .thenReturn(PutObjectResponse.builder().eTag("\"e1\"").build());
+        assertTrue(service.tryAcquire("b", "k", "owner", 45));
+        assertTrue(service.tryAcquire("b", "k2", "owner", 45));
 
-        // error path
         reset(s3);
-        //doThrow(new RuntimeException("boom")).when(s3).deleteObject(any());
-        assertDoesNotThrow(() -> service.release("b", "k"));
-        //verify(s3, times(1)).deleteObject(any());
+        when(s3.headObject(any(HeadObjectRequest.class))).thenReturn(lockHead("\"e1\"", NOW.plusSeconds(45)));
+        service.release("b", "k");
+        verify(s3, times(1)).deleteObject(any(Consumer.class));
+
+        // taken over by someone else: leave it alone
+        reset(s3);
+        when(s3.headObject(any(HeadObjectRequest.class))).thenReturn(lockHead("\"theirs\"", NOW.plusSeconds(45)));
+        service.release("b", "k2");
+        verify(s3, never()).deleteObject(any(Consumer.class));
     }
 
+    @Test
+    void release_ignoresErrors() {
+        assertDoesNotThrow(() -> service.release("b", "k"));
 
-}
\ No newline at end of file
+        reset(s3);
+        when(s3.headObject(any(HeadObjectRequest.class))).thenThrow(new RuntimeException("boom"));
+        assertDoesNotThrow(() -> service.release("b", "k"));
+    }
+}
@@ -2,12 +2,17 @@ package org.iceforge.skadi.s3.spi;
 
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3AsyncClientBuilder;
 import software.amazon.awssdk.services.s3.S3Client;
 
 import java.net.URI;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 class DefaultAwsS3ClientProviderTest {
@@ -47,4 +52,31 @@ class DefaultAwsS3ClientProviderTest {
         assertNotNull(client);
         // SDK v2 S3Client does not expose region/endpoint directly; ensure no exceptions and client is created
     }
-}
\ No newline at end of file
+
+    @Test
+    void s3AsyncClient_builds_with_region_and_endpoint_override() {
+        var provider = new DefaultAwsS3ClientProvider();
+        var ctx = Mockito.mock(S3ClientContext.class);
+        when(ctx.region()).thenReturn(Optional.of("us-east-1"));
+        when(ctx.endpointOverride()).thenReturn(Optional.of(URI.create("http://localhost:9000")));
+
+        try (S3AsyncClient client = provider.s3AsyncClient(ctx).orElseThrow()) {
+            assertNotNull(client);
+        }
+    }
+
+    @Test
+    void s3AsyncClient_fromSkadisBuilder_onlyReplacesWhatTheContextGives() {
+        var provider = new DefaultAwsS3ClientProvider();
+        var ctx = Mockito.mock(S3ClientContext.class);
+        when(ctx.region()).thenReturn(Optional.of("eu-west-1"));
+        when(ctx.endpointOverride()).thenReturn(Optional.empty());
+        S3AsyncClientBuilder skadiDefaults = Mockito.mock(S3AsyncClientBuilder.class);
+        S3AsyncClient built = Mockito.mock(S3AsyncClient.class);
+        when(skadiDefaults.build()).thenReturn(built);
+
+        assertSame(built, provider.s3AsyncClient(ctx, skadiDefaults).orElseThrow());
+        verify(skadiDefaults).region(Region.EU_WEST_1);
+        verify(skadiDefaults, never()).endpointOverride(Mockito.any());
+    }
+}
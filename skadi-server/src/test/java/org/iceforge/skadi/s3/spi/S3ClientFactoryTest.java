@@ -3,6 +3,8 @@ package org.iceforge.skadi.s3.spi;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3AsyncClientBuilder;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.presigner.S3Presigner;
 
@@ -89,4 +91,24 @@ class S3ClientFactoryTest {
 
         assertNull(resolved.presignerOrNull());
     }
-}
\ No newline at end of file
+
+    @Test
+    void asyncClientComesFromTheSelectedProvider_builtFromSkadisDefaults() {
+        S3AsyncClientBuilder skadiDefaults = mock(S3AsyncClientBuilder.class);
+        S3AsyncClient client = mock(S3AsyncClient.class);
+        when(providerB.s3AsyncClient(any(), same(skadiDefaults))).thenReturn(Optional.of(client));
+        S3ProviderConfig cfg = new S3ProviderConfig();
+        cfg.setProvider("providerB");
+
+        assertSame(client, factory.s3AsyncClient(cfg, skadiDefaults).orElseThrow());
+        verify(providerA, never()).s3AsyncClient(any(), any());
+    }
+
+    @Test
+    void asyncClientIsLeftToSkadi_withoutProviders() {
+        S3ClientFactory none = new S3ClientFactory(List.of());
+
+        assertTrue(none.s3AsyncClient(new S3ProviderConfig(), mock(S3AsyncClientBuilder.class)).isEmpty());
+        assertNull(factory.resolve(new S3ProviderConfig()).s3AsyncOrNull(), "providerA has no async client");
+    }
+}